@@ -0,0 +1,151 @@
+package medicationtracking;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The {@code MedicationTrackingBenchmark} class measures the hot paths of
+ * {@link MedicationTrackingSystem} against populated systems of 10k, 100k and 1M
+ * prescriptions. Run it with {@code gradle jmh}; the gc profiler reports the bytes
+ * allocated per operation next to each timing.
+ *
+ * <p>Console output is sent to {@link ReportSinks#discard()}, so the listing and
+ * report benchmarks measure formatting and lookups rather than the terminal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MedicationTrackingBenchmark {
+    private static final String[] LAST_NAMES = {"Smith", "Nguyen", "Garcia", "Patel", "Tremblay"};
+    private static final String[] DRUGS = {"statin", "Metformin", "Amox", "Warfarin Tab", "Insulin"};
+
+    /** Number of prescriptions in the system; the other populations scale with it. */
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private MedicationTrackingSystem system;
+    private String[] patientIds;
+    private String[] doctorIds;
+    private String[] medicationIds;
+    private String[] doctorLastNames;
+    private int cursor;
+    private int added;
+
+    /**
+     * Builds a system with {@code size} prescriptions from {@link DatasetGenerator},
+     * which skews them towards popular medications, busy doctors and chronic patients.
+     */
+    @Setup(Level.Trial)
+    public void populate() {
+        DatasetGenerator generator = new DatasetGenerator(42, Math.max(1, size / 5), Math.max(1, size / 1000),
+                Math.max(1, size / 200), size, LocalDate.of(2025, 1, 1));
+        system = new MedicationTrackingSystem(Clock.fixed(Instant.parse("2025-01-01T00:00:00Z"), ZoneOffset.UTC));
+        system.setOutput(ReportSinks.discard());
+        generator.populate(system);
+
+        patientIds = ids(generator.getPatientCount(), DatasetGenerator::patientId);
+        doctorIds = ids(generator.getDoctorCount(), DatasetGenerator::doctorId);
+        medicationIds = ids(generator.getMedicationCount(), DatasetGenerator::medicationId);
+        // Taken from the generated doctors, since there are few of them in the smaller
+        // systems and a fixed list of names would mostly miss
+        doctorLastNames = system.getDoctors().stream()
+                .map(doctor -> doctor.getName().substring(doctor.getName().lastIndexOf(' ') + 1))
+                .distinct().limit(LAST_NAMES.length).toArray(String[]::new);
+    }
+
+    /**
+     * Removes the prescriptions {@link #addPrescription()} added during an iteration,
+     * so every iteration measures adds against a system of {@code size} prescriptions.
+     */
+    @TearDown(Level.Iteration)
+    public void removeAdded() {
+        // Newest first, so each removal comes off the end of the row lists
+        for (int i = added - 1; i >= 0; i--) {
+            system.deletePrescription("BENCH" + i);
+        }
+        added = 0;
+    }
+
+    private static String[] ids(int count, IntFunction<String> idOf) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = idOf.apply(i);
+        }
+        return ids;
+    }
+
+    // Steps through the populations so lookups do not hit the same entry every time
+    private int next(int bound) {
+        cursor = (cursor + 7919) % bound;
+        return cursor;
+    }
+
+    @Benchmark
+    public boolean addPrescription() {
+        int i = added++;
+        return system.addPrescription(new Prescription("BENCH" + i,
+                patientIds[i % patientIds.length], doctorIds[i % doctorIds.length],
+                medicationIds[i % medicationIds.length], 30, "Take as directed"));
+    }
+
+    @Benchmark
+    public void getById(Blackhole blackhole) {
+        blackhole.consume(system.getPatient(patientIds[next(patientIds.length)]));
+        blackhole.consume(system.getDoctor(doctorIds[next(doctorIds.length)]));
+        blackhole.consume(system.getMedication(medicationIds[next(medicationIds.length)]));
+        blackhole.consume(system.getPrescription(DatasetGenerator.prescriptionId(next(size))));
+    }
+
+    @Benchmark
+    public void searchPatientByName() {
+        system.searchPatientByName(LAST_NAMES[next(LAST_NAMES.length)]);
+    }
+
+    @Benchmark
+    public void searchDoctorByName() {
+        system.searchDoctorByName(doctorLastNames[next(doctorLastNames.length)]);
+    }
+
+    @Benchmark
+    public void searchMedicationByName() {
+        system.searchMedicationByName(DRUGS[next(DRUGS.length)]);
+    }
+
+    @Benchmark
+    public void displayPrescriptionsByPatient() {
+        system.displayPrescriptionsByPatient(patientIds[next(patientIds.length)]);
+    }
+
+    @Benchmark
+    public void checkExpiredMedications() {
+        system.checkExpiredMedications();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int generatePrescriptionReport() {
+        return system.generatePrescriptionReport();
+    }
+}
@@ -0,0 +1,922 @@
+package medicationtracking;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The {@code ApiServer} class serves a {@link MedicationTrackingSystem} over HTTP with
+ * JSON bodies, using the JDK's built-in HTTP server, so many clients can share one
+ * in-process system.
+ *
+ * <p>Resources, with JSON field names matching the bulk import format:
+ * <pre>
+ * GET    /patients?cursor=&amp;limit=      one page, with previous and next cursors
+ * GET    /patients?name=text             search by name (or ?prefix=text)
+ * GET    /patients/{id}
+ * POST   /patients                       {"id", "name", "age", "phoneNumber"}
+ * PUT    /patients/{id}                  {"name", "age", "phoneNumber"}
+ * DELETE /patients/{id}
+ * GET    /patients/{id}/doctors
+ *
+ * /doctors and /medications work the same way; doctors are edited with {"name",
+ * "specialization"} and medications with {"name", "dosage", "quantityInStock"}.
+ * GET/POST/DELETE /doctors/{id}/patients[/{patientId}] list, assign and unassign.
+ *
+ * GET    /prescriptions?patientId= (or doctorId=, medicationId=), or paged as above
+ * GET    /prescriptions/{id}
+ * POST   /prescriptions                  {"prescriptionId", "patientId", "doctorId",
+ *                                         "medicationId", "quantity", "instructions"}
+ * PUT    /prescriptions/{id}             {"quantity", "instructions"}
+ * DELETE /prescriptions/{id}
+ * POST   /prescriptions/{id}/dispense
+ *
+ * GET    /reports/system, /reports/prescriptions          plain text
+ * GET    /reports/expired, /reports/expiring?days=
+ * GET    /reports/inventory?reorderLevel=&amp;days=, /reports/statistics
+ * </pre>
+ *
+ * <p>Each request runs on its own virtual thread when the JVM supports them (Java 21
+ * and later), and on a pool of platform threads otherwise. Connections are kept alive
+ * between requests, since every response carries its length. Text reports are written
+ * to a temporary file while the system is locked and sent from it afterwards.
+ *
+ * <p>Changes are recorded in the audit trail under the client's address, after the
+ * name in the {@code X-Actor} request header if the client sends one. The header is
+ * not authenticated, so the address is what identifies the caller. {@link #main}
+ * listens on the loopback interface unless another bind address is given.
+ */
+public class ApiServer implements Closeable {
+    /** Port used when none is given on the command line. */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_LIMIT = 100;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String ACTOR_HEADER = "X-Actor";
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    static {
+        // Without TCP_NODELAY each small response on a kept-alive connection waits for
+        // the client's delayed acknowledgement, capping a connection at ~25 requests/s.
+        // The JDK server reads this once, so it must be set before the first server starts.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final MedicationTrackingSystem system;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server for a system; call {@link #start()} to accept requests.
+     * Status messages of the system are not silenced, so callers serving heavy traffic
+     * should point its output at {@link ReportSinks#discard()}.
+     *
+     * @param system  The system to serve.
+     * @param address The address to listen on; port 0 picks a free port.
+     * @throws IOException If the address cannot be bound.
+     */
+    public ApiServer(MedicationTrackingSystem system, InetSocketAddress address) throws IOException {
+        this.system = system;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/patients", guarded(this::patients));
+        server.createContext("/doctors", guarded(this::doctors));
+        server.createContext("/medications", guarded(this::medications));
+        server.createContext("/prescriptions", guarded(this::prescriptions));
+        server.createContext("/reports", guarded(this::reports));
+    }
+
+    /**
+     * Starts the server with a system recovered from a data directory.
+     * Usage: {@code java medicationtracking.ApiServer [port] [dataDirectory] [durability] [bindAddress]}
+     * The server only accepts local connections unless a bind address such as
+     * {@code 0.0.0.0} is given.
+     *
+     * @param args The port, data directory, durability and bind address, all optional.
+     * @throws IOException If the data directory cannot be read or the port bound.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path dataDirectory = Paths.get(args.length > 1 ? args[1] : "data");
+        Durability durability = args.length > 2
+                ? Durability.valueOf(args[2].toUpperCase())
+                : Durability.PER_OPERATION;
+        InetAddress bindAddress = args.length > 3
+                ? InetAddress.getByName(args[3])
+                : InetAddress.getLoopbackAddress();
+
+        MedicationTrackingSystem system = new MedicationTrackingSystem();
+        system.setOutput(ReportSinks.discard());
+        PersistenceManager persistence = new PersistenceManager(system, dataDirectory, durability);
+        AuditTrail audit = new AuditTrail(system, dataDirectory.resolve(AuditTrail.FILE_NAME));
+        ApiServer api = new ApiServer(system, new InetSocketAddress(bindAddress, port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.close();
+            try {
+                audit.close();
+                persistence.snapshot(); // compact the log on a clean exit
+                persistence.close();
+            } catch (IOException e) {
+                System.err.println("Failed to save on shutdown: " + e.getMessage());
+            }
+        }));
+        api.start();
+        System.out.println("Serving on http://localhost:" + api.getPort() + "/ (Ctrl+C to stop)");
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The bound port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits briefly for running ones and releases the port.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One virtual thread per request on Java 21+, looked up reflectively since the
+    // build targets Java 17; otherwise a pool of platform threads
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            int threads = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "api-worker-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ============================================================
+    // === Patients, Doctors and Medications ===
+    // ============================================================
+
+    private void patients(Request request) throws IOException {
+        String id = request.segment(1);
+        if (id == null) {
+            switch (request.method) {
+                case "GET":
+                    String name = request.query("name");
+                    String prefix = request.query("prefix");
+                    int limit = request.intQuery("limit", DEFAULT_SEARCH_LIMIT);
+                    if (name != null) {
+                        request.send(200, list(system.findPatientsByName(name, limit), ApiServer::patient));
+                    } else if (prefix != null) {
+                        request.send(200, list(system.findPatientsByNamePrefix(prefix, limit), ApiServer::patient));
+                    } else {
+                        request.send(200, page(system.getPatientPage(request.query("cursor"), request.pageSize()),
+                                ApiServer::patient));
+                    }
+                    return;
+                case "POST":
+                    Patient patient = (Patient) ImportType.PATIENTS.build(request.body(ImportType.PATIENTS));
+                    created(request, system.addPatient(patient), patient(patient));
+                    return;
+                default:
+                    request.notAllowed();
+                    return;
+            }
+        }
+        if ("doctors".equals(request.segment(2)) && request.segment(3) == null && request.is("GET")) {
+            if (system.getPatient(id) == null) {
+                request.notFound("patient", id);
+            } else {
+                request.send(200, list(system.getDoctorsForPatient(id), ApiServer::doctor));
+            }
+            return;
+        }
+        if (request.segment(2) != null) {
+            request.noRoute();
+            return;
+        }
+        switch (request.method) {
+            case "GET":
+                Patient patient = system.getPatient(id);
+                found(request, patient == null ? null : patient(patient), "patient", id);
+                return;
+            case "PUT":
+                String[] values = request.body(ImportType.PATIENTS);
+                updated(request, system.editPatient(id, values[1], ImportType.PATIENTS.number(values, 2), values[3]),
+                        "patient", id, system.getPatient(id), ApiServer::patient);
+                return;
+            case "DELETE":
+                deleted(request, system.deletePatient(id), "patient", id);
+                return;
+            default:
+                request.notAllowed();
+        }
+    }
+
+    private void doctors(Request request) throws IOException {
+        String id = request.segment(1);
+        if (id == null) {
+            switch (request.method) {
+                case "GET":
+                    String name = request.query("name");
+                    String prefix = request.query("prefix");
+                    int limit = request.intQuery("limit", DEFAULT_SEARCH_LIMIT);
+                    if (name != null) {
+                        request.send(200, list(system.findDoctorsByName(name, limit), ApiServer::doctor));
+                    } else if (prefix != null) {
+                        request.send(200, list(system.findDoctorsByNamePrefix(prefix, limit), ApiServer::doctor));
+                    } else {
+                        request.send(200, page(system.getDoctorPage(request.query("cursor"), request.pageSize()),
+                                ApiServer::doctor));
+                    }
+                    return;
+                case "POST":
+                    Doctor doctor = (Doctor) ImportType.DOCTORS.build(request.body(ImportType.DOCTORS));
+                    created(request, system.addDoctor(doctor), doctor(doctor));
+                    return;
+                default:
+                    request.notAllowed();
+                    return;
+            }
+        }
+        if ("patients".equals(request.segment(2))) {
+            assignments(request, id, request.segment(3));
+            return;
+        }
+        if (request.segment(2) != null) {
+            request.noRoute();
+            return;
+        }
+        switch (request.method) {
+            case "GET":
+                Doctor doctor = system.getDoctor(id);
+                found(request, doctor == null ? null : doctor(doctor), "doctor", id);
+                return;
+            case "PUT":
+                String[] values = request.body(ImportType.DOCTORS);
+                updated(request, system.editDoctor(id, values[1], values[3]),
+                        "doctor", id, system.getDoctor(id), ApiServer::doctor);
+                return;
+            case "DELETE":
+                deleted(request, system.deleteDoctor(id), "doctor", id);
+                return;
+            default:
+                request.notAllowed();
+        }
+    }
+
+    // Lists, assigns and unassigns the patients of a doctor
+    private void assignments(Request request, String doctorId, String patientId) throws IOException {
+        Doctor doctor = system.getDoctor(doctorId);
+        if (doctor == null) {
+            request.notFound("doctor", doctorId);
+            return;
+        }
+        if (patientId == null) {
+            if (request.is("GET")) {
+                request.send(200, list(doctor.getAssignedPatients(), ApiServer::patient));
+            } else {
+                request.notAllowed();
+            }
+            return;
+        }
+        if (request.segment(4) != null) {
+            request.noRoute();
+        } else if (system.getPatient(patientId) == null) {
+            request.notFound("patient", patientId);
+        } else if (request.is("POST")) {
+            if (system.assignPatientToDoctor(doctorId, patientId)) {
+                request.send(201, doctor(doctor));
+            } else {
+                request.error(409, "Patient " + patientId + " is already assigned to doctor " + doctorId + ".");
+            }
+        } else if (request.is("DELETE")) {
+            if (system.unassignPatientFromDoctor(doctorId, patientId)) {
+                request.sendEmpty(204);
+            } else {
+                request.error(404, "Patient " + patientId + " is not assigned to doctor " + doctorId + ".");
+            }
+        } else {
+            request.notAllowed();
+        }
+    }
+
+    private void medications(Request request) throws IOException {
+        String id = request.segment(1);
+        if (id == null) {
+            switch (request.method) {
+                case "GET":
+                    String name = request.query("name");
+                    String prefix = request.query("prefix");
+                    int limit = request.intQuery("limit", DEFAULT_SEARCH_LIMIT);
+                    if (name != null) {
+                        request.send(200, list(system.findMedicationsByName(name, limit), ApiServer::medication));
+                    } else if (prefix != null) {
+                        request.send(200, list(system.findMedicationsByNamePrefix(prefix, limit),
+                                ApiServer::medication));
+                    } else {
+                        request.send(200, page(system.getMedicationPage(request.query("cursor"), request.pageSize()),
+                                ApiServer::medication));
+                    }
+                    return;
+                case "POST":
+                    Medication medication = (Medication) ImportType.MEDICATIONS.build(
+                            request.body(ImportType.MEDICATIONS));
+                    created(request, system.addMedication(medication), medication(medication));
+                    return;
+                default:
+                    request.notAllowed();
+                    return;
+            }
+        }
+        if (request.segment(2) != null) {
+            request.noRoute();
+            return;
+        }
+        switch (request.method) {
+            case "GET":
+                Medication medication = system.getMedication(id);
+                found(request, medication == null ? null : medication(medication), "medication", id);
+                return;
+            case "PUT":
+                String[] values = request.body(ImportType.MEDICATIONS);
+                updated(request, system.editMedication(id, values[1], ImportType.MEDICATIONS.number(values, 2),
+                                ImportType.MEDICATIONS.number(values, 3)),
+                        "medication", id, system.getMedication(id), ApiServer::medication);
+                return;
+            case "DELETE":
+                deleted(request, system.deleteMedication(id), "medication", id);
+                return;
+            default:
+                request.notAllowed();
+        }
+    }
+
+    // ============================================================
+    // === Prescriptions ===
+    // ============================================================
+
+    private void prescriptions(Request request) throws IOException {
+        String id = request.segment(1);
+        if (id == null) {
+            switch (request.method) {
+                case "GET":
+                    String patientId = request.query("patientId");
+                    String doctorId = request.query("doctorId");
+                    String medicationId = request.query("medicationId");
+                    if (patientId != null) {
+                        request.send(200, list(system.getPrescriptionsByPatient(patientId), ApiServer::prescription));
+                    } else if (doctorId != null) {
+                        request.send(200, list(system.getPrescriptionsByDoctor(doctorId), ApiServer::prescription));
+                    } else if (medicationId != null) {
+                        request.send(200, list(system.getPrescriptionsByMedication(medicationId),
+                                ApiServer::prescription));
+                    } else {
+                        request.send(200, page(system.getPrescriptionPage(request.query("cursor"), request.pageSize()),
+                                ApiServer::prescription));
+                    }
+                    return;
+                case "POST":
+                    Prescription prescription = (Prescription) ImportType.PRESCRIPTIONS.build(
+                            request.body(ImportType.PRESCRIPTIONS));
+                    created(request, system.addPrescription(prescription), prescription(prescription));
+                    return;
+                default:
+                    request.notAllowed();
+                    return;
+            }
+        }
+        if ("dispense".equals(request.segment(2)) && request.segment(3) == null) {
+            if (!request.is("POST")) {
+                request.notAllowed();
+                return;
+            }
+            DispenseResult result = system.dispense(id);
+            int status = result == DispenseResult.DISPENSED ? 200
+                    : result == DispenseResult.UNKNOWN_PRESCRIPTION ? 404 : 409;
+            request.send(status, new JsonWriter().beginObject()
+                    .field("result", result.name())
+                    .field("message", result.getMessage())
+                    .endObject().toString());
+            return;
+        }
+        if (request.segment(2) != null) {
+            request.noRoute();
+            return;
+        }
+        switch (request.method) {
+            case "GET":
+                Prescription prescription = system.getPrescription(id);
+                found(request, prescription == null ? null : prescription(prescription), "prescription", id);
+                return;
+            case "PUT":
+                String[] values = request.body(ImportType.PRESCRIPTIONS);
+                Integer quantity = values[4] == null ? null : ImportType.PRESCRIPTIONS.number(values, 4);
+                updated(request, system.editPrescription(id, quantity, values[5]),
+                        "prescription", id, system.getPrescription(id), ApiServer::prescription);
+                return;
+            case "DELETE":
+                deleted(request, system.deletePrescription(id), "prescription", id);
+                return;
+            default:
+                request.notAllowed();
+        }
+    }
+
+    // ============================================================
+    // === Reports ===
+    // ============================================================
+
+    private void reports(Request request) throws IOException {
+        String name = request.segment(1);
+        if (name == null || request.segment(2) != null) {
+            request.noRoute();
+            return;
+        }
+        if (!request.is("GET")) {
+            request.notAllowed();
+            return;
+        }
+        switch (name) {
+            case "system":
+                request.stream(system::writeSystemReport);
+                return;
+            case "prescriptions":
+                request.stream(system::writePrescriptionReport);
+                return;
+            case "expired":
+                request.send(200, list(system.getExpiredMedications(), ApiServer::medication));
+                return;
+            case "expiring":
+                request.send(200, list(system.getMedicationsExpiringWithin(request.intQuery("days", 30)),
+                        ApiServer::medication));
+                return;
+            case "inventory":
+                int days = request.intQuery("days", 30);
+                request.send(200, new JsonWriter().beginObject()
+                        .field("unitsInStock", system.getTotalUnitsInStock())
+                        .field("milligramsInStock", system.getTotalMilligramsInStock())
+                        .field("unitsExpiringWithinDays", system.getUnitsExpiringWithin(days))
+                        .name("belowReorderLevel")
+                        .raw(list(system.getMedicationsBelowStock(request.intQuery("reorderLevel", 10)),
+                                ApiServer::medication))
+                        .endObject().toString());
+                return;
+            case "statistics":
+                JsonWriter json = new JsonWriter().beginObject()
+                        .field("patients", system.getPatientCount())
+                        .field("doctors", system.getDoctorCount())
+                        .field("medications", system.getMedicationCount())
+                        .field("prescriptions", system.getPrescriptionCount())
+                        .name("drift").beginArray();
+                for (String line : system.verifyPrescriptionStatistics()) {
+                    json.value(line);
+                }
+                request.send(200, json.endArray().endObject().toString());
+                return;
+            default:
+                request.noRoute();
+        }
+    }
+
+    // ============================================================
+    // === Responses ===
+    // ============================================================
+
+    private static void created(Request request, boolean added, String json) throws IOException {
+        if (added) {
+            request.send(201, json);
+        } else {
+            request.error(409, "A record with that ID already exists.");
+        }
+    }
+
+    private static void found(Request request, String json, String kind, String id) throws IOException {
+        if (json == null) {
+            request.notFound(kind, id);
+        } else {
+            request.send(200, json);
+        }
+    }
+
+    private static <T> void updated(Request request, boolean edited, String kind, String id, T entity,
+                                    Function<T, String> toJson) throws IOException {
+        if (edited && entity != null) {
+            request.send(200, toJson.apply(entity));
+        } else {
+            request.notFound(kind, id);
+        }
+    }
+
+    private static void deleted(Request request, boolean removed, String kind, String id) throws IOException {
+        if (removed) {
+            request.sendEmpty(204);
+        } else {
+            request.notFound(kind, id);
+        }
+    }
+
+    private static <T> String list(Collection<T> items, Function<T, String> toJson) {
+        JsonWriter json = new JsonWriter().beginArray();
+        for (T item : items) {
+            json.raw(toJson.apply(item));
+        }
+        return json.endArray().toString();
+    }
+
+    private static <T> String page(Page<T> page, Function<T, String> toJson) {
+        return new JsonWriter().beginObject()
+                .name("items").raw(list(page.getItems(), toJson))
+                .field("previous", page.getPreviousCursor())
+                .field("next", page.getNextCursor())
+                .endObject().toString();
+    }
+
+    // Entities use the field names of the bulk import format, so responses can be posted back
+
+    private static String patient(Patient p) {
+        return new JsonWriter().beginObject()
+                .field("id", p.getId())
+                .field("name", p.getName())
+                .field("age", p.getAge())
+                .field("phoneNumber", p.getPhoneNumber())
+                .endObject().toString();
+    }
+
+    private static String doctor(Doctor d) {
+        JsonWriter json = new JsonWriter().beginObject()
+                .field("id", d.getId())
+                .field("name", d.getName())
+                .field("phoneNumber", d.getPhoneNumber())
+                .field("specialization", d.getSpecialization())
+                .name("assignedPatients").beginArray();
+        for (Patient p : d.getAssignedPatients()) {
+            json.value(p.getId());
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    private static String medication(Medication m) {
+        return new JsonWriter().beginObject()
+                .field("id", m.getId())
+                .field("name", m.getName())
+                .field("dosage", m.getDosage())
+                .field("quantityInStock", m.getQuantityInStock())
+                .field("expiryDate", m.getExpiryDate().format(Medication.DATE_FORMAT))
+                .endObject().toString();
+    }
+
+    private static String prescription(Prescription p) {
+        return new JsonWriter().beginObject()
+                .field("prescriptionId", p.getPrescriptionId())
+                .field("patientId", p.getPatientId())
+                .field("doctorId", p.getDoctorId())
+                .field("medicationId", p.getMedicationId())
+                .field("quantity", p.getQuantity())
+                .field("filledQuantity", p.getFilledQuantity())
+                .field("instructions", p.getInstructions())
+                .endObject().toString();
+    }
+
+    // ============================================================
+    // === Request Handling ===
+    // ============================================================
+
+    // Handles one resource; throws IllegalArgumentException for bad input
+    private interface Route {
+        void handle(Request request) throws IOException;
+    }
+
+    // Turns invalid input into 400 responses and anything unexpected into 500 responses
+    private static HttpHandler guarded(Route route) {
+        return exchange -> {
+            Request request = new Request(exchange);
+            AuditTrail.setActor(actor(exchange));
+            try {
+                request.parse();
+                route.handle(request);
+            } catch (IllegalArgumentException e) {
+                request.error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                // The details stay in the server log rather than going to the client
+                System.err.println("Failed to handle " + request.method + " " + exchange.getRequestURI() + ": " + e);
+                e.printStackTrace();
+                request.error(500, "Internal server error.");
+            } finally {
+                AuditTrail.setActor(null);
+                exchange.close();
+            }
+        };
+    }
+
+    // Names who made a request in the audit trail: always the client's address, which
+    // the client cannot forge, after the unverified X-Actor name if it sends one
+    private static String actor(HttpExchange exchange) {
+        String address = "api@" + exchange.getRemoteAddress().getAddress().getHostAddress();
+        String claimed = exchange.getRequestHeaders().getFirst(ACTOR_HEADER);
+        return claimed != null && !claimed.isEmpty() ? claimed + " (" + address + ")" : address;
+    }
+
+    /**
+     * One HTTP exchange, with its path split into segments below the context and its
+     * query string decoded once {@link #parse()} has run.
+     */
+    private static final class Request {
+        final HttpExchange exchange;
+        final String method;
+        private String[] segments = new String[0];
+        private final Map<String, String> query = new HashMap<>();
+        private boolean responded;
+
+        Request(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod().toUpperCase();
+        }
+
+        // Splits and decodes the path and query; throws IllegalArgumentException for a
+        // malformed percent-escape
+        void parse() {
+            String path = exchange.getRequestURI().getRawPath();
+            String[] parts = path.substring(1).split("/");
+            String[] decoded = new String[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                decoded[i] = decode(parts[i]);
+            }
+            segments = decoded;
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            if (rawQuery != null) {
+                for (String pair : rawQuery.split("&")) {
+                    int eq = pair.indexOf('=');
+                    if (eq > 0) {
+                        query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+                    } else if (!pair.isEmpty()) {
+                        query.put(decode(pair), "");
+                    }
+                }
+            }
+        }
+
+        private static String decode(String text) {
+            return URLDecoder.decode(text, StandardCharsets.UTF_8);
+        }
+
+        // Segment 0 is the resource itself; empty segments (a trailing slash) count as absent
+        String segment(int index) {
+            return index < segments.length && !segments[index].isEmpty() ? segments[index] : null;
+        }
+
+        boolean is(String expected) {
+            return method.equals(expected);
+        }
+
+        String query(String name) {
+            return query.get(name);
+        }
+
+        int intQuery(String name, int defaultValue) {
+            String value = query.get(name);
+            if (value == null || value.isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + value);
+            }
+        }
+
+        int pageSize() {
+            int limit = intQuery("limit", DEFAULT_PAGE_SIZE);
+            if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+            }
+            return limit;
+        }
+
+        // Reads a flat JSON object body into the field values of a record type
+        String[] body(ImportType type) throws IOException {
+            String text;
+            try (InputStream in = exchange.getRequestBody()) {
+                text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if (text.trim().isEmpty()) {
+                throw new IllegalArgumentException("Expected a JSON object body.");
+            }
+            return BulkImporter.jsonValues(type, text);
+        }
+
+        void send(int status, String json) throws IOException {
+            respond(status, JSON, json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void sendEmpty(int status) throws IOException {
+            responded = true;
+            exchange.sendResponseHeaders(status, -1);
+        }
+
+        void error(int status, String message) throws IOException {
+            if (responded) {
+                return; // Too late to change the status; the connection is closed instead
+            }
+            send(status, new JsonWriter().beginObject().field("error", message).endObject().toString());
+        }
+
+        void notFound(String kind, String id) throws IOException {
+            error(404, "No " + kind + " found with ID: " + id);
+        }
+
+        void noRoute() throws IOException {
+            error(404, "No such resource: " + exchange.getRequestURI().getPath());
+        }
+
+        void notAllowed() throws IOException {
+            error(405, "Method " + method + " is not allowed here.");
+        }
+
+        // Sends a text report, spooled through a temporary file so it need not fit in memory
+        void stream(Consumer<ReportSink> report) throws IOException {
+            // Reports hold the system's read locks while they are written, so they are
+            // spooled to a file first; a slow client then only holds up its own response
+            Path spool = Files.createTempFile("medtrack-report", ".txt");
+            try {
+                try (ReportSink sink = ReportSinks.file(spool)) {
+                    report.accept(sink);
+                }
+                responded = true;
+                exchange.getResponseHeaders().set("Content-Type", TEXT);
+                exchange.sendResponseHeaders(200, Files.size(spool));
+                try (OutputStream out = exchange.getResponseBody()) {
+                    Files.copy(spool, out);
+                }
+            } finally {
+                Files.deleteIfExists(spool);
+            }
+        }
+
+        private void respond(int status, String contentType, byte[] body) throws IOException {
+            responded = true;
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Builds JSON text. Commas are inserted automatically between values.
+     */
+    private static final class JsonWriter {
+        private final StringBuilder sb = new StringBuilder(128);
+        // Whether the next value in the current object or array needs a leading comma
+        private boolean comma;
+
+        JsonWriter beginObject() {
+            separate();
+            sb.append('{');
+            comma = false;
+            return this;
+        }
+
+        JsonWriter endObject() {
+            sb.append('}');
+            comma = true;
+            return this;
+        }
+
+        JsonWriter beginArray() {
+            separate();
+            sb.append('[');
+            comma = false;
+            return this;
+        }
+
+        JsonWriter endArray() {
+            sb.append(']');
+            comma = true;
+            return this;
+        }
+
+        JsonWriter name(String name) {
+            separate();
+            string(name);
+            sb.append(':');
+            comma = false;
+            return this;
+        }
+
+        JsonWriter field(String name, String value) {
+            return name(name).value(value);
+        }
+
+        JsonWriter field(String name, long value) {
+            name(name);
+            sb.append(value);
+            comma = true;
+            return this;
+        }
+
+        JsonWriter field(String name, Integer value) {
+            name(name);
+            sb.append(value == null ? "null" : value.toString());
+            comma = true;
+            return this;
+        }
+
+        JsonWriter value(String value) {
+            separate();
+            if (value == null) {
+                sb.append("null");
+            } else {
+                string(value);
+            }
+            comma = true;
+            return this;
+        }
+
+        // Appends JSON text that was built separately
+        JsonWriter raw(String json) {
+            separate();
+            sb.append(json);
+            comma = true;
+            return this;
+        }
+
+        private void separate() {
+            if (comma) {
+                sb.append(',');
+            }
+        }
+
+        private void string(String value) {
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            sb.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package medicationtracking;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code AuditTrail} class keeps a tamper-evident record of every change made to a
+ * {@link MedicationTrackingSystem}: who made it, when, and what changed. Edits record
+ * the old value next to the new one, so stock overwrites through
+ * {@link MedicationTrackingSystem#editMedication} can be told apart from dispenses and
+ * restocks, which are recorded as stock deltas.
+ *
+ * <p>The file holds one entry per line:
+ * <pre>
+ * sequence \t epochMillis \t actor \t mutation \t hash
+ * </pre>
+ * where the hash is the hex SHA-256 of the previous entry's hash (32 zero bytes for the
+ * first entry) followed by the bytes of the entry up to its last tab. Changing,
+ * removing or reordering an entry therefore breaks the chain from that entry on, which
+ * {@link AuditVerifier} detects. Recording the last hash somewhere else from time to
+ * time also guards against the whole tail being rewritten.
+ *
+ * <p>The changing thread only hands the entry to a ring buffer, waiting only if the
+ * buffer is full. A writer thread hashes queued entries, appends them in batches and
+ * forces each batch to disk, so the disk is written once per batch rather than once
+ * per change. The actor is taken from the changing thread (see {@link #setActor}).
+ *
+ * <p>If a batch cannot be written, the file is cut back to the last batch that reached
+ * the disk and the trail stops: later changes are rejected before they are applied
+ * (see {@link #checkRecording()}) rather than going unrecorded or chaining on entries
+ * that were never written. Changes already applied when the failure is seen are
+ * reported as not recorded.
+ */
+public class AuditTrail implements MutationListener, Closeable {
+    /** The name of the audit file in a data directory. */
+    public static final String FILE_NAME = "audit.log";
+
+    /** Number of entries the ring buffer holds. */
+    static final int CAPACITY = 1 << 16;
+
+    static final int HASH_BYTES = 32;
+    static final int HASH_HEX = HASH_BYTES * 2;
+    private static final int MAX_BATCH = 4096;
+    private static final int TAIL_WINDOW = 1 << 16;
+    private static final int IDLE_YIELDS = 64;
+    private static final long IDLE_PARK_NANOS = 100_000_000;
+    private static final long BLOCKED_PARK_NANOS = 50_000;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String DEFAULT_ACTOR = System.getProperty("user.name", "unknown");
+    private static final ThreadLocal<String> ACTOR = new ThreadLocal<>();
+
+    private final MedicationTrackingSystem system;
+    private final Path file;
+    private final EventRing<Entry> ring = new EventRing<>(CAPACITY);
+    private final Thread writer;
+    private final AtomicBoolean writerParked = new AtomicBoolean();
+    private volatile boolean closed;
+
+    // Owned by the writer thread once it has started
+    private final FileChannel channel;
+    private final OutputStream out;
+    private final MessageDigest digest;
+    private final byte[] lastHash;
+    private volatile long lastSequence;
+    private volatile IOException failure;
+
+    // The chain as far as the batch being written; it only becomes the last sequence
+    // and hash once the batch is on disk
+    private final byte[] chainHash = new byte[HASH_BYTES];
+    private long chainSequence;
+    private long durableSize;
+
+    // A change waiting to be written, captured on the changing thread
+    private static final class Entry {
+        final long timeMillis;
+        final String actor;
+        final Mutation mutation;
+
+        Entry(long timeMillis, String actor, Mutation mutation) {
+            this.timeMillis = timeMillis;
+            this.actor = actor;
+            this.mutation = mutation;
+        }
+    }
+
+    /**
+     * Opens an audit file, continuing its chain if it exists, and starts recording the
+     * system's changes. Open it after any recovery, so replayed changes are not
+     * recorded twice.
+     *
+     * @param system The system to audit.
+     * @param file   The audit file, created if it does not exist.
+     * @throws IOException If the file cannot be opened or its last entry is malformed.
+     */
+    public AuditTrail(MedicationTrackingSystem system, Path file) throws IOException {
+        this.system = system;
+        this.file = file;
+        digest = newDigest();
+        lastHash = new byte[HASH_BYTES];
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            resumeChain();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        System.arraycopy(lastHash, 0, chainHash, 0, HASH_BYTES);
+        chainSequence = lastSequence;
+        out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+        writer = new Thread(this::write, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+        system.addMutationListener(this);
+    }
+
+    // ============================================================
+    // === Actors ===
+    // ============================================================
+
+    /**
+     * Sets who is making changes on the current thread, e.g. the signed-in pharmacist.
+     * Until it is set, changes are recorded under the operating system user name.
+     *
+     * @param actor The actor, or null to go back to the default.
+     */
+    public static void setActor(String actor) {
+        if (actor == null) {
+            ACTOR.remove();
+        } else {
+            ACTOR.set(actor);
+        }
+    }
+
+    /**
+     * Gets who is making changes on the current thread.
+     *
+     * @return The actor recorded with the thread's changes.
+     */
+    public static String getActor() {
+        String actor = ACTOR.get();
+        return actor != null ? actor : DEFAULT_ACTOR;
+    }
+
+    // ============================================================
+    // === Recording (on the changing thread) ===
+    // ============================================================
+
+    /**
+     * Rejects changes once a batch could not be written; called by the system before
+     * each change.
+     *
+     * @throws IllegalStateException If an earlier batch could not be written.
+     */
+    @Override
+    public void checkRecording() {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new IllegalStateException("Audit trail " + file + " failed, changes are rejected: "
+                    + failed.getMessage(), failed);
+        }
+    }
+
+    /**
+     * Queues an entry for a change; called by the system after each change.
+     *
+     * @param mutation The change that was applied.
+     */
+    @Override
+    public void mutationApplied(Mutation mutation) {
+        if (failure != null) {
+            // Checked before the batch failed; the change is already made
+            System.err.println("Audit trail " + file + " failed, change not recorded: " + mutation);
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), getActor(), mutation);
+        // Nothing may be lost, so wait for the writer if it has fallen a full ring behind
+        while (!ring.offer(entry)) {
+            if (closed) {
+                System.err.println("Audit trail closed, change not recorded: " + mutation);
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+        }
+        // Only the first entry after the writer parked pays for unparking it
+        if (writerParked.get() && writerParked.compareAndSet(true, false)) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // ============================================================
+    // === Writing (on the writer thread) ===
+    // ============================================================
+
+    private void write() {
+        int idle = 0;
+        while (true) {
+            Entry entry = ring.poll();
+            if (entry != null) {
+                idle = 0;
+                writeBatch(entry);
+            } else if (closed) {
+                return;
+            } else if (idle++ < IDLE_YIELDS) {
+                Thread.yield();
+            } else {
+                idle = 0;
+                writerParked.set(true);
+                if (ring.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerParked.set(false);
+            }
+        }
+    }
+
+    // Appends the given entry and whatever else is queued, then forces them to disk
+    private void writeBatch(Entry first) {
+        Entry entry = first;
+        int count = 0;
+        if (failure != null) {
+            // Queued before the failure was seen; there is no intact chain to add them to
+            while (++count < MAX_BATCH && ring.poll() != null) {
+                // dropped
+            }
+            System.err.println("Audit trail " + file + " failed, " + count + " changes not recorded");
+            return;
+        }
+        try {
+            do {
+                out.write(encode(entry));
+            } while (++count < MAX_BATCH && (entry = ring.poll()) != null);
+            out.flush();
+            channel.force(false);
+            durableSize = channel.position();
+            System.arraycopy(chainHash, 0, lastHash, 0, HASH_BYTES);
+            lastSequence = chainSequence;
+        } catch (IOException e) {
+            System.err.println("Failed to write audit trail " + file + ": " + e.getMessage());
+            failure = e;
+            discardPartialBatch();
+        }
+    }
+
+    // Cuts off whatever part of a failed batch reached the file, so it still ends
+    // with the last entry known to be on disk
+    private void discardPartialBatch() {
+        try {
+            channel.truncate(durableSize);
+            channel.force(false);
+        } catch (IOException e) {
+            System.err.println("Failed to remove a partly written batch from " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Builds the line of an entry and moves the pending chain on to it
+    private byte[] encode(Entry entry) {
+        String actor = entry.actor.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        long sequence = chainSequence + 1;
+        byte[] body = (sequence + "\t" + entry.timeMillis + "\t" + actor + "\t"
+                + entry.mutation.encode() + "\t").getBytes(StandardCharsets.UTF_8);
+        chain(digest, chainHash, body, 0, body.length - 1, chainHash);
+
+        byte[] line = new byte[body.length + HASH_HEX + 1];
+        System.arraycopy(body, 0, line, 0, body.length);
+        for (int i = 0; i < HASH_BYTES; i++) {
+            line[body.length + 2 * i] = HEX[(chainHash[i] >> 4) & 0xf];
+            line[body.length + 2 * i + 1] = HEX[chainHash[i] & 0xf];
+        }
+        line[line.length - 1] = '\n';
+        chainSequence = sequence;
+        return line;
+    }
+
+    /**
+     * Computes the hash of an entry from the previous hash and the entry's bytes.
+     *
+     * @param digest   A SHA-256 digest to use.
+     * @param previous The previous entry's hash.
+     * @param bytes    The buffer holding the entry.
+     * @param offset   Where the entry starts.
+     * @param length   The length of the entry up to, not including, its last tab.
+     * @param hash     Receives the hash; may be the same array as {@code previous}.
+     */
+    static void chain(MessageDigest digest, byte[] previous, byte[] bytes, int offset, int length, byte[] hash) {
+        digest.update(previous, 0, HASH_BYTES);
+        digest.update(bytes, offset, length);
+        try {
+            digest.digest(hash, 0, HASH_BYTES);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // ============================================================
+    // === Reopening ===
+    // ============================================================
+
+    // Picks up the sequence and hash of the last entry, dropping a torn last line left
+    // by a crash, so new entries continue the chain without reading the whole file
+    private void resumeChain() throws IOException {
+        long size = channel.size();
+        long end = 0;
+        for (int window = TAIL_WINDOW; size > 0; window *= 2) {
+            long from = Math.max(0, size - window);
+            byte[] bytes = new byte[(int) (size - from)];
+            readFully(bytes, from);
+            int lastNewline = lastIndexOf(bytes, bytes.length - 1);
+            int previousNewline = lastNewline < 0 ? -1 : lastIndexOf(bytes, lastNewline - 1);
+            if (lastNewline >= 0 && (previousNewline >= 0 || from == 0)) {
+                readLastEntry(bytes, previousNewline + 1, lastNewline);
+                end = from + lastNewline + 1;
+                break;
+            }
+            if (from == 0 || window > Integer.MAX_VALUE / 2) {
+                break; // no complete entry to continue from
+            }
+        }
+        if (end < size) {
+            System.err.println("Discarding " + (size - end) + " bytes of an incomplete audit entry from " + file);
+            channel.truncate(end);
+        }
+        channel.position(end);
+        durableSize = end;
+    }
+
+    private void readFully(byte[] bytes, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of audit trail " + file);
+            }
+        }
+    }
+
+    private void readLastEntry(byte[] bytes, int start, int end) throws IOException {
+        int tab = indexOf(bytes, (byte) '\t', start, end);
+        if (tab < 0 || end - start < HASH_HEX + 1 || bytes[end - HASH_HEX - 1] != '\t') {
+            throw new IOException("Malformed last entry in audit trail " + file);
+        }
+        try {
+            lastSequence = Long.parseLong(new String(bytes, start, tab - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed last entry in audit trail " + file);
+        }
+        if (!decodeHex(bytes, end - HASH_HEX, lastHash)) {
+            throw new IOException("Malformed hash in last entry of audit trail " + file);
+        }
+    }
+
+    /**
+     * Decodes a lowercase hex hash.
+     *
+     * @param bytes  The buffer holding the hex digits.
+     * @param offset Where the digits start.
+     * @param hash   Receives the {@value #HASH_BYTES} decoded bytes.
+     * @return False if a digit is not lowercase hex.
+     */
+    static boolean decodeHex(byte[] bytes, int offset, byte[] hash) {
+        for (int i = 0; i < HASH_BYTES; i++) {
+            int high = hexValue(bytes[offset + 2 * i]);
+            int low = hexValue(bytes[offset + 2 * i + 1]);
+            if ((high | low) < 0) {
+                return false;
+            }
+            hash[i] = (byte) (high << 4 | low);
+        }
+        return true;
+    }
+
+    private static int hexValue(byte c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ============================================================
+    // === Status ===
+    // ============================================================
+
+    /**
+     * Gets the sequence number of the last entry forced to disk. Entries still queued
+     * or in the batch being written are not counted.
+     *
+     * @return The last sequence number, or 0 if the trail is empty.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Stops recording, writes every queued entry and closes the file.
+     *
+     * @throws IOException If queued entries could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        system.removeMutationListener(this);
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            channel.close(); // the buffer may still hold part of the failed batch
+            throw failure;
+        }
+        out.close();
+    }
+}
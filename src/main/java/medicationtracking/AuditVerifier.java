@@ -0,0 +1,327 @@
+package medicationtracking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code AuditVerifier} class checks that an {@link AuditTrail} file has not been
+ * tampered with: every entry must be well formed, numbered one after the previous one,
+ * and carry the hash chained from the previous entry's hash.
+ *
+ * <p>Each entry's hash can be checked from the hash stored on the line before it, so
+ * the file is split into chunks of whole lines that are read and hashed in parallel
+ * across cores; only the first entry of each chunk is checked afterwards, against the
+ * last entry of the chunk before. Multi-gigabyte files are verified at close to the
+ * disk's read speed.
+ *
+ * <p>Usage: {@code java medicationtracking.AuditVerifier audit.log}. The exit status is
+ * 1 if the trail is broken.
+ */
+public final class AuditVerifier {
+    static final int CHUNK_BYTES = 32 << 20;
+    private static final int SCAN_BYTES = 8192;
+
+    private AuditVerifier() {
+    }
+
+    /**
+     * Verifies the audit file named on the command line and prints the result.
+     *
+     * @param args The audit file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java medicationtracking.AuditVerifier <audit file>");
+            System.exit(2);
+        }
+        Result result = verify(Paths.get(args[0]));
+        System.out.println(result);
+        if (!result.isIntact()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Verifies an audit file, stopping at the first broken entry.
+     *
+     * @param file The audit file.
+     * @return The number of intact entries, the last intact hash and the first problem.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Result verify(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = chunkBounds(channel, size);
+            Chunk[] chunks;
+            try {
+                chunks = IntStream.range(0, bounds.size() - 1).parallel()
+                        .mapToObj(i -> verifyChunk(channel, bounds.get(i), bounds.get(i + 1)))
+                        .toArray(Chunk[]::new);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // Join the chunks: each one's first entry continues the chain of the one before
+            MessageDigest digest = AuditTrail.newDigest();
+            byte[] previousHash = new byte[AuditTrail.HASH_BYTES];
+            byte[] computed = new byte[AuditTrail.HASH_BYTES];
+            long previousSequence = 0;
+            long entries = 0;
+            String problem = null;
+            for (Chunk chunk : chunks) {
+                if (chunk.firstBody != null) {
+                    AuditTrail.chain(digest, previousHash, chunk.firstBody, 0, chunk.firstBody.length, computed);
+                    if (chunk.firstSequence != previousSequence + 1) {
+                        problem = sequenceProblem(previousSequence, chunk.firstSequence);
+                    } else if (!Arrays.equals(computed, chunk.firstHash)) {
+                        problem = "Hash does not match the entry";
+                    }
+                }
+                if (problem != null) {
+                    break;
+                }
+                // The chunk's intact entries count even when a later one in it is broken
+                entries += chunk.entries;
+                if (chunk.entries > 0) {
+                    previousHash = chunk.lastHash;
+                    previousSequence = chunk.lastSequence;
+                }
+                if (chunk.problem != null) {
+                    problem = chunk.problem;
+                    break;
+                }
+            }
+            return new Result(entries, previousSequence, previousHash, problem, size,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    // Splits the file into chunks of about CHUNK_BYTES that start at line starts
+    private static List<Long> chunkBounds(FileChannel channel, long size) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long next = CHUNK_BYTES;
+        while (next < size) {
+            long lineStart = nextLineStart(channel, next, size);
+            if (lineStart >= size) {
+                break;
+            }
+            bounds.add(lineStart);
+            next = lineStart + CHUNK_BYTES;
+        }
+        bounds.add(size);
+        return bounds;
+    }
+
+    // Finds the first line starting at or after a position
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        byte[] bytes = new byte[SCAN_BYTES];
+        for (long from = position - 1; from < size; from += SCAN_BYTES) {
+            int length = (int) Math.min(SCAN_BYTES, size - from);
+            read(channel, bytes, length, from);
+            int newline = AuditTrail.indexOf(bytes, (byte) '\n', 0, length);
+            if (newline >= 0) {
+                return from + newline + 1;
+            }
+        }
+        return size;
+    }
+
+    private static void read(FileChannel channel, byte[] bytes, int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    // ============================================================
+    // === Chunks ===
+    // ============================================================
+
+    // What one chunk found; its first entry is left for the caller to check
+    private static final class Chunk {
+        long entries;
+        long firstSequence;
+        byte[] firstBody;
+        byte[] firstHash;
+        long lastSequence;
+        byte[] lastHash;
+        String problem;
+    }
+
+    private static Chunk verifyChunk(FileChannel channel, long start, long end) {
+        byte[] bytes = new byte[(int) (end - start)];
+        try {
+            read(channel, bytes, bytes.length, start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MessageDigest digest = AuditTrail.newDigest();
+        Chunk chunk = new Chunk();
+        byte[] previous = new byte[AuditTrail.HASH_BYTES];
+        byte[] hash = new byte[AuditTrail.HASH_BYTES];
+        byte[] computed = new byte[AuditTrail.HASH_BYTES];
+        int position = 0;
+        while (position < bytes.length) {
+            int newline = AuditTrail.indexOf(bytes, (byte) '\n', position, bytes.length);
+            if (newline < 0) {
+                chunk.problem = "Incomplete last entry";
+                break;
+            }
+            int bodyEnd = newline - AuditTrail.HASH_HEX - 1;
+            long sequence = bodyEnd > position ? parseSequence(bytes, position, bodyEnd) : -1;
+            if (sequence < 0 || bytes[bodyEnd] != '\t' || !AuditTrail.decodeHex(bytes, bodyEnd + 1, hash)) {
+                chunk.problem = "Malformed entry";
+                break;
+            }
+            if (chunk.entries == 0) {
+                chunk.firstSequence = sequence;
+                chunk.firstBody = Arrays.copyOfRange(bytes, position, bodyEnd);
+                chunk.firstHash = hash.clone();
+            } else if (sequence != chunk.lastSequence + 1) {
+                chunk.problem = sequenceProblem(chunk.lastSequence, sequence);
+                break;
+            } else {
+                AuditTrail.chain(digest, previous, bytes, position, bodyEnd - position, computed);
+                if (!Arrays.equals(computed, hash)) {
+                    chunk.problem = "Hash does not match the entry";
+                    break;
+                }
+            }
+            byte[] swap = previous;
+            previous = hash;
+            hash = swap;
+            chunk.lastSequence = sequence;
+            chunk.entries++;
+            position = newline + 1;
+        }
+        chunk.lastHash = previous;
+        return chunk;
+    }
+
+    // Parses the leading sequence number, or returns -1 if there is none
+    private static long parseSequence(byte[] bytes, int from, int to) {
+        long value = 0;
+        int i = from;
+        for (; i < to && bytes[i] != '\t'; i++) {
+            byte c = bytes[i];
+            if (c < '0' || c > '9' || i - from > 18) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return i == from || i == to ? -1 : value;
+    }
+
+    private static String sequenceProblem(long previous, long found) {
+        return "Expected entry " + (previous + 1) + " but found " + found;
+    }
+
+    // ============================================================
+    // === Result ===
+    // ============================================================
+
+    /**
+     * The outcome of verifying an audit file.
+     */
+    public static final class Result {
+        private final long entries;
+        private final long lastSequence;
+        private final byte[] lastHash;
+        private final String problem;
+        private final long bytes;
+        private final long elapsedMillis;
+
+        Result(long entries, long lastSequence, byte[] lastHash, String problem, long bytes, long elapsedMillis) {
+            this.entries = entries;
+            this.lastSequence = lastSequence;
+            this.lastHash = lastHash;
+            this.problem = problem;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Checks whether every entry in the file is intact.
+         * @return True if no problem was found
+         */
+        public boolean isIntact() {
+            return problem == null;
+        }
+
+        /**
+         * Gets the number of intact entries before the first problem, if any.
+         * @return The intact entry count
+         */
+        public long getEntries() {
+            return entries;
+        }
+
+        /**
+         * Gets the sequence number of the last intact entry.
+         * @return The sequence number, or 0 if there is none
+         */
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        /**
+         * Gets the hash of the last intact entry, to compare with a copy kept elsewhere.
+         * @return The hash in lowercase hex
+         */
+        public String getLastHash() {
+            StringBuilder sb = new StringBuilder(AuditTrail.HASH_HEX);
+            for (byte b : lastHash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Gets the first problem found. The broken entry is the one after the last
+         * intact entry, i.e. line {@code getEntries() + 1} of the file.
+         * @return The problem, or null if the file is intact
+         */
+        public String getProblem() {
+            return problem;
+        }
+
+        /**
+         * Gets how long the verification took.
+         * @return The elapsed time in milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Returns the outcome in a readable format.
+         * @return The result text
+         */
+        @Override
+        public String toString() {
+            String outcome = problem == null
+                    ? "Audit trail intact: " + entries + " entries."
+                    : "Audit trail broken at line " + (entries + 1) + ": " + problem + " ("
+                            + entries + " intact entries before it).";
+            double megabytes = bytes / 1e6;
+            return outcome + "\nLast intact entry: " + lastSequence + ", hash " + getLastHash()
+                    + String.format(Locale.ROOT, "%nChecked %.1f MB in %d ms.", megabytes, elapsedMillis);
+        }
+    }
+}
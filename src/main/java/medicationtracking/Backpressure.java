@@ -0,0 +1,27 @@
+package medicationtracking;
+
+/**
+ * The {@code Backpressure} enum selects what a {@link ChangeStream} does with a new
+ * event when its ring buffer is full because subscribers are falling behind.
+ */
+public enum Backpressure {
+
+    /**
+     * The event is discarded and counted, so changes never wait for subscribers.
+     * Subscribers see the loss as a gap in the sequence numbers.
+     */
+    DROP,
+
+    /**
+     * The changing thread waits until the dispatcher frees a slot. Nothing is lost,
+     * but a slow subscriber slows down every change to the system.
+     */
+    BLOCK,
+
+    /**
+     * Events are appended to a spill file until the dispatcher has caught up, then
+     * delivered from it in order. Nothing is lost and changes do not wait, at the
+     * cost of disk writes while subscribers are behind.
+     */
+    SPILL
+}
@@ -0,0 +1,509 @@
+package medicationtracking;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The {@code BatchRunner} class runs a script of commands against a
+ * {@link MedicationTrackingSystem} without prompting, for unattended jobs that would
+ * otherwise pipe keystrokes into the {@link Menu}.
+ *
+ * <p>A script has one command per line; blank lines and lines starting with {@code #}
+ * are skipped. Fields are separated by commas as in a CSV row, and may be
+ * double-quoted to contain commas. Record fields come in the same order as in the
+ * bulk import files (see {@link ImportType}):
+ * <pre>
+ * add patient P1,Ann Lee,34,555-0101
+ * add doctor D1,Dr Smith,555-0199,Cardiology
+ * add medication M1,Aspirin,100,500,2027-01-31
+ * add prescription R1,P1,D1,M1,30,"Take one daily, with food"
+ * edit patient P1,Ann Lee,35,555-0102
+ * edit doctor D1,Dr Smith,Oncology
+ * edit medication M1,Aspirin,100,450
+ * edit prescription R1,60,Take two daily
+ * delete patient P1            (or doctor, medication, prescription)
+ * assign D1,P1                 (doctor, then patient; unassign works the same way)
+ * restock M1,200               (medication, units to add)
+ * restock manifest deliveries.csv
+ * dispense R1
+ * report system                (or prescriptions, expired, statistics)
+ * report expiring 30
+ * report inventory 50,30       (reorder level, days until expiry)
+ * </pre>
+ *
+ * <p>A command that fails is reported with its line number and the script carries on.
+ * Runs of consecutive {@code add} commands for the same kind of record are added in
+ * batches under one write lock, like a bulk import, so prescriptions are only added
+ * when their patient, doctor and medication exist. Status messages of the system are
+ * silenced while the script runs; errors, reports and a closing timing summary are
+ * written to a buffered output sink.
+ *
+ * <p>Adds, edits, deletes and restocks by a number of units go through
+ * {@link Repositories}, so a runner can also work on a {@link SqlDatabase}. Assigning,
+ * dispensing, manifests and reports need the tracking system and fail on a database.
+ */
+public class BatchRunner {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Commands that only the tracking system can run
+    private static final Set<String> SYSTEM_COMMANDS = new HashSet<>(Arrays.asList(
+            "assign", "unassign", "restock manifest", "dispense", "report system", "report prescriptions",
+            "report expired", "report expiring", "report inventory", "report statistics"));
+
+    private final MedicationTrackingSystem system;
+    private final Repositories records;
+    private final ReportSink output;
+
+    // Consecutive add commands of one type, waiting to be added as one batch; invalid
+    // ones are queued as their error so failures are reported in line order
+    private ImportType pendingType;
+    private String pendingCommand;
+    private int pendingCount;
+    private final long[] pendingLines = new long[BulkImporter.CHUNK_ROWS];
+    private final String[] pendingErrors = new String[BulkImporter.CHUNK_ROWS];
+    private final List<Object> pendingEntities = new ArrayList<>();
+    private long pendingNanos;
+
+    private BatchSummary summary;
+
+    /**
+     * Constructs a runner for a tracking system.
+     *
+     * @param system The system the commands act on.
+     * @param output The sink receiving errors, reports and the summary.
+     */
+    public BatchRunner(MedicationTrackingSystem system, ReportSink output) {
+        this(system, new MemoryRepositories(system), output);
+    }
+
+    /**
+     * Constructs a runner for a set of repositories, such as a {@link SqlDatabase}.
+     * Commands that need the tracking system fail.
+     *
+     * @param records The repositories the commands act on.
+     * @param output  The sink receiving errors and the summary.
+     */
+    public BatchRunner(Repositories records, ReportSink output) {
+        this(null, records, output);
+    }
+
+    private BatchRunner(MedicationTrackingSystem system, Repositories records, ReportSink output) {
+        this.system = system;
+        this.records = records;
+        this.output = output;
+    }
+
+    /**
+     * Runs a command script against a persistent system, or against the SQL database
+     * in the data directory, and prints the summary. The exit status is 1 if any
+     * command failed.
+     *
+     * @param args The script file, or "-" (the default) to read standard input, then
+     *             the optional data directory (default "data") and storage: a
+     *             durability for the tracking system ("batched" by default, since the
+     *             state is snapshotted at the end) or "sql" for the database
+     * @throws IOException If the script cannot be read or the data directory cannot
+     *                     be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        String script = args.length > 0 ? args[0] : "-";
+        Path dataDirectory = Paths.get(args.length > 1 ? args[1] : "data");
+        String storage = args.length > 2 ? args[2] : Durability.BATCHED.name();
+
+        ReportSink output = ReportSinks.console();
+        BatchSummary summary;
+        try {
+            if (storage.equalsIgnoreCase("sql")) {
+                try (SqlDatabase database = new SqlDatabase(dataDirectory)) {
+                    summary = runScript(new BatchRunner(database, output), script);
+                }
+            } else {
+                summary = runPersistent(script, dataDirectory, Durability.valueOf(storage.toUpperCase()), output);
+            }
+        } finally {
+            output.close();
+        }
+        if (summary.getFailedCount() > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Runs a script against a system recovered from, audited in and saved to a data directory
+    private static BatchSummary runPersistent(String script, Path dataDirectory, Durability durability,
+                                              ReportSink output) throws IOException {
+        MedicationTrackingSystem system = new MedicationTrackingSystem();
+        BatchSummary summary;
+        try (PersistenceManager persistence = new PersistenceManager(system, dataDirectory, durability)) {
+            AuditTrail audit = new AuditTrail(system, dataDirectory.resolve(AuditTrail.FILE_NAME));
+            try {
+                summary = runScript(new BatchRunner(system, output), script);
+            } finally {
+                audit.close();
+            }
+            persistence.snapshot(); // compact the log once the script is done
+        }
+        return summary;
+    }
+
+    // Runs the named script file, or standard input for "-"
+    private static BatchSummary runScript(BatchRunner runner, String script) throws IOException {
+        if (script.equals("-")) {
+            return runner.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE));
+        }
+        return runner.run(Paths.get(script));
+    }
+
+    /**
+     * Runs every command of a script file.
+     *
+     * @param script The script file.
+     * @return The number of commands run and failed, and how long they took.
+     * @throws IOException If the script cannot be read.
+     */
+    public BatchSummary run(Path script) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            return run(reader);
+        }
+    }
+
+    /**
+     * Runs every command read from a script, then writes the summary to the output.
+     *
+     * @param script The script; it is read to the end but not closed.
+     * @return The number of commands run and failed, and how long they took.
+     * @throws IOException If the script cannot be read.
+     */
+    public BatchSummary run(BufferedReader script) throws IOException {
+        long start = System.nanoTime();
+        summary = new BatchSummary();
+        ReportSink previous = system != null ? system.setOutput(ReportSinks.discard()) : null;
+        try {
+            long lineNumber = 0;
+            String line;
+            while ((line = script.readLine()) != null) {
+                lineNumber++;
+                String command = line.trim();
+                if (!command.isEmpty() && !command.startsWith("#")) {
+                    execute(command, lineNumber);
+                }
+            }
+            addPending();
+        } finally {
+            if (system != null) {
+                system.setOutput(previous);
+            }
+        }
+        summary.finished(System.nanoTime() - start);
+        output.println(summary);
+        output.flush();
+        return summary;
+    }
+
+    // ============================================================
+    // === Commands ===
+    // ============================================================
+
+    // Splits a line into the command name and its arguments, then runs or queues it
+    private void execute(String line, long lineNumber) {
+        String[] words = splitWord(line);
+        String command = words[0].toLowerCase(Locale.ROOT);
+        String arguments = words[1];
+        String[] rest = splitWord(arguments);
+        switch (command) {
+            case "add":
+            case "edit":
+            case "delete":
+            case "report":
+                command += " " + rest[0].toLowerCase(Locale.ROOT);
+                arguments = rest[1];
+                break;
+            case "restock":
+                if (rest[0].equalsIgnoreCase("manifest")) {
+                    command = "restock manifest";
+                    arguments = rest[1];
+                }
+                break;
+            default:
+                break;
+        }
+
+        ImportType type = addedType(command);
+        if (type != null) {
+            queueAdd(type, command, arguments, lineNumber);
+            return;
+        }
+        addPending();
+        long start = System.nanoTime();
+        String error;
+        try {
+            error = perform(command, arguments);
+        } catch (RuntimeException e) {
+            // Invalid values, but also database, log or audit failures: the script goes on
+            error = describe(e);
+        } catch (IOException e) {
+            error = "Cannot read " + e.getMessage();
+        }
+        if (error != null) {
+            failed(lineNumber, command, error);
+        }
+        summary.ran(command, 1, error == null ? 0 : 1, System.nanoTime() - start);
+    }
+
+    // Runs one command; returns null if it succeeded or the reason it failed
+    private String perform(String command, String arguments) throws IOException {
+        if (system == null && SYSTEM_COMMANDS.contains(command)) {
+            return "Not available on a database; run it against the tracking system.";
+        }
+        String[] values;
+        switch (command) {
+            // Fields an edit does not change are carried over from the stored record,
+            // which the update ignores
+            case "edit patient":
+                values = fields(arguments, "id", "name", "age", "phoneNumber");
+                return records.getPatients().update(new Patient(values[0], values[1], number(values[2], "age"),
+                        values[3])) ? null : notFound("patient", values[0]);
+            case "edit doctor":
+                values = fields(arguments, "id", "name", "specialization");
+                Doctor doctor = records.getDoctors().get(values[0]);
+                return doctor != null && records.getDoctors().update(
+                        new Doctor(values[0], values[1], doctor.getPhoneNumber(), values[2]))
+                        ? null : notFound("doctor", values[0]);
+            case "edit medication":
+                values = fields(arguments, "id", "name", "dosage", "quantityInStock");
+                Medication medication = records.getMedications().get(values[0]);
+                return medication != null && records.getMedications().update(
+                        new Medication(values[0], values[1], number(values[2], "dosage"),
+                                number(values[3], "quantityInStock"), medication.getExpiryDate()))
+                        ? null : notFound("medication", values[0]);
+            case "edit prescription":
+                values = fields(arguments, "prescriptionId", "quantity", "instructions");
+                Prescription prescription = records.getPrescriptions().get(values[0]);
+                return prescription != null && records.getPrescriptions().update(
+                        new Prescription(values[0], prescription.getPatientId(), prescription.getDoctorId(),
+                                prescription.getMedicationId(), positive(values[1], "quantity"), values[2]))
+                        ? null : notFound("prescription", values[0]);
+            case "delete patient":
+                return records.getPatients().delete(arguments) ? null : notFound("patient", arguments);
+            case "delete doctor":
+                return records.getDoctors().delete(arguments) ? null : notFound("doctor", arguments);
+            case "delete medication":
+                return records.getMedications().delete(arguments) ? null : notFound("medication", arguments);
+            case "delete prescription":
+                return records.getPrescriptions().delete(arguments) ? null : notFound("prescription", arguments);
+            case "restock":
+                values = fields(arguments, "medicationId", "quantity");
+                return records.getMedications().adjustStock(values[0], positive(values[1], "quantity"))
+                        ? null : notFound("medication", values[0]);
+            case "assign":
+                values = fields(arguments, "doctorId", "patientId");
+                return system.assignPatientToDoctor(values[0], values[1])
+                        ? null : assignmentError(values[0], values[1], "is already assigned to");
+            case "unassign":
+                values = fields(arguments, "doctorId", "patientId");
+                return system.unassignPatientFromDoctor(values[0], values[1])
+                        ? null : assignmentError(values[0], values[1], "is not assigned to");
+            case "restock manifest":
+                output.println(system.restockFromManifest(path(arguments)));
+                return null;
+            case "dispense":
+                DispenseResult result = system.dispense(arguments);
+                return result == DispenseResult.DISPENSED ? null : result.getMessage();
+            case "report system":
+                system.writeSystemReport(output);
+                return null;
+            case "report prescriptions":
+                system.writePrescriptionReport(output);
+                return null;
+            case "report expired":
+                toOutput(system::checkExpiredMedications);
+                return null;
+            case "report expiring":
+                int days = number(arguments, "days");
+                toOutput(() -> system.checkExpiringMedications(days));
+                return null;
+            case "report inventory":
+                values = fields(arguments, "reorderLevel", "days");
+                int reorderLevel = number(values[0], "reorderLevel");
+                int window = number(values[1], "days");
+                toOutput(() -> system.displayInventorySummary(reorderLevel, window));
+                return null;
+            case "report statistics":
+                toOutput(system::checkPrescriptionStatistics);
+                return null;
+            default:
+                return "Unknown command.";
+        }
+    }
+
+    // Explains why a doctor and patient could not be assigned or unassigned
+    private String assignmentError(String doctorId, String patientId, String relation) {
+        if (system.getDoctor(doctorId) == null) {
+            return notFound("doctor", doctorId);
+        }
+        if (system.getPatient(patientId) == null) {
+            return notFound("patient", patientId);
+        }
+        return "Patient " + patientId + " " + relation + " doctor " + doctorId + ".";
+    }
+
+    // Runs a report that prints to the system's output, sending it to the batch output
+    private void toOutput(Runnable report) {
+        ReportSink previous = system.setOutput(output);
+        try {
+            report.run();
+        } finally {
+            system.setOutput(previous);
+        }
+    }
+
+    // ============================================================
+    // === Batched Adds ===
+    // ============================================================
+
+    private static ImportType addedType(String command) {
+        switch (command) {
+            case "add patient": return ImportType.PATIENTS;
+            case "add doctor": return ImportType.DOCTORS;
+            case "add medication": return ImportType.MEDICATIONS;
+            case "add prescription": return ImportType.PRESCRIPTIONS;
+            default: return null;
+        }
+    }
+
+    // Validates an added record and queues it, adding the queue first if it holds another type
+    private void queueAdd(ImportType type, String command, String arguments, long lineNumber) {
+        if (type != pendingType || pendingCount == pendingLines.length) {
+            addPending();
+        }
+        long start = System.nanoTime();
+        pendingType = type;
+        pendingCommand = command;
+        pendingLines[pendingCount] = lineNumber;
+        try {
+            pendingEntities.add(type.build(values(type, arguments)));
+            pendingErrors[pendingCount] = null;
+        } catch (IllegalArgumentException e) {
+            pendingErrors[pendingCount] = e.getMessage();
+        }
+        pendingCount++;
+        pendingNanos += System.nanoTime() - start;
+    }
+
+    // Adds the queued records in one batch and reports the rejected ones
+    private void addPending() {
+        if (pendingCount == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        String[] rejected;
+        String batchError = null;
+        try {
+            rejected = BulkImporter.addAll(records, pendingType, pendingEntities);
+        } catch (RuntimeException e) {
+            // Which rows got in before the failure is unknown, so each is reported with it
+            rejected = null;
+            batchError = "Batch of " + pendingEntities.size() + " failed: " + describe(e);
+        }
+        int added = 0;
+        int failures = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            String error = pendingErrors[i] != null ? pendingErrors[i]
+                    : batchError != null ? batchError : rejected[added++];
+            if (error != null) {
+                failed(pendingLines[i], pendingCommand, error);
+                failures++;
+            }
+        }
+        summary.ran(pendingCommand, pendingCount, failures, pendingNanos + System.nanoTime() - start);
+        pendingEntities.clear();
+        pendingCount = 0;
+        pendingNanos = 0;
+    }
+
+    // ============================================================
+    // === Parsing ===
+    // ============================================================
+
+    // Splits off the first word; the second element is the trimmed rest, possibly empty
+    private static String[] splitWord(String text) {
+        int end = 0;
+        while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+            end++;
+        }
+        return new String[] { text.substring(0, end), text.substring(end).trim() };
+    }
+
+    // Reads the fields of an added record; missing trailing fields are null
+    private static String[] values(ImportType type, String arguments) {
+        List<String> cells = BulkImporter.splitCsv(arguments);
+        String[] names = type.getFields();
+        if (cells.size() > names.length) {
+            throw new IllegalArgumentException("Expected at most " + names.length + " fields: "
+                    + String.join(",", names));
+        }
+        String[] values = new String[names.length];
+        for (int i = 0; i < cells.size(); i++) {
+            values[i] = cells.get(i);
+        }
+        return values;
+    }
+
+    // Reads exactly the named fields
+    private static String[] fields(String arguments, String... names) {
+        List<String> cells = BulkImporter.splitCsv(arguments);
+        if (cells.size() != names.length) {
+            throw new IllegalArgumentException("Expected " + names.length + " fields: " + String.join(",", names));
+        }
+        return cells.toArray(new String[0]);
+    }
+
+    private static int number(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static int positive(String value, String name) {
+        int number = number(value, name);
+        if (number <= 0) {
+            throw new IllegalArgumentException(name.substring(0, 1).toUpperCase(Locale.ROOT)
+                    + name.substring(1) + " must be a positive value.");
+        }
+        return number;
+    }
+
+    private static Path path(String value) {
+        try {
+            return Paths.get(value);
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Invalid path: " + value);
+        }
+    }
+
+    private static String notFound(String type, String id) {
+        return "No " + type + " found with ID: " + id;
+    }
+
+    private static String describe(RuntimeException e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    // Reports a failed command; the output is flushed with the summary
+    private void failed(long lineNumber, String command, String message) {
+        output.println("Line " + lineNumber + " (" + command + "): " + message);
+    }
+}
@@ -0,0 +1,91 @@
+package medicationtracking;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code BatchSummary} class reports the outcome of running a command script:
+ * how many commands of each kind ran, how many failed, and how long they took.
+ */
+public final class BatchSummary {
+    // Per kind of command: the number run, the number failed and the nanoseconds spent
+    private static final int RUN = 0;
+    private static final int FAILED = 1;
+    private static final int NANOS = 2;
+
+    private final Map<String, long[]> commands = new LinkedHashMap<>();
+    private long commandCount;
+    private long failedCount;
+    private long elapsedNanos;
+
+    // Records commands of one kind that ran, and how many of them failed
+    void ran(String command, int count, int failed, long nanos) {
+        long[] totals = commands.computeIfAbsent(command, c -> new long[3]);
+        totals[RUN] += count;
+        totals[FAILED] += failed;
+        totals[NANOS] += nanos;
+        commandCount += count;
+        failedCount += failed;
+    }
+
+    // Records how long the whole script took, including reading and parsing it
+    void finished(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of commands run, including those that failed.
+     * @return The command count
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Gets the number of commands that failed.
+     * @return The failed command count
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Gets the number of commands of one kind that were run.
+     * @param command The command name, e.g. "add patient" or "assign".
+     * @return The command count, 0 if none were run
+     */
+    public long getCommandCount(String command) {
+        long[] totals = commands.get(command);
+        return totals == null ? 0 : totals[RUN];
+    }
+
+    /**
+     * Gets how long the script took to run.
+     * @return The elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * Returns one line per kind of command followed by the totals, in a readable format.
+     * @return The summary text
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("=== Batch Summary ===");
+        for (Map.Entry<String, long[]> entry : commands.entrySet()) {
+            long[] totals = entry.getValue();
+            sb.append(String.format(Locale.ROOT, "%n%-22s %10d run %8d failed %10.1f ms",
+                    entry.getKey(), totals[RUN], totals[FAILED], totals[NANOS] / 1e6));
+        }
+        double seconds = elapsedNanos / 1e9;
+        sb.append(String.format(Locale.ROOT, "%nRan %d commands (%d failed) in %.2f s", commandCount,
+                failedCount, seconds));
+        if (seconds > 0) {
+            sb.append(String.format(Locale.ROOT, ", %.0f commands/s", commandCount / seconds));
+        }
+        return sb.append('.').toString();
+    }
+}
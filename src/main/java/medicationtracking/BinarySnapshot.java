@@ -0,0 +1,385 @@
+package medicationtracking;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code BinarySnapshot} class writes and loads compact binary snapshots of a
+ * {@link MedicationTrackingSystem}.
+ *
+ * <p>Records are grouped into chunks of at most {@value #CHUNK_RECORDS} records, each
+ * protected by a CRC-32. A directory of chunks at the end of the file lets the loader
+ * memory-map every chunk separately (so files larger than 2 GB work) and decode them
+ * in parallel across cores, before adding the decoded entities to the system in their
+ * original order.
+ *
+ * <p>File layout (big-endian):
+ * <pre>
+ * header:    magic "MTSB", version (int), sequence (long)
+ * chunks:    encoded records
+ * directory: chunk count (int), then per chunk: section (byte), record count (int),
+ *            offset (long), length (int), CRC-32 (int)
+ * footer:    directory offset (long), directory CRC-32 (int), magic "MTSB"
+ * </pre>
+ * Strings are stored as a byte length (-1 for null) followed by UTF-8 bytes, and
+ * expiry dates as epoch days. Version 2 added the filled quantity of prescriptions;
+ * version 1 files still load, with nothing filled.
+ */
+final class BinarySnapshot {
+    private static final int MAGIC = 0x4D545342; // "MTSB"
+    private static final int VERSION = 2;
+    private static final int UNFILLED_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int FOOTER_BYTES = 16;
+    private static final int DIRECTORY_ENTRY_BYTES = 21;
+    static final int CHUNK_RECORDS = 65_536;
+
+    // Sections in the order they must be loaded
+    private static final byte PATIENTS = 0;
+    private static final byte DOCTORS = 1;
+    private static final byte MEDICATIONS = 2;
+    private static final byte PRESCRIPTIONS = 3;
+    private static final byte ASSIGNMENTS = 4;
+
+    private BinarySnapshot() {
+    }
+
+    // ============================================================
+    // === Writing ===
+    // ============================================================
+
+    /**
+     * Writes a snapshot of a system and forces it to disk.
+     *
+     * @param file     The file to write, replaced if it exists.
+     * @param sequence The log sequence number the snapshot covers.
+     * @param system   The system to snapshot.
+     * @throws IOException If the file cannot be written.
+     */
+    static void write(Path file, long sequence, MedicationTrackingSystem system) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)) {
+            ChunkWriter writer = new ChunkWriter(out);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(sequence);
+            writer.raw(header.array());
+
+            writer.begin(PATIENTS);
+            for (Patient p : system.getPatients()) {
+                writer.string(p.getId()).string(p.getName()).integer(p.getAge()).string(p.getPhoneNumber()).next();
+            }
+            writer.begin(DOCTORS);
+            for (Doctor d : system.getDoctors()) {
+                writer.string(d.getId()).string(d.getName()).string(d.getPhoneNumber())
+                        .string(d.getSpecialization()).next();
+            }
+            writer.begin(MEDICATIONS);
+            for (Medication m : system.getMedications()) {
+                writer.string(m.getId()).string(m.getName()).integer(m.getDosage())
+                        .integer(m.getQuantityInStock()).integer((int) m.getExpiryDate().toEpochDay()).next();
+            }
+            writer.begin(PRESCRIPTIONS);
+            for (Prescription p : system.getPrescriptions()) {
+                writer.string(p.getPrescriptionId()).string(p.getPatientId()).string(p.getDoctorId())
+                        .string(p.getMedicationId()).integer(p.getQuantity()).string(p.getInstructions())
+                        .integer(p.getFilledQuantity()).next();
+            }
+            writer.begin(ASSIGNMENTS);
+            for (Doctor d : system.getDoctors()) {
+                for (Patient p : d.getAssignedPatients()) {
+                    writer.string(d.getId()).string(p.getId()).next();
+                }
+            }
+            writer.finish();
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    // Buffers one chunk at a time and records its directory entry
+    private static final class ChunkWriter {
+        private final OutputStream out;
+        private ByteBuffer chunk = ByteBuffer.allocate(1 << 20);
+        private ByteBuffer entries = ByteBuffer.allocate(1 << 12);
+        private long position;
+        private byte section;
+        private int records;
+        private int chunkCount;
+
+        ChunkWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void raw(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        void begin(byte newSection) throws IOException {
+            flushChunk();
+            section = newSection;
+        }
+
+        ChunkWriter string(String value) {
+            if (value == null) {
+                return integer(-1);
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            chunk.putInt(bytes.length).put(bytes);
+            return this;
+        }
+
+        ChunkWriter integer(Integer value) {
+            ensure(4);
+            chunk.putInt(value == null ? -1 : value);
+            return this;
+        }
+
+        void next() throws IOException {
+            if (++records == CHUNK_RECORDS) {
+                flushChunk();
+            }
+        }
+
+        void finish() throws IOException {
+            flushChunk();
+            long directoryOffset = position;
+            ByteBuffer dir = ByteBuffer.allocate(4 + entries.position());
+            dir.putInt(chunkCount).put(entries.array(), 0, entries.position());
+            raw(dir.array());
+
+            CRC32 crc = new CRC32();
+            crc.update(dir.array());
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES)
+                    .putLong(directoryOffset).putInt((int) crc.getValue()).putInt(MAGIC);
+            raw(footer.array());
+        }
+
+        private void flushChunk() throws IOException {
+            if (records == 0) {
+                return;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(chunk.array(), 0, chunk.position());
+            if (entries.remaining() < DIRECTORY_ENTRY_BYTES) {
+                ByteBuffer grown = ByteBuffer.allocate(entries.capacity() * 2);
+                grown.put(entries.array(), 0, entries.position());
+                entries = grown;
+            }
+            entries.put(section).putInt(records).putLong(position).putInt(chunk.position()).putInt((int) crc.getValue());
+            out.write(chunk.array(), 0, chunk.position());
+            position += chunk.position();
+            chunk.clear();
+            records = 0;
+            chunkCount++;
+        }
+
+        private void ensure(int bytes) {
+            if (chunk.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(chunk.capacity() * 2, chunk.position() + bytes));
+                grown.put(chunk.array(), 0, chunk.position());
+                chunk = grown;
+            }
+        }
+    }
+
+    // ============================================================
+    // === Loading ===
+    // ============================================================
+
+    /**
+     * Loads a snapshot into an empty system.
+     *
+     * @param file   The snapshot file.
+     * @param system The system to load into.
+     * @return The log sequence number the snapshot covers.
+     * @throws IOException If the file cannot be read or fails validation.
+     */
+    static long load(Path file, MedicationTrackingSystem system) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) {
+                throw new IOException("Snapshot is truncated: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            int magic = header.getInt();
+            int version = header.getInt();
+            if (magic != MAGIC || (version != VERSION && version != UNFILLED_VERSION)) {
+                throw new IOException("Not a version " + VERSION + " binary snapshot: " + file);
+            }
+            long sequence = header.getLong();
+
+            ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size - FOOTER_BYTES, FOOTER_BYTES);
+            long directoryOffset = footer.getLong();
+            int directoryCrc = footer.getInt();
+            if (footer.getInt() != MAGIC || directoryOffset < HEADER_BYTES || directoryOffset > size - FOOTER_BYTES) {
+                throw new IOException("Snapshot footer is corrupt: " + file);
+            }
+            MappedByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryOffset,
+                    size - FOOTER_BYTES - directoryOffset);
+            if (crc(directory) != directoryCrc) {
+                throw new IOException("Snapshot directory checksum mismatch: " + file);
+            }
+
+            int chunkCount = directory.getInt();
+            List<Chunk> chunks = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                chunks.add(new Chunk(directory.get(), directory.getInt(), directory.getLong(),
+                        directory.getInt(), directory.getInt()));
+            }
+
+            // Decode chunks in parallel; the ordered stream keeps them in file order
+            List<Object[]> decoded;
+            try {
+                decoded = IntStream.range(0, chunkCount).parallel()
+                        .mapToObj(i -> decode(channel, chunks.get(i), version, file))
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            for (int i = 0; i < chunkCount; i++) {
+                addAll(system, chunks.get(i).section, decoded.get(i));
+            }
+            return sequence;
+        }
+    }
+
+    // Directory entry describing one chunk
+    private static final class Chunk {
+        final byte section;
+        final int records;
+        final long offset;
+        final int length;
+        final int crc;
+
+        Chunk(byte section, int records, long offset, int length, int crc) {
+            this.section = section;
+            this.records = records;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    // A patient whose age was cleared is stored with -1; Patient needs an age to be
+    // constructed, so the age is cleared again afterwards
+    private static Patient patient(Reader in) {
+        String id = in.string();
+        String name = in.string();
+        int age = in.integer();
+        Patient patient = new Patient(id, name, age < 0 ? 1 : age, in.string());
+        if (age < 0) {
+            patient.setAge(null);
+        }
+        return patient;
+    }
+
+    // The filled quantity is set before the prescription is added, which copies it
+    private static Prescription prescription(Reader in, int version) {
+        Prescription prescription = new Prescription(in.string(), in.string(), in.string(), in.string(),
+                in.integer(), in.string());
+        if (version != UNFILLED_VERSION) {
+            prescription.addFilled(in.integer());
+        }
+        return prescription;
+    }
+
+    private static Object[] decode(FileChannel channel, Chunk chunk, int version, Path file) {
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.offset, chunk.length);
+            if (crc(buffer) != chunk.crc) {
+                throw new IOException("Snapshot chunk at offset " + chunk.offset + " failed its checksum: " + file);
+            }
+            Reader in = new Reader(buffer);
+            Object[] records = new Object[chunk.records];
+            for (int i = 0; i < records.length; i++) {
+                switch (chunk.section) {
+                    case PATIENTS:
+                        records[i] = patient(in);
+                        break;
+                    case DOCTORS:
+                        records[i] = new Doctor(in.string(), in.string(), in.string(), in.string());
+                        break;
+                    case MEDICATIONS:
+                        records[i] = new Medication(in.string(), in.string(), in.integer(), in.integer(),
+                                LocalDate.ofEpochDay(in.integer()));
+                        break;
+                    case PRESCRIPTIONS:
+                        records[i] = prescription(in, version);
+                        break;
+                    case ASSIGNMENTS:
+                        records[i] = new String[] {in.string(), in.string()};
+                        break;
+                    default:
+                        throw new IOException("Unknown snapshot section " + chunk.section + ": " + file);
+                }
+            }
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void addAll(MedicationTrackingSystem system, byte section, Object[] records) {
+        for (Object record : records) {
+            switch (section) {
+                case PATIENTS: system.addPatient((Patient) record); break;
+                case DOCTORS: system.addDoctor((Doctor) record); break;
+                case MEDICATIONS: system.addMedication((Medication) record); break;
+                case PRESCRIPTIONS: system.addPrescription((Prescription) record); break;
+                default:
+                    String[] assignment = (String[]) record;
+                    system.assignPatientToDoctor(assignment[0], assignment[1]);
+            }
+        }
+    }
+
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    // Reads fields from a mapped chunk, reusing one scratch array for string bytes
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private byte[] scratch = new byte[256];
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int integer() {
+            return buffer.getInt();
+        }
+
+        String string() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package medicationtracking;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code BulkImporter} class loads patients, doctors, medications or prescriptions
+ * into a {@link MedicationTrackingSystem} from CSV or JSON files.
+ *
+ * <p>Files are streamed in chunks. The rows of each chunk are parsed and validated in
+ * parallel across cores, reusing the validation in the entity constructors, and then
+ * added to the system in file order under one write lock per chunk. A bad row is
+ * recorded in the {@link ImportResult} and does not stop the import. Prescriptions are
+ * only imported when their patient, doctor and medication already exist, so import
+ * those files first.
+ *
+ * <p>CSV files need a header row naming the columns (see {@link ImportType}); columns
+ * may come in any order and double-quoted values may contain commas. Files ending in
+ * {@code .json}, {@code .jsonl} or {@code .ndjson} hold one flat JSON object per line,
+ * optionally wrapped in a JSON array with the brackets on their own lines.
+ */
+public class BulkImporter {
+    static final int CHUNK_ROWS = 16_384;
+
+    private final MedicationTrackingSystem system;
+
+    /**
+     * Constructs an importer that loads into a tracking system.
+     *
+     * @param system The system to import into.
+     */
+    public BulkImporter(MedicationTrackingSystem system) {
+        this.system = system;
+    }
+
+    /**
+     * Imports every row of a file.
+     *
+     * @param type The kind of records in the file.
+     * @param file The CSV or JSON file.
+     * @return The number of rows imported and the rows rejected.
+     * @throws IOException If the file cannot be read or its CSV header is missing a column.
+     */
+    public ImportResult importFile(ImportType type, Path file) throws IOException {
+        long start = System.nanoTime();
+        ImportResult result = new ImportResult(type);
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson");
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            int[] columns = null;
+            if (!json) {
+                String header = reader.readLine();
+                lineNumber++;
+                if (header == null) {
+                    return result;
+                }
+                columns = headerColumns(type, header, file);
+            }
+
+            List<String> lines = new ArrayList<>(CHUNK_ROWS);
+            long[] lineNumbers = new long[CHUNK_ROWS];
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (isSkipped(line, json)) {
+                    continue;
+                }
+                lineNumbers[lines.size()] = lineNumber;
+                lines.add(line);
+                if (lines.size() == CHUNK_ROWS) {
+                    importChunk(type, lines, lineNumbers, columns, result);
+                    lines.clear();
+                }
+            }
+            importChunk(type, lines, lineNumbers, columns, result);
+        }
+        result.finished((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    // Maps each field of the type to its CSV column
+    private static int[] headerColumns(ImportType type, String header, Path file) throws IOException {
+        List<String> names = splitCsv(header);
+        int[] columns = new int[type.getFields().length];
+        Arrays.fill(columns, -1);
+        for (int c = 0; c < names.size(); c++) {
+            int field = type.indexOf(names.get(c).trim());
+            if (field >= 0) {
+                columns[field] = c;
+            }
+        }
+        // Only prescription instructions are optional
+        for (int f = 0; f < columns.length; f++) {
+            if (columns[f] < 0 && !(type == ImportType.PRESCRIPTIONS && f == 5)) {
+                throw new IOException("Header of " + file + " has no " + type.getFields()[f] + " column");
+            }
+        }
+        return columns;
+    }
+
+    private static boolean isSkipped(String line, boolean json) {
+        String trimmed = line.trim();
+        return trimmed.isEmpty() || (json && (trimmed.equals("[") || trimmed.equals("]")));
+    }
+
+    // Parses a chunk in parallel, then adds the valid rows in file order
+    private void importChunk(ImportType type, List<String> lines, long[] lineNumbers, int[] columns,
+                             ImportResult result) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Object[] parsed = IntStream.range(0, lines.size()).parallel()
+                .mapToObj(i -> parseRow(type, lines.get(i), columns))
+                .toArray();
+
+        List<Object> entities = new ArrayList<>(parsed.length);
+        for (Object row : parsed) {
+            if (!(row instanceof RowProblem)) {
+                entities.add(row);
+            }
+        }
+        String[] rejected = addAll(system, type, entities);
+
+        // Report parse and load failures together, in line order
+        int added = 0;
+        for (int i = 0; i < parsed.length; i++) {
+            result.rowRead();
+            String problem = parsed[i] instanceof RowProblem ? ((RowProblem) parsed[i]).message : rejected[added++];
+            if (problem == null) {
+                result.rowImported();
+            } else {
+                result.rowFailed(lineNumbers[i], problem);
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of entities of one type under one write lock.
+     *
+     * @param system   The system to add to.
+     * @param type     The type of the entities.
+     * @param entities The entities, in order.
+     * @return For each entity, null if it was added or the reason it was rejected.
+     */
+    @SuppressWarnings("unchecked")
+    static String[] addAll(MedicationTrackingSystem system, ImportType type, List<?> entities) {
+        switch (type) {
+            case PATIENTS: return system.addPatients((List<Patient>) entities);
+            case DOCTORS: return system.addDoctors((List<Doctor>) entities);
+            case MEDICATIONS: return system.addMedications((List<Medication>) entities);
+            default: return system.addPrescriptions((List<Prescription>) entities);
+        }
+    }
+
+    /**
+     * Adds a batch of entities of one type to their repository.
+     *
+     * @param repositories The repositories to add to.
+     * @param type         The type of the entities.
+     * @param entities     The entities, in order.
+     * @return For each entity, null if it was added or the reason it was rejected.
+     */
+    @SuppressWarnings("unchecked")
+    static String[] addAll(Repositories repositories, ImportType type, List<?> entities) {
+        switch (type) {
+            case PATIENTS: return repositories.getPatients().addAll((List<Patient>) entities);
+            case DOCTORS: return repositories.getDoctors().addAll((List<Doctor>) entities);
+            case MEDICATIONS: return repositories.getMedications().addAll((List<Medication>) entities);
+            default: return repositories.getPrescriptions().addAll((List<Prescription>) entities);
+        }
+    }
+
+    // Why a row could not be parsed; kept apart from entities in the parsed chunk
+    private static final class RowProblem {
+        final String message;
+
+        RowProblem(String message) {
+            this.message = message;
+        }
+    }
+
+    // Returns the entity, or a RowProblem if the row is malformed or fails validation
+    private static Object parseRow(ImportType type, String line, int[] columns) {
+        try {
+            String[] values = columns == null ? jsonValues(type, line) : csvValues(type, line, columns);
+            return type.build(values);
+        } catch (IllegalArgumentException e) {
+            return new RowProblem(e.getMessage());
+        }
+    }
+
+    // ============================================================
+    // === CSV ===
+    // ============================================================
+
+    private static String[] csvValues(ImportType type, String line, int[] columns) {
+        List<String> cells = splitCsv(line);
+        String[] values = new String[columns.length];
+        for (int f = 0; f < columns.length; f++) {
+            if (columns[f] >= 0) {
+                if (columns[f] >= cells.size()) {
+                    throw new IllegalArgumentException("Missing " + type.getFields()[f] + " column.");
+                }
+                values[f] = cells.get(columns[f]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Splits one CSV line into cells. Cells may be double-quoted, in which case they
+     * may contain commas and doubled quotes ({@code ""}) stand for one quote.
+     *
+     * @param line The line to split.
+     * @return The cells, unquoted.
+     * @throws IllegalArgumentException If a quoted cell is not closed.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        int i = 0;
+        while (true) {
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("Unterminated quoted value.");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            cell.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        cell.append(c);
+                    }
+                }
+            }
+            int comma = line.indexOf(',', i);
+            int end = comma < 0 ? line.length() : comma;
+            cell.append(line, i, end);
+            cells.add(cell.toString());
+            cell.setLength(0);
+            if (comma < 0) {
+                return cells;
+            }
+            i = comma + 1;
+        }
+    }
+
+    // ============================================================
+    // === JSON ===
+    // ============================================================
+
+    /**
+     * Reads one flat JSON object of string, number, boolean or null values.
+     *
+     * @param type The record type, naming the fields to pick out.
+     * @param line The object; a trailing comma is ignored.
+     * @return The values in {@link ImportType#getFields()} order; missing fields are null.
+     * @throws IllegalArgumentException If the text is not a flat JSON object.
+     */
+    static String[] jsonValues(ImportType type, String line) {
+        String text = line.trim();
+        if (text.endsWith(",")) {
+            text = text.substring(0, text.length() - 1).trim();
+        }
+        if (!text.startsWith("{") || !text.endsWith("}")) {
+            throw new IllegalArgumentException("Expected a JSON object.");
+        }
+        String[] values = new String[type.getFields().length];
+        int[] pos = {1};
+        int end = text.length() - 1;
+        skipSpace(text, pos);
+        if (pos[0] == end) {
+            return values;
+        }
+        while (true) {
+            skipSpace(text, pos);
+            String key = jsonString(text, pos);
+            skipSpace(text, pos);
+            expect(text, pos, ':');
+            skipSpace(text, pos);
+            String value = jsonValue(text, pos, end);
+            int field = type.indexOf(key);
+            if (field >= 0) {
+                values[field] = value;
+            }
+            skipSpace(text, pos);
+            if (pos[0] == end) {
+                return values;
+            }
+            expect(text, pos, ',');
+        }
+    }
+
+    private static String jsonValue(String text, int[] pos, int end) {
+        if (pos[0] < end && text.charAt(pos[0]) == '"') {
+            return jsonString(text, pos);
+        }
+        int start = pos[0];
+        while (pos[0] < end && text.charAt(pos[0]) != ',' && !Character.isWhitespace(text.charAt(pos[0]))) {
+            pos[0]++;
+        }
+        String literal = text.substring(start, pos[0]);
+        if (literal.isEmpty() || literal.startsWith("{") || literal.startsWith("[")) {
+            throw new IllegalArgumentException("Expected a string, number, boolean or null value.");
+        }
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static String jsonString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos[0] >= text.length()) {
+                throw new IllegalArgumentException("Unterminated JSON string.");
+            }
+            char c = text.charAt(pos[0]++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos[0] >= text.length()) {
+                throw new IllegalArgumentException("Unterminated JSON string.");
+            }
+            char escaped = text.charAt(pos[0]++);
+            switch (escaped) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos[0] + 4 > text.length()) {
+                        throw new IllegalArgumentException("Invalid JSON escape.");
+                    }
+                    sb.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                    break;
+                default: sb.append(escaped);
+            }
+        }
+    }
+
+    private static void skipSpace(String text, int[] pos) {
+        while (pos[0] < text.length() && Character.isWhitespace(text.charAt(pos[0]))) {
+            pos[0]++;
+        }
+    }
+
+    private static void expect(String text, int[] pos, char c) {
+        if (pos[0] >= text.length() || text.charAt(pos[0]) != c) {
+            throw new IllegalArgumentException("Malformed JSON: expected '" + c + "' at column " + (pos[0] + 1) + ".");
+        }
+        pos[0]++;
+    }
+}
@@ -0,0 +1,201 @@
+package medicationtracking;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code ChangeEvent} class tells subscribers of a {@link ChangeStream} that a
+ * patient, doctor, medication or prescription changed.
+ *
+ * <p>Events are numbered in the order they are delivered, starting from 1. Changes made
+ * one after another, by one thread or under the system's locks (such as two edits of
+ * the same record), are delivered in the order they were made.
+ */
+public final class ChangeEvent {
+
+    /**
+     * The kind of record that changed.
+     */
+    public enum Entity {
+        PATIENT, DOCTOR, MEDICATION, PRESCRIPTION
+    }
+
+    /**
+     * What happened to the record.
+     */
+    public enum Action {
+        /** The record was added; the fields hold all of its values. */
+        ADDED,
+        /** One field of the record changed; the fields hold its new value. */
+        UPDATED,
+        /** The record was deleted; there are no fields. */
+        DELETED,
+        /** A patient was assigned to the doctor; the fields hold the {@code patientId}. */
+        ASSIGNED,
+        /** A patient was unassigned from the doctor; the fields hold the {@code patientId}. */
+        UNASSIGNED,
+        /**
+         * Units were added to or taken from the medication's stock; the fields hold the
+         * {@code delta}, and the {@code prescriptionId} when the units were dispensed
+         * for (or returned from) a prescription.
+         */
+        STOCK_ADJUSTED
+    }
+
+    private final long timeMillis;
+    private final Mutation mutation;
+    private long sequence;
+
+    ChangeEvent(long timeMillis, Mutation mutation) {
+        this.timeMillis = timeMillis;
+        this.mutation = mutation;
+    }
+
+    // Numbers the event as it is delivered, on the dispatcher thread
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Gets the position of the event in the stream; events dropped under
+     * {@link Backpressure#DROP} are not numbered.
+     * @return The sequence number, starting from 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets when the change was made.
+     * @return The time the event was published
+     */
+    public Instant getTime() {
+        return Instant.ofEpochMilli(timeMillis);
+    }
+
+    /**
+     * Gets the kind of record that changed; assignments are reported on the doctor.
+     * @return The entity kind
+     */
+    public Entity getEntity() {
+        switch (mutation.getType()) {
+            case ADD_PATIENT:
+            case UPDATE_PATIENT:
+            case DELETE_PATIENT:
+                return Entity.PATIENT;
+            case ADD_DOCTOR:
+            case UPDATE_DOCTOR:
+            case DELETE_DOCTOR:
+            case ASSIGN_PATIENT:
+            case UNASSIGN_PATIENT:
+                return Entity.DOCTOR;
+            case ADD_MEDICATION:
+            case UPDATE_MEDICATION:
+            case DELETE_MEDICATION:
+            case ADJUST_STOCK:
+            case FILL_PRESCRIPTION:
+                return Entity.MEDICATION;
+            default:
+                return Entity.PRESCRIPTION;
+        }
+    }
+
+    /**
+     * Gets what happened to the record.
+     * @return The action
+     */
+    public Action getAction() {
+        switch (mutation.getType()) {
+            case ADD_PATIENT:
+            case ADD_DOCTOR:
+            case ADD_MEDICATION:
+            case ADD_PRESCRIPTION:
+                return Action.ADDED;
+            case UPDATE_PATIENT:
+            case UPDATE_DOCTOR:
+            case UPDATE_MEDICATION:
+            case UPDATE_PRESCRIPTION:
+                return Action.UPDATED;
+            case ASSIGN_PATIENT:
+                return Action.ASSIGNED;
+            case UNASSIGN_PATIENT:
+                return Action.UNASSIGNED;
+            case ADJUST_STOCK:
+            case FILL_PRESCRIPTION:
+                return Action.STOCK_ADJUSTED;
+            default:
+                return Action.DELETED;
+        }
+    }
+
+    /**
+     * Gets the ID of the record that changed.
+     * @return The entity ID
+     */
+    public String getEntityId() {
+        return mutation.getEntityId();
+    }
+
+    /**
+     * Gets the values carried by the event, by field name. Added records use the same
+     * field names as the bulk import files (see {@link ImportType}).
+     * @return The field names and values, in a fixed order
+     */
+    public Map<String, String> getFields() {
+        Map<String, String> values = new LinkedHashMap<>();
+        switch (getAction()) {
+            case ADDED:
+                String[] names = importType().getFields();
+                for (int i = 0; i < mutation.getFieldCount(); i++) {
+                    values.put(names[i], mutation.getField(i));
+                }
+                break;
+            case UPDATED:
+                values.put(mutation.getField(1), mutation.getField(2));
+                break;
+            case ASSIGNED:
+            case UNASSIGNED:
+                values.put("patientId", mutation.getField(1));
+                break;
+            case STOCK_ADJUSTED:
+                values.put("delta", mutation.getField(1));
+                if (mutation.getFieldCount() > 2) {
+                    values.put("prescriptionId", mutation.getField(2));
+                }
+                break;
+            default:
+                break;
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    private ImportType importType() {
+        switch (getEntity()) {
+            case PATIENT: return ImportType.PATIENTS;
+            case DOCTOR: return ImportType.DOCTORS;
+            case MEDICATION: return ImportType.MEDICATIONS;
+            default: return ImportType.PRESCRIPTIONS;
+        }
+    }
+
+    // The change itself, as written to the spill file
+    Mutation getMutation() {
+        return mutation;
+    }
+
+    long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Returns the event in a readable single-line format.
+     * @return The event text
+     */
+    @Override
+    public String toString() {
+        return "ChangeEvent{sequence=" + sequence + ", entity=" + getEntity() + ", action=" + getAction()
+                + ", id='" + getEntityId() + "', fields=" + getFields() + "}";
+    }
+}
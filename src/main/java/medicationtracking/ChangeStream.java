@@ -0,0 +1,361 @@
+package medicationtracking;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code ChangeStream} class publishes every change made to a
+ * {@link MedicationTrackingSystem} as a {@link ChangeEvent}, for downstream systems
+ * such as billing, label printing or a data warehouse.
+ *
+ * <p>Adds, edits, deletes, assignments and stock changes (restocks and dispenses) are
+ * all reported. The changing thread only puts the event in a bounded lock-free ring
+ * buffer; a dedicated dispatcher thread takes events out and passes them to each
+ * {@link ChangeSubscriber} in turn, so slow subscribers do not add latency to changes.
+ * When subscribers fall so far behind that the ring fills up, the {@link Backpressure}
+ * policy decides whether new events are dropped, wait for room, or are spilled to a
+ * file and delivered from it once the dispatcher has caught up.
+ *
+ * <p>Closing the stream delivers every event already published, then stops the
+ * dispatcher.
+ */
+public class ChangeStream implements MutationListener, Closeable {
+    /** Number of events the ring buffer holds unless configured otherwise. */
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    private static final int SPILL_BATCH = 1024;
+    private static final int IDLE_YIELDS = 64;
+    private static final long IDLE_PARK_NANOS = 100_000_000;
+    private static final long BLOCKED_PARK_NANOS = 50_000;
+
+    private final MedicationTrackingSystem system;
+    private final EventRing<ChangeEvent> ring;
+    private final Backpressure backpressure;
+    private final List<ChangeSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread dispatcher;
+    private final AtomicBoolean dispatcherParked = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private volatile long delivered;
+    private volatile long failures;
+    private final LongAdder dropped = new LongAdder();
+
+    // Spilled events, oldest first; guarded by spillLock, except that producers read
+    // the flag without it to skip the ring while older events are still on disk
+    private final Object spillLock = new Object();
+    private final Path spillFile;
+    private Path spillPath;
+    private volatile boolean spilling;
+    private BufferedWriter spillWriter;
+    private BufferedReader spillReader;
+    private long spilled;
+    private boolean spillFailureReported;
+
+    /**
+     * Starts a stream of {@value #DEFAULT_CAPACITY} events that drops events when full.
+     *
+     * @param system The system whose changes are published.
+     */
+    public ChangeStream(MedicationTrackingSystem system) {
+        this(system, DEFAULT_CAPACITY, Backpressure.DROP, null);
+    }
+
+    /**
+     * Starts a stream; spilled events go to a temporary file.
+     *
+     * @param system       The system whose changes are published.
+     * @param capacity     The number of events the ring buffer holds, rounded up to a power of two.
+     * @param backpressure What to do with new events while the ring buffer is full.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public ChangeStream(MedicationTrackingSystem system, int capacity, Backpressure backpressure) {
+        this(system, capacity, backpressure, null);
+    }
+
+    /**
+     * Starts a stream.
+     *
+     * @param system       The system whose changes are published.
+     * @param capacity     The number of events the ring buffer holds, rounded up to a power of two.
+     * @param backpressure What to do with new events while the ring buffer is full.
+     * @param spillFile    The file spilled events are written to under {@link Backpressure#SPILL},
+     *                     or null for a temporary file. It is replaced when spilling starts
+     *                     and deleted when the stream is closed.
+     * @throws IllegalArgumentException If the capacity is not positive or the policy is null.
+     */
+    public ChangeStream(MedicationTrackingSystem system, int capacity, Backpressure backpressure, Path spillFile) {
+        if (backpressure == null) {
+            throw new IllegalArgumentException("Backpressure policy cannot be null.");
+        }
+        this.system = system;
+        this.ring = new EventRing<>(capacity);
+        this.backpressure = backpressure;
+        this.spillFile = spillFile;
+        dispatcher = new Thread(this::dispatch, "change-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        system.addMutationListener(this);
+    }
+
+    // ============================================================
+    // === Subscribers ===
+    // ============================================================
+
+    /**
+     * Adds a subscriber, which receives the events published from now on.
+     *
+     * @param subscriber The subscriber.
+     */
+    public void subscribe(ChangeSubscriber subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("Subscriber cannot be null.");
+        }
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Removes a subscriber.
+     *
+     * @param subscriber The subscriber.
+     * @return True if it was subscribed.
+     */
+    public boolean unsubscribe(ChangeSubscriber subscriber) {
+        return subscribers.remove(subscriber);
+    }
+
+    // ============================================================
+    // === Publishing (on the changing thread) ===
+    // ============================================================
+
+    /**
+     * Queues the event for a change; called by the system after each change.
+     *
+     * @param mutation The change that was applied.
+     */
+    @Override
+    public void mutationApplied(Mutation mutation) {
+        ChangeEvent event = new ChangeEvent(System.currentTimeMillis(), mutation);
+        if (!spilling && ring.offer(event)) {
+            wakeDispatcher();
+            return;
+        }
+        switch (backpressure) {
+            case DROP:
+                dropped.increment();
+                break;
+            case BLOCK:
+                while (!ring.offer(event)) {
+                    if (closed) {
+                        dropped.increment();
+                        return;
+                    }
+                    wakeDispatcher();
+                    LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+                }
+                wakeDispatcher();
+                break;
+            default:
+                spill(event);
+                wakeDispatcher();
+        }
+    }
+
+    // Unparks an idle dispatcher; only the first event after it parked pays for this
+    private void wakeDispatcher() {
+        if (dispatcherParked.get() && dispatcherParked.compareAndSet(true, false)) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    // Appends an event to the spill file, unless the dispatcher has emptied it meanwhile
+    // and there is room in the ring again
+    private void spill(ChangeEvent event) {
+        synchronized (spillLock) {
+            if (!spilling && ring.offer(event)) {
+                return;
+            }
+            try {
+                if (spillWriter == null) {
+                    openSpill();
+                }
+                spillWriter.write(event.getTimeMillis() + "\t" + event.getMutation().encode());
+                spillWriter.newLine();
+                spilled++;
+                spilling = true;
+            } catch (IOException e) {
+                dropped.increment();
+                if (!spillFailureReported) {
+                    spillFailureReported = true;
+                    System.err.println("Failed to spill change events, dropping them: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void openSpill() throws IOException {
+        Path file = spillFile != null ? spillFile : Files.createTempFile("change-events", ".spill");
+        spillWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        spillReader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        if (spillFile == null) {
+            file.toFile().deleteOnExit();
+        }
+        spillPath = file;
+    }
+
+    // ============================================================
+    // === Dispatching (on the dispatcher thread) ===
+    // ============================================================
+
+    private void dispatch() {
+        int idle = 0;
+        while (true) {
+            ChangeEvent event = ring.poll();
+            if (event != null) {
+                idle = 0;
+                deliver(event);
+            } else if (spilling) {
+                // Everything queued before spilling started has been delivered
+                for (ChangeEvent spilledEvent : readSpill()) {
+                    deliver(spilledEvent);
+                }
+            } else if (closed) {
+                return;
+            } else if (idle++ < IDLE_YIELDS) {
+                // Let producers run on before parking, so a busy stream is drained in
+                // bursts rather than unparked for every event
+                Thread.yield();
+            } else {
+                idle = 0;
+                dispatcherParked.set(true);
+                if (ring.isEmpty() && !spilling && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                dispatcherParked.set(false);
+            }
+        }
+    }
+
+    private void deliver(ChangeEvent event) {
+        event.setSequence(++delivered);
+        for (ChangeSubscriber subscriber : subscribers) {
+            try {
+                subscriber.changed(event);
+            } catch (RuntimeException e) {
+                failures++;
+            }
+        }
+    }
+
+    // Reads the next spilled events; once none are left, empties the file and
+    // lets producers use the ring again
+    private List<ChangeEvent> readSpill() {
+        List<ChangeEvent> events = new ArrayList<>();
+        synchronized (spillLock) {
+            try {
+                spillWriter.flush();
+                String line;
+                while (events.size() < SPILL_BATCH && (line = spillReader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    events.add(new ChangeEvent(Long.parseLong(line.substring(0, tab)),
+                            Mutation.decode(line.substring(tab + 1))));
+                }
+                if (events.isEmpty()) {
+                    closeSpill();
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to read spilled change events: " + e.getMessage());
+                closeSpill();
+            }
+        }
+        return events;
+    }
+
+    // Closes and deletes the spill file; the caller holds spillLock
+    private void closeSpill() {
+        spilling = false;
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.close();
+            spillReader.close();
+            Files.deleteIfExists(spillPath);
+        } catch (IOException e) {
+            System.err.println("Failed to remove spill file " + spillPath + ": " + e.getMessage());
+        }
+        spillWriter = null;
+        spillReader = null;
+    }
+
+    // ============================================================
+    // === Statistics ===
+    // ============================================================
+
+    /**
+     * Gets the number of events passed to subscribers.
+     *
+     * @return The delivered event count.
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Gets the number of events discarded because the ring buffer was full.
+     *
+     * @return The dropped event count.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the number of events that went through the spill file.
+     *
+     * @return The spilled event count.
+     */
+    public long getSpilled() {
+        synchronized (spillLock) {
+            return spilled;
+        }
+    }
+
+    /**
+     * Gets the number of times a subscriber threw an exception.
+     *
+     * @return The failed delivery count.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Stops publishing changes, delivers the events already published and stops
+     * the dispatcher.
+     */
+    @Override
+    public void close() {
+        system.removeMutationListener(this);
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (spillLock) {
+            closeSpill();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package medicationtracking;
+
+/**
+ * The {@code ChangeSubscriber} interface receives the change events of a
+ * {@link ChangeStream}. Events arrive one at a time, in sequence order, on the
+ * stream's dispatcher thread, so a subscriber needs no locking of its own.
+ */
+@FunctionalInterface
+public interface ChangeSubscriber {
+
+    /**
+     * Called for each change made to the system after the subscriber was added.
+     * An exception thrown here is counted and the event goes on to the next subscriber.
+     *
+     * @param event The change.
+     */
+    void changed(ChangeEvent event);
+}
@@ -0,0 +1,141 @@
+package medicationtracking;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code ConnectionPool} class lends a fixed number of database connections to
+ * the threads using a {@link SqlDatabase}, opening them on first use and keeping them
+ * open for reuse. Each piece of work runs in its own transaction.
+ */
+final class ConnectionPool implements Closeable {
+    private static final long TAKE_TIMEOUT_SECONDS = 30;
+
+    private final String url;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * Work done with a connection, inside a transaction.
+     *
+     * @param <R> The type of the result.
+     */
+    interface Work<R> {
+        R run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Constructs a pool; no connection is opened until one is needed.
+     *
+     * @param url  The JDBC URL of the database.
+     * @param size The maximum number of open connections.
+     * @throws IllegalArgumentException If the size is not positive.
+     */
+    ConnectionPool(String url, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be a positive value.");
+        }
+        this.url = url;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Runs work in a transaction on a pooled connection, committing it if the work
+     * completes and rolling it back if it throws.
+     *
+     * @param work The work.
+     * @param <R>  The type of the result.
+     * @return The result of the work.
+     * @throws IllegalStateException If the pool is closed, no connection became free in
+     *                               time, or the database reported an error.
+     */
+    <R> R run(Work<R> work) {
+        acquire();
+        Connection connection = null;
+        try {
+            connection = take();
+            R result = work.run(connection);
+            connection.commit();
+            release(connection);
+            return result;
+        } catch (SQLException e) {
+            discard(connection);
+            throw new IllegalStateException("Database error: " + e.getMessage(), e);
+        } catch (RuntimeException | Error e) {
+            discard(connection);
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire() {
+        if (closed) {
+            throw new IllegalStateException("The database is closed.");
+        }
+        try {
+            if (!permits.tryAcquire(TAKE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out waiting for a database connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database connection.");
+        }
+    }
+
+    private Connection take() throws SQLException {
+        Connection connection = idle.poll();
+        if (connection == null) {
+            connection = DriverManager.getConnection(url);
+            connection.setAutoCommit(false);
+        }
+        return connection;
+    }
+
+    private void release(Connection connection) throws SQLException {
+        if (closed) {
+            connection.close();
+        } else {
+            idle.add(connection);
+        }
+    }
+
+    // Rolls back failed work; a connection that cannot even do that is closed
+    private void discard(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+            release(connection);
+        } catch (SQLException e) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // The connection is being given up anyway
+            }
+        }
+    }
+
+    /**
+     * Closes the idle connections; connections in use are closed when their work ends.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close database connection: " + e.getMessage());
+            }
+        }
+    }
+}
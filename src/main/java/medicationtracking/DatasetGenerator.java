@@ -0,0 +1,471 @@
+package medicationtracking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code DatasetGenerator} class produces synthetic patients, doctors, medications
+ * and prescriptions for scale testing, so that performance work never needs real
+ * patient data. A dataset can be loaded straight into a {@link MedicationTrackingSystem}
+ * or written as CSV files that {@link BulkImporter} reads back.
+ *
+ * <p>The populations are skewed the way a pharmacy's are. A few popular medications
+ * account for most prescriptions, and the lower a medication ID the more popular it
+ * is. Doctors with low IDs are likewise the busiest, and each patient gets most
+ * prescriptions from one primary doctor. Every tenth patient is chronic, and chronic
+ * patients hold about half of all prescriptions. Expiry dates run from a year before
+ * the reference date to two years after it, with about one medication in twelve
+ * already expired and one in twenty expiring within a month.
+ *
+ * <p>The dataset depends only on the seed, the population sizes and the reference date,
+ * so the same arguments always produce the same records. Rows are generated in chunks
+ * that each draw from their own random stream, which lets chunks be built in parallel
+ * without changing the result.
+ */
+public class DatasetGenerator {
+    static final int CHUNK_ROWS = 16_384;
+
+    /** File names used by {@link #writeCsv(Path)}, one per record type. */
+    public static final String PATIENTS_FILE = "patients.csv";
+    public static final String DOCTORS_FILE = "doctors.csv";
+    public static final String MEDICATIONS_FILE = "medications.csv";
+    public static final String PRESCRIPTIONS_FILE = "prescriptions.csv";
+
+    private static final String[] FIRST_NAMES = {
+        "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+        "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+        "Aisha", "Mohammed", "Wei", "Yuki", "Carlos", "Sofia", "Liam", "Olivia", "Noah", "Emma",
+        "Priya", "Arjun", "Fatima", "Omar", "Ines", "Mateo", "Chloe", "Lucas", "Nadia", "Ethan"
+    };
+    private static final String[] LAST_NAMES = {
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+        "Hernandez", "Lopez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin", "Lee",
+        "Nguyen", "Chen", "Patel", "Kim", "Singh", "Walsh", "Murphy", "O'Brien", "Campbell", "MacDonald",
+        "Tremblay", "Roy", "Gagnon", "Cote", "Bouchard", "Morin", "Khan", "Ali", "Silva", "Rossi"
+    };
+    private static final String[] SPECIALIZATIONS = {
+        "General Practice", "General Practice", "General Practice", "Family Medicine", "Internal Medicine",
+        "Cardiology", "Endocrinology", "Psychiatry", "Pediatrics", "Dermatology", "Neurology", "Oncology"
+    };
+    private static final String[] DRUGS = {
+        "Atorvastatin", "Levothyroxine", "Lisinopril", "Metformin", "Amlodipine", "Metoprolol", "Omeprazole",
+        "Simvastatin", "Losartan", "Albuterol", "Gabapentin", "Hydrochlorothiazide", "Sertraline", "Furosemide",
+        "Amoxicillin", "Escitalopram", "Rosuvastatin", "Bupropion", "Pantoprazole", "Montelukast", "Trazodone",
+        "Prednisone", "Tamsulosin", "Fluoxetine", "Carvedilol", "Meloxicam", "Clopidogrel", "Citalopram",
+        "Insulin Glargine", "Warfarin", "Ibuprofen", "Acetaminophen", "Cetirizine", "Azithromycin", "Ciprofloxacin",
+        "Doxycycline", "Venlafaxine", "Duloxetine", "Allopurinol", "Spironolactone"
+    };
+    private static final String[] FORMS = {"Tablets", "Tablets", "Tablets", "Capsules", "Oral Solution", "Injection"};
+    private static final int[] DOSAGES = {5, 10, 20, 25, 40, 50, 100, 200, 250, 500, 1000};
+    private static final int[] QUANTITIES = {7, 14, 28, 30, 30, 30, 30, 60, 90, 90};
+    private static final String[] INSTRUCTIONS = {
+        "Take once daily", "Take once daily in the morning", "Take twice daily with food",
+        "Take at bedtime", "Take every 8 hours as needed for pain", "Take one tablet three times daily",
+        "Take on an empty stomach", "Take with a full glass of water"
+    };
+
+    // Random streams, one per record type
+    private static final int PATIENT_STREAM = 1;
+    private static final int DOCTOR_STREAM = 2;
+    private static final int MEDICATION_STREAM = 3;
+    private static final int PRESCRIPTION_STREAM = 4;
+
+    private final long seed;
+    private final int patientCount;
+    private final int doctorCount;
+    private final int medicationCount;
+    private final int prescriptionCount;
+    private final LocalDate referenceDate;
+
+    // Prescriptions share these ID strings with the records they refer to, which saves
+    // memory and lets index lookups match by reference
+    private final String[] patientIds;
+    private final String[] doctorIds;
+    private final String[] medicationIds;
+
+    /**
+     * Constructs a generator for the given number of prescriptions, with one patient
+     * per five prescriptions, one doctor per thousand and one medication per two hundred.
+     * Expiry dates are spread around today, so use the full constructor when the
+     * dataset must be identical from one day to the next.
+     *
+     * @param seed          The seed all records are derived from.
+     * @param prescriptions The number of prescriptions to generate.
+     * @throws IllegalArgumentException If the number of prescriptions is negative.
+     */
+    public DatasetGenerator(long seed, int prescriptions) {
+        this(seed, Math.max(1, prescriptions / 5), Math.max(1, prescriptions / 1000),
+                Math.max(1, prescriptions / 200), prescriptions, LocalDate.now());
+    }
+
+    /**
+     * Constructs a generator with explicit population sizes.
+     *
+     * @param seed          The seed all records are derived from.
+     * @param patients      The number of patients to generate.
+     * @param doctors       The number of doctors to generate.
+     * @param medications   The number of medications to generate.
+     * @param prescriptions The number of prescriptions to generate.
+     * @param referenceDate The date expiry dates are spread around.
+     * @throws IllegalArgumentException If a population is empty, the number of
+     *                                  prescriptions is negative or the date is null.
+     */
+    public DatasetGenerator(long seed, int patients, int doctors, int medications, int prescriptions,
+                            LocalDate referenceDate) {
+        if (patients <= 0 || doctors <= 0 || medications <= 0) {
+            throw new IllegalArgumentException("Patient, doctor and medication counts must be positive values.");
+        }
+        if (prescriptions < 0) {
+            throw new IllegalArgumentException("Prescription count cannot be negative.");
+        }
+        if (referenceDate == null) {
+            throw new IllegalArgumentException("Reference date cannot be null.");
+        }
+        this.seed = seed;
+        this.patientCount = patients;
+        this.doctorCount = doctors;
+        this.medicationCount = medications;
+        this.prescriptionCount = prescriptions;
+        this.referenceDate = referenceDate;
+        this.patientIds = ids(patients, DatasetGenerator::patientId);
+        this.doctorIds = ids(doctors, DatasetGenerator::doctorId);
+        this.medicationIds = ids(medications, DatasetGenerator::medicationId);
+    }
+
+    private static String[] ids(int count, IntFunction<String> idOf) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = idOf.apply(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Generates a dataset from the command line and writes it as CSV files.
+     *
+     * @param args The output directory, the number of prescriptions and an optional seed.
+     * @throws IOException If the files cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java medicationtracking.DatasetGenerator <directory> <prescriptions> [seed]");
+            return;
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        DatasetGenerator generator = new DatasetGenerator(seed, Integer.parseInt(args[1]));
+        long start = System.nanoTime();
+        generator.writeCsv(Paths.get(args[0]));
+        System.out.println("Generated " + generator.getPatientCount() + " patients, "
+                + generator.getDoctorCount() + " doctors, " + generator.getMedicationCount() + " medications and "
+                + generator.getPrescriptionCount() + " prescriptions in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+
+    // ============================================================
+    // === Dataset Size ===
+    // ============================================================
+
+    /**
+     * Gets the number of patients generated.
+     * @return The patient count.
+     */
+    public int getPatientCount() {
+        return patientCount;
+    }
+
+    /**
+     * Gets the number of doctors generated.
+     * @return The doctor count.
+     */
+    public int getDoctorCount() {
+        return doctorCount;
+    }
+
+    /**
+     * Gets the number of medications generated.
+     * @return The medication count.
+     */
+    public int getMedicationCount() {
+        return medicationCount;
+    }
+
+    /**
+     * Gets the number of prescriptions generated.
+     * @return The prescription count.
+     */
+    public int getPrescriptionCount() {
+        return prescriptionCount;
+    }
+
+    /**
+     * Gets the ID of the patient at a position in the dataset.
+     * @param index The position of the patient, from 0.
+     * @return The patient ID.
+     */
+    public static String patientId(int index) {
+        return "P" + index;
+    }
+
+    /**
+     * Gets the ID of the doctor at a position in the dataset.
+     * @param index The position of the doctor, from 0.
+     * @return The doctor ID.
+     */
+    public static String doctorId(int index) {
+        return "D" + index;
+    }
+
+    /**
+     * Gets the ID of the medication at a position in the dataset.
+     * @param index The position of the medication, from 0.
+     * @return The medication ID.
+     */
+    public static String medicationId(int index) {
+        return "M" + index;
+    }
+
+    /**
+     * Gets the ID of the prescription at a position in the dataset.
+     * @param index The position of the prescription, from 0.
+     * @return The prescription ID.
+     */
+    public static String prescriptionId(int index) {
+        return "RX" + index;
+    }
+
+    // ============================================================
+    // === Output ===
+    // ============================================================
+
+    /**
+     * Adds the whole dataset to a tracking system, a chunk at a time through its batch
+     * methods. Records whose ID is already registered in the system are skipped.
+     *
+     * @param system The system to populate.
+     */
+    public void populate(MedicationTrackingSystem system) {
+        populate(new MemoryRepositories(system));
+    }
+
+    /**
+     * Adds the whole dataset to a set of repositories, such as a {@link SqlDatabase}, a
+     * chunk at a time through their batch adds. Records whose ID is already stored are
+     * skipped.
+     *
+     * @param repositories The repositories to populate.
+     */
+    public void populate(Repositories repositories) {
+        inOrder(chunks(patientCount), c -> chunk(PATIENT_STREAM, c, patientCount, this::patient),
+                repositories.getPatients()::addAll);
+        inOrder(chunks(doctorCount), c -> chunk(DOCTOR_STREAM, c, doctorCount, this::doctor),
+                repositories.getDoctors()::addAll);
+        inOrder(chunks(medicationCount), c -> chunk(MEDICATION_STREAM, c, medicationCount, this::medication),
+                repositories.getMedications()::addAll);
+        inOrder(chunks(prescriptionCount), c -> chunk(PRESCRIPTION_STREAM, c, prescriptionCount, this::prescription),
+                repositories.getPrescriptions()::addAll);
+    }
+
+    /**
+     * Writes the dataset as four CSV files with the headers {@link BulkImporter} expects.
+     * Existing files are replaced.
+     *
+     * @param directory The directory to write to, created if it does not exist.
+     * @throws IOException If a file cannot be written.
+     */
+    public void writeCsv(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        writeCsv(directory.resolve(PATIENTS_FILE), ImportType.PATIENTS, patientCount,
+                c -> csv(chunk(PATIENT_STREAM, c, patientCount, this::patient), DatasetGenerator::patientRow));
+        writeCsv(directory.resolve(DOCTORS_FILE), ImportType.DOCTORS, doctorCount,
+                c -> csv(chunk(DOCTOR_STREAM, c, doctorCount, this::doctor), DatasetGenerator::doctorRow));
+        writeCsv(directory.resolve(MEDICATIONS_FILE), ImportType.MEDICATIONS, medicationCount,
+                c -> csv(chunk(MEDICATION_STREAM, c, medicationCount, this::medication), DatasetGenerator::medicationRow));
+        writeCsv(directory.resolve(PRESCRIPTIONS_FILE), ImportType.PRESCRIPTIONS, prescriptionCount,
+                c -> csv(chunk(PRESCRIPTION_STREAM, c, prescriptionCount, this::prescription),
+                        DatasetGenerator::prescriptionRow));
+    }
+
+    private void writeCsv(Path file, ImportType type, int count, IntFunction<String> chunkText) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", type.getFields()));
+            writer.write('\n');
+            inOrder(chunks(count), chunkText, text -> {
+                try {
+                    writer.write(text);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ============================================================
+    // === Chunking ===
+    // ============================================================
+
+    // Builds a few chunks at a time in parallel and hands them on in chunk order
+    private static <R> void inOrder(int chunks, IntFunction<R> build, Consumer<R> consume) {
+        int window = ForkJoinPool.getCommonPoolParallelism() + 1;
+        for (int first = 0; first < chunks; first += window) {
+            List<R> built = IntStream.range(first, Math.min(chunks, first + window)).parallel()
+                    .mapToObj(build)
+                    .collect(Collectors.toList());
+            built.forEach(consume);
+        }
+    }
+
+    private static int chunks(int count) {
+        return (count + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    }
+
+    private <T> List<T> chunk(int stream, int chunk, int count, RowFactory<T> factory) {
+        // Each chunk has its own stream, so the result does not depend on scheduling
+        SplittableRandom random = new SplittableRandom(mix(seed + mix(stream * 0x9E3779B97F4A7C15L + chunk)));
+        int from = chunk * CHUNK_ROWS;
+        int to = Math.min(count, from + CHUNK_ROWS);
+        List<T> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            rows.add(factory.create(random, i));
+        }
+        return rows;
+    }
+
+    private interface RowFactory<T> {
+        T create(SplittableRandom random, int index);
+    }
+
+    // ============================================================
+    // === Records ===
+    // ============================================================
+
+    private Patient patient(SplittableRandom random, int index) {
+        int age;
+        if (isChronic(index)) {
+            age = 50 + random.nextInt(46);
+        } else if (random.nextInt(5) == 0) {
+            age = 1 + random.nextInt(17);
+        } else {
+            age = 18 + random.nextInt(70);
+        }
+        return new Patient(patientIds[index], personName(random), age, phoneNumber(random));
+    }
+
+    private Doctor doctor(SplittableRandom random, int index) {
+        return new Doctor(doctorIds[index], personName(random), phoneNumber(random),
+                SPECIALIZATIONS[random.nextInt(SPECIALIZATIONS.length)]);
+    }
+
+    private Medication medication(SplittableRandom random, int index) {
+        // Cycle through the drug names so the popular low IDs are different drugs
+        String name = DRUGS[index % DRUGS.length] + " " + FORMS[random.nextInt(FORMS.length)];
+        int stock = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(2000);
+        int days;
+        int spread = random.nextInt(100);
+        if (spread < 8) {
+            days = -1 - random.nextInt(365);
+        } else if (spread < 13) {
+            days = random.nextInt(31);
+        } else {
+            days = 31 + random.nextInt(700);
+        }
+        return new Medication(medicationIds[index], name, DOSAGES[random.nextInt(DOSAGES.length)], stock,
+                referenceDate.plusDays(days));
+    }
+
+    private Prescription prescription(SplittableRandom random, int index) {
+        int patient;
+        if (random.nextBoolean()) {
+            // Every tenth patient is chronic
+            patient = 10 * random.nextInt((patientCount + 9) / 10);
+        } else {
+            patient = random.nextInt(patientCount);
+        }
+        int doctor = random.nextInt(5) == 0 ? skewed(random.nextDouble(), doctorCount, 2) : primaryDoctor(patient);
+        int medication = skewed(random.nextDouble(), medicationCount, 3);
+        return new Prescription(prescriptionId(index), patientIds[patient], doctorIds[doctor], medicationIds[medication],
+                QUANTITIES[random.nextInt(QUANTITIES.length)], INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)]);
+    }
+
+    private static boolean isChronic(int patient) {
+        return patient % 10 == 0;
+    }
+
+    // Derived from the patient alone, so every chunk agrees on it without shared state
+    private int primaryDoctor(int patient) {
+        long hash = mix(seed ^ mix(patient + 0x632BE59BD9B4E019L));
+        return skewed((hash >>> 11) * 0x1.0p-53, doctorCount, 2);
+    }
+
+    // Maps a uniform value to [0, bound), favouring low indices more as the power grows
+    private static int skewed(double uniform, int bound, int power) {
+        double skewed = power == 3 ? uniform * uniform * uniform : uniform * uniform;
+        return Math.min(bound - 1, (int) (skewed * bound));
+    }
+
+    private static String personName(SplittableRandom random) {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+
+    private static String phoneNumber(SplittableRandom random) {
+        return (200 + random.nextInt(800)) + "-" + (200 + random.nextInt(800)) + "-" + (1000 + random.nextInt(9000));
+    }
+
+    // Finalizer of MurmurHash3, spreading nearby inputs across all bits
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    // ============================================================
+    // === CSV Rows ===
+    // ============================================================
+
+    private static <T> String csv(List<T> rows, BiConsumer<T, StringBuilder> format) {
+        StringBuilder text = new StringBuilder(rows.size() * 64);
+        for (T row : rows) {
+            format.accept(row, text);
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void patientRow(Patient patient, StringBuilder row) {
+        row.append(patient.getId()).append(',').append(patient.getName()).append(',')
+                .append(patient.getAge()).append(',').append(patient.getPhoneNumber());
+    }
+
+    private static void doctorRow(Doctor doctor, StringBuilder row) {
+        row.append(doctor.getId()).append(',').append(doctor.getName()).append(',')
+                .append(doctor.getPhoneNumber()).append(',').append(doctor.getSpecialization());
+    }
+
+    private static void medicationRow(Medication medication, StringBuilder row) {
+        row.append(medication.getId()).append(',').append(medication.getName()).append(',')
+                .append(medication.getDosage()).append(',').append(medication.getQuantityInStock()).append(',')
+                .append(medication.getExpiryDate());
+    }
+
+    private static void prescriptionRow(Prescription prescription, StringBuilder row) {
+        row.append(prescription.getPrescriptionId()).append(',').append(prescription.getPatientId()).append(',')
+                .append(prescription.getDoctorId()).append(',').append(prescription.getMedicationId()).append(',')
+                .append(prescription.getQuantity()).append(',').append(prescription.getInstructions());
+    }
+}
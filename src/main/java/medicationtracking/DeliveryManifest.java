@@ -0,0 +1,145 @@
+package medicationtracking;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code DeliveryManifest} class streams the lines of a supplier delivery manifest.
+ *
+ * <p>Each line has the form {@code medicationId,quantity,lotExpiry}, with the expiry
+ * written as {@code yyyy-MM-dd}. Blank lines, lines starting with {@code #} and an
+ * optional header line starting with {@code medicationId} are skipped. Lines that
+ * cannot be parsed are counted and their line numbers kept for the summary.
+ */
+class DeliveryManifest implements Closeable {
+    private static final int MAX_REPORTED_LINES = 20;
+    private static final int MAX_CACHED_DATES = 4096;
+
+    private final BufferedReader reader;
+    private long lineNumber;
+    private long malformedCount;
+    private final List<Long> malformedLines = new ArrayList<>();
+
+    // Lots in one delivery share a handful of expiry dates, so parse each once
+    private final Map<String, LocalDate> parsedDates = new HashMap<>();
+
+    /**
+     * Opens a manifest file for reading.
+     *
+     * @param file The manifest file.
+     * @throws IOException If the file cannot be opened.
+     */
+    DeliveryManifest(Path file) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One delivered lot.
+     */
+    static final class Entry {
+        final String medicationId;
+        final int quantity;
+        final LocalDate lotExpiry;
+
+        Entry(String medicationId, int quantity, LocalDate lotExpiry) {
+            this.medicationId = medicationId;
+            this.quantity = quantity;
+            this.lotExpiry = lotExpiry;
+        }
+    }
+
+    /**
+     * Reads the next batch of valid entries.
+     *
+     * @param maxEntries The largest number of entries to return.
+     * @return The entries, or an empty list at the end of the manifest.
+     * @throws IOException If the file cannot be read.
+     */
+    List<Entry> nextBatch(int maxEntries) throws IOException {
+        List<Entry> batch = new ArrayList<>(maxEntries);
+        String line;
+        while (batch.size() < maxEntries && (line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")
+                    || (lineNumber == 1 && line.regionMatches(true, 0, "medicationId", 0, 12))) {
+                continue;
+            }
+            Entry entry = parse(line);
+            if (entry != null) {
+                batch.add(entry);
+            } else {
+                malformedCount++;
+                if (malformedLines.size() < MAX_REPORTED_LINES) {
+                    malformedLines.add(lineNumber);
+                }
+            }
+        }
+        return batch;
+    }
+
+    // Returns null if the line is not a valid entry
+    private Entry parse(String line) {
+        String[] parts = line.split(",", -1);
+        if (parts.length != 3) {
+            return null;
+        }
+        String medicationId = parts[0].trim();
+        if (medicationId.isEmpty()) {
+            return null;
+        }
+        try {
+            int quantity = Integer.parseInt(parts[1].trim());
+            if (quantity <= 0) {
+                return null;
+            }
+            return new Entry(medicationId, quantity, parseDate(parts[2].trim()));
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private LocalDate parseDate(String text) {
+        LocalDate date = parsedDates.get(text);
+        if (date == null) {
+            date = LocalDate.parse(text);
+            if (parsedDates.size() < MAX_CACHED_DATES) {
+                parsedDates.put(text, date);
+            }
+        }
+        return date;
+    }
+
+    /**
+     * Gets the number of lines that could not be parsed.
+     *
+     * @return The malformed line count.
+     */
+    long getMalformedCount() {
+        return malformedCount;
+    }
+
+    /**
+     * Gets the numbers of the first malformed lines.
+     *
+     * @return Up to {@value #MAX_REPORTED_LINES} line numbers.
+     */
+    List<Long> getMalformedLines() {
+        return malformedLines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
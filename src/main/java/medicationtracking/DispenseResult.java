@@ -0,0 +1,41 @@
+package medicationtracking;
+
+/**
+ * The {@code DispenseResult} enum reports the outcome of dispensing or reserving
+ * stock for a prescription.
+ */
+public enum DispenseResult {
+
+    /** The stock was taken from the medication. */
+    DISPENSED("Prescription dispensed successfully!"),
+
+    /** No prescription has the given ID. */
+    UNKNOWN_PRESCRIPTION("No prescription found with that ID."),
+
+    /** The prescription refers to a medication that does not exist. */
+    UNKNOWN_MEDICATION("The prescribed medication was not found."),
+
+    /** The prescribed medication has expired and must not be dispensed. */
+    EXPIRED("The prescribed medication has expired."),
+
+    /** There is not enough stock to fill the requested quantity. */
+    INSUFFICIENT_STOCK("There is not enough stock to fill the prescription."),
+
+    /** Less of the prescription remains to be dispensed than was requested. */
+    ALREADY_FILLED("The prescription has already been filled, or less of it remains than requested.");
+
+    private final String message;
+
+    DispenseResult(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Gets a message describing the outcome, suitable for the console.
+     *
+     * @return The message.
+     */
+    public String getMessage() {
+        return message;
+    }
+}
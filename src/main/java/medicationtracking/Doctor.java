@@ -1,17 +1,22 @@
 package medicationtracking;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The {@code Doctor} class represents a medical professional in the system.
  * This class extends {@link Person}, inheriting common attributes like ID, name, and phone number.
  * 
  * <p>Doctors are assigned a specialization and can be linked to multiple patients.
+ * Assigned patients are keyed by patient ID, so a patient is assigned at most once
+ * and assigning, unassigning and checking an assignment take constant time.
  */
 public class Doctor extends Person {
-    private String specialization;
-    private List<Patient> assignedPatients;
+    private volatile String specialization;
+    // Assigned patients by patient ID, in the order they were assigned (guarded by this)
+    private final Map<String, Patient> assignedPatients = new LinkedHashMap<>();
 
     /**
      * Constructs a new {@code Doctor} object.
@@ -30,7 +35,6 @@ public class Doctor extends Person {
         }
         
         this.specialization = specialization;
-        this.assignedPatients = new ArrayList<>();
     }
 
     /**
@@ -52,20 +56,46 @@ public class Doctor extends Person {
         if (specialization == null || specialization.trim().isEmpty()) {
             throw new IllegalArgumentException("Specialization cannot be empty.");
         }
-        this.specialization = specialization;
+        change("specialization", () -> {
+            String oldSpecialization = this.specialization;
+            this.specialization = specialization;
+            return oldSpecialization;
+        });
     }
 
     /**
      * Gets the list of patients assigned to the doctor.
      * 
-     * @return A list of {@link Patient} objects.
+     * @return A copy of the assigned {@link Patient} objects, in the order they were assigned.
+     */
+    public synchronized List<Patient> getAssignedPatients() { 
+        return new ArrayList<>(assignedPatients.values());
+    }
+
+    /**
+     * Gets the number of patients assigned to the doctor.
+     * 
+     * @return The assigned patient count.
      */
-    public List<Patient> getAssignedPatients() { 
-        return assignedPatients; 
+    public synchronized int getAssignedPatientCount() {
+        return assignedPatients.size();
+    }
+
+    /**
+     * Checks whether a patient is assigned to this doctor.
+     * 
+     * @param patientId The ID of the patient.
+     * @return True if the patient is assigned to this doctor.
+     */
+    public synchronized boolean hasPatient(String patientId) {
+        return assignedPatients.containsKey(patientId);
     }
 
     /**
      * Assigns a patient to this doctor.
+     * For a doctor registered with a {@link MedicationTrackingSystem}, use
+     * {@link MedicationTrackingSystem#assignPatientToDoctor(String, String)} instead,
+     * so the system can record the assignment and find the patient's doctors.
      * 
      * @param patient The patient to assign.
      * @throws IllegalArgumentException If the patient is null.
@@ -74,8 +104,7 @@ public class Doctor extends Person {
         if (patient == null) {
             throw new IllegalArgumentException("Patient cannot be null.");
         }
-        if (!assignedPatients.contains(patient)) {
-            assignedPatients.add(patient);
+        if (attach(patient)) {
             System.out.println("✅ Patient " + patient.getName() + " has been assigned to Doctor " + this.getName());
         } else {
             System.out.println("⚠️ Patient is already assigned to this doctor.");
@@ -83,12 +112,40 @@ public class Doctor extends Person {
     }
 
     /**
-     * Returns a string representation of the doctor.
+     * Adds a patient to the assigned patients unless a patient with the same ID is already there.
+     * 
+     * @param patient The patient to assign.
+     * @return True if the patient was added, false if already assigned.
+     */
+    synchronized boolean attach(Patient patient) {
+        if (assignedPatients.putIfAbsent(patient.getId(), patient) != null) {
+            return false;
+        }
+        markChanged();
+        return true;
+    }
+
+    /**
+     * Removes a patient from the assigned patients.
+     * 
+     * @param patientId The ID of the patient to remove.
+     * @return True if the patient was assigned and has been removed.
+     */
+    synchronized boolean detach(String patientId) {
+        if (assignedPatients.remove(patientId) == null) {
+            return false;
+        }
+        markChanged();
+        return true;
+    }
+
+    /**
+     * Builds the string representation of the doctor, cached by {@link #toString()}.
      * 
      * @return A formatted string containing doctor details.
      */
     @Override
-    public String toString() {
-        return super.toString() + ", Specialization: " + specialization + ", Assigned Patients: " + assignedPatients.size();
+    protected String render() {
+        return super.render() + ", Specialization: " + specialization + ", Assigned Patients: " + getAssignedPatientCount();
     }
 }
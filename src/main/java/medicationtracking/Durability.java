@@ -0,0 +1,20 @@
+package medicationtracking;
+
+/**
+ * The {@code Durability} enum selects when the write-ahead log forces
+ * appended records to disk, trading mutation latency for safety.
+ */
+public enum Durability {
+
+    /**
+     * Every mutation is written and forced to disk before the call returns.
+     * Nothing acknowledged is ever lost, at the cost of one fsync per operation.
+     */
+    PER_OPERATION,
+
+    /**
+     * Mutations are buffered and forced to disk in batches by a background
+     * flusher (group commit). A crash can lose at most the last batch window.
+     */
+    BATCHED
+}
@@ -0,0 +1,27 @@
+package medicationtracking;
+
+import java.util.function.Supplier;
+
+/**
+ * The {@code EntityChangeListener} interface lets the tracking system keep its
+ * indexes in step with changes made through an entity's setters.
+ * An entity holds at most one listener, installed when the entity is added to
+ * a {@link MedicationTrackingSystem} and cleared when it is removed.
+ */
+interface EntityChangeListener {
+
+    /** Returned by a write that left the field as it was. */
+    Object UNCHANGED = new Object();
+
+    /**
+     * Applies a change a setter makes to a field of an entity. The write runs
+     * under the lock guarding the entity and the change is recorded before that
+     * lock is released, so changes are recorded in the order they were applied.
+     *
+     * @param entity The entity being changed.
+     * @param field  The name of the field being changed (e.g. "name").
+     * @param write  Writes the new value and returns the value it replaced,
+     *               or {@link #UNCHANGED} if nothing was written.
+     */
+    void applyChange(Object entity, String field, Supplier<Object> write);
+}
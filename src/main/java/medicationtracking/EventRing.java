@@ -0,0 +1,115 @@
+package medicationtracking;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code EventRing} class is a bounded, lock-free queue for many producing threads
+ * and a single consuming thread, used to hand change events to their dispatcher.
+ *
+ * <p>Each slot carries a sequence number telling producers and the consumer whose turn
+ * it is: a producer claims the next position with one compare-and-set and publishes its
+ * item by advancing the slot's sequence, and the consumer frees the slot the same way.
+ * Neither side ever waits for the other; a producer finding the ring full is told so
+ * and decides what to do.
+ *
+ * @param <E> The type of the items.
+ */
+final class EventRing<E> {
+    private static final VarHandle ITEMS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int mask;
+    private final Object[] items;
+    private final long[] sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // only touched by the consumer
+
+    /**
+     * Constructs an empty ring.
+     *
+     * @param capacity The number of slots, rounded up to a power of two.
+     * @throws IllegalArgumentException If the capacity is not positive or too large.
+     */
+    EventRing(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + (1 << 30) + ".");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        items = new Object[size];
+        sequences = new long[size];
+        for (int i = 0; i < size; i++) {
+            sequences[i] = i;
+        }
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return The capacity.
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds an item if there is room. Safe to call from any thread.
+     *
+     * @param item The item, not null.
+     * @return True if the item was added, false if the ring is full.
+     */
+    boolean offer(E item) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long sequence = (long) SEQUENCES.getAcquire(sequences, slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    ITEMS.set(items, slot, item);
+                    // Volatile rather than release, so a check for a parked consumer
+                    // made after this call cannot be ordered before the item is visible
+                    SEQUENCES.setVolatile(sequences, slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // The slot still holds the item from one lap ago
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Checks whether there is no item to take. Only called by the consuming thread.
+     *
+     * @return True if {@link #poll()} would return null.
+     */
+    boolean isEmpty() {
+        return (long) SEQUENCES.getVolatile(sequences, (int) head & mask) != head + 1;
+    }
+
+    /**
+     * Removes the oldest item. Only called by the consuming thread.
+     *
+     * @return The item, or null if the ring is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int slot = (int) head & mask;
+        if ((long) SEQUENCES.getAcquire(sequences, slot) != head + 1) {
+            return null;
+        }
+        E item = (E) ITEMS.get(items, slot);
+        ITEMS.set(items, slot, null);
+        SEQUENCES.setRelease(sequences, slot, head + mask + 1);
+        head++;
+        return item;
+    }
+}
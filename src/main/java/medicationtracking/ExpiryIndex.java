@@ -0,0 +1,144 @@
+package medicationtracking;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The {@code ExpiryIndex} class keeps medications ordered by expiry date so that
+ * "expired as of a date" and "expiring within a window" are range queries.
+ *
+ * <p>The set of medications expired as of today is cached. When the date rolls
+ * over, only the medications that expired since the last sweep are added to it,
+ * instead of re-checking the whole catalogue.
+ *
+ * <p>Methods are synchronized because sweeping updates the cache even when callers
+ * only hold the medication read lock of the tracking system.
+ */
+class ExpiryIndex {
+    private final NavigableMap<LocalDate, Set<Medication>> byExpiry = new TreeMap<>();
+    private final Clock clock;
+
+    // Medications expired as of sweptThrough, valid while sweptThrough is today
+    private final Set<Medication> expired = new LinkedHashSet<>();
+    private LocalDate sweptThrough;
+
+    /**
+     * Constructs an empty index that reads today's date from a clock.
+     *
+     * @param clock The clock used to decide what "today" is.
+     */
+    ExpiryIndex(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Indexes a medication under its expiry date.
+     *
+     * @param medication The medication to index.
+     */
+    synchronized void add(Medication medication) {
+        byExpiry.computeIfAbsent(medication.getExpiryDate(), d -> new LinkedHashSet<>()).add(medication);
+        if (sweptThrough != null && medication.getExpiryDate().isBefore(sweptThrough)) {
+            expired.add(medication);
+        }
+    }
+
+    /**
+     * Removes a medication from the index.
+     *
+     * @param medication The medication to remove.
+     */
+    synchronized void remove(Medication medication) {
+        Set<Medication> bucket = byExpiry.get(medication.getExpiryDate());
+        if (bucket != null && bucket.remove(medication) && bucket.isEmpty()) {
+            byExpiry.remove(medication.getExpiryDate());
+        }
+        expired.remove(medication);
+    }
+
+    /**
+     * Re-indexes a medication whose expiry date has changed.
+     *
+     * @param medication    The medication, already holding its new expiry date.
+     * @param oldExpiryDate The expiry date it was indexed under.
+     */
+    synchronized void move(Medication medication, LocalDate oldExpiryDate) {
+        Set<Medication> bucket = byExpiry.get(oldExpiryDate);
+        if (bucket != null && bucket.remove(medication) && bucket.isEmpty()) {
+            byExpiry.remove(oldExpiryDate);
+        }
+        expired.remove(medication);
+        add(medication);
+    }
+
+    /**
+     * Gets the medications that are expired today, using the cached sweep.
+     *
+     * @return The expired medications, in the order they were swept.
+     */
+    synchronized List<Medication> expired() {
+        sweep(LocalDate.now(clock));
+        return new ArrayList<>(expired);
+    }
+
+    /**
+     * Gets the medications that are expired as of a date, i.e. whose expiry
+     * date is before it.
+     *
+     * @param date The date to check against.
+     * @return The expired medications, earliest expiry first.
+     */
+    synchronized List<Medication> expiredAsOf(LocalDate date) {
+        return flatten(byExpiry.headMap(date, false).values());
+    }
+
+    /**
+     * Gets the medications that are still valid today but expire within
+     * the given number of days.
+     *
+     * @param days The size of the window in days.
+     * @return The medications expiring soon, earliest expiry first.
+     */
+    synchronized List<Medication> expiringWithin(int days) {
+        LocalDate today = LocalDate.now(clock);
+        return flatten(byExpiry.subMap(today, true, today.plusDays(days), true).values());
+    }
+
+    /**
+     * Gets today's date according to the index clock.
+     *
+     * @return Today's date.
+     */
+    LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    // Brings the cached expired set up to date with today
+    private void sweep(LocalDate today) {
+        if (today.equals(sweptThrough)) {
+            return;
+        }
+        if (sweptThrough == null || today.isBefore(sweptThrough)) {
+            expired.clear();
+            byExpiry.headMap(today, false).values().forEach(expired::addAll);
+        } else {
+            byExpiry.subMap(sweptThrough, true, today, false).values().forEach(expired::addAll);
+        }
+        sweptThrough = today;
+    }
+
+    private static List<Medication> flatten(Collection<Set<Medication>> buckets) {
+        List<Medication> result = new ArrayList<>();
+        for (Set<Medication> bucket : buckets) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,151 @@
+package medicationtracking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code ImportResult} class reports the outcome of a bulk import: how many rows
+ * were read and imported, and which rows were rejected and why.
+ */
+public final class ImportResult {
+    private static final int MAX_KEPT_ERRORS = 1000;
+    private static final int MAX_PRINTED_ERRORS = 10;
+
+    private final ImportType type;
+    private long rowsRead;
+    private long imported;
+    private long errorCount;
+    private final List<RowError> errors = new ArrayList<>();
+    private long elapsedMillis;
+
+    ImportResult(ImportType type) {
+        this.type = type;
+    }
+
+    /**
+     * A row that could not be imported.
+     */
+    public static final class RowError {
+        private final long line;
+        private final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * Gets the line number of the row in the imported file.
+         * @return The 1-based line number
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * Gets the reason the row was rejected.
+         * @return The error message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + message;
+        }
+    }
+
+    // Records one row read from the file
+    void rowRead() {
+        rowsRead++;
+    }
+
+    // Records one row added to the system
+    void rowImported() {
+        imported++;
+    }
+
+    // Records a rejected row, keeping the first errors for reporting
+    void rowFailed(long line, String message) {
+        errorCount++;
+        if (errors.size() < MAX_KEPT_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    // Records how long the import took
+    void finished(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the kind of records imported.
+     * @return The import type
+     */
+    public ImportType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the number of data rows read from the file.
+     * @return The row count
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Gets the number of rows added to the system.
+     * @return The imported row count
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Gets the number of rows that were rejected.
+     * @return The error count
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Gets the first rejected rows, in file order.
+     * @return Up to 1000 row errors
+     */
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Gets how long the import took.
+     * @return The elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the summary and the first few errors in a readable format.
+     * @return The summary text
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Imported ").append(imported).append(" of ").append(rowsRead).append(' ')
+          .append(type.name().toLowerCase()).append(" rows in ").append(elapsedMillis).append(" ms.");
+        if (errorCount > 0) {
+            sb.append("\nRejected rows: ").append(errorCount);
+            for (int i = 0; i < Math.min(errors.size(), MAX_PRINTED_ERRORS); i++) {
+                sb.append("\n  ").append(errors.get(i));
+            }
+            if (errorCount > MAX_PRINTED_ERRORS) {
+                sb.append("\n  ...");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package medicationtracking;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The {@code ImportType} enum lists the kinds of records that can be bulk imported,
+ * together with the field names expected in CSV headers and JSON objects.
+ */
+public enum ImportType {
+
+    /** Patients: {@code id, name, age, phoneNumber}. */
+    PATIENTS("id", "name", "age", "phoneNumber"),
+
+    /** Doctors: {@code id, name, phoneNumber, specialization}. */
+    DOCTORS("id", "name", "phoneNumber", "specialization"),
+
+    /** Medications: {@code id, name, dosage, quantityInStock, expiryDate} (expiry as yyyy-MM-dd). */
+    MEDICATIONS("id", "name", "dosage", "quantityInStock", "expiryDate"),
+
+    /** Prescriptions: {@code prescriptionId, patientId, doctorId, medicationId, quantity, instructions}. */
+    PRESCRIPTIONS("prescriptionId", "patientId", "doctorId", "medicationId", "quantity", "instructions");
+
+    private final String[] fields;
+
+    ImportType(String... fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Gets the field names of this record type, in constructor order.
+     *
+     * @return A copy of the field names.
+     */
+    public String[] getFields() {
+        return fields.clone();
+    }
+
+    /**
+     * Finds the position of a field by name, ignoring case.
+     *
+     * @param name The field name.
+     * @return The field position, or -1 if the type has no such field.
+     */
+    int indexOf(String name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds an entity from field values, using the entity constructors for validation.
+     *
+     * @param values The field values in {@link #getFields()} order; missing values are null.
+     * @return The new entity.
+     * @throws IllegalArgumentException If a value is missing or invalid.
+     */
+    Object build(String[] values) {
+        switch (this) {
+            case PATIENTS:
+                return new Patient(values[0], values[1], number(values, 2), values[3]);
+            case DOCTORS:
+                return new Doctor(values[0], values[1], values[2], values[3]);
+            case MEDICATIONS:
+                return new Medication(values[0], values[1], number(values, 2), number(values, 3), date(values, 4));
+            default:
+                require(values, 0);
+                require(values, 1);
+                require(values, 2);
+                require(values, 3);
+                int quantity = number(values, 4);
+                if (quantity <= 0) {
+                    throw new IllegalArgumentException("Quantity must be a positive value.");
+                }
+                return new Prescription(values[0], values[1], values[2], values[3], quantity,
+                        values[5] == null ? "" : values[5]);
+        }
+    }
+
+    String require(String[] values, int field) {
+        if (values[field] == null || values[field].trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing " + fields[field] + ".");
+        }
+        return values[field];
+    }
+
+    int number(String[] values, int field) {
+        String value = require(values, field).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + fields[field] + ": " + value);
+        }
+    }
+
+    private LocalDate date(String[] values, int field) {
+        String value = require(values, field).trim();
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + fields[field] + ": " + value);
+        }
+    }
+}
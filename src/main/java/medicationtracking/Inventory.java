@@ -0,0 +1,253 @@
+package medicationtracking;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code Inventory} class holds the stock, dosage and expiry date of every
+ * registered medication in primitive arrays indexed by slot, so stock totals and
+ * threshold checks are tight loops over int arrays rather than walks over
+ * {@link Medication} objects.
+ *
+ * <p>A registered medication reads and writes its own slot: the arrays are where its
+ * quantity in stock, dosage and expiry date (as an epoch day) live, so they cannot
+ * drift from what its getters return. Dispensing takes stock with compare-and-set
+ * on the quantity array. When a medication is removed it copies its values back
+ * into its own fields and its slot is emptied.
+ *
+ * <p>Slots are never moved, so a medication's slot stays valid for as long as it is
+ * registered. Emptied slots go on a free list and are handed to the next medications
+ * added; setters name the medication they write for, so a removed medication cannot
+ * write into a slot that has since been reused. The arrays only grow while the
+ * system's medication write lock is held, which keeps out the compare-and-set stock
+ * changes made under its read lock; setters are synchronized with growth instead.
+ */
+class Inventory {
+    private static final int MIN_CAPACITY = 16;
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // === Columns (one entry per slot; the owner is null and the stock 0 once removed) ===
+    private volatile Medication[] owners = new Medication[MIN_CAPACITY];
+    private volatile int[] quantities = new int[MIN_CAPACITY];
+    private volatile int[] dosages = new int[MIN_CAPACITY];
+    private volatile int[] expiryDays = new int[MIN_CAPACITY];
+    private int slotCount;
+    // Emptied slots, reused last-in first-out
+    private int[] freeSlots = new int[MIN_CAPACITY];
+    private int freeCount;
+
+    // ============================================================
+    // === Slots ===
+    // ============================================================
+
+    /**
+     * Gives a medication a new slot holding its current values; from then on the
+     * medication reads and writes the slot.
+     *
+     * @param medication The medication to add.
+     */
+    synchronized void add(Medication medication) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = slotCount;
+            if (slot == owners.length) {
+                grow();
+            }
+            slotCount++;
+        }
+        INTS.setVolatile(quantities, slot, medication.getQuantityInStock());
+        INTS.setVolatile(dosages, slot, medication.getDosage());
+        INTS.setVolatile(expiryDays, slot, (int) medication.getExpiryDate().toEpochDay());
+        owners[slot] = medication;
+        medication.attach(this, slot);
+    }
+
+    /**
+     * Empties a medication's slot, after the medication has taken its values back.
+     *
+     * @param medication The medication to remove.
+     */
+    synchronized void remove(Medication medication) {
+        int slot = medication.detach();
+        owners[slot] = null;
+        // Removed slots hold no stock, so totals need not check for them
+        INTS.setVolatile(quantities, slot, 0);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void grow() {
+        int capacity = owners.length * 2;
+        quantities = Arrays.copyOf(quantities, capacity);
+        dosages = Arrays.copyOf(dosages, capacity);
+        expiryDays = Arrays.copyOf(expiryDays, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+    }
+
+    // ============================================================
+    // === Column Access (used by registered medications) ===
+    // ============================================================
+
+    int quantity(int slot) {
+        return (int) INTS.getVolatile(quantities, slot);
+    }
+
+    int dosage(int slot) {
+        return (int) INTS.getVolatile(dosages, slot);
+    }
+
+    int expiryDay(int slot) {
+        return (int) INTS.getVolatile(expiryDays, slot);
+    }
+
+    // The setters return false once the medication no longer owns the slot, in which
+    // case it holds its own values again and the slot is left alone
+
+    synchronized boolean setQuantity(Medication medication, int slot, int quantity) {
+        if (owners[slot] != medication) {
+            return false;
+        }
+        INTS.setVolatile(quantities, slot, quantity);
+        return true;
+    }
+
+    synchronized boolean setDosage(Medication medication, int slot, int dosage) {
+        if (owners[slot] != medication) {
+            return false;
+        }
+        INTS.setVolatile(dosages, slot, dosage);
+        return true;
+    }
+
+    synchronized boolean setExpiryDay(Medication medication, int slot, int expiryDay) {
+        if (owners[slot] != medication) {
+            return false;
+        }
+        INTS.setVolatile(expiryDays, slot, expiryDay);
+        return true;
+    }
+
+    /**
+     * Atomically takes units out of a slot's stock if enough are available.
+     * The caller holds the medication read lock of the tracking system.
+     *
+     * @param slot   The slot.
+     * @param amount The number of units to take.
+     * @return True if the stock was taken, false if there were too few units.
+     */
+    boolean tryTake(int slot, int amount) {
+        int[] column = quantities;
+        int current;
+        do {
+            current = (int) INTS.getVolatile(column, slot);
+            if (current < amount) {
+                return false;
+            }
+        } while (!INTS.compareAndSet(column, slot, current, current - amount));
+        return true;
+    }
+
+    /**
+     * Atomically adds units to (or, when negative, removes units from) a slot's stock.
+     * The caller holds the medication read lock of the tracking system.
+     *
+     * @param slot  The slot.
+     * @param delta The number of units to add.
+     * @return The new quantity in stock.
+     * @throws IllegalArgumentException If the stock would become negative or overflow.
+     */
+    int adjust(int slot, int delta) {
+        int[] column = quantities;
+        int current;
+        int updated;
+        do {
+            current = (int) INTS.getVolatile(column, slot);
+            updated = Medication.addToStock(current, delta);
+        } while (!INTS.compareAndSet(column, slot, current, updated));
+        return updated;
+    }
+
+    // ============================================================
+    // === Aggregates (the caller holds the medication read lock) ===
+    // ============================================================
+
+    /**
+     * Adds up the units in stock across all medications.
+     *
+     * @return The total number of units.
+     */
+    long totalUnits() {
+        int[] q = quantities;
+        int end = slotCount;
+        long total = 0;
+        for (int i = 0; i < end; i++) {
+            total += q[i];
+        }
+        return total;
+    }
+
+    /**
+     * Adds up the milligrams of active ingredient in stock, i.e. units times dosage.
+     *
+     * @return The total in milligrams.
+     */
+    long totalMilligrams() {
+        int[] q = quantities;
+        int[] d = dosages;
+        int end = slotCount;
+        long total = 0;
+        for (int i = 0; i < end; i++) {
+            total += (long) q[i] * d[i];
+        }
+        return total;
+    }
+
+    /**
+     * Adds up the units in stock of medications expiring in a range of dates.
+     *
+     * @param from The first date of the range.
+     * @param to   The last date of the range.
+     * @return The total number of units.
+     */
+    long unitsExpiringBetween(LocalDate from, LocalDate to) {
+        int[] q = quantities;
+        int[] e = expiryDays;
+        int end = slotCount;
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        long total = 0;
+        for (int i = 0; i < end; i++) {
+            int day = e[i];
+            total += day >= first && day <= last ? q[i] : 0;
+        }
+        return total;
+    }
+
+    /**
+     * Finds the medications with fewer units in stock than a threshold.
+     *
+     * @param level The threshold.
+     * @return The medications below it, in the order they were registered.
+     */
+    List<Medication> below(int level) {
+        int[] q = quantities;
+        Medication[] o = owners;
+        int end = slotCount;
+        List<Medication> matches = new ArrayList<>();
+        for (int i = 0; i < end; i++) {
+            // Owners are only read on a match, since removed slots hold no stock
+            if (q[i] < level && o[i] != null) {
+                matches.add(o[i]);
+            }
+        }
+        return matches;
+    }
+}
@@ -6,26 +6,52 @@ package medicationtracking;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
 
 /**
  * Medication class represents a medication in the medication tracking system.
  * It contains attributes for medication ID, name, dosage, and quantity in stock.
+ *
+ * <p>While registered with a {@link MedicationTrackingSystem}, the quantity in stock,
+ * dosage and expiry date live in a slot of the system's {@link Inventory}, and the
+ * getters and setters read and write that slot.
  */
 public class Medication {
     // Unique identifier for the medication
     private String id;
     
     // Name of the medication (e.g., Ibuprofen)
-    private String name;
+    private volatile String name;
     
     // Dosage of the medication (e.g., 500mg)
-    private int dosage;
+    private volatile int dosage;
     
     // Quantity available in stock
-    private int quantityInStock;
+    private volatile int quantityInStock;
 
     // Expiry date of the medication
-    private LocalDate expiryDate; 
+    private volatile LocalDate expiryDate;
+
+    // Notified when a setter changes this medication (set by the tracking system)
+    private EntityChangeListener changeListener;
+
+    // Compare-and-set access to quantityInStock for lock-free dispensing
+    private static final AtomicIntegerFieldUpdater<Medication> STOCK =
+            AtomicIntegerFieldUpdater.newUpdater(Medication.class, "quantityInStock");
+
+    // Format of expiry dates, shared because formatters are immutable and costly to build
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // Number of changes so far, and the line this medication last rendered to
+    private volatile int version;
+    private volatile RenderedLine rendered;
+    private static final AtomicIntegerFieldUpdater<Medication> VERSION =
+            AtomicIntegerFieldUpdater.newUpdater(Medication.class, "version");
+
+    // The inventory slot holding the stock, dosage and expiry date while registered
+    private volatile Inventory inventory;
+    private int slot;
 
     /**
      * Constructor to initialize medication details.
@@ -54,6 +80,9 @@ public class Medication {
         if (expiryDate == null) {
             throw new IllegalArgumentException("Expiry date cannot be null.");
         }
+        if (expiryDate.toEpochDay() != (int) expiryDate.toEpochDay()) {
+            throw new IllegalArgumentException("Expiry date is out of range.");
+        }
 
         this.id = id;
         this.name = name;
@@ -87,7 +116,11 @@ public class Medication {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Medication name cannot be empty.");
         }
-        this.name = name;
+        change("name", () -> {
+            String oldName = this.name;
+            this.name = name;
+            return oldName;
+        });
     }
 
     /**
@@ -95,6 +128,13 @@ public class Medication {
      * @return Dosage of the medication in mg
      */
     public int getDosage() {
+        Inventory inv = inventory;
+        if (inv != null) {
+            int value = inv.dosage(slot);
+            if (inventory == inv) {
+                return value;
+            }
+        }
         return dosage;
     }
 
@@ -107,7 +147,14 @@ public class Medication {
         if (dosage <= 0) {
             throw new IllegalArgumentException("Dosage must be a positive value.");
         }
-        this.dosage = dosage;
+        change("dosage", () -> {
+            int oldDosage = getDosage();
+            Inventory inv = inventory;
+            if (inv == null || !inv.setDosage(this, slot, dosage)) {
+                this.dosage = dosage;
+            }
+            return oldDosage;
+        });
     }
 
     /**
@@ -115,6 +162,13 @@ public class Medication {
      * @return Quantity available in stock
      */
     public int getQuantityInStock() {
+        Inventory inv = inventory;
+        if (inv != null) {
+            int value = inv.quantity(slot);
+            if (inventory == inv) {
+                return value;
+            }
+        }
         return quantityInStock;
     }
 
@@ -127,30 +181,221 @@ public class Medication {
         if (quantityInStock < 0) {
             throw new IllegalArgumentException("Quantity in stock cannot be negative.");
         }
-        this.quantityInStock = quantityInStock;
+        change("quantityInStock", () -> {
+            int oldQuantity = getQuantityInStock();
+            Inventory inv = inventory;
+            if (inv == null || !inv.setQuantity(this, slot, quantityInStock)) {
+                this.quantityInStock = quantityInStock;
+            }
+            return oldQuantity;
+        });
+    }
+
+    /**
+     * Atomically takes units out of stock if enough are available.
+     * Does not notify the change listener; the caller records the change.
+     *
+     * @param amount The number of units to take (must be positive).
+     * @return True if the stock was taken, false if there were too few units.
+     */
+    boolean tryTakeStock(int amount) {
+        Inventory inv = inventory;
+        if (inv != null) {
+            if (!inv.tryTake(slot, amount)) {
+                return false;
+            }
+        } else {
+            int current;
+            do {
+                current = quantityInStock;
+                if (current < amount) {
+                    return false;
+                }
+            } while (!STOCK.compareAndSet(this, current, current - amount));
+        }
+        VERSION.incrementAndGet(this);
+        return true;
+    }
+
+    /**
+     * Atomically adds units to (or, when negative, removes units from) the stock.
+     * Does not notify the change listener; the caller records the change.
+     *
+     * @param delta The number of units to add.
+     * @return The new quantity in stock.
+     * @throws IllegalArgumentException If the stock would become negative or overflow.
+     */
+    int adjustStock(int delta) {
+        Inventory inv = inventory;
+        int quantity;
+        if (inv != null) {
+            quantity = inv.adjust(slot, delta);
+        } else {
+            int current;
+            do {
+                current = quantityInStock;
+                quantity = addToStock(current, delta);
+            } while (!STOCK.compareAndSet(this, current, quantity));
+        }
+        VERSION.incrementAndGet(this);
+        return quantity;
+    }
+
+    /**
+     * Adds units to a quantity in stock, rejecting results the setter would reject.
+     *
+     * @param quantity The quantity in stock.
+     * @param delta    The number of units to add.
+     * @return The new quantity in stock.
+     * @throws IllegalArgumentException If the result is negative or does not fit in an int.
+     */
+    static int addToStock(int quantity, int delta) {
+        int updated;
+        try {
+            updated = Math.addExact(quantity, delta);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Quantity in stock is out of range.");
+        }
+        if (updated < 0) {
+            throw new IllegalArgumentException("Quantity in stock cannot be negative.");
+        }
+        return updated;
+    }
+
+    /**
+     * Moves the stock, dosage and expiry date into an inventory slot holding the same values.
+     *
+     * @param inventory The inventory.
+     * @param slot The slot.
+     */
+    void attach(Inventory inventory, int slot) {
+        this.slot = slot;
+        this.inventory = inventory;
+    }
+
+    /**
+     * Copies the stock, dosage and expiry date back out of the inventory slot.
+     *
+     * @return The slot the medication occupied.
+     */
+    int detach() {
+        Inventory inv = inventory;
+        this.quantityInStock = inv.quantity(slot);
+        this.dosage = inv.dosage(slot);
+        this.expiryDate = LocalDate.ofEpochDay(inv.expiryDay(slot));
+        this.inventory = null;
+        return slot;
+    }
+
+    /**
+     * Installs the listener notified when a setter changes this {@code Medication}.
+     * 
+     * @param listener The listener, or null to stop notifications.
+     */
+    void setChangeListener(EntityChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Changes a field, through the installed listener if there is one.
+     * 
+     * @param field The name of the field.
+     * @param write Writes the new value and returns the old one.
+     */
+    private void change(String field, Supplier<Object> write) {
+        EntityChangeListener listener = changeListener;
+        if (listener == null) {
+            write.get();
+            VERSION.incrementAndGet(this);
+            return;
+        }
+        listener.applyChange(this, field, () -> {
+            Object oldValue = write.get();
+            VERSION.incrementAndGet(this);
+            return oldValue;
+        });
     }
 
     /**
      * Getter method for the expiry date of the medication.
      * @return The expiry date of the medication.
      */
+    public LocalDate getExpiryDate() {
+        Inventory inv = inventory;
+        if (inv != null) {
+            int day = inv.expiryDay(slot);
+            if (inventory == inv) {
+                return LocalDate.ofEpochDay(day);
+            }
+        }
+        return expiryDate;
+    }
+
+    /**
+     * Setter method to update the expiry date, e.g. when a delivery brings in an earlier lot.
+     * @param expiryDate - New expiry date
+     * @throws IllegalArgumentException if the expiry date is null or out of range
+     */
+    public void setExpiryDate(LocalDate expiryDate) {
+        if (expiryDate == null) {
+            throw new IllegalArgumentException("Expiry date cannot be null.");
+        }
+        if (expiryDate.toEpochDay() != (int) expiryDate.toEpochDay()) {
+            throw new IllegalArgumentException("Expiry date is out of range.");
+        }
+        change("expiryDate", () -> {
+            LocalDate oldExpiryDate = getExpiryDate();
+            Inventory inv = inventory;
+            if (inv == null || !inv.setExpiryDay(this, slot, (int) expiryDate.toEpochDay())) {
+                this.expiryDate = expiryDate;
+            }
+            return oldExpiryDate;
+        });
+    }
+
+    /**
+     * Checks whether the medication has expired as of today.
+     * @return True if the expiry date is before today.
+     */
     public boolean isExpired() {
-        return expiryDate.isBefore(LocalDate.now());
+        return isExpired(LocalDate.now());
+    }
+
+    /**
+     * Checks whether the medication has expired as of a given date.
+     * @param date The date to check against.
+     * @return True if the expiry date is before the given date.
+     */
+    public boolean isExpired(LocalDate date) {
+        Inventory inv = inventory;
+        if (inv != null) {
+            int day = inv.expiryDay(slot);
+            if (inventory == inv) {
+                return day < date.toEpochDay();
+            }
+        }
+        return expiryDate.isBefore(date);
     }
 
     /**
      * Override toString() method to display medication details in a readable format.
+     * The text is cached until the medication next changes.
      * @return Formatted string with medication details
      */
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return "Medication{" +
-                "id='" + id + '\'' +
-                ", name='" + name + '\'' +
-                ", dosage=" + dosage + "mg" +
-                ", quantityInStock=" + quantityInStock +
-                ", expiryDate=" + expiryDate.format(formatter) +
-                '}';
+        int current = version;
+        String text = RenderedLine.current(rendered, current);
+        if (text == null) {
+            text = "Medication{" +
+                    "id='" + id + '\'' +
+                    ", name='" + name + '\'' +
+                    ", dosage=" + getDosage() + "mg" +
+                    ", quantityInStock=" + getQuantityInStock() +
+                    ", expiryDate=" + getExpiryDate().format(DATE_FORMAT) +
+                    '}';
+            rendered = new RenderedLine(text, current);
+        }
+        return text;
     }
 }
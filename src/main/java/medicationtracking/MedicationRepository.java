@@ -0,0 +1,19 @@
+package medicationtracking;
+
+/**
+ * The {@code MedicationRepository} interface stores medications and changes their
+ * stock by a number of units in one step, so stock taken or added by one caller is
+ * not overwritten by another working from a stale quantity.
+ */
+public interface MedicationRepository extends Repository<Medication> {
+
+    /**
+     * Adds units to (or, when negative, removes units from) a medication's stock.
+     *
+     * @param medicationId The ID of the medication.
+     * @param delta        The number of units to add.
+     * @return True if the medication exists and was adjusted.
+     * @throws IllegalArgumentException If the stock would become negative or overflow.
+     */
+    boolean adjustStock(String medicationId, int delta);
+}
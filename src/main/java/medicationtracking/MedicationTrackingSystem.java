@@ -4,23 +4,89 @@
 
 package medicationtracking;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 /**
  * MedicationTrackingSystem class manages the lists and operations 
  * for the medication tracking system.
  * It allows adding, deleting, displaying, searching, and editing 
  * patients, doctors, medications, and prescriptions.
+ *
+ * <p>The system is thread-safe. Each entity type has its own read/write lock
+ * guarding its registry and indexes, so lookups run in parallel and writes to
+ * different entity types do not block each other. Operations spanning several
+ * types acquire the locks in a fixed order (patients, doctors, medications,
+ * prescriptions) to avoid deadlock.
  */
 public class MedicationTrackingSystem {
 
-    // === Data Storage ===
-    private List<Prescription> prescriptions = new ArrayList<>();
-    private List<Patient> patients = new ArrayList<>();
-    private List<Doctor> doctors = new ArrayList<>();
-    private List<Medication> medications = new ArrayList<>();
+    // === Data Storage (keyed by ID, iterated in insertion order) ===
+    private Registry<Patient> patients = new Registry<>(Patient::getId);
+    private Registry<Doctor> doctors = new Registry<>(Doctor::getId);
+    private Registry<Medication> medications = new Registry<>(Medication::getId);
+
+    // === Prescription Storage (columnar, indexed by patient, doctor and medication) ===
+    private PrescriptionStore prescriptions = new PrescriptionStore(this::onEntityChanged);
+
+    // === Assignment Index (doctors by assigned patient ID; guarded by the doctor lock) ===
+    private SecondaryIndex<Doctor> doctorsByPatient = new SecondaryIndex<>();
+
+    // === Name Search Indexes ===
+    private NameIndex<Patient> patientNames = new NameIndex<>(Patient::getName);
+    private NameIndex<Doctor> doctorNames = new NameIndex<>(Doctor::getName);
+    private NameIndex<Medication> medicationNames = new NameIndex<>(Medication::getName);
+
+    // === Expiry Index (medications ordered by expiry date) ===
+    private ExpiryIndex medicationExpiry;
+
+    // === Inventory (stock, dosage and expiry of every medication in primitive arrays) ===
+    private final Inventory inventory = new Inventory();
+
+    // Keeps the indexes in step with changes made through entity setters
+    private final EntityChangeListener changeListener = this::onEntityChanged;
+
+    // Receive every mutation (e.g. the write-ahead log)
+    private final List<MutationListener> mutationListeners = new CopyOnWriteArrayList<>();
+
+    // Destination of status messages, listings and reports (buffered, flushed per operation)
+    private volatile ReportSink out = ReportSinks.console();
+
+    // Manifest lines applied per medication write lock when restocking
+    private static final int RESTOCK_BATCH_SIZE = 10_000;
+
+    // === Locks (one per entity type, always acquired in this order) ===
+    private final ReentrantReadWriteLock patientLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock doctorLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock medicationLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock prescriptionLock = new ReentrantReadWriteLock();
+    // Stock changes under the medication read lock, so dispensers share this lock
+    // and whole-system readers take it exclusively to see stock and log agree
+    private final ReentrantReadWriteLock stockLock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructs an empty tracking system that uses the system clock.
+     */
+    public MedicationTrackingSystem() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructs an empty tracking system.
+     * @param clock The clock used to decide which medications have expired.
+     */
+    public MedicationTrackingSystem(Clock clock) {
+        this.medicationExpiry = new ExpiryIndex(clock);
+    }
 
     // ============================================================
     // === Patient Management Methods ===
@@ -28,30 +94,127 @@ public class MedicationTrackingSystem {
 
     /**
      * Adds a new patient to the system.
+     * Patients with an ID that is already registered are rejected.
      * @param patient The patient to add.
+     * @return True if the patient was added, false otherwise.
      */
-    public void addPatient(Patient patient) {
-        patients.add(patient);
-        System.out.println("Patient added successfully!");
+    public boolean addPatient(Patient patient) {
+        if (patient == null) {
+            message("Invalid patient details.");
+            return false;
+        }
+        checkRecording();
+        patientLock.writeLock().lock();
+        try {
+            if (!insertPatient(patient)) {
+                message("A patient with ID " + patient.getId() + " already exists.");
+                return false;
+            }
+        } finally {
+            patientLock.writeLock().unlock();
+        }
+        message("Patient added successfully!");
+        return true;
     }
 
     /**
      * Deletes a patient by ID.
      * @param patientId The ID of the patient to delete.
+     * @return True if the patient was deleted, false if it was not found.
      */
-    public void deletePatient(String patientId) {
-        patients.removeIf(patient -> patient.getId().equals(patientId));
-        System.out.println("Patient deleted successfully!");
+    public boolean deletePatient(String patientId) {
+        checkRecording();
+        patientLock.writeLock().lock();
+        try {
+            Patient removed = patients.remove(patientId);
+            if (removed != null) {
+                removed.setChangeListener(null);
+                patientNames.remove(removed);
+                unassignEverywhere(patientId);
+                publish(() -> Mutation.deleted(Mutation.Type.DELETE_PATIENT, patientId));
+                message("Patient deleted successfully!");
+                return true;
+            } else {
+                message("No patient found with ID: " + patientId);
+                return false;
+            }
+        } finally {
+            patientLock.writeLock().unlock();
+        }
     }
 
     /**
      * Displays all patients in the system.
      */
     public void displayAllPatients() {
-        if (patients.isEmpty()) {
-            System.out.println("No patients found.");
-        } else {
-            patients.forEach(System.out::println);
+        patientLock.readLock().lock();
+        try {
+            if (patients.isEmpty()) {
+                out.println("No patients found.");
+            } else {
+                patients.forEach(out::println);
+            }
+        } finally {
+            patientLock.readLock().unlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the patient with the given ID.
+     * @param patientId The ID of the patient.
+     * @return The patient, or null if there is none with that ID
+     */
+    public Patient getPatient(String patientId) {
+        patientLock.readLock().lock();
+        try {
+            return patients.get(patientId);
+        } finally {
+            patientLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all patients in insertion order.
+     * @return A copy of the patients in the system, unaffected by later changes
+     */
+    public Collection<Patient> getPatients() {
+        patientLock.readLock().lock();
+        try {
+            return patients.copy();
+        } finally {
+            patientLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of patients in the system.
+     * @return The patient count
+     */
+    public int getPatientCount() {
+        patientLock.readLock().lock();
+        try {
+            return patients.size();
+        } finally {
+            patientLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of patients in insertion order.
+     * Pass null for the first page, then a cursor from the previous page; cursors stay
+     * valid while patients are added or removed.
+     * @param cursor The cursor of the page to fetch, or null for the first page.
+     * @param pageSize The maximum number of patients on the page.
+     * @return The page, with cursors for the pages before and after it
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed.
+     */
+    public Page<Patient> getPatientPage(String cursor, int pageSize) {
+        patientLock.readLock().lock();
+        try {
+            return patients.page(cursor, pageSize);
+        } finally {
+            patientLock.readLock().unlock();
         }
     }
 
@@ -60,67 +223,195 @@ public class MedicationTrackingSystem {
      * @param name The name of the patient to search for.
      */
     public void searchPatientByName(String name) {
-        boolean found = false;
-        for (Patient patient : patients) {
-            if (patient.getName().toLowerCase().contains(name.toLowerCase())) {
-                System.out.println(patient);
-                found = true;
+        patientLock.readLock().lock();
+        try {
+            List<Patient> matches = patientNames.findContaining(name, Integer.MAX_VALUE);
+            if (matches.isEmpty()) {
+                out.println("No patients found with the name: " + name);
+            } else {
+                matches.forEach(out::println);
             }
+        } finally {
+            patientLock.readLock().unlock();
         }
-        if (!found) {
-            System.out.println("No patients found with the name: " + name);
+        out.flush();
+    }
+
+    /**
+     * Finds patients whose name contains the given text, ignoring case.
+     * @param text The text to look for.
+     * @param limit The maximum number of results.
+     * @return List of matching patients
+     */
+    public List<Patient> findPatientsByName(String text, int limit) {
+        patientLock.readLock().lock();
+        try {
+            return patientNames.findContaining(text, limit);
+        } finally {
+            patientLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds patients whose name starts with the given prefix, ignoring case.
+     * Intended for type-ahead lookups; results are sorted by name.
+     * @param prefix The prefix to look for.
+     * @param limit The maximum number of results.
+     * @return List of matching patients
+     */
+    public List<Patient> findPatientsByNamePrefix(String prefix, int limit) {
+        patientLock.readLock().lock();
+        try {
+            return patientNames.findByPrefix(prefix, limit);
+        } finally {
+            patientLock.readLock().unlock();
         }
     }
 
     /**
-     * Edits a patient's details.
+     * Edits a patient's details. All values are checked before any is changed, and the
+     * change is made under the patient write lock, so it is applied whole or not at all.
      * @param patientId The ID of the patient to edit.
      * @param newName The new name of the patient.
      * @param newAge The new age of the patient.
      * @param newPhoneNumber The new phone number of the patient.
+     * @return True if the patient was updated, false if it was not found.
+     * @throws IllegalArgumentException If the name or phone number is blank or the age is not positive.
      */
-    public void editPatient(String patientId, String newName, int newAge, String newPhoneNumber) {
-        for (Patient patient : patients) {
-            if (patient.getId().equals(patientId)) {
-                patient.setName(newName);
-                patient.setAge(newAge);
-                patient.setPhoneNumber(newPhoneNumber);
-                System.out.println("Patient details updated successfully!");
-                return;
+    public boolean editPatient(String patientId, String newName, int newAge, String newPhoneNumber) {
+        if (newName == null || newName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid Name: Name cannot be null or empty.");
+        }
+        if (newAge <= 0) {
+            throw new IllegalArgumentException("Invalid Age: Age must be a positive number.");
+        }
+        if (newPhoneNumber == null || newPhoneNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid Phone Number: Phone number cannot be null or empty.");
+        }
+        checkRecording();
+        patientLock.writeLock().lock();
+        try {
+            Patient patient = patients.get(patientId);
+            if (patient == null) {
+                message("No patient found with ID: " + patientId);
+                return false;
             }
+            patient.setName(newName);
+            patient.setAge(newAge);
+            patient.setPhoneNumber(newPhoneNumber);
+            message("Patient details updated successfully!");
+            return true;
+        } finally {
+            patientLock.writeLock().unlock();
         }
-        System.out.println("No patient found with ID: " + patientId);
     }
 
     /**
     * Assigns a patient to a doctor using their IDs.
+    * A patient is assigned to the same doctor at most once.
     * 
     * @param doctorId The unique ID of the doctor.
     * @param patientId The unique ID of the patient.
     * @return True if assignment is successful, false otherwise
     */
     public boolean assignPatientToDoctor(String doctorId, String patientId) {
-        Doctor doctor = doctors.stream()
-                .filter(d -> d.getId().equals(doctorId))
-                .findFirst()
-                .orElse(null);
-    
-        Patient patient = patients.stream()
-                .filter(p -> p.getId().equals(patientId))
-                .findFirst()
-                .orElse(null);
-    
-        if (doctor == null) {
-            System.out.println("Doctor not found.");
-            return false;
+        checkRecording();
+        patientLock.readLock().lock();
+        doctorLock.writeLock().lock();
+        try {
+            Doctor doctor = doctors.get(doctorId);
+            Patient patient = patients.get(patientId);
+
+            if (doctor == null) {
+                message("Doctor not found.");
+                return false;
+            }
+            if (patient == null) {
+                message("Patient not found.");
+                return false;
+            }
+            if (!doctor.attach(patient)) {
+                message("Patient is already assigned to this doctor.");
+                return false;
+            }
+
+            doctorsByPatient.add(patientId, doctor);
+            publish(() -> Mutation.assigned(doctorId, patientId));
+            return true;
+        } finally {
+            doctorLock.writeLock().unlock();
+            patientLock.readLock().unlock();
         }
-        if (patient == null) {
-            System.out.println("Patient not found.");
-            return false;
+    }
+
+    /**
+    * Removes a patient from a doctor's assigned patients.
+    * 
+    * @param doctorId The unique ID of the doctor.
+    * @param patientId The unique ID of the patient.
+    * @return True if the patient was assigned to the doctor and has been unassigned, false otherwise
+    */
+    public boolean unassignPatientFromDoctor(String doctorId, String patientId) {
+        checkRecording();
+        doctorLock.writeLock().lock();
+        try {
+            Doctor doctor = doctors.get(doctorId);
+            if (doctor == null) {
+                message("Doctor not found.");
+                return false;
+            }
+            if (!doctor.detach(patientId)) {
+                message("Patient is not assigned to this doctor.");
+                return false;
+            }
+
+            doctorsByPatient.remove(patientId, doctor);
+            publish(() -> Mutation.unassigned(doctorId, patientId));
+            return true;
+        } finally {
+            doctorLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the doctors a patient is assigned to, without scanning every doctor.
+     * @param patientId The ID of the patient.
+     * @return A list of the patient's doctors in the order they were assigned, empty if there are none
+     */
+    public List<Doctor> getDoctorsForPatient(String patientId) {
+        doctorLock.readLock().lock();
+        try {
+            return doctorsByPatient.get(patientId);
+        } finally {
+            doctorLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Displays the doctors a patient is assigned to.
+     * @param patientId The ID of the patient.
+     */
+    public void displayDoctorsForPatient(String patientId) {
+        List<Doctor> assigned = getDoctorsForPatient(patientId);
+        if (assigned.isEmpty()) {
+            out.println("No doctors assigned to patient ID: " + patientId);
+        } else {
+            assigned.forEach(out::println);
+        }
+        out.flush();
+    }
+
+    // Drops a deleted patient from all of its doctors; the caller holds the patient write lock
+    private void unassignEverywhere(String patientId) {
+        doctorLock.writeLock().lock();
+        try {
+            for (Doctor doctor : doctorsByPatient.get(patientId)) {
+                doctor.detach(patientId);
+                doctorsByPatient.remove(patientId, doctor);
+            }
+        } finally {
+            doctorLock.writeLock().unlock();
         }
-    
-        doctor.getAssignedPatients().add(patient);
-        return true;
     }
 
     // ============================================================
@@ -129,30 +420,132 @@ public class MedicationTrackingSystem {
 
     /**
      * Adds a new doctor to the system.
+     * Doctors with an ID that is already registered are rejected. Patients assigned to
+     * the doctor beforehand stay assigned only if they are registered with the system.
      * @param doctor The doctor to add.
+     * @return True if the doctor was added, false otherwise.
      */
-    public void addDoctor(Doctor doctor) {
-        doctors.add(doctor);
-        System.out.println("Doctor added successfully!");
+    public boolean addDoctor(Doctor doctor) {
+        if (doctor == null) {
+            message("Invalid doctor details.");
+            return false;
+        }
+        checkRecording();
+        patientLock.readLock().lock();
+        doctorLock.writeLock().lock();
+        try {
+            if (!insertDoctor(doctor)) {
+                message("A doctor with ID " + doctor.getId() + " already exists.");
+                return false;
+            }
+        } finally {
+            doctorLock.writeLock().unlock();
+            patientLock.readLock().unlock();
+        }
+        message("Doctor added successfully!");
+        return true;
     }
 
     /**
      * Deletes a doctor by ID.
      * @param doctorId The ID of the doctor to delete.
+     * @return True if the doctor was deleted, false if it was not found.
      */
-    public void deleteDoctor(String doctorId) {
-        doctors.removeIf(doctor -> doctor.getId().equals(doctorId));
-        System.out.println("Doctor deleted successfully!");
+    public boolean deleteDoctor(String doctorId) {
+        checkRecording();
+        doctorLock.writeLock().lock();
+        try {
+            Doctor removed = doctors.remove(doctorId);
+            if (removed != null) {
+                removed.setChangeListener(null);
+                doctorNames.remove(removed);
+                for (Patient patient : removed.getAssignedPatients()) {
+                    doctorsByPatient.remove(patient.getId(), removed);
+                }
+                publish(() -> Mutation.deleted(Mutation.Type.DELETE_DOCTOR, doctorId));
+                message("Doctor deleted successfully!");
+                return true;
+            } else {
+                message("No doctor found with ID: " + doctorId);
+                return false;
+            }
+        } finally {
+            doctorLock.writeLock().unlock();
+        }
     }
 
     /**
      * Displays all doctors in the system.
      */
     public void displayAllDoctors() {
-        if (doctors.isEmpty()) {
-            System.out.println("No doctors found.");
-        } else {
-            doctors.forEach(System.out::println);
+        doctorLock.readLock().lock();
+        try {
+            if (doctors.isEmpty()) {
+                out.println("No doctors found.");
+            } else {
+                doctors.forEach(out::println);
+            }
+        } finally {
+            doctorLock.readLock().unlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the doctor with the given ID.
+     * @param doctorId The ID of the doctor.
+     * @return The doctor, or null if there is none with that ID
+     */
+    public Doctor getDoctor(String doctorId) {
+        doctorLock.readLock().lock();
+        try {
+            return doctors.get(doctorId);
+        } finally {
+            doctorLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all doctors in insertion order.
+     * @return A copy of the doctors in the system, unaffected by later changes
+     */
+    public Collection<Doctor> getDoctors() {
+        doctorLock.readLock().lock();
+        try {
+            return doctors.copy();
+        } finally {
+            doctorLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of doctors in the system.
+     * @return The doctor count
+     */
+    public int getDoctorCount() {
+        doctorLock.readLock().lock();
+        try {
+            return doctors.size();
+        } finally {
+            doctorLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of doctors in insertion order.
+     * Pass null for the first page, then a cursor from the previous page; cursors stay
+     * valid while doctors are added or removed.
+     * @param cursor The cursor of the page to fetch, or null for the first page.
+     * @param pageSize The maximum number of doctors on the page.
+     * @return The page, with cursors for the pages before and after it
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed.
+     */
+    public Page<Doctor> getDoctorPage(String cursor, int pageSize) {
+        doctorLock.readLock().lock();
+        try {
+            return doctors.page(cursor, pageSize);
+        } finally {
+            doctorLock.readLock().unlock();
         }
     }
 
@@ -161,34 +554,82 @@ public class MedicationTrackingSystem {
      * @param name The name of the doctor to search for.
      */
     public void searchDoctorByName(String name) {
-        boolean found = false;
-        for (Doctor doctor : doctors) {
-            if (doctor.getName().toLowerCase().contains(name.toLowerCase())) {
-                System.out.println(doctor);
-                found = true;
+        doctorLock.readLock().lock();
+        try {
+            List<Doctor> matches = doctorNames.findContaining(name, Integer.MAX_VALUE);
+            if (matches.isEmpty()) {
+                out.println("No doctors found with the name: " + name);
+            } else {
+                matches.forEach(out::println);
             }
+        } finally {
+            doctorLock.readLock().unlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Finds doctors whose name contains the given text, ignoring case.
+     * @param text The text to look for.
+     * @param limit The maximum number of results.
+     * @return List of matching doctors
+     */
+    public List<Doctor> findDoctorsByName(String text, int limit) {
+        doctorLock.readLock().lock();
+        try {
+            return doctorNames.findContaining(text, limit);
+        } finally {
+            doctorLock.readLock().unlock();
         }
-        if (!found) {
-            System.out.println("No doctors found with the name: " + name);
+    }
+
+    /**
+     * Finds doctors whose name starts with the given prefix, ignoring case.
+     * Intended for type-ahead lookups; results are sorted by name.
+     * @param prefix The prefix to look for.
+     * @param limit The maximum number of results.
+     * @return List of matching doctors
+     */
+    public List<Doctor> findDoctorsByNamePrefix(String prefix, int limit) {
+        doctorLock.readLock().lock();
+        try {
+            return doctorNames.findByPrefix(prefix, limit);
+        } finally {
+            doctorLock.readLock().unlock();
         }
     }
 
     /**
-     * Edits a doctor's details.
+     * Edits a doctor's details. Both values are checked before either is changed, and
+     * the change is made under the doctor write lock, so it is applied whole or not at all.
      * @param doctorId The ID of the doctor to edit.
      * @param newName The new name of the doctor.
      * @param newSpecialization The new specialization of the doctor.
+     * @return True if the doctor was updated, false if it was not found.
+     * @throws IllegalArgumentException If the name or specialization is blank.
      */
-    public void editDoctor(String doctorId, String newName, String newSpecialization) {
-        for (Doctor doctor : doctors) {
-            if (doctor.getId().equals(doctorId)) {
-                doctor.setName(newName);
-                doctor.setSpecialization(newSpecialization);
-                System.out.println("Doctor details updated successfully!");
-                return;
+    public boolean editDoctor(String doctorId, String newName, String newSpecialization) {
+        if (newName == null || newName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid Name: Name cannot be null or empty.");
+        }
+        if (newSpecialization == null || newSpecialization.trim().isEmpty()) {
+            throw new IllegalArgumentException("Specialization cannot be empty.");
+        }
+        checkRecording();
+        doctorLock.writeLock().lock();
+        try {
+            Doctor doctor = doctors.get(doctorId);
+            if (doctor == null) {
+                message("No doctor found with ID: " + doctorId);
+                return false;
             }
+            doctor.setName(newName);
+            doctor.setSpecialization(newSpecialization);
+            message("Doctor details updated successfully!");
+            return true;
+        } finally {
+            doctorLock.writeLock().unlock();
         }
-        System.out.println("No doctor found with ID: " + doctorId);
     }
 
     /**
@@ -197,23 +638,22 @@ public class MedicationTrackingSystem {
     * @param doctorId The ID of the doctor whose prescriptions should be listed.
     */
     public void displayPrescriptionsByDoctor(String doctorId) {
-        System.out.println("\n=== Prescriptions Issued by Doctor: " + doctorId + " ===");
+        out.println("\n=== Prescriptions Issued by Doctor: " + doctorId + " ===");
 
-        List<Prescription> doctorPrescriptions = prescriptions.stream()
-                .filter(p -> p.getDoctorId().equals(doctorId))
-                .collect(Collectors.toList()); // ✅ Collect the filtered prescriptions
+        List<Prescription> doctorPrescriptions = getPrescriptionsByDoctor(doctorId);
     
         if (doctorPrescriptions.isEmpty()) {
-            System.out.println("No prescriptions found for doctor with ID: " + doctorId);
+            out.println("No prescriptions found for doctor with ID: " + doctorId);
         } 
         for (Prescription p : doctorPrescriptions) {
-            System.out.println("\nPrescription ID: " + p.getPrescriptionId());
-            System.out.println("Patient ID: " + p.getPatientId());
-            System.out.println("Medication ID: " + p.getMedicationId());
-            System.out.println("Quantity: " + p.getQuantity());
-            System.out.println("Instructions: " + p.getInstructions());
-            System.out.println("--------------------------------");
+            out.println("\nPrescription ID: " + p.getPrescriptionId());
+            out.println("Patient ID: " + p.getPatientId());
+            out.println("Medication ID: " + p.getMedicationId());
+            out.println("Quantity: " + p.getQuantity());
+            out.println("Instructions: " + p.getInstructions());
+            out.println("--------------------------------");
         }
+        out.flush();
     }
 
     // ============================================================
@@ -222,49 +662,190 @@ public class MedicationTrackingSystem {
 
     /**
      * Adds a new medication to the system.
+     * Medications with an ID that is already registered are rejected.
      * @param medication The medication to add.
+     * @return True if the medication was added, false otherwise.
      */
-    public void addMedication(Medication medication) {
-        medications.add(medication);
-        System.out.println("Medication added successfully!");
+    public boolean addMedication(Medication medication) {
+        if (medication == null) {
+            message("Invalid medication details.");
+            return false;
+        }
+        checkRecording();
+        medicationLock.writeLock().lock();
+        try {
+            if (!insertMedication(medication)) {
+                message("A medication with ID " + medication.getId() + " already exists.");
+                return false;
+            }
+        } finally {
+            medicationLock.writeLock().unlock();
+        }
+        message("Medication added successfully!");
+        return true;
     }
 
     /**
- * Restocks all medications in the pharmacy by increasing their quantity.
- * The restock amount is randomly generated between 5 and 15 units per medication.
- */
-    public void restockMedications() { // Restocks all medications in the pharmacy
-        if (medications.isEmpty()) {
-            System.out.println("No medications available to restock.");
-            return;
+     * Restocks medications from a supplier delivery manifest and prints a single summary.
+     * The manifest is streamed and applied in batches, each under one write lock, so
+     * files of hundreds of thousands of lines do not have to fit in memory.
+     * Lots that have already expired are rejected. A lot expiring before the stock on
+     * the shelf (or any lot delivered to an empty shelf) sets the medication's expiry date.
+     * @param manifest The manifest file; see {@link DeliveryManifest} for the format.
+     * @return The summary of what was applied and what was rejected
+     * @throws IOException If the manifest cannot be read.
+     */
+    public RestockSummary restockFromManifest(Path manifest) throws IOException {
+        RestockSummary summary = new RestockSummary();
+        try (DeliveryManifest reader = new DeliveryManifest(manifest)) {
+            List<DeliveryManifest.Entry> batch;
+            while (!(batch = reader.nextBatch(RESTOCK_BATCH_SIZE)).isEmpty()) {
+                applyRestockBatch(batch, summary);
+            }
+            summary.malformed(reader.getMalformedCount(), reader.getMalformedLines());
         }
+        message(summary);
+        return summary;
+    }
 
-        for (Medication med : medications) { // Restocks each medication
-            int addedStock = (int) (Math.random() * 11) + 5; // Adds between 5-15 units
-            med.setQuantityInStock(med.getQuantityInStock() + addedStock);
-            System.out.println("Restocked " + med.getName() + " by " + addedStock + " units. New total: " + med.getQuantityInStock());
+    // Adds one batch of lots to stock under a single medication write lock,
+    // logging one stock change per medication rather than one per line
+    private void applyRestockBatch(List<DeliveryManifest.Entry> batch, RestockSummary summary) {
+        LocalDate today = medicationExpiry.today();
+        Map<String, Integer> added = new LinkedHashMap<>();
+        checkRecording();
+        medicationLock.writeLock().lock();
+        try {
+            for (DeliveryManifest.Entry entry : batch) {
+                Medication medication = medications.get(entry.medicationId);
+                if (medication == null) {
+                    summary.unknown(entry.medicationId);
+                    continue;
+                }
+                if (entry.lotExpiry.isBefore(today)) {
+                    summary.expired();
+                    continue;
+                }
+                LocalDate shelfExpiry = medication.getExpiryDate();
+                boolean emptyShelf = medication.getQuantityInStock() == 0;
+                try {
+                    medication.adjustStock(entry.quantity);
+                } catch (IllegalArgumentException e) {
+                    summary.overflowing();
+                    continue;
+                }
+                if ((emptyShelf || entry.lotExpiry.isBefore(shelfExpiry)) && !entry.lotExpiry.equals(shelfExpiry)) {
+                    medication.setExpiryDate(entry.lotExpiry);
+                }
+                added.merge(entry.medicationId, entry.quantity, Integer::sum);
+                summary.applied(entry.medicationId, entry.quantity);
+            }
+            added.forEach((id, quantity) -> publish(() -> Mutation.stockAdjusted(id, quantity)));
+        } finally {
+            medicationLock.writeLock().unlock();
         }
-        System.out.println("All medications have been restocked.");
     }
 
 
     /**
      * Deletes a medication by ID.
      * @param medicationId The ID of the medication to delete.
+     * @return True if the medication was deleted, false if it was not found.
      */
-    public void deleteMedication(String medicationId) {
-        medications.removeIf(medication -> medication.getId().equals(medicationId));
-        System.out.println("Medication deleted successfully!");
+    public boolean deleteMedication(String medicationId) {
+        checkRecording();
+        medicationLock.writeLock().lock();
+        try {
+            Medication removed = medications.remove(medicationId);
+            if (removed != null) {
+                removed.setChangeListener(null);
+                medicationNames.remove(removed);
+                publish(() -> Mutation.deleted(Mutation.Type.DELETE_MEDICATION, medicationId));
+                medicationExpiry.remove(removed);
+                inventory.remove(removed);
+                message("Medication deleted successfully!");
+                return true;
+            } else {
+                message("No medication found with ID: " + medicationId);
+                return false;
+            }
+        } finally {
+            medicationLock.writeLock().unlock();
+        }
     }
 
     /**
      * Displays all medications in the system.
      */
     public void displayAllMedications() {
-        if (medications.isEmpty()) {
-            System.out.println("No medications found.");
-        } else {
-            medications.forEach(System.out::println);
+        medicationLock.readLock().lock();
+        try {
+            if (medications.isEmpty()) {
+                out.println("No medications found.");
+            } else {
+                medications.forEach(out::println);
+            }
+        } finally {
+            medicationLock.readLock().unlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the medication with the given ID.
+     * @param medicationId The ID of the medication.
+     * @return The medication, or null if there is none with that ID
+     */
+    public Medication getMedication(String medicationId) {
+        medicationLock.readLock().lock();
+        try {
+            return medications.get(medicationId);
+        } finally {
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all medications in insertion order.
+     * @return A copy of the medications in the system, unaffected by later changes
+     */
+    public Collection<Medication> getMedications() {
+        medicationLock.readLock().lock();
+        try {
+            return medications.copy();
+        } finally {
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of medications in the system.
+     * @return The medication count
+     */
+    public int getMedicationCount() {
+        medicationLock.readLock().lock();
+        try {
+            return medications.size();
+        } finally {
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of medications in insertion order.
+     * Pass null for the first page, then a cursor from the previous page; cursors stay
+     * valid while medications are added or removed.
+     * @param cursor The cursor of the page to fetch, or null for the first page.
+     * @param pageSize The maximum number of medications on the page.
+     * @return The page, with cursors for the pages before and after it
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed.
+     */
+    public Page<Medication> getMedicationPage(String cursor, int pageSize) {
+        medicationLock.readLock().lock();
+        try {
+            return medications.page(cursor, pageSize);
+        } finally {
+            medicationLock.readLock().unlock();
         }
     }
 
@@ -273,55 +854,277 @@ public class MedicationTrackingSystem {
      * @param name The name of the medication to search for.
      */
     public void searchMedicationByName(String name) {
-        boolean found = false;
-        for (Medication medication : medications) {
-            if (medication.getName().toLowerCase().contains(name.toLowerCase())) {
-                System.out.println(medication);
-                found = true;
+        medicationLock.readLock().lock();
+        try {
+            List<Medication> matches = medicationNames.findContaining(name, Integer.MAX_VALUE);
+            if (matches.isEmpty()) {
+                out.println("No medications found with the name: " + name);
+            } else {
+                matches.forEach(out::println);
             }
+        } finally {
+            medicationLock.readLock().unlock();
         }
-        if (!found) {
-            System.out.println("No medications found with the name: " + name);
+        out.flush();
+    }
+
+    /**
+     * Finds medications whose name contains the given text, ignoring case.
+     * @param text The text to look for.
+     * @param limit The maximum number of results.
+     * @return List of matching medications
+     */
+    public List<Medication> findMedicationsByName(String text, int limit) {
+        medicationLock.readLock().lock();
+        try {
+            return medicationNames.findContaining(text, limit);
+        } finally {
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds medications whose name starts with the given prefix, ignoring case.
+     * Intended for type-ahead lookups; results are sorted by name.
+     * @param prefix The prefix to look for.
+     * @param limit The maximum number of results.
+     * @return List of matching medications
+     */
+    public List<Medication> findMedicationsByNamePrefix(String prefix, int limit) {
+        medicationLock.readLock().lock();
+        try {
+            return medicationNames.findByPrefix(prefix, limit);
+        } finally {
+            medicationLock.readLock().unlock();
         }
     }
 
     /**
-     * Edits a medication's details.
+     * Edits a medication's details. All values are checked before any is changed, and
+     * the change is made under the medication write lock, so it is applied whole or not
+     * at all.
      * @param medicationId The ID of the medication to edit.
      * @param newName The new name of the medication.
      * @param newDosage The new dosage of the medication.
      * @param newQuantity The new quantity of the medication.
+     * @return True if the medication was updated, false if it was not found.
+     * @throws IllegalArgumentException If the name is blank, the dosage is not positive or the quantity is negative.
      */
-    public void editMedication(String medicationId, String newName, int newDosage, int newQuantity) {
-        for (Medication medication : medications) {
-            if (medication.getId().equals(medicationId)) {
-                medication.setName(newName);
-                medication.setDosage(newDosage);
-                medication.setQuantityInStock(newQuantity);
-                System.out.println("Medication details updated successfully!");
-                return;
+    public boolean editMedication(String medicationId, String newName, int newDosage, int newQuantity) {
+        if (newName == null || newName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Medication name cannot be empty.");
+        }
+        if (newDosage <= 0) {
+            throw new IllegalArgumentException("Dosage must be a positive value.");
+        }
+        if (newQuantity < 0) {
+            throw new IllegalArgumentException("Quantity in stock cannot be negative.");
+        }
+        checkRecording();
+        medicationLock.writeLock().lock();
+        try {
+            Medication medication = medications.get(medicationId);
+            if (medication == null) {
+                message("No medication found with ID: " + medicationId);
+                return false;
             }
+            medication.setName(newName);
+            medication.setDosage(newDosage);
+            medication.setQuantityInStock(newQuantity);
+            message("Medication details updated successfully!");
+            return true;
+        } finally {
+            medicationLock.writeLock().unlock();
         }
-        System.out.println("No medication found with ID: " + medicationId);
     }
 
     /**
     * Checks and displays expired medications.
     */
     public void checkExpiredMedications() {
-        System.out.println("\n=== Expired Medications ===");
+        out.println("\n=== Expired Medications ===");
 
-        List<Medication> expiredMedications = medications.stream()
-            .filter(Medication::isExpired)
-            .collect(Collectors.toList());
+        List<Medication> expiredMedications = getExpiredMedications();
 
         if (expiredMedications.isEmpty()) {
-            System.out.println("No expired medications found.");
+            out.println("No expired medications found.");
         } else {
             for (Medication med : expiredMedications) {
-                System.out.println(med);
+                out.println(med);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+    * Displays medications that are still valid but expire within a number of days.
+    * @param days The size of the window in days.
+    */
+    public void checkExpiringMedications(int days) {
+        out.println("\n=== Medications Expiring Within " + days + " Days ===");
+
+        List<Medication> expiringMedications = getMedicationsExpiringWithin(days);
+
+        if (expiringMedications.isEmpty()) {
+            out.println("No medications expiring soon.");
+        } else {
+            for (Medication med : expiringMedications) {
+                out.println(med);
             }
         }
+        out.flush();
+    }
+
+    /**
+     * Returns the medications that have expired as of today.
+     * The result is cached and only topped up when the date rolls over.
+     * @return List of expired medications
+     */
+    public List<Medication> getExpiredMedications() {
+        medicationLock.readLock().lock();
+        try {
+            return medicationExpiry.expired();
+        } finally {
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the medications that have expired as of a given date.
+     * @param date The date to check against.
+     * @return List of medications whose expiry date is before the date, earliest first
+     */
+    public List<Medication> getExpiredMedications(LocalDate date) {
+        medicationLock.readLock().lock();
+        try {
+            return medicationExpiry.expiredAsOf(date);
+        } finally {
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the medications that are still valid today but expire within a number of days.
+     * @param days The size of the window in days.
+     * @return List of medications expiring soon, earliest first
+     */
+    public List<Medication> getMedicationsExpiringWithin(int days) {
+        if (days < 0) {
+            throw new IllegalArgumentException("Days must not be negative.");
+        }
+        medicationLock.readLock().lock();
+        try {
+            return medicationExpiry.expiringWithin(days);
+        } finally {
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    // ============================================================
+    // === Inventory ===
+    // ============================================================
+
+    /**
+     * Displays stock totals, the medications below a reorder level and the units
+     * expiring within a number of days.
+     * @param reorderLevel Medications with fewer units in stock than this are listed.
+     * @param days The size of the expiry window in days.
+     */
+    public void displayInventorySummary(int reorderLevel, int days) {
+        long units;
+        long milligrams;
+        long expiring;
+        List<Medication> low;
+        medicationLock.readLock().lock();
+        stockLock.writeLock().lock();
+        try {
+            units = inventory.totalUnits();
+            milligrams = inventory.totalMilligrams();
+            expiring = unitsExpiringWithin(days);
+            low = inventory.below(reorderLevel);
+        } finally {
+            stockLock.writeLock().unlock();
+            medicationLock.readLock().unlock();
+        }
+        out.println("\n=== Inventory Summary ===");
+        out.println("Units in stock: " + units);
+        out.println("Milligrams in stock: " + milligrams);
+        out.println("Units expiring within " + days + " days: " + expiring);
+        out.println("Medications below " + reorderLevel + " units: " + low.size());
+        low.forEach(out::println);
+        out.flush();
+    }
+
+    /**
+     * Returns the total number of units in stock across all medications.
+     * Dispensing is held off while the stock is added up, so the total is exact.
+     * @return The total units in stock
+     */
+    public long getTotalUnitsInStock() {
+        medicationLock.readLock().lock();
+        stockLock.writeLock().lock();
+        try {
+            return inventory.totalUnits();
+        } finally {
+            stockLock.writeLock().unlock();
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the total milligrams of medication in stock, i.e. units times dosage.
+     * @return The total milligrams in stock
+     */
+    public long getTotalMilligramsInStock() {
+        medicationLock.readLock().lock();
+        stockLock.writeLock().lock();
+        try {
+            return inventory.totalMilligrams();
+        } finally {
+            stockLock.writeLock().unlock();
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of units in stock of medications that are still valid today
+     * but expire within a number of days.
+     * @param days The size of the window in days.
+     * @return The units expiring soon
+     * @throws IllegalArgumentException If the number of days is negative.
+     */
+    public long getUnitsExpiringWithin(int days) {
+        medicationLock.readLock().lock();
+        stockLock.writeLock().lock();
+        try {
+            return unitsExpiringWithin(days);
+        } finally {
+            stockLock.writeLock().unlock();
+            medicationLock.readLock().unlock();
+        }
+    }
+
+    // Same window as getMedicationsExpiringWithin; the caller holds the medication read lock
+    private long unitsExpiringWithin(int days) {
+        if (days < 0) {
+            throw new IllegalArgumentException("Days must not be negative.");
+        }
+        LocalDate today = medicationExpiry.today();
+        return inventory.unitsExpiringBetween(today, today.plusDays(days));
+    }
+
+    /**
+     * Returns the medications with fewer units in stock than a reorder level.
+     * @param reorderLevel The reorder level.
+     * @return List of medications below the level, in insertion order
+     */
+    public List<Medication> getMedicationsBelowStock(int reorderLevel) {
+        medicationLock.readLock().lock();
+        try {
+            return inventory.below(reorderLevel);
+        } finally {
+            medicationLock.readLock().unlock();
+        }
     }
 
     // ============================================================
@@ -330,159 +1133,882 @@ public class MedicationTrackingSystem {
 
     /**
      * Adds a new prescription to the system.
+     * Prescriptions with an ID that is already registered are rejected.
      * @param prescription The prescription to add.
+     * @return True if the prescription was added, false otherwise.
      */
-    public void addPrescription(Prescription prescription) {
-        if (prescription == null) {
-            System.out.println("Invalid prescription details.");
-            return;
+    public boolean addPrescription(Prescription prescription) {
+        if (prescription == null || prescription.getPrescriptionId() == null
+                || prescription.getPrescriptionId().trim().isEmpty()) {
+            message("Invalid prescription details.");
+            return false;
+        }
+        checkRecording();
+        prescriptionLock.writeLock().lock();
+        try {
+            if (!insertPrescription(prescription)) {
+                message("A prescription with ID " + prescription.getPrescriptionId() + " already exists.");
+                return false;
+            }
+        } finally {
+            prescriptionLock.writeLock().unlock();
+        }
+        message("Prescription added successfully!");
+        return true;
+    }
+
+    /**
+     * Edits a prescription's quantity and instructions in one step. Both values are
+     * checked before either is changed, and the change is made under the prescription
+     * write lock, so no reader or other editor sees half of it.
+     * @param prescriptionId The ID of the prescription to edit.
+     * @param newQuantity The new quantity, or null to keep the current one.
+     * @param newInstructions The new instructions, or null to keep the current ones.
+     * @return True if the prescription was updated, false if it was not found.
+     * @throws IllegalArgumentException If the quantity is not positive or the instructions are blank.
+     */
+    public boolean editPrescription(String prescriptionId, Integer newQuantity, String newInstructions) {
+        if (newQuantity != null && newQuantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be a positive value.");
+        }
+        if (newInstructions != null && newInstructions.trim().isEmpty()) {
+            throw new IllegalArgumentException("Instructions cannot be null or empty.");
+        }
+        checkRecording();
+        prescriptionLock.writeLock().lock();
+        try {
+            Prescription prescription = prescriptions.get(prescriptionId);
+            if (prescription == null) {
+                message("No prescription found with ID: " + prescriptionId);
+                return false;
+            }
+            if (newQuantity != null) {
+                prescription.setQuantity(newQuantity);
+            }
+            if (newInstructions != null) {
+                prescription.setInstructions(newInstructions);
+            }
+            message("Prescription details updated successfully!");
+            return true;
+        } finally {
+            prescriptionLock.writeLock().unlock();
         }
-        prescriptions.add(prescription);
-        System.out.println("Prescription added successfully!");
     }
 
     /**
      * Deletes a prescription by ID.
      * @param prescriptionId The ID of the prescription to delete.
+     * @return True if the prescription was deleted, false if it was not found.
      */
-    public void deletePrescription(String prescriptionId) {
+    public boolean deletePrescription(String prescriptionId) {
         if (prescriptionId == null || prescriptionId.trim().isEmpty()) {
-            System.out.println("Invalid prescription ID.");
-            return;
+            message("Invalid prescription ID.");
+            return false;
         }
-        boolean removed = prescriptions.removeIf(prescription -> prescription.getPrescriptionId().equals(prescriptionId));
-        if (removed) {
-            System.out.println("Prescription deleted successfully!");
-        } else {
-            System.out.println("No prescription found with ID: " + prescriptionId);
+        checkRecording();
+        prescriptionLock.writeLock().lock();
+        try {
+            if (prescriptions.remove(prescriptionId)) {
+                prescriptions = prescriptions.compacted();
+                publish(() -> Mutation.deleted(Mutation.Type.DELETE_PRESCRIPTION, prescriptionId));
+                message("Prescription deleted successfully!");
+                return true;
+            } else {
+                message("No prescription found with ID: " + prescriptionId);
+                return false;
+            }
+        } finally {
+            prescriptionLock.writeLock().unlock();
         }
     }
+
     /**
     * Displays all prescriptions for a specific patient.
     * 
     * @param patientId The ID of the patient whose prescriptions are to be listed.
     */
     public void displayPrescriptionsByPatient(String patientId) {
-        System.out.println("\n=== Prescriptions for Patient: " + patientId + " ===");
+        out.println("\n=== Prescriptions for Patient: " + patientId + " ===");
 
-        List<Prescription> patientPrescriptions = prescriptions.stream()
-                .filter(p -> p.getPatientId().equals(patientId))
-                .collect(Collectors.toList()); // ✅ Collect the filtered prescriptions
+        List<Prescription> patientPrescriptions = getPrescriptionsByPatient(patientId);
     
         if (patientPrescriptions.isEmpty()) {
-            System.out.println("No prescriptions found for patient with ID: " + patientId);
+            out.println("No prescriptions found for patient with ID: " + patientId);
         } 
         for (Prescription p : patientPrescriptions) {
-            System.out.println("\nPrescription ID: " + p.getPrescriptionId());
-            System.out.println("Doctor ID: " + p.getDoctorId());
-            System.out.println("Medication ID: " + p.getMedicationId());
-            System.out.println("Quantity: " + p.getQuantity());
-            System.out.println("Instructions: " + p.getInstructions());
-            System.out.println("--------------------------------");
+            out.println("\nPrescription ID: " + p.getPrescriptionId());
+            out.println("Doctor ID: " + p.getDoctorId());
+            out.println("Medication ID: " + p.getMedicationId());
+            out.println("Quantity: " + p.getQuantity());
+            out.println("Instructions: " + p.getInstructions());
+            out.println("--------------------------------");
+        }
+        out.flush();
+    }
+
+    /**
+    * Displays all prescriptions for a specific medication, i.e. who is on it.
+    * 
+    * @param medicationId The ID of the medication whose prescriptions are to be listed.
+    */
+    public void displayPrescriptionsByMedication(String medicationId) {
+        out.println("\n=== Prescriptions for Medication: " + medicationId + " ===");
+
+        List<Prescription> medicationPrescriptions = getPrescriptionsByMedication(medicationId);
+
+        if (medicationPrescriptions.isEmpty()) {
+            out.println("No prescriptions found for medication with ID: " + medicationId);
+        }
+        for (Prescription p : medicationPrescriptions) {
+            out.println("\nPrescription ID: " + p.getPrescriptionId());
+            out.println("Patient ID: " + p.getPatientId());
+            out.println("Doctor ID: " + p.getDoctorId());
+            out.println("Quantity: " + p.getQuantity());
+            out.println("Instructions: " + p.getInstructions());
+            out.println("--------------------------------");
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the prescriptions written for a patient, in the order they were added.
+     * @param patientId The ID of the patient.
+     * @return List of the patient's prescriptions, empty if there are none
+     */
+    public List<Prescription> getPrescriptionsByPatient(String patientId) {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.byPatient(patientId);
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the prescriptions issued by a doctor, in the order they were added.
+     * @param doctorId The ID of the doctor.
+     * @return List of the doctor's prescriptions, empty if there are none
+     */
+    public List<Prescription> getPrescriptionsByDoctor(String doctorId) {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.byDoctor(doctorId);
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the prescriptions for a medication, in the order they were added.
+     * @param medicationId The ID of the medication.
+     * @return List of prescriptions for the medication, empty if there are none
+     */
+    public List<Prescription> getPrescriptionsByMedication(String medicationId) {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.byMedication(medicationId);
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of prescriptions in the system.
+     * @return The prescription count
+     */
+    public int getPrescriptionCount() {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.size();
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the prescription with the given ID.
+     * @param prescriptionId The ID of the prescription.
+     * @return The prescription, or null if there is none with that ID
+     */
+    public Prescription getPrescription(String prescriptionId) {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.get(prescriptionId);
+        } finally {
+            prescriptionLock.readLock().unlock();
         }
     }
 
     /**
-    * Returns the list of all prescriptions.
-     * @return List of prescriptions in the system
+    * Returns all prescriptions in insertion order.
+     * @return A copy of the prescriptions in the system, unaffected by later changes
     */
-    public List<Prescription> getPrescriptions() {
-        return prescriptions;
+    public Collection<Prescription> getPrescriptions() {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.copy();
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
     }
 
+    /**
+     * Returns one page of prescriptions in insertion order.
+     * Pass null for the first page, then a cursor from the previous page; cursors stay
+     * valid while prescriptions are added or removed.
+     * @param cursor The cursor of the page to fetch, or null for the first page.
+     * @param pageSize The maximum number of prescriptions on the page.
+     * @return The page, with cursors for the pages before and after it
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed.
+     */
+    public Page<Prescription> getPrescriptionPage(String cursor, int pageSize) {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.page(cursor, pageSize);
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
+    }
 
     // ============================================================
-    // === Report Methods ===
+    // === Prescription Statistics ===
     // ============================================================
 
     /**
-    * Displays all prescriptions in a detailed format.
-    * Lists patient, doctor, medication, dosage, and instructions.
-    */
-    
-    public void generatePrescriptionReport() {
-        System.out.println("\n=== All Prescriptions ===");
+     * Returns the number of prescriptions currently held by a patient.
+     * The count is kept up to date as prescriptions change, so this does not scan them.
+     * @param patientId The ID of the patient.
+     * @return The prescription count, 0 if the patient has none
+     */
+    public int getPrescriptionCountForPatient(String patientId) {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.countForPatient(patientId);
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
+    }
 
-        if (prescriptions.isEmpty()) {
-            System.out.println("No prescriptions found.");
-            return;
-        } 
-        
-        for (Prescription p : prescriptions) {
-            // Get Patient (If Prescription stores only an ID, find Patient object)
-            Patient patient = patients.stream()
-                .filter(pt -> pt.getId().equals(p.getPatientId())) // ✅ Compare IDs correctly
-                .findFirst()
-                .orElse(null);
-    
-            // Get Doctor (If Prescription stores only an ID, find Doctor object)
-            Doctor doctor = doctors.stream()
-                .filter(dr -> dr.getId().equals(p.getDoctorId()))
-                .findFirst()
-                .orElse(null);
-    
-            // Get Medication (If Prescription stores only an ID, find Medication object)
-            Medication medication = medications.stream()
-                .filter(med -> med.getId().equals(p.getMedicationId()))
-                .findFirst()
-                .orElse(null);
-    
-            System.out.println("\nPatient: " + (patient != null ? patient.getName() : "Unknown"));
-            System.out.println("Doctor: " + (doctor != null ? doctor.getName() : "Unknown"));
-            System.out.println("Medication: " + (medication != null ? medication.getName() : "Unknown"));
-            System.out.println("Quantity: " + p.getQuantity());
-            System.out.println("Instructions: " + p.getInstructions());
-            System.out.println("--------------------------------");
+    /**
+     * Returns the number of prescriptions issued by a doctor.
+     * The count is kept up to date as prescriptions change, so this does not scan them.
+     * @param doctorId The ID of the doctor.
+     * @return The prescription count, 0 if the doctor has issued none
+     */
+    public int getPrescriptionCountForDoctor(String doctorId) {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.countForDoctor(doctorId);
+        } finally {
+            prescriptionLock.readLock().unlock();
         }
     }
 
-      /**
-     * Generates a system-wide report displaying all patients, doctors, medications, and prescriptions.
-     * If any section is empty, it displays a message indicating no records found.
+    /**
+     * Returns the total quantity prescribed of a medication across all prescriptions.
+     * The total is kept up to date as prescriptions are added, removed and edited.
+     * @param medicationId The ID of the medication.
+     * @return The total quantity, 0 if nothing is prescribed
      */
-    public void generateSystemReport() {
-        System.out.println("\n=== System-WIDE Report ===");
-        
-        // Print all patients 
-        System.out.println("\n=== All Patients ===");
-        if (patients.isEmpty()) {
-            System.out.println("No patients found.");
+    public long getQuantityPrescribed(String medicationId) {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.quantityForMedication(medicationId);
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recomputes the prescription counts and quantity totals from scratch and compares
+     * them with the ones kept up to date incrementally.
+     * @return One line per count or total that has drifted, empty if all agree
+     */
+    public List<String> verifyPrescriptionStatistics() {
+        prescriptionLock.readLock().lock();
+        try {
+            return prescriptions.verifyStatistics();
+        } finally {
+            prescriptionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Verifies the prescription statistics and displays any drift found.
+     * @return The number of counts or totals that have drifted
+     */
+    public int checkPrescriptionStatistics() {
+        List<String> drift = verifyPrescriptionStatistics();
+        out.println("\n=== Prescription Statistics Check ===");
+        if (drift.isEmpty()) {
+            out.println("All prescription counts and totals are consistent.");
         } else {
-            for (Patient p : patients) {
-                System.out.println(p);
+            drift.forEach(out::println);
+        }
+        out.flush();
+        return drift.size();
+    }
+
+    // ============================================================
+    // === Dispensing ===
+    // ============================================================
+
+    /**
+     * Dispenses what remains of a prescription, taking it out of the medication's stock.
+     * A prescription that has been dispensed in full is not dispensed again.
+     * The stock and the prescription's filled quantity are changed with compare-and-set,
+     * so many threads can dispense at once without losing updates or overselling.
+     * @param prescriptionId The ID of the prescription to fill.
+     * @return The outcome; stock is only taken when it is {@link DispenseResult#DISPENSED}
+     */
+    public DispenseResult dispense(String prescriptionId) {
+        StockReservation reservation = reserve(prescriptionId, null);
+        if (reservation.isReserved()) {
+            reservation.commit();
+        }
+        return reservation.getResult();
+    }
+
+    /**
+     * Reserves part or all of a prescription's quantity, for orders filled in steps.
+     * The stock is deducted and the units count as filled immediately, so no more than
+     * the prescribed quantity is ever reserved in total; {@link StockReservation#commit()}
+     * hands the stock out and {@link StockReservation#cancel()} puts it back. Reservations
+     * still pending when the system stops count as dispensed on recovery.
+     * @param prescriptionId The ID of the prescription to fill.
+     * @param quantity The number of units to reserve (must be positive).
+     * @return The reservation; check {@link StockReservation#isReserved()} before using it
+     * @throws IllegalArgumentException If the quantity is not positive.
+     */
+    public StockReservation reserve(String prescriptionId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be a positive value.");
+        }
+        return reserve(prescriptionId, Integer.valueOf(quantity));
+    }
+
+    // Fills units of a prescription and takes them from stock, or all that remains when
+    // the quantity is null. The medication and prescription read locks keep deletes out.
+    private StockReservation reserve(String prescriptionId, Integer quantity) {
+        checkRecording();
+        medicationLock.readLock().lock();
+        prescriptionLock.readLock().lock();
+        stockLock.readLock().lock();
+        try {
+            Prescription prescription = prescriptions.get(prescriptionId);
+            if (prescription == null) {
+                return new StockReservation(this, prescriptionId, null, 0, DispenseResult.UNKNOWN_PRESCRIPTION);
+            }
+            int units = quantity != null ? quantity : prescription.getRemainingQuantity();
+            Medication medication = medications.get(prescription.getMedicationId());
+            DispenseResult result;
+            if (medication == null) {
+                result = DispenseResult.UNKNOWN_MEDICATION;
+            } else if (medication.isExpired(medicationExpiry.today())) {
+                result = DispenseResult.EXPIRED;
+            } else if (units <= 0 || !prescription.tryFill(units)) {
+                result = DispenseResult.ALREADY_FILLED;
+            } else if (!medication.tryTakeStock(units)) {
+                prescription.addFilled(-units);
+                result = DispenseResult.INSUFFICIENT_STOCK;
+            } else {
+                publish(() -> Mutation.filled(medication.getId(), -units, prescriptionId));
+                result = DispenseResult.DISPENSED;
             }
+            return new StockReservation(this, prescriptionId, medication, units, result);
+        } finally {
+            stockLock.readLock().unlock();
+            prescriptionLock.readLock().unlock();
+            medicationLock.readLock().unlock();
         }
+    }
 
-        // Print all doctors
-        System.out.println("\n=== All Doctors ===");
-        if (doctors.isEmpty()) {
-            System.out.println("No doctors found.");
-        } else {
-            for (Doctor d : doctors) {
-                System.out.println(d);
+    /**
+     * Returns filled units of a prescription to its medication's stock (or, when
+     * negative, fills and takes them) without checking availability or what remains.
+     * Used to cancel reservations and to replay logged fills; a prescription that no
+     * longer exists is skipped.
+     * @param medicationId The ID of the medication.
+     * @param delta The number of units returned to stock.
+     * @param prescriptionId The ID of the prescription the units were filled for.
+     * @return True if the medication exists and its stock was adjusted.
+     * @throws IllegalArgumentException If the stock would become negative or overflow.
+     */
+    boolean adjustFill(String medicationId, int delta, String prescriptionId) {
+        checkRecording();
+        medicationLock.readLock().lock();
+        prescriptionLock.readLock().lock();
+        stockLock.readLock().lock();
+        try {
+            Medication medication = medications.get(medicationId);
+            if (medication == null) {
+                return false;
             }
+            medication.adjustStock(delta);
+            Prescription prescription = prescriptions.get(prescriptionId);
+            if (prescription != null) {
+                prescription.addFilled(-delta);
+            }
+            publish(() -> Mutation.filled(medicationId, delta, prescriptionId));
+            return true;
+        } finally {
+            stockLock.readLock().unlock();
+            prescriptionLock.readLock().unlock();
+            medicationLock.readLock().unlock();
         }
+    }
 
-        // Print all medications
-        System.out.println("\n=== All Medications ===");
-        if (medications.isEmpty()) {
-            System.out.println("No medications found.");
-        } else {
-            for (Medication m : medications) {
-                System.out.println(m);
+    /**
+     * Adds (or, when negative, removes) units of stock without checking availability.
+     * Used to replay logged stock changes.
+     * @param medicationId The ID of the medication.
+     * @param delta The number of units to add.
+     * @return True if the medication exists and was adjusted.
+     * @throws IllegalArgumentException If the stock would become negative or overflow.
+     */
+    boolean adjustStock(String medicationId, int delta) {
+        checkRecording();
+        medicationLock.readLock().lock();
+        stockLock.readLock().lock();
+        try {
+            Medication medication = medications.get(medicationId);
+            if (medication == null) {
+                return false;
             }
+            medication.adjustStock(delta);
+            publish(() -> Mutation.stockAdjusted(medicationId, delta));
+            return true;
+        } finally {
+            stockLock.readLock().unlock();
+            medicationLock.readLock().unlock();
         }
+    }
 
-        // Print all prescriptions
-        System.out.println("\n=== All Prescriptions ===");
-        if (prescriptions.isEmpty()) {
-            System.out.println("No prescriptions found.");
-        } else {
-            for (Prescription p : prescriptions) {
-                System.out.println(p);
+    // ============================================================
+    // === Bulk Loading ===
+    // ============================================================
+
+    /**
+     * Adds a batch of patients under one write lock, without printing per row.
+     * @param batch The patients to add, in order.
+     * @return For each patient, null if it was added or the reason it was rejected
+     */
+    String[] addPatients(List<Patient> batch) {
+        String[] rejected = new String[batch.size()];
+        checkRecording();
+        patientLock.writeLock().lock();
+        try {
+            for (int i = 0; i < rejected.length; i++) {
+                if (!insertPatient(batch.get(i))) {
+                    rejected[i] = "A patient with ID " + batch.get(i).getId() + " already exists.";
+                }
+            }
+        } finally {
+            patientLock.writeLock().unlock();
+        }
+        return rejected;
+    }
+
+    /**
+     * Adds a batch of doctors under one write lock, without printing per row.
+     * @param batch The doctors to add, in order.
+     * @return For each doctor, null if it was added or the reason it was rejected
+     */
+    String[] addDoctors(List<Doctor> batch) {
+        String[] rejected = new String[batch.size()];
+        checkRecording();
+        patientLock.readLock().lock();
+        doctorLock.writeLock().lock();
+        try {
+            for (int i = 0; i < rejected.length; i++) {
+                if (!insertDoctor(batch.get(i))) {
+                    rejected[i] = "A doctor with ID " + batch.get(i).getId() + " already exists.";
+                }
+            }
+        } finally {
+            doctorLock.writeLock().unlock();
+            patientLock.readLock().unlock();
+        }
+        return rejected;
+    }
+
+    /**
+     * Adds a batch of medications under one write lock, without printing per row.
+     * @param batch The medications to add, in order.
+     * @return For each medication, null if it was added or the reason it was rejected
+     */
+    String[] addMedications(List<Medication> batch) {
+        String[] rejected = new String[batch.size()];
+        checkRecording();
+        medicationLock.writeLock().lock();
+        try {
+            for (int i = 0; i < rejected.length; i++) {
+                if (!insertMedication(batch.get(i))) {
+                    rejected[i] = "A medication with ID " + batch.get(i).getId() + " already exists.";
+                }
             }
+        } finally {
+            medicationLock.writeLock().unlock();
         }
+        return rejected;
+    }
 
-        System.out.println("\n=== End of Report ===");
+    /**
+     * Adds a batch of prescriptions under one write lock, without printing per row.
+     * Prescriptions whose patient, doctor or medication does not exist are rejected.
+     * @param batch The prescriptions to add, in order.
+     * @return For each prescription, null if it was added or the reason it was rejected
+     */
+    String[] addPrescriptions(List<Prescription> batch) {
+        String[] rejected = new String[batch.size()];
+        checkRecording();
+        patientLock.readLock().lock();
+        doctorLock.readLock().lock();
+        medicationLock.readLock().lock();
+        prescriptionLock.writeLock().lock();
+        try {
+            for (int i = 0; i < rejected.length; i++) {
+                Prescription prescription = batch.get(i);
+                if (!patients.contains(prescription.getPatientId())) {
+                    rejected[i] = "Unknown patient ID: " + prescription.getPatientId();
+                } else if (!doctors.contains(prescription.getDoctorId())) {
+                    rejected[i] = "Unknown doctor ID: " + prescription.getDoctorId();
+                } else if (!medications.contains(prescription.getMedicationId())) {
+                    rejected[i] = "Unknown medication ID: " + prescription.getMedicationId();
+                } else if (!insertPrescription(prescription)) {
+                    rejected[i] = "A prescription with ID " + prescription.getPrescriptionId() + " already exists.";
+                }
+            }
+        } finally {
+            prescriptionLock.writeLock().unlock();
+            medicationLock.readLock().unlock();
+            doctorLock.readLock().unlock();
+            patientLock.readLock().unlock();
+        }
+        return rejected;
+    }
+
+    // Registers and indexes a patient; the caller holds the patient write lock
+    private boolean insertPatient(Patient patient) {
+        if (!patients.add(patient)) {
+            return false;
+        }
+        patientNames.add(patient);
+        patient.setChangeListener(changeListener);
+        publish(() -> Mutation.added(patient));
+        return true;
+    }
+
+    // Registers and indexes a doctor; the caller holds the patient read lock and the
+    // doctor write lock
+    private boolean insertDoctor(Doctor doctor) {
+        if (!doctors.add(doctor)) {
+            return false;
+        }
+        doctorNames.add(doctor);
+        doctor.setChangeListener(changeListener);
+        publish(() -> Mutation.added(doctor));
+        // Patients assigned before the doctor was registered are linked to the registered
+        // patient with their ID, as replaying the assignment would; unknown ones are dropped
+        for (Patient patient : doctor.getAssignedPatients()) {
+            Patient registered = patients.get(patient.getId());
+            if (registered != patient) {
+                doctor.detach(patient.getId());
+                if (registered == null) {
+                    continue;
+                }
+                doctor.attach(registered);
+            }
+            doctorsByPatient.add(registered.getId(), doctor);
+            publish(() -> Mutation.assigned(doctor.getId(), registered.getId()));
+        }
+        return true;
+    }
+
+    // Registers and indexes a medication; the caller holds the medication write lock
+    private boolean insertMedication(Medication medication) {
+        if (!medications.add(medication)) {
+            return false;
+        }
+        medicationNames.add(medication);
+        medicationExpiry.add(medication);
+        inventory.add(medication);
+        medication.setChangeListener(changeListener);
+        publish(() -> Mutation.added(medication));
+        return true;
+    }
+
+    // Stores a prescription, which indexes it too; the caller holds the prescription write lock
+    private boolean insertPrescription(Prescription prescription) {
+        if (!prescriptions.add(prescription)) {
+            return false;
+        }
+        publish(() -> Mutation.added(prescription));
+        return true;
+    }
+
+    // ============================================================
+    // === Index Maintenance ===
+    // ============================================================
+
+    /**
+     * Applies a change made through an entity setter and updates the indexes it affects.
+     * The write, the index updates and the published mutation all happen under the
+     * entity type's write lock, so mutations are logged in the order they were applied.
+     * @param entity The entity being changed.
+     * @param field The name of the field being changed.
+     * @param write Writes the new value and returns the old one.
+     */
+    private void onEntityChanged(Object entity, String field, Supplier<Object> write) {
+        ReentrantReadWriteLock lock = lockFor(entity);
+        // An edit that already holds the lock checked before changing its first field
+        if (!lock.isWriteLockedByCurrentThread()) {
+            checkRecording();
+        }
+        lock.writeLock().lock();
+        try {
+            // The entity may have been removed since the setter read its listener
+            boolean held = holds(entity);
+            Object oldValue = write.get();
+            if (!held || oldValue == EntityChangeListener.UNCHANGED) {
+                return;
+            }
+            if ("expiryDate".equals(field)) {
+                medicationExpiry.move((Medication) entity, (LocalDate) oldValue);
+            } else if ("name".equals(field)) {
+                if (entity instanceof Patient) {
+                    patientNames.rename((Patient) entity, (String) oldValue);
+                } else if (entity instanceof Doctor) {
+                    doctorNames.rename((Doctor) entity, (String) oldValue);
+                } else if (entity instanceof Medication) {
+                    medicationNames.rename((Medication) entity, (String) oldValue);
+                }
+            }
+            publish(() -> Mutation.updated(entity, field, oldValue));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ============================================================
+    // === Locking ===
+    // ============================================================
+
+    // Whether an entity is still part of this system; checked under its type's lock
+    private boolean holds(Object entity) {
+        if (entity instanceof Patient) {
+            return patients.get(((Patient) entity).getId()) == entity;
+        }
+        if (entity instanceof Doctor) {
+            return doctors.get(((Doctor) entity).getId()) == entity;
+        }
+        if (entity instanceof Medication) {
+            return medications.get(((Medication) entity).getId()) == entity;
+        }
+        return true; // The prescription store reports writes to removed rows itself
+    }
+
+    /**
+     * Returns the lock guarding the registry and indexes of an entity's type.
+     * @param entity A patient, doctor, medication or prescription.
+     * @return The lock for that entity type
+     */
+    private ReentrantReadWriteLock lockFor(Object entity) {
+        if (entity instanceof Patient) {
+            return patientLock;
+        }
+        if (entity instanceof Doctor) {
+            return doctorLock;
+        }
+        if (entity instanceof Medication) {
+            return medicationLock;
+        }
+        return prescriptionLock;
+    }
+
+    /**
+     * Acquires every read lock, in lock order, so that no mutation can run.
+     * Dispensing is held off too, since it changes stock under the medication read lock.
+     * Used for consistent reports and snapshots; release with {@link #unlockAllForRead()}.
+     */
+    void lockAllForRead() {
+        patientLock.readLock().lock();
+        doctorLock.readLock().lock();
+        medicationLock.readLock().lock();
+        prescriptionLock.readLock().lock();
+        stockLock.writeLock().lock();
+    }
+
+    /**
+     * Releases the read locks acquired by {@link #lockAllForRead()}.
+     */
+    void unlockAllForRead() {
+        stockLock.writeLock().unlock();
+        prescriptionLock.readLock().unlock();
+        medicationLock.readLock().unlock();
+        doctorLock.readLock().unlock();
+        patientLock.readLock().unlock();
+    }
+
+    // ============================================================
+    // === Mutation Listeners ===
+    // ============================================================
+
+    /**
+     * Registers a listener that receives every mutation applied to the system.
+     * @param listener The listener to add.
+     */
+    void addMutationListener(MutationListener listener) {
+        mutationListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a mutation listener.
+     * @param listener The listener to remove.
+     */
+    void removeMutationListener(MutationListener listener) {
+        mutationListeners.remove(listener);
+    }
+
+    /**
+     * Rejects a change before it is applied if a listener can no longer record it,
+     * e.g. because its log or audit file failed.
+     * @throws IllegalStateException If a listener cannot record changes.
+     */
+    private void checkRecording() {
+        for (MutationListener listener : mutationListeners) {
+            listener.checkRecording();
+        }
+    }
+
+    /**
+     * Passes a mutation to every registered listener.
+     * The mutation is only built when someone is listening. The change has already
+     * been applied, so a listener that fails is reported and the others still run.
+     * @param mutation Supplies the mutation that was applied.
+     */
+    private void publish(Supplier<Mutation> mutation) {
+        if (mutationListeners.isEmpty()) {
+            return;
+        }
+        Mutation applied = mutation.get();
+        for (MutationListener listener : mutationListeners) {
+            try {
+                listener.mutationApplied(applied);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to record change " + applied + " in "
+                        + listener.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // ============================================================
+    // === Output ===
+    // ============================================================
+
+    /**
+     * Redirects status messages, listings and reports, e.g. to a file, to memory
+     * when embedded in a service, or to {@link ReportSinks#discard()} to silence them.
+     * @param output The new destination.
+     * @return The previous destination, which is not closed
+     */
+    public ReportSink setOutput(ReportSink output) {
+        if (output == null) {
+            throw new IllegalArgumentException("Output cannot be null.");
+        }
+        ReportSink previous = out;
+        out = output;
+        return previous;
+    }
+
+    /**
+     * Gets the current destination of status messages, listings and reports.
+     * @return The output sink
+     */
+    public ReportSink getOutput() {
+        return out;
+    }
+
+    // Writes a one-line status message and flushes it straight away
+    private void message(Object line) {
+        ReportSink sink = out;
+        sink.println(line);
+        sink.flush();
+    }
+
+    // ============================================================
+    // === Report Methods ===
+    // ============================================================
+
+    /**
+    * Displays all prescriptions in a detailed format.
+    * Lists patient, doctor, medication, dosage, and instructions, followed by
+    * a count of prescriptions whose patient, doctor or medication is unknown.
+    * @return The number of prescriptions with unknown references.
+    */
+    public int generatePrescriptionReport() {
+        return writePrescriptionReport(out);
+    }
+
+    /**
+     * Writes the detailed prescription report to a sink in one buffered pass.
+     * @param sink The sink receiving the report; it is flushed but not closed.
+     * @return The number of prescriptions with unknown references.
+     */
+    public int writePrescriptionReport(ReportSink sink) {
+        sink.println("\n=== All Prescriptions ===");
+
+        lockAllForRead();
+        try {
+            if (prescriptions.isEmpty()) {
+                sink.println("No prescriptions found.");
+                sink.flush();
+                return 0;
+            }
+            PrescriptionReport report = new PrescriptionReport(patients, doctors, medications);
+            report.write(prescriptions, sink);
+            return report.getDanglingCount();
+        } finally {
+            unlockAllForRead();
+        }
+    }
+
+      /**
+     * Generates a system-wide report displaying all patients, doctors, medications, and prescriptions.
+     * If any section is empty, it displays a message indicating no records found.
+     */
+    public void generateSystemReport() {
+        writeSystemReport(out);
+    }
+
+    /**
+     * Writes the system-wide report to a sink in one buffered pass.
+     * @param sink The sink receiving the report; it is flushed but not closed.
+     */
+    public void writeSystemReport(ReportSink sink) {
+        lockAllForRead();
+        try {
+            sink.println("\n=== System-WIDE Report ===");
+            writeSection(sink, "All Patients", patients.values(), "No patients found.");
+            writeSection(sink, "All Doctors", doctors.values(), "No doctors found.");
+            writeSection(sink, "All Medications", medications.values(), "No medications found.");
+            writeSection(sink, "All Prescriptions", prescriptions.values(), "No prescriptions found.");
+            sink.println("\n=== End of Report ===");
+            sink.flush();
+        } finally {
+            unlockAllForRead();
+        }
+    }
+
+    // Writes one titled section of the system report; callers hold the read locks
+    private static void writeSection(ReportSink sink, String title, Collection<?> entries, String emptyMessage) {
+        sink.println("\n=== " + title + " ===");
+        if (entries.isEmpty()) {
+            sink.println(emptyMessage);
+        } else {
+            for (Object entry : entries) {
+                sink.println(entry);
+            }
+        }
     }
 }
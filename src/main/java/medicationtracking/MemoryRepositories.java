@@ -0,0 +1,182 @@
+package medicationtracking;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * The {@code MemoryRepositories} class presents the records of a
+ * {@link MedicationTrackingSystem} as repositories. Records are added through the
+ * system's batch methods, so they are indexed, published to listeners and persisted
+ * like any other change; updates, stock adjustments and deletes go through the
+ * system's edit, stock and delete methods and print its usual messages.
+ */
+public final class MemoryRepositories implements Repositories {
+    private final Repository<Patient> patients;
+    private final Repository<Doctor> doctors;
+    private final MedicationRepository medications;
+    private final PrescriptionRepository prescriptions;
+
+    /**
+     * Constructs the repositories of a system.
+     *
+     * @param system The system holding the records.
+     * @throws IllegalArgumentException If the system is null.
+     */
+    public MemoryRepositories(MedicationTrackingSystem system) {
+        if (system == null) {
+            throw new IllegalArgumentException("System cannot be null.");
+        }
+        patients = new SystemRepository<>(system::getPatient, system::getPatientCount,
+                system::getPatientPage, system::addPatients,
+                patient -> system.editPatient(patient.getId(), patient.getName(), patient.getAge(),
+                        patient.getPhoneNumber()),
+                system::deletePatient);
+        doctors = new SystemRepository<>(system::getDoctor, system::getDoctorCount,
+                system::getDoctorPage, system::addDoctors,
+                doctor -> system.editDoctor(doctor.getId(), doctor.getName(), doctor.getSpecialization()),
+                system::deleteDoctor);
+        medications = new SystemMedicationRepository(system);
+        prescriptions = new SystemPrescriptionRepository(system);
+    }
+
+    @Override
+    public Repository<Patient> getPatients() {
+        return patients;
+    }
+
+    @Override
+    public Repository<Doctor> getDoctors() {
+        return doctors;
+    }
+
+    @Override
+    public MedicationRepository getMedications() {
+        return medications;
+    }
+
+    @Override
+    public PrescriptionRepository getPrescriptions() {
+        return prescriptions;
+    }
+
+    // ============================================================
+    // === Implementations ===
+    // ============================================================
+
+    // A repository made of the system methods for one record type
+    private static class SystemRepository<T> implements Repository<T> {
+        private final Function<String, T> get;
+        private final IntSupplier count;
+        private final BiFunction<String, Integer, Page<T>> page;
+        private final Function<List<T>, String[]> addAll;
+        private final Predicate<T> update;
+        private final Predicate<String> delete;
+
+        SystemRepository(Function<String, T> get, IntSupplier count, BiFunction<String, Integer, Page<T>> page,
+                         Function<List<T>, String[]> addAll, Predicate<T> update, Predicate<String> delete) {
+            this.get = get;
+            this.count = count;
+            this.page = page;
+            this.addAll = addAll;
+            this.update = update;
+            this.delete = delete;
+        }
+
+        @Override
+        public T get(String id) {
+            return get.apply(id);
+        }
+
+        @Override
+        public long count() {
+            return count.getAsInt();
+        }
+
+        @Override
+        public Page<T> getPage(String cursor, int pageSize) {
+            return page.apply(cursor, pageSize);
+        }
+
+        @Override
+        public boolean add(T record) {
+            return addAll(Collections.singletonList(record))[0] == null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public String[] addAll(List<? extends T> records) {
+            for (T record : records) {
+                if (record == null) {
+                    throw new IllegalArgumentException("Record cannot be null.");
+                }
+            }
+            // Only read by the system, so the narrower element type is safe
+            return addAll.apply((List<T>) records);
+        }
+
+        @Override
+        public boolean update(T record) {
+            if (record == null) {
+                throw new IllegalArgumentException("Record cannot be null.");
+            }
+            return update.test(record);
+        }
+
+        @Override
+        public boolean delete(String id) {
+            return delete.test(id);
+        }
+    }
+
+    private static final class SystemMedicationRepository extends SystemRepository<Medication>
+            implements MedicationRepository {
+        private final MedicationTrackingSystem system;
+
+        SystemMedicationRepository(MedicationTrackingSystem system) {
+            super(system::getMedication, system::getMedicationCount, system::getMedicationPage,
+                    system::addMedications,
+                    medication -> system.editMedication(medication.getId(), medication.getName(),
+                            medication.getDosage(), medication.getQuantityInStock()),
+                    system::deleteMedication);
+            this.system = system;
+        }
+
+        @Override
+        public boolean adjustStock(String medicationId, int delta) {
+            return system.adjustStock(medicationId, delta);
+        }
+    }
+
+    private static final class SystemPrescriptionRepository extends SystemRepository<Prescription>
+            implements PrescriptionRepository {
+        private final MedicationTrackingSystem system;
+
+        SystemPrescriptionRepository(MedicationTrackingSystem system) {
+            super(system::getPrescription, system::getPrescriptionCount, system::getPrescriptionPage,
+                    system::addPrescriptions,
+                    prescription -> system.editPrescription(prescription.getPrescriptionId(),
+                            prescription.getQuantity(), prescription.getInstructions()),
+                    system::deletePrescription);
+            this.system = system;
+        }
+
+        @Override
+        public List<Prescription> getByPatient(String patientId) {
+            return system.getPrescriptionsByPatient(patientId);
+        }
+
+        @Override
+        public List<Prescription> getByDoctor(String doctorId) {
+            return system.getPrescriptionsByDoctor(doctorId);
+        }
+
+        @Override
+        public List<Prescription> getByMedication(String medicationId) {
+            return system.getPrescriptionsByMedication(medicationId);
+        }
+    }
+}
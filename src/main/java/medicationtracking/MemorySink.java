@@ -0,0 +1,66 @@
+package medicationtracking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code MemorySink} class is a {@link ReportSink} that keeps its text in memory,
+ * for embedding the tracking system in services and for inspecting its output.
+ */
+public final class MemorySink implements ReportSink {
+    private final StringBuilder text = new StringBuilder();
+
+    MemorySink() {
+    }
+
+    @Override
+    public synchronized void print(Object value) {
+        text.append(value);
+    }
+
+    @Override
+    public synchronized void println() {
+        text.append('\n');
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Gets everything written so far.
+     *
+     * @return The text, with lines separated by {@code \n}.
+     */
+    public synchronized String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Gets the complete lines written so far.
+     *
+     * @return The lines, without line separators.
+     */
+    public synchronized List<String> getLines() {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Discards everything written so far.
+     */
+    public synchronized void clear() {
+        text.setLength(0);
+    }
+}
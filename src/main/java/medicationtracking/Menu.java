@@ -1,8 +1,14 @@
 package medicationtracking;
 
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Menu class displays a console-based menu for the Medication Tracking System.
@@ -10,6 +16,9 @@ import java.util.Scanner;
  */
 public class Menu {
 
+    // Number of records shown per page when listing
+    private static final int PAGE_SIZE = 20;
+
     // Creating an instance of MedicationTrackingSystem to manage the entities
     private MedicationTrackingSystem trackingSystem;
     private Scanner scanner;
@@ -18,17 +27,49 @@ public class Menu {
      * Constructor initializes the MedicationTrackingSystem and Scanner for user input.
      */
     public Menu() {
-        trackingSystem = new MedicationTrackingSystem();
+        this(new MedicationTrackingSystem());
+    }
+
+    /**
+     * Constructor initializes the Scanner for user input over an existing system.
+     * @param trackingSystem The system managed through this menu
+     */
+    public Menu(MedicationTrackingSystem trackingSystem) {
+        this.trackingSystem = trackingSystem;
         scanner = new Scanner(System.in);
     }
 
     /**
      * Main method to launch the Medication Tracking System menu.
-     * @param args Command-line arguments
+     * State is recovered from and saved to a data directory, so it survives restarts,
+     * and every change is recorded in the directory's audit trail.
+     * With "--batch" as the first argument, the remaining arguments are passed to
+     * {@link BatchRunner#main(String[])}, which runs a command script without prompting.
+     * @param args Optional data directory (default "data") and durability
+     *             ("per_operation" by default, or "batched")
+     * @throws IOException If the data directory cannot be read or written
      */
-    public static void main(String[] args) {
-        Menu menu = new Menu();
-        menu.displayMenu();
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        Path dataDirectory = Paths.get(args.length > 0 ? args[0] : "data");
+        Durability durability = args.length > 1
+                ? Durability.valueOf(args[1].toUpperCase())
+                : Durability.PER_OPERATION;
+
+        MedicationTrackingSystem system = new MedicationTrackingSystem();
+        try (PersistenceManager persistence = new PersistenceManager(system, dataDirectory, durability)) {
+            AuditTrail audit = new AuditTrail(system, dataDirectory.resolve(AuditTrail.FILE_NAME));
+            try {
+                Menu menu = new Menu(system);
+                menu.displayMenu();
+            } finally {
+                audit.close();
+            }
+            persistence.snapshot(); // compact the log on a clean exit
+        }
     }
 
     /**
@@ -46,6 +87,7 @@ public class Menu {
             System.out.println("3. Medications");
             System.out.println("4. Prescriptions");
             System.out.println("5. Reports");
+            System.out.println("6. Bulk Import");
             System.out.println("0. Exit");
             System.out.print("Enter your choice (Enter Number): ");
             
@@ -67,6 +109,9 @@ public class Menu {
                 case 5: // ✅ System-Wide Report option
                     showReportMenu();
                     break;
+                case 6: // Bulk Import from CSV/JSON files
+                    bulkImport();
+                    break;
             
                 case 0:
                     System.out.println("Exiting Medication Tracking System...");
@@ -91,6 +136,7 @@ public class Menu {
             System.out.println("3. View All Patients");
             System.out.println("4. Search Patient by Name");
             System.out.println("5. Edit Patient");
+            System.out.println("6. View Doctors of Patient");
             System.out.println("0. Back to Main Menu");
             System.out.print("Enter your choice (Enter Number): ");
             
@@ -112,6 +158,9 @@ public class Menu {
                 case 5:
                     editPatient();
                     break;
+                case 6:
+                    viewDoctorsOfPatient();
+                    break;
                 case 0:
                     break;
                 default:
@@ -136,6 +185,7 @@ public class Menu {
             System.out.println("5. Edit Doctor");
             System.out.println("6. Assign Patient to Doctor");
             System.out.println("7. List Prescriptions by Doctor");
+            System.out.println("8. Unassign Patient from Doctor");
             System.out.println("0. Back to Main Menu");
             System.out.print("Enter your choice (Enter Number): ");
             
@@ -163,6 +213,9 @@ public class Menu {
                 case 7: // List Prescriptions by Doctor 
                     listPrescriptionsByDoctor();
                     break;
+                case 8: // Unassign Patient from Doctor
+                    unassignPatientFromDoctor();
+                    break;
                 case 0:
                     break;
                 default:
@@ -182,11 +235,13 @@ public class Menu {
             System.out.println("\n=== Medication Management ===");
             System.out.println("1. Add Medication");
             System.out.println("2. Delete Medication");
-            System.out.println("3. Restock Medications");
+            System.out.println("3. Restock from Delivery Manifest");
             System.out.println("4. View All Medications");
             System.out.println("5. Search Medication by Name");
             System.out.println("6. Edit Medication");
             System.out.println("7. Check Expired Medications");
+            System.out.println("8. Check Medications Expiring Soon");
+            System.out.println("9. Inventory Summary");
             System.out.println("0. Back to Main Menu");
             System.out.print("Enter your choice (Enter Number): ");
             
@@ -200,7 +255,7 @@ public class Menu {
                     deleteMedication();
                     break;
                 case 3:
-                    trackingSystem.restockMedications();
+                    restockFromManifest();
                     break;
                 case 4:
                     viewAllMedications();
@@ -214,6 +269,12 @@ public class Menu {
                 case 7:
                     trackingSystem.checkExpiredMedications();
                     break;
+                case 8:
+                    checkExpiringMedications();
+                    break;
+                case 9:
+                    showInventorySummary();
+                    break;
                 case 0:
                     break;
                 default:
@@ -235,6 +296,8 @@ public class Menu {
             System.out.println("2. Delete Prescription");
             System.out.println("3. View All Prescriptions");
             System.out.println("4. View Prescriptions by Patient");
+            System.out.println("5. View Prescriptions by Medication");
+            System.out.println("6. Dispense Prescription");
             System.out.println("0. Back to Main Menu");
             System.out.print("Enter your choice (Enter Number): ");
             
@@ -253,6 +316,12 @@ public class Menu {
                 case 4:
                     viewPrescriptionsByPatient();
                     break;
+                case 5:
+                    viewPrescriptionsByMedication();
+                    break;
+                case 6:
+                    dispensePrescription();
+                    break;
                 case 0:
                     break;
                 default:
@@ -308,10 +377,20 @@ public class Menu {
     }
 
     /**
-     * Displays all patients in the system.
+     * Displays all patients in the system, a page at a time.
      */
     private void viewAllPatients() {
-        trackingSystem.displayAllPatients();
+        browse("All Patients", cursor -> trackingSystem.getPatientPage(cursor, PAGE_SIZE),
+                System.out::println, "No patients found.");
+    }
+
+    /**
+     * Displays the doctors a patient is assigned to.
+     */
+    private void viewDoctorsOfPatient() {
+        System.out.print("Enter Patient ID: ");
+        String patientId = scanner.nextLine();
+        trackingSystem.displayDoctorsForPatient(patientId);
     }
 
     /**
@@ -375,7 +454,6 @@ private void addDoctor() {
     Doctor doctor = new Doctor(id, name, phoneNumber, specialization);
 
     trackingSystem.addDoctor(doctor);
-    System.out.println("Doctor added successfully!");
 }
 
 
@@ -389,10 +467,11 @@ private void addDoctor() {
     }
 
     /**
-     * Displays all doctors in the system.
+     * Displays all doctors in the system, a page at a time.
      */
     private void viewAllDoctors() {
-        trackingSystem.displayAllDoctors();
+        browse("All Doctors", cursor -> trackingSystem.getDoctorPage(cursor, PAGE_SIZE),
+                System.out::println, "No doctors found.");
     }
 
     /**
@@ -433,6 +512,21 @@ private void addDoctor() {
         }
     }
 
+    /**
+     * Removes a patient from a doctor's assigned patients.
+     */
+    private void unassignPatientFromDoctor() {
+        System.out.print("Enter Doctor ID: ");
+        String doctorId = scanner.nextLine();
+
+        System.out.print("Enter Patient ID: ");
+        String patientId = scanner.nextLine();
+
+        if (trackingSystem.unassignPatientFromDoctor(doctorId, patientId)) {
+            System.out.println("Patient unassigned from doctor successfully!");
+        }
+    }
+
     /** 
      * Lists all prescriptions by a doctor.
      */
@@ -486,7 +580,7 @@ private void addDoctor() {
             System.out.print("Enter Expiry Date (yyyy-mm-dd): ");
             String date = scanner.nextLine();
             try {
-                expiryDate = LocalDate.parse(date, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+                expiryDate = LocalDate.parse(date, Medication.DATE_FORMAT);
             } catch (Exception e) {
                 System.out.println("Invalid date format. Please enter a valid date in the format yyyy-mm-dd.");
             }
@@ -505,10 +599,11 @@ private void addDoctor() {
     }
 
     /**
-     * Displays all medications in the system.
+     * Displays all medications in the system, a page at a time.
      */
     private void viewAllMedications() {
-        trackingSystem.displayAllMedications();
+        browse("All Medications", cursor -> trackingSystem.getMedicationPage(cursor, PAGE_SIZE),
+                System.out::println, "No medications found.");
     }
 
     /**
@@ -559,6 +654,71 @@ private void addDoctor() {
         trackingSystem.editMedication(medicationId, newName, newDosage, newQuantity);
     }
 
+    /**
+     * Restocks medications from a delivery manifest file entered by the user.
+     */
+    private void restockFromManifest() {
+        System.out.print("Enter path of delivery manifest: ");
+        String manifest = scanner.nextLine().trim();
+        try {
+            trackingSystem.restockFromManifest(Paths.get(manifest));
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Could not read manifest: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Displays medications expiring within a number of days entered by the user.
+     */
+    private void checkExpiringMedications() {
+        int days;
+        while (true) {
+            System.out.print("Enter number of days: ");
+            if (scanner.hasNextInt()) {
+                days = scanner.nextInt();
+                scanner.nextLine(); // consume the newline character
+                if (days >= 0) break;
+                else System.out.println("Days must be greater than or equal to 0.");
+            } else {
+                System.out.println("Invalid input. Please enter a valid number of days.");
+                scanner.next(); // consume the invalid input
+            }
+        }
+        trackingSystem.checkExpiringMedications(days);
+    }
+
+    /**
+     * Displays stock totals, low-stock medications and units expiring soon.
+     */
+    private void showInventorySummary() {
+        int reorderLevel = readNonNegative("Enter reorder level (units): ", "Reorder level");
+        int days = readNonNegative("Enter number of days: ", "Days");
+        trackingSystem.displayInventorySummary(reorderLevel, days);
+    }
+
+    /**
+     * Prompts until the user enters a whole number of at least 0.
+     * @param prompt The prompt to print.
+     * @param label What the number is, for the error message.
+     * @return The number entered
+     */
+    private int readNonNegative(String prompt, String label) {
+        while (true) {
+            System.out.print(prompt);
+            if (scanner.hasNextInt()) {
+                int value = scanner.nextInt();
+                scanner.nextLine(); // consume the newline character
+                if (value >= 0) {
+                    return value;
+                }
+                System.out.println(label + " must be greater than or equal to 0.");
+            } else {
+                System.out.println("Invalid input. Please enter a valid number.");
+                scanner.next(); // consume the invalid input
+            }
+        }
+    }
+
     // ============================================================
     // === Prescription Menu Methods ===
     // ============================================================
@@ -582,7 +742,6 @@ private void addDoctor() {
 
         Prescription prescription = new Prescription(prescriptionId, patientId, doctorId, medicationId, quantity, instructions);
         trackingSystem.addPrescription(prescription);
-        System.out.println("Prescription added successfully!");
     }
 
     /**
@@ -592,29 +751,28 @@ private void addDoctor() {
         System.out.print("Enter Prescription ID to delete: ");
         String prescriptionId = scanner.nextLine();
         trackingSystem.deletePrescription(prescriptionId);
-        System.out.println("Prescription deleted successfully!");
     }
 
     /**
-     * Displays all prescriptions in the system.
+     * Displays all prescriptions in the system, a page at a time.
      */
     private void viewAllPrescriptions() {
-        System.out.println("\n=== All Prescriptions ===");
+        browse("All Prescriptions", cursor -> trackingSystem.getPrescriptionPage(cursor, PAGE_SIZE),
+                this::printPrescription, "No prescriptions found.");
+    }
 
-        if (trackingSystem.getPrescriptions().isEmpty()) {
-            System.out.println("No prescriptions found.");
-            return;
-        }
-    
-        for (Prescription p : trackingSystem.getPrescriptions()) {
-            System.out.println("\nPrescription ID: " + p.getPrescriptionId());
-            System.out.println("Patient ID: " + p.getPatientId());
-            System.out.println("Doctor ID: " + p.getDoctorId());
-            System.out.println("Medication ID: " + p.getMedicationId());
-            System.out.println("Quantity: " + p.getQuantity());
-            System.out.println("Instructions: " + p.getInstructions());
-            System.out.println("--------------------------------");
-        }
+    /**
+     * Prints the details of one prescription.
+     * @param p The prescription to print
+     */
+    private void printPrescription(Prescription p) {
+        System.out.println("\nPrescription ID: " + p.getPrescriptionId());
+        System.out.println("Patient ID: " + p.getPatientId());
+        System.out.println("Doctor ID: " + p.getDoctorId());
+        System.out.println("Medication ID: " + p.getMedicationId());
+        System.out.println("Quantity: " + p.getQuantity());
+        System.out.println("Instructions: " + p.getInstructions());
+        System.out.println("--------------------------------");
     }
     /**
     * Prompts the user to enter a patient ID and displays their prescriptions.
@@ -622,7 +780,99 @@ private void addDoctor() {
     private void viewPrescriptionsByPatient() {
         System.out.print("\nEnter Patient ID to view prescriptions: ");
         String patientId = scanner.nextLine();
-        trackingSystem.displayPrescriptionsByDoctor(patientId);
+        trackingSystem.displayPrescriptionsByPatient(patientId);
+    }
+
+    /**
+    * Prompts the user to enter a medication ID and displays its prescriptions.
+    */
+    private void viewPrescriptionsByMedication() {
+        System.out.print("\nEnter Medication ID to view prescriptions: ");
+        String medicationId = scanner.nextLine();
+        trackingSystem.displayPrescriptionsByMedication(medicationId);
+    }
+
+    /**
+    * Prompts the user to enter a prescription ID and dispenses it from stock.
+    */
+    private void dispensePrescription() {
+        System.out.print("\nEnter Prescription ID to dispense: ");
+        String prescriptionId = scanner.nextLine();
+        System.out.println(trackingSystem.dispense(prescriptionId).getMessage());
+    }
+
+    // ============================================================
+    // === Paging Methods ===
+    // ============================================================
+
+    /**
+     * Shows records a page at a time, letting the user move to the next or previous page.
+     * Each page is fetched when it is shown, so records added meanwhile appear on later pages.
+     * @param title Heading shown above each page
+     * @param fetch Fetches the page for a cursor, or the first page for null
+     * @param print Prints one record
+     * @param emptyMessage Message shown when there are no records at all
+     */
+    private <T> void browse(String title, Function<String, Page<T>> fetch, Consumer<T> print, String emptyMessage) {
+        String cursor = null;
+        int pageNumber = 1;
+
+        while (true) {
+            Page<T> page = fetch.apply(cursor);
+            if (page.getItems().isEmpty() && !page.hasPrevious() && !page.hasNext()) {
+                System.out.println(emptyMessage);
+                return;
+            }
+            System.out.println("\n=== " + title + " (Page " + pageNumber + ") ===");
+            page.getItems().forEach(print);
+
+            if (!page.hasNext() && !page.hasPrevious()) {
+                return; // Everything fit on one page
+            }
+            System.out.print((page.hasNext() ? "n = Next page, " : "")
+                    + (page.hasPrevious() ? "p = Previous page, " : "") + "0 = Back: ");
+            String input = scanner.nextLine().trim().toLowerCase();
+
+            if (input.equals("n") && page.hasNext()) {
+                cursor = page.getNextCursor();
+                pageNumber++;
+            } else if (input.equals("p") && page.hasPrevious()) {
+                cursor = page.getPreviousCursor();
+                pageNumber = Math.max(1, pageNumber - 1);
+            } else if (input.equals("0")) {
+                return;
+            } else {
+                System.out.println("Invalid choice! Please try again.");
+            }
+        }
+    }
+
+    // ============================================================
+    // === Bulk Import Methods ===
+    // ============================================================
+
+    /**
+     * Imports patients, doctors, medications or prescriptions from a CSV or JSON file.
+     */
+    private void bulkImport() {
+        System.out.println("\n=== Bulk Import ===");
+        ImportType[] types = ImportType.values();
+        for (int i = 0; i < types.length; i++) {
+            System.out.println((i + 1) + ". " + types[i] + " " + String.join(",", types[i].getFields()));
+        }
+        System.out.print("Enter record type (Enter Number): ");
+        int choice = Integer.parseInt(scanner.nextLine());
+        if (choice < 1 || choice > types.length) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        System.out.print("Enter path of CSV or JSON file: ");
+        String file = scanner.nextLine().trim();
+        try {
+            System.out.println(new BulkImporter(trackingSystem).importFile(types[choice - 1], Paths.get(file)));
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Could not import file: " + e.getMessage());
+        }
     }
 
     /**
@@ -636,6 +886,7 @@ private void addDoctor() {
             System.out.println("\n=== Report Menu ===");
             System.out.println("1. System-Wide Report");
             System.out.println("2. Prescription Report");
+            System.out.println("3. Verify Prescription Statistics");
             System.out.println("0. Back to Main Menu");
             System.out.print("Enter your choice (Enter Number): ");
 
@@ -648,6 +899,9 @@ private void addDoctor() {
                 case 2:
                     trackingSystem.generatePrescriptionReport();
                     break;
+                case 3:
+                    trackingSystem.checkPrescriptionStatistics();
+                    break;
                 case 0:
                     return; // Go back to the main menu
                 default:
@@ -0,0 +1,396 @@
+package medicationtracking;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code Mutation} class describes one change to a {@link MedicationTrackingSystem}:
+ * an entity being added, updated or deleted, a patient being assigned to or unassigned
+ * from a doctor,
+ * or stock being taken from or returned to a medication, possibly for a prescription.
+ *
+ * <p>Mutations are encoded as a single line of tab-separated fields so they can be
+ * appended to the write-ahead log, written to snapshots and replayed on startup.
+ */
+final class Mutation {
+
+    /**
+     * The kind of change a mutation describes.
+     */
+    enum Type {
+        ADD_PATIENT, ADD_DOCTOR, ADD_MEDICATION, ADD_PRESCRIPTION,
+        UPDATE_PATIENT, UPDATE_DOCTOR, UPDATE_MEDICATION, UPDATE_PRESCRIPTION,
+        DELETE_PATIENT, DELETE_DOCTOR, DELETE_MEDICATION, DELETE_PRESCRIPTION,
+        ASSIGN_PATIENT, ADJUST_STOCK, UNASSIGN_PATIENT, FILL_PRESCRIPTION
+    }
+
+    private final Type type;
+    private final String[] fields;
+
+    private Mutation(Type type, String... fields) {
+        this.type = type;
+        this.fields = fields;
+    }
+
+    // ============================================================
+    // === Factories ===
+    // ============================================================
+
+    /**
+     * Creates the mutation recording that an entity was added.
+     *
+     * @param entity A patient, doctor, medication or prescription.
+     * @return The mutation.
+     */
+    static Mutation added(Object entity) {
+        if (entity instanceof Patient) {
+            Patient p = (Patient) entity;
+            return new Mutation(Type.ADD_PATIENT, p.getId(), p.getName(), String.valueOf(p.getAge()), p.getPhoneNumber());
+        }
+        if (entity instanceof Doctor) {
+            Doctor d = (Doctor) entity;
+            return new Mutation(Type.ADD_DOCTOR, d.getId(), d.getName(), d.getPhoneNumber(), d.getSpecialization());
+        }
+        if (entity instanceof Medication) {
+            Medication m = (Medication) entity;
+            return new Mutation(Type.ADD_MEDICATION, m.getId(), m.getName(), String.valueOf(m.getDosage()),
+                    String.valueOf(m.getQuantityInStock()), m.getExpiryDate().toString());
+        }
+        Prescription p = (Prescription) entity;
+        return new Mutation(Type.ADD_PRESCRIPTION, p.getPrescriptionId(), p.getPatientId(), p.getDoctorId(),
+                p.getMedicationId(), String.valueOf(p.getQuantity()), p.getInstructions());
+    }
+
+    /**
+     * Creates the mutation recording the new value of a changed field. The old value
+     * is kept after it for the audit trail; replay only needs the new one.
+     *
+     * @param entity   The entity that changed.
+     * @param field    The name of the changed field.
+     * @param oldValue The value of the field before the change.
+     * @return The mutation.
+     */
+    static Mutation updated(Object entity, String field, Object oldValue) {
+        String old = oldValue == null ? null : oldValue.toString();
+        if (entity instanceof Person) {
+            Person p = (Person) entity;
+            String value;
+            switch (field) {
+                case "name": value = p.getName(); break;
+                case "age": value = String.valueOf(p.getAge()); break;
+                case "phoneNumber": value = p.getPhoneNumber(); break;
+                case "specialization": value = ((Doctor) p).getSpecialization(); break;
+                default: throw new IllegalArgumentException("Unknown person field: " + field);
+            }
+            Type type = p instanceof Doctor ? Type.UPDATE_DOCTOR : Type.UPDATE_PATIENT;
+            return new Mutation(type, p.getId(), field, value, old);
+        }
+        if (entity instanceof Medication) {
+            Medication m = (Medication) entity;
+            String value;
+            switch (field) {
+                case "name": value = m.getName(); break;
+                case "dosage": value = String.valueOf(m.getDosage()); break;
+                case "quantityInStock": value = String.valueOf(m.getQuantityInStock()); break;
+                case "expiryDate": value = m.getExpiryDate().toString(); break;
+                default: throw new IllegalArgumentException("Unknown medication field: " + field);
+            }
+            return new Mutation(Type.UPDATE_MEDICATION, m.getId(), field, value, old);
+        }
+        Prescription p = (Prescription) entity;
+        String value;
+        switch (field) {
+            case "quantity": value = String.valueOf(p.getQuantity()); break;
+            case "instructions": value = p.getInstructions(); break;
+            default: throw new IllegalArgumentException("Unknown prescription field: " + field);
+        }
+        return new Mutation(Type.UPDATE_PRESCRIPTION, p.getPrescriptionId(), field, value, old);
+    }
+
+    /**
+     * Creates the mutation recording that an entity was deleted.
+     *
+     * @param type The delete type matching the entity kind.
+     * @param id   The ID of the deleted entity.
+     * @return The mutation.
+     */
+    static Mutation deleted(Type type, String id) {
+        return new Mutation(type, id);
+    }
+
+    /**
+     * Creates the mutation recording that a patient was assigned to a doctor.
+     *
+     * @param doctorId  The ID of the doctor.
+     * @param patientId The ID of the patient.
+     * @return The mutation.
+     */
+    static Mutation assigned(String doctorId, String patientId) {
+        return new Mutation(Type.ASSIGN_PATIENT, doctorId, patientId);
+    }
+
+    /**
+     * Creates the mutation recording that a patient was unassigned from a doctor.
+     *
+     * @param doctorId  The ID of the doctor.
+     * @param patientId The ID of the patient.
+     * @return The mutation.
+     */
+    static Mutation unassigned(String doctorId, String patientId) {
+        return new Mutation(Type.UNASSIGN_PATIENT, doctorId, patientId);
+    }
+
+    /**
+     * Creates the mutation recording a relative change to a medication's stock.
+     * Stock changes are logged as deltas so that concurrent dispenses replay
+     * correctly whatever order they reach the log in.
+     *
+     * @param medicationId The ID of the medication.
+     * @param delta        The number of units added (negative when taken).
+     * @return The mutation.
+     */
+    static Mutation stockAdjusted(String medicationId, int delta) {
+        return new Mutation(Type.ADJUST_STOCK, medicationId, String.valueOf(delta));
+    }
+
+    /**
+     * Creates the mutation recording stock taken from a medication to fill a
+     * prescription, or returned to it when a reservation is cancelled. The delta
+     * comes first so the mutation reads like a plain stock change.
+     *
+     * @param medicationId   The ID of the medication.
+     * @param delta          The number of units added to stock (negative when filled).
+     * @param prescriptionId The ID of the prescription the units were filled for.
+     * @return The mutation.
+     */
+    static Mutation filled(String medicationId, int delta, String prescriptionId) {
+        return new Mutation(Type.FILL_PRESCRIPTION, medicationId, String.valueOf(delta), prescriptionId);
+    }
+
+    // ============================================================
+    // === Accessors ===
+    // ============================================================
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return The mutation type.
+     */
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ID of the entity the mutation applies to (the doctor for assignments).
+     *
+     * @return The entity ID.
+     */
+    String getEntityId() {
+        return fields[0];
+    }
+
+    /**
+     * Gets a field of the mutation by position.
+     *
+     * @param index The field position, where 0 is the entity ID.
+     * @return The field value.
+     */
+    String getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Gets the number of fields, including the entity ID.
+     *
+     * @return The field count.
+     */
+    int getFieldCount() {
+        return fields.length;
+    }
+
+    // ============================================================
+    // === Replay ===
+    // ============================================================
+
+    /**
+     * Applies the mutation to a tracking system, as done during recovery.
+     *
+     * @param system The system to change.
+     * @throws IllegalStateException If an update refers to an entity that does not exist.
+     */
+    void applyTo(MedicationTrackingSystem system) {
+        switch (type) {
+            case ADD_PATIENT:
+                system.addPatient(new Patient(fields[0], fields[1], Integer.parseInt(fields[2]), fields[3]));
+                break;
+            case ADD_DOCTOR:
+                system.addDoctor(new Doctor(fields[0], fields[1], fields[2], fields[3]));
+                break;
+            case ADD_MEDICATION:
+                system.addMedication(new Medication(fields[0], fields[1], Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), LocalDate.parse(fields[4])));
+                break;
+            case ADD_PRESCRIPTION:
+                system.addPrescription(new Prescription(fields[0], fields[1], fields[2], fields[3],
+                        Integer.parseInt(fields[4]), fields[5]));
+                break;
+            case UPDATE_PATIENT:
+            case UPDATE_DOCTOR:
+                applyPersonUpdate(type == Type.UPDATE_PATIENT
+                        ? system.getPatient(fields[0]) : system.getDoctor(fields[0]));
+                break;
+            case UPDATE_MEDICATION:
+                applyMedicationUpdate(system.getMedication(fields[0]));
+                break;
+            case UPDATE_PRESCRIPTION:
+                applyPrescriptionUpdate(system.getPrescription(fields[0]));
+                break;
+            case DELETE_PATIENT:
+                system.deletePatient(fields[0]);
+                break;
+            case DELETE_DOCTOR:
+                system.deleteDoctor(fields[0]);
+                break;
+            case DELETE_MEDICATION:
+                system.deleteMedication(fields[0]);
+                break;
+            case DELETE_PRESCRIPTION:
+                system.deletePrescription(fields[0]);
+                break;
+            case ASSIGN_PATIENT:
+                system.assignPatientToDoctor(fields[0], fields[1]);
+                break;
+            case UNASSIGN_PATIENT:
+                system.unassignPatientFromDoctor(fields[0], fields[1]);
+                break;
+            case ADJUST_STOCK:
+                if (!system.adjustStock(fields[0], Integer.parseInt(fields[1]))) {
+                    throw new IllegalStateException(type + " refers to unknown ID: " + fields[0]);
+                }
+                break;
+            case FILL_PRESCRIPTION:
+                if (!system.adjustFill(fields[0], Integer.parseInt(fields[1]), fields[2])) {
+                    throw new IllegalStateException(type + " refers to unknown ID: " + fields[0]);
+                }
+                break;
+        }
+    }
+
+    private void applyPersonUpdate(Person person) {
+        requireFound(person);
+        String value = fields[2];
+        switch (fields[1]) {
+            case "name": person.setName(value); break;
+            case "age": person.setAge("null".equals(value) ? null : Integer.valueOf(value)); break;
+            case "phoneNumber": person.setPhoneNumber(value); break;
+            case "specialization": ((Doctor) person).setSpecialization(value); break;
+            default: throw new IllegalStateException("Unknown person field: " + fields[1]);
+        }
+    }
+
+    private void applyMedicationUpdate(Medication medication) {
+        requireFound(medication);
+        String value = fields[2];
+        switch (fields[1]) {
+            case "name": medication.setName(value); break;
+            case "dosage": medication.setDosage(Integer.parseInt(value)); break;
+            case "quantityInStock": medication.setQuantityInStock(Integer.parseInt(value)); break;
+            case "expiryDate": medication.setExpiryDate(LocalDate.parse(value)); break;
+            default: throw new IllegalStateException("Unknown medication field: " + fields[1]);
+        }
+    }
+
+    private void applyPrescriptionUpdate(Prescription prescription) {
+        requireFound(prescription);
+        String value = fields[2];
+        switch (fields[1]) {
+            case "quantity": prescription.setQuantity(Integer.parseInt(value)); break;
+            case "instructions": prescription.setInstructions(value); break;
+            default: throw new IllegalStateException("Unknown prescription field: " + fields[1]);
+        }
+    }
+
+    private void requireFound(Object entity) {
+        if (entity == null) {
+            throw new IllegalStateException(type + " refers to unknown ID: " + fields[0]);
+        }
+    }
+
+    // ============================================================
+    // === Encoding ===
+    // ============================================================
+
+    /**
+     * Encodes the mutation as a single line without the trailing newline.
+     * Tabs, newlines and backslashes inside fields are escaped.
+     *
+     * @return The encoded mutation.
+     */
+    String encode() {
+        StringBuilder sb = new StringBuilder(type.name());
+        for (String field : fields) {
+            sb.append('\t');
+            if (field == null) {
+                sb.append("\\0");
+            } else {
+                escape(field, sb);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes a line produced by {@link #encode()}.
+     *
+     * @param line The encoded mutation.
+     * @return The decoded mutation.
+     * @throws IllegalArgumentException If the line is not a valid mutation.
+     */
+    static Mutation decode(String line) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean isNull = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                parts.add(isNull ? null : current.toString());
+                current.setLength(0);
+                isNull = false;
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                switch (next) {
+                    case 't': current.append('\t'); break;
+                    case 'n': current.append('\n'); break;
+                    case 'r': current.append('\r'); break;
+                    case '0': isNull = true; break;
+                    default: current.append(next);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        parts.add(isNull ? null : current.toString());
+
+        Type type = Type.valueOf(parts.get(0));
+        return new Mutation(type, parts.subList(1, parts.size()).toArray(new String[0]));
+    }
+
+    private static void escape(String value, StringBuilder sb) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\\': sb.append("\\\\"); break;
+                default: sb.append(c);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
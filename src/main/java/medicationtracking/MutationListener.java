@@ -0,0 +1,29 @@
+package medicationtracking;
+
+/**
+ * The {@code MutationListener} interface receives every change applied to a
+ * {@link MedicationTrackingSystem}, in the order the changes were made.
+ * Listeners run on the thread that made the change, so they should be quick.
+ */
+interface MutationListener {
+
+    /**
+     * Called before a change is applied. A listener that can no longer record
+     * changes throws here, so the change is rejected instead of being applied
+     * unrecorded. The default accepts every change.
+     *
+     * @throws IllegalStateException If the listener cannot record changes.
+     */
+    default void checkRecording() {
+    }
+
+    /**
+     * Called after a change has been applied to the system. The change cannot be
+     * undone at this point: an exception thrown here is reported and the remaining
+     * listeners are still called, so a listener that fails should remember the
+     * failure and reject later changes through {@link #checkRecording()}.
+     *
+     * @param mutation The change that was applied.
+     */
+    void mutationApplied(Mutation mutation);
+}
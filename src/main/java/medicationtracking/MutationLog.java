@@ -0,0 +1,225 @@
+package medicationtracking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code MutationLog} class is an append-only write-ahead log of mutations.
+ *
+ * <p>Each record is one line of the form {@code crc \t sequence \t mutation}, where the
+ * CRC-32 covers the sequence and mutation. A torn or corrupt tail left by a crash is
+ * detected on replay and cut off. Depending on the {@link Durability}, records are
+ * forced to disk one at a time or in batches by a background flusher.
+ */
+class MutationLog implements Closeable {
+    private final Path file;
+    private final Durability durability;
+    private final int maxBatch;
+    private final FileChannel channel;
+    private final OutputStream out;
+    private final ScheduledExecutorService flusher;
+
+    // Records written since the last fsync
+    private int pending;
+
+    /**
+     * Opens a log for appending, creating the file if it does not exist.
+     *
+     * @param file          The log file.
+     * @param durability    When appended records are forced to disk.
+     * @param batchMillis   How often the background flusher runs in batched mode.
+     * @param maxBatch      How many records may be pending before a batch is forced early.
+     * @throws IOException If the file cannot be opened.
+     */
+    MutationLog(Path file, Durability durability, long batchMillis, int maxBatch) throws IOException {
+        this.file = file;
+        this.durability = durability;
+        this.maxBatch = maxBatch;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+
+        if (durability == Durability.BATCHED) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "mutation-log-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::syncQuietly, batchMillis, batchMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends a mutation to the log.
+     *
+     * @param sequence The sequence number of the mutation.
+     * @param mutation The mutation to append.
+     * @throws UncheckedIOException If the record cannot be written.
+     */
+    synchronized void append(long sequence, Mutation mutation) {
+        try {
+            out.write(frame(sequence, mutation.encode()));
+            pending++;
+            if (durability == Durability.PER_OPERATION || pending >= maxBatch) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to " + file, e);
+        }
+    }
+
+    /**
+     * Forces every appended record to disk.
+     *
+     * @throws IOException If the records cannot be written.
+     */
+    synchronized void sync() throws IOException {
+        if (pending == 0) {
+            return;
+        }
+        out.flush();
+        channel.force(false);
+        pending = 0;
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("Failed to sync " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forces pending records to disk and closes the log.
+     *
+     * @throws IOException If the records cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            // Interrupting a flush would close the channel, so let a running one finish
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            try {
+                sync();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    // ============================================================
+    // === Framing and Replay ===
+    // ============================================================
+
+    /**
+     * Receives the records read back from a log or snapshot.
+     */
+    interface RecordHandler {
+        /**
+         * Called for each valid record.
+         *
+         * @param sequence The sequence number stored with the record.
+         * @param payload  The record payload.
+         */
+        void record(long sequence, String payload);
+    }
+
+    /**
+     * Builds the bytes of one framed record, including the trailing newline.
+     *
+     * @param sequence The sequence number.
+     * @param payload  The payload, which must not contain newlines.
+     * @return The framed record.
+     */
+    static byte[] frame(long sequence, String payload) {
+        byte[] body = (sequence + "\t" + payload).getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        byte[] prefix = (Long.toHexString(crc.getValue()) + "\t").getBytes(StandardCharsets.UTF_8);
+
+        byte[] record = new byte[prefix.length + body.length + 1];
+        System.arraycopy(prefix, 0, record, 0, prefix.length);
+        System.arraycopy(body, 0, record, prefix.length, body.length);
+        record[record.length - 1] = '\n';
+        return record;
+    }
+
+    /**
+     * Reads framed records from a file until the end or the first invalid record.
+     *
+     * @param file    The file to read.
+     * @param handler Receives each valid record.
+     * @return The number of bytes occupied by valid records.
+     * @throws IOException If the file cannot be read.
+     */
+    static long read(Path file, RecordHandler handler) throws IOException {
+        long validBytes = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            CRC32 crc = new CRC32();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                byte[] bytes = line.toByteArray();
+                line.reset();
+
+                int tab = indexOf(bytes, (byte) '\t', 0);
+                if (tab < 0) {
+                    break;
+                }
+                crc.reset();
+                crc.update(bytes, tab + 1, bytes.length - tab - 1);
+                String expected = new String(bytes, 0, tab, StandardCharsets.UTF_8);
+                if (!expected.equals(Long.toHexString(crc.getValue()))) {
+                    break;
+                }
+                int seqEnd = indexOf(bytes, (byte) '\t', tab + 1);
+                if (seqEnd < 0) {
+                    break;
+                }
+                long sequence = Long.parseLong(new String(bytes, tab + 1, seqEnd - tab - 1, StandardCharsets.UTF_8));
+                handler.record(sequence, new String(bytes, seqEnd + 1, bytes.length - seqEnd - 1, StandardCharsets.UTF_8));
+                validBytes += bytes.length + 1;
+            }
+        }
+        return validBytes;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
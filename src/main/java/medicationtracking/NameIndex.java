@@ -0,0 +1,315 @@
+package medicationtracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * The {@code NameIndex} class answers case-insensitive prefix and substring
+ * searches over entity names without scanning every entity.
+ *
+ * <p>Prefix searches walk a sorted map of lowercased names. Substring searches
+ * use trigram posting lists: the rarest trigram of the query selects a small
+ * candidate set, which is then verified without allocating. Queries shorter
+ * than a trigram are answered from the trigrams that contain them.
+ *
+ * <p>Posting lists hold int slot numbers rather than entity sets, which keeps
+ * indexing a million names fast and compact. Removing an entity only clears its
+ * slot; the dead slots are skipped by queries and purged once they outnumber
+ * the live ones.
+ *
+ * @param <T> The type of entity being indexed.
+ */
+class NameIndex<T> {
+    private static final int GRAM = 3;
+    private static final int MIN_COMPACT_SLOTS = 1024;
+
+    private final Function<T, String> nameOf;
+    private final NavigableMap<String, Set<T>> byName = new TreeMap<>();
+    private final Map<String, Posting> byGram = new HashMap<>();
+    // Postings of the trigrams containing each shorter piece of text
+    private final Map<String, List<Posting>> byPart = new HashMap<>();
+
+    // Entity at each slot, or null once it has been removed
+    private final List<T> slots = new ArrayList<>();
+    private final Map<T, Integer> slotOf = new HashMap<>();
+    private int deadSlots;
+
+    /**
+     * Constructs an empty index.
+     *
+     * @param nameOf Function returning the current name of an entity.
+     */
+    NameIndex(Function<T, String> nameOf) {
+        this.nameOf = nameOf;
+    }
+
+    /**
+     * Indexes an entity under its current name.
+     *
+     * @param entity The entity to index.
+     */
+    void add(T entity) {
+        String key = normalize(nameOf.apply(entity));
+        byName.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(entity);
+
+        int slot = slots.size();
+        slots.add(entity);
+        slotOf.put(entity, slot);
+        if (key.length() < GRAM) {
+            if (!key.isEmpty()) {
+                posting(key).add(slot);
+            }
+            return;
+        }
+        for (int i = 0; i + GRAM <= key.length(); i++) {
+            posting(key.substring(i, i + GRAM)).add(slot);
+        }
+    }
+
+    private Posting posting(String gram) {
+        Posting posting = byGram.get(gram);
+        if (posting == null) {
+            posting = new Posting();
+            byGram.put(gram, posting);
+            for (String part : parts(gram)) {
+                byPart.computeIfAbsent(part, p -> new ArrayList<>()).add(posting);
+            }
+        }
+        return posting;
+    }
+
+    /**
+     * Removes an entity that is indexed under its current name.
+     *
+     * @param entity The entity to remove.
+     */
+    void remove(T entity) {
+        remove(entity, nameOf.apply(entity));
+    }
+
+    /**
+     * Re-indexes an entity after its name changed.
+     *
+     * @param entity  The renamed entity.
+     * @param oldName The name the entity was indexed under.
+     */
+    void rename(T entity, String oldName) {
+        remove(entity, oldName);
+        add(entity);
+    }
+
+    /**
+     * Finds entities whose name starts with a prefix, ignoring case.
+     * Results are ordered alphabetically by name.
+     *
+     * @param prefix The prefix to match.
+     * @param limit  The maximum number of results.
+     * @return The matching entities.
+     */
+    List<T> findByPrefix(String prefix, int limit) {
+        List<T> results = new ArrayList<>();
+        String key = normalize(prefix);
+        NavigableMap<String, Set<T>> range = key.isEmpty()
+                ? byName
+                : byName.subMap(key, true, key + Character.MAX_VALUE, false);
+        for (Set<T> bucket : range.values()) {
+            for (T entity : bucket) {
+                if (results.size() >= limit) {
+                    return results;
+                }
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds entities whose name contains a piece of text, ignoring case.
+     *
+     * @param text  The text to match.
+     * @param limit The maximum number of results.
+     * @return The matching entities.
+     */
+    List<T> findContaining(String text, int limit) {
+        String key = normalize(text);
+        if (key.length() < GRAM) {
+            return findShort(key, limit);
+        }
+
+        // Verify candidates from the rarest trigram of the query
+        Posting candidates = null;
+        for (int i = 0; i + GRAM <= key.length(); i++) {
+            Posting posting = byGram.get(key.substring(i, i + GRAM));
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            if (candidates == null || posting.size < candidates.size) {
+                candidates = posting;
+            }
+        }
+
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < candidates.size && results.size() < limit; i++) {
+            T entity = slots.get(candidates.slots[i]);
+            if (entity != null && containsIgnoreCase(nameOf.apply(entity), key)) {
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    // Answers queries shorter than a trigram from the trigrams that contain them.
+    // Their postings are merged in slot order, so results come in the same order
+    // as for longer queries.
+    private List<T> findShort(String key, int limit) {
+        if (key.isEmpty()) {
+            return findByPrefix(key, limit);
+        }
+        List<Posting> postings = byPart.getOrDefault(key, new ArrayList<>());
+        int[] next = new int[postings.size()];
+        List<Integer> nonEmpty = new ArrayList<>(postings.size());
+        for (int p = 0; p < postings.size(); p++) {
+            if (postings.get(p).size > 0) {
+                nonEmpty.add(p);
+            }
+        }
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, nonEmpty.size()),
+                Comparator.comparingInt(p -> postings.get(p).slots[next[p]]));
+        heads.addAll(nonEmpty);
+
+        List<T> results = new ArrayList<>();
+        int last = -1;
+        while (!heads.isEmpty() && results.size() < limit) {
+            int p = heads.poll();
+            Posting posting = postings.get(p);
+            int slot = posting.slots[next[p]++];
+            if (next[p] < posting.size) {
+                heads.add(p);
+            }
+            // A name holding several of the trigrams is in several postings
+            if (slot != last) {
+                last = slot;
+                T entity = slots.get(slot);
+                if (entity != null) {
+                    results.add(entity);
+                }
+            }
+        }
+        return results;
+    }
+
+    private void remove(T entity, String name) {
+        String key = normalize(name);
+        Set<T> bucket = byName.get(key);
+        if (bucket != null && bucket.remove(entity) && bucket.isEmpty()) {
+            byName.remove(key);
+        }
+        Integer slot = slotOf.remove(entity);
+        if (slot != null) {
+            slots.set(slot, null);
+            deadSlots++;
+            if (deadSlots >= MIN_COMPACT_SLOTS && deadSlots > slots.size() - deadSlots) {
+                compact();
+            }
+        }
+    }
+
+    // Renumbers the live slots and drops dead ones from every posting list
+    private void compact() {
+        int[] renumbered = new int[slots.size()];
+        List<T> live = new ArrayList<>(slots.size() - deadSlots);
+        for (int i = 0; i < slots.size(); i++) {
+            T entity = slots.get(i);
+            renumbered[i] = entity == null ? -1 : live.size();
+            if (entity != null) {
+                slotOf.put(entity, live.size());
+                live.add(entity);
+            }
+        }
+        Iterator<Map.Entry<String, Posting>> grams = byGram.entrySet().iterator();
+        while (grams.hasNext()) {
+            Map.Entry<String, Posting> gram = grams.next();
+            Posting posting = gram.getValue();
+            posting.renumber(renumbered);
+            if (posting.size == 0) {
+                grams.remove();
+                for (String part : parts(gram.getKey())) {
+                    List<Posting> postings = byPart.get(part);
+                    postings.remove(posting);
+                    if (postings.isEmpty()) {
+                        byPart.remove(part);
+                    }
+                }
+            }
+        }
+        slots.clear();
+        slots.addAll(live);
+        deadSlots = 0;
+    }
+
+    // Growable list of the slots whose names contain one trigram, in slot order
+    private static final class Posting {
+        int[] slots = new int[4];
+        int size;
+
+        // A name repeating a trigram adds its slot twice in a row; keep it once
+        void add(int slot) {
+            if (size > 0 && slots[size - 1] == slot) {
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        void renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = renumbered[slots[i]];
+                if (slot >= 0) {
+                    slots[kept++] = slot;
+                }
+            }
+            size = kept;
+        }
+    }
+
+    // The distinct pieces of a trigram (or shorter name) that are shorter than a trigram
+    private static Set<String> parts(String gram) {
+        Set<String> parts = new LinkedHashSet<>();
+        for (int length = 1; length < GRAM && length <= gram.length(); length++) {
+            for (int i = 0; i + length <= gram.length(); i++) {
+                parts.add(gram.substring(i, i + length));
+            }
+        }
+        return parts;
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    // Case-insensitive contains that does not allocate lowercased copies
+    private static boolean containsIgnoreCase(String name, String lowerText) {
+        int max = name.length() - lowerText.length();
+        for (int i = 0; i <= max; i++) {
+            if (name.regionMatches(true, i, lowerText, 0, lowerText.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,110 @@
+package medicationtracking;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code Page} class holds one page of a listing, together with the cursors
+ * that fetch the pages before and after it.
+ *
+ * <p>Cursors are opaque strings that mark a position in insertion order. They stay
+ * valid while records are added or removed: records added later appear on later
+ * pages, and a removed record simply no longer shows up. Cursors are not kept
+ * across restarts of the application.
+ *
+ * @param <T> The type of record on the page.
+ */
+public final class Page<T> {
+    static final char AFTER = '>';
+    static final char BEFORE = '<';
+
+    private final List<T> items;
+    private final String previousCursor;
+    private final String nextCursor;
+
+    /**
+     * Constructs a page.
+     *
+     * @param items          The records on the page, in order.
+     * @param previousCursor Cursor of the page before, or null if this is the first page.
+     * @param nextCursor     Cursor of the page after, or null if this is the last page.
+     */
+    Page(List<T> items, String previousCursor, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Gets the records on this page.
+     * @return A read-only list of the records, in insertion order.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the cursor of the page before this one.
+     * @return The cursor, or null if this is the first page.
+     */
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    /**
+     * Gets the cursor of the page after this one.
+     * @return The cursor, or null if this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Checks whether there is a page before this one.
+     * @return True if there are earlier records.
+     */
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+
+    /**
+     * Checks whether there is a page after this one.
+     * @return True if there are later records.
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    // Cursor of the records inserted after a position
+    static String after(long position) {
+        return AFTER + Long.toString(position);
+    }
+
+    // Cursor of the records inserted before a position
+    static String before(long position) {
+        return BEFORE + Long.toString(position);
+    }
+
+    /**
+     * Reads the position out of a cursor.
+     *
+     * @param cursor A cursor made by {@link #after(long)} or {@link #before(long)}.
+     * @return The position.
+     * @throws IllegalArgumentException If the cursor is malformed.
+     */
+    static long position(String cursor) {
+        char direction = cursor.charAt(0);
+        if (direction != AFTER && direction != BEFORE) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+        try {
+            long position = Long.parseLong(cursor.substring(1));
+            if (position < 0) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+            return position;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+    }
+}
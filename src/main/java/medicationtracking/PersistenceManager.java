@@ -0,0 +1,271 @@
+package medicationtracking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@code PersistenceManager} class makes a {@link MedicationTrackingSystem} durable.
+ *
+ * <p>On construction it recovers the system from the latest snapshot plus the tail of
+ * the write-ahead log, then records every further mutation in the log. After a
+ * configurable number of mutations it writes a compacted snapshot of the whole system
+ * and starts a fresh log, so recovery time stays bounded.
+ *
+ * <p>The data directory holds two files: {@code snapshot.bin}, written in the
+ * {@link BinarySnapshot} format, and {@code mutations.log}.
+ *
+ * <p>Automatic snapshots run on a background thread. A snapshot holds every read lock
+ * of the system while it is written, so it sees a consistent state; mutations wait for
+ * it to finish rather than taking the snapshot themselves while holding their own locks.
+ *
+ * <p>If a mutation cannot be appended to the log, the log no longer matches the system,
+ * so further changes are rejected before they are applied (see {@link #checkRecording()})
+ * and a snapshot is queued. Once a snapshot has been written the log is started afresh
+ * and changes are accepted again.
+ */
+public class PersistenceManager implements MutationListener, Closeable {
+    /** Number of mutations between automatic snapshots unless configured otherwise. */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 100_000;
+
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    static final String LOG_FILE = "mutations.log";
+    private static final long BATCH_MILLIS = 20;
+    private static final int MAX_BATCH = 4096;
+
+    private final MedicationTrackingSystem system;
+    private final Path directory;
+    private final Durability durability;
+    private final int snapshotInterval;
+
+    private MutationLog log;
+    private long lastSequence;
+    private int sinceSnapshot;
+    // The append failure that stopped the log, cleared by the next snapshot
+    private volatile UncheckedIOException failure;
+
+    // Writes automatic snapshots off the mutating thread
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "snapshot-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+
+    /**
+     * Recovers a system from a data directory and starts logging its mutations,
+     * taking a snapshot every {@value #DEFAULT_SNAPSHOT_INTERVAL} mutations.
+     *
+     * @param system     An empty system to recover into.
+     * @param directory  The data directory, created if it does not exist.
+     * @param durability When logged mutations are forced to disk.
+     * @throws IOException If the data files cannot be read or opened.
+     */
+    public PersistenceManager(MedicationTrackingSystem system, Path directory, Durability durability) throws IOException {
+        this(system, directory, durability, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Recovers a system from a data directory and starts logging its mutations.
+     *
+     * @param system           An empty system to recover into.
+     * @param directory        The data directory, created if it does not exist.
+     * @param durability       When logged mutations are forced to disk.
+     * @param snapshotInterval Number of mutations between automatic snapshots.
+     * @throws IOException If the data files cannot be read or opened.
+     * @throws IllegalArgumentException If the snapshot interval is not positive.
+     */
+    public PersistenceManager(MedicationTrackingSystem system, Path directory, Durability durability,
+                              int snapshotInterval) throws IOException {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be a positive value.");
+        }
+        this.system = system;
+        this.directory = directory;
+        this.durability = durability;
+        this.snapshotInterval = snapshotInterval;
+
+        Files.createDirectories(directory);
+        recover();
+        log = new MutationLog(directory.resolve(LOG_FILE), durability, BATCH_MILLIS, MAX_BATCH);
+        system.addMutationListener(this);
+    }
+
+    /**
+     * Gets the sequence number of the last recorded mutation.
+     *
+     * @return The last sequence number, or 0 if nothing has been recorded.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Rejects changes while the log has a failed append that no snapshot has covered
+     * yet; called by the system before each change.
+     *
+     * @throws IllegalStateException If an append failed since the last snapshot.
+     */
+    @Override
+    public void checkRecording() {
+        UncheckedIOException failed = failure;
+        if (failed != null) {
+            throw new IllegalStateException("Write-ahead log failed, changes are rejected until a snapshot is written: "
+                    + failed.getMessage(), failed);
+        }
+    }
+
+    /**
+     * Records a mutation in the write-ahead log, scheduling a snapshot when due.
+     * If the append fails, later changes are rejected and a snapshot is queued to
+     * bring the data directory back in line with the system.
+     *
+     * @param mutation The mutation that was applied.
+     * @throws UncheckedIOException If the mutation cannot be appended.
+     */
+    @Override
+    public synchronized void mutationApplied(Mutation mutation) {
+        if (failure != null) {
+            // Checked before the append failed; a later record would leave a gap in the log
+            System.err.println("Write-ahead log failed, change not logged: " + mutation);
+            return;
+        }
+        try {
+            log.append(++lastSequence, mutation);
+        } catch (UncheckedIOException e) {
+            failure = e;
+            queueSnapshot();
+            throw e;
+        }
+        if (++sinceSnapshot >= snapshotInterval) {
+            queueSnapshot();
+        }
+    }
+
+    private void queueSnapshot() {
+        if (snapshotQueued.compareAndSet(false, true)) {
+            snapshotter.execute(this::snapshotQuietly);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Failed to write snapshot: " + e.getMessage());
+        } finally {
+            snapshotQueued.set(false);
+        }
+    }
+
+    /**
+     * Writes a compacted snapshot of the whole system and starts a fresh log.
+     * The snapshot is written to a temporary file and moved into place atomically,
+     * so a crash part-way through leaves the previous snapshot and log intact.
+     * A successful snapshot also lifts the rejection of changes after a failed append.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        // System locks first, then this monitor: the order mutations take them in
+        system.lockAllForRead();
+        try {
+            synchronized (this) {
+                Path snapshot = directory.resolve(SNAPSHOT_FILE);
+                Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+                BinarySnapshot.write(temp, lastSequence, system);
+                Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                // Everything in the old log is now covered by the snapshot, so records
+                // that cannot be flushed any more are not needed
+                try {
+                    log.close();
+                } catch (IOException | UncheckedIOException e) {
+                    System.err.println("Failed to close the replaced log: " + e.getMessage());
+                }
+                Files.deleteIfExists(directory.resolve(LOG_FILE));
+                log = new MutationLog(directory.resolve(LOG_FILE), durability, BATCH_MILLIS, MAX_BATCH);
+                sinceSnapshot = 0;
+                failure = null;
+            }
+        } finally {
+            system.unlockAllForRead();
+        }
+    }
+
+    /**
+     * Stops recording mutations and closes the log after forcing it to disk.
+     *
+     * @throws IOException If pending records cannot be written, or an append failed
+     *         and no snapshot has covered the changes since.
+     */
+    @Override
+    public void close() throws IOException {
+        system.removeMutationListener(this);
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            log.close();
+        }
+        UncheckedIOException failed = failure;
+        if (failed != null) {
+            throw new IOException("Changes since the last snapshot were not all logged", failed);
+        }
+    }
+
+    // ============================================================
+    // === Recovery ===
+    // ============================================================
+
+    // Replays the snapshot and then the log records that follow it
+    private void recover() throws IOException {
+        ReportSink previous = system.setOutput(ReportSinks.discard());
+        try {
+            long snapshotSequence = loadSnapshot(directory.resolve(SNAPSHOT_FILE));
+            lastSequence = snapshotSequence;
+            replayLog(directory.resolve(LOG_FILE), snapshotSequence);
+        } finally {
+            system.setOutput(previous);
+        }
+    }
+
+    private long loadSnapshot(Path snapshot) throws IOException {
+        return Files.exists(snapshot) ? BinarySnapshot.load(snapshot, system) : 0;
+    }
+
+    private void replayLog(Path logFile, long afterSequence) throws IOException {
+        if (!Files.exists(logFile)) {
+            return;
+        }
+        long validBytes = MutationLog.read(logFile, (seq, payload) -> {
+            if (seq > afterSequence) {
+                Mutation.decode(payload).applyTo(system);
+                lastSequence = seq;
+                sinceSnapshot++;
+            }
+        });
+
+        // Cut off a torn tail so new records are not appended after garbage
+        if (validBytes < Files.size(logFile)) {
+            System.err.println("Discarding " + (Files.size(logFile) - validBytes)
+                    + " bytes of incomplete log records from " + logFile);
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+                channel.force(true);
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package medicationtracking;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+
 /**
  * The {@code Person} class serves as a base class for individuals in the system,
  * such as patients and doctors. It includes shared attributes like ID, name, 
@@ -7,9 +10,18 @@ package medicationtracking;
  */
 public class Person {
     protected String id;
-    protected String name;
-    protected Integer age; // Nullable to allow flexibility for doctors.
-    protected String phoneNumber;
+    protected volatile String name;
+    protected volatile Integer age; // Nullable to allow flexibility for doctors.
+    protected volatile String phoneNumber;
+
+    // Notified when a setter changes this person (set by the tracking system)
+    private EntityChangeListener changeListener;
+
+    // Number of changes so far, and the line this person last rendered to
+    private volatile int version;
+    private volatile RenderedLine rendered;
+    private static final AtomicIntegerFieldUpdater<Person> VERSION =
+            AtomicIntegerFieldUpdater.newUpdater(Person.class, "version");
 
     /**
      * Constructs a new {@code Person} object.
@@ -87,7 +99,11 @@ public class Person {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Invalid Name: Name cannot be null or empty.");
         }
-        this.name = name;
+        change("name", () -> {
+            String oldName = this.name;
+            this.name = name;
+            return oldName;
+        });
     }
 
     /**
@@ -100,7 +116,11 @@ public class Person {
         if (age != null && age <= 0) {
             throw new IllegalArgumentException("Invalid Age: Age must be a positive number.");
         }
-        this.age = age;
+        change("age", () -> {
+            Integer oldAge = this.age;
+            this.age = age;
+            return oldAge;
+        });
     }
 
     /**
@@ -113,7 +133,40 @@ public class Person {
         if (phoneNumber == null || phoneNumber.trim().isEmpty()) {
             throw new IllegalArgumentException("Invalid Phone Number: Phone number cannot be null or empty.");
         }
-        this.phoneNumber = phoneNumber;
+        change("phoneNumber", () -> {
+            String oldPhoneNumber = this.phoneNumber;
+            this.phoneNumber = phoneNumber;
+            return oldPhoneNumber;
+        });
+    }
+
+    /**
+     * Installs the listener notified when a setter changes this {@code Person}.
+     * 
+     * @param listener The listener, or null to stop notifications.
+     */
+    void setChangeListener(EntityChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Changes a field, through the installed listener if there is one.
+     * 
+     * @param field The name of the field.
+     * @param write Writes the new value and returns the old one.
+     */
+    protected void change(String field, Supplier<Object> write) {
+        EntityChangeListener listener = changeListener;
+        if (listener == null) {
+            write.get();
+            markChanged();
+            return;
+        }
+        listener.applyChange(this, field, () -> {
+            Object oldValue = write.get();
+            markChanged();
+            return oldValue;
+        });
     }
 
     /**
@@ -123,6 +176,30 @@ public class Person {
      */
     @Override
     public String toString() {
+        int current = version;
+        String text = RenderedLine.current(rendered, current);
+        if (text == null) {
+            text = render();
+            rendered = new RenderedLine(text, current);
+        }
+        return text;
+    }
+
+    /**
+     * Builds the text returned by {@link #toString()}, which caches it until this
+     * person next changes.
+     * 
+     * @return A formatted string with person details.
+     */
+    protected String render() {
         return "ID: " + id + ", Name: " + name + (age != null ? ", Age: " + age : "") + ", Phone: " + phoneNumber;
     }
+
+    /**
+     * Records that something shown by {@link #toString()} has changed, so the cached
+     * text is rendered again. Called after the change has been made.
+     */
+    protected void markChanged() {
+        VERSION.incrementAndGet(this);
+    }
 }
@@ -1,13 +1,21 @@
 package medicationtracking;
 
+import java.util.function.Supplier;
+
 /**
  * The Prescription class represents a medical prescription in the system.
  * It contains details such as the prescription ID, patient ID, doctor ID, 
- * medication ID, quantity prescribed, and instructions for the medication.
+ * medication ID, quantity prescribed, and instructions for the medication, and
+ * keeps track of how much of the quantity has been dispensed.
+ *
+ * <p>Once added to a {@link MedicationTrackingSystem}, a prescription becomes a view
+ * of a row in the system's {@link PrescriptionStore}: its getters and setters read
+ * and write the stored columns, and the system hands out further views of the same
+ * row on lookup.
  */
 public class Prescription {
     // Unique identifier for the prescription
-    private String prescriptionId;
+    private final String prescriptionId;
     
     // ID of the patient the prescription is for
     private String patientId;
@@ -19,10 +27,20 @@ public class Prescription {
     private String medicationId;
     
     // Quantity of the medication prescribed
-    private int quantity;
+    private volatile int quantity;
+
+    // Units dispensed or reserved so far
+    private volatile int filledQuantity;
     
     // Instructions for taking the medication
-    private String instructions;
+    private volatile String instructions;
+
+    // Notified when a setter changes this prescription (set by the tracking system)
+    private EntityChangeListener changeListener;
+
+    // The store row this prescription is a view of, or null while it is not stored
+    private volatile PrescriptionStore store;
+    private int row;
 
     /**
      * Constructs a new Prescription with the specified details.
@@ -43,6 +61,30 @@ public class Prescription {
         this.instructions = instructions;
     }
 
+    /**
+     * Constructs a view of a stored row.
+     *
+     * @param prescriptionId The unique ID of the prescription.
+     * @param store The store holding the row.
+     * @param row The row.
+     */
+    Prescription(String prescriptionId, PrescriptionStore store, int row) {
+        this.prescriptionId = prescriptionId;
+        this.row = row;
+        this.store = store;
+    }
+
+    /**
+     * Turns this prescription into a view of a stored row holding its values.
+     *
+     * @param store The store holding the row.
+     * @param row The row.
+     */
+    void attach(PrescriptionStore store, int row) {
+        this.row = row;
+        this.store = store;
+    }
+
     /**
      * Gets the prescription ID.
      * @return The unique prescription ID.
@@ -56,7 +98,8 @@ public class Prescription {
      * @return The patient ID.
      */
     public String getPatientId() {
-        return patientId;
+        PrescriptionStore s = store;
+        return s == null ? patientId : s.patientId(row);
     }
 
     /**
@@ -64,7 +107,8 @@ public class Prescription {
      * @return The doctor ID.
      */
     public String getDoctorId() {
-        return doctorId;
+        PrescriptionStore s = store;
+        return s == null ? doctorId : s.doctorId(row);
     }
 
     /**
@@ -72,7 +116,8 @@ public class Prescription {
      * @return The medication ID.
      */
     public String getMedicationId() {
-        return medicationId;
+        PrescriptionStore s = store;
+        return s == null ? medicationId : s.medicationId(row);
     }
 
     /**
@@ -80,7 +125,8 @@ public class Prescription {
      * @return The quantity of medication.
      */
     public int getQuantity() {
-        return quantity;
+        PrescriptionStore s = store;
+        return s == null ? quantity : s.quantity(row);
     }
 
     /**
@@ -94,7 +140,59 @@ public class Prescription {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be a positive value.");
         }
-        this.quantity = quantity;
+        change("quantity", () -> {
+            int oldQuantity = getQuantity();
+            PrescriptionStore s = store;
+            if (s == null) {
+                this.quantity = quantity;
+            } else if (!s.setQuantity(row, quantity)) {
+                return EntityChangeListener.UNCHANGED; // Removed from the system
+            }
+            return oldQuantity;
+        });
+    }
+
+    /**
+     * Gets how much of the prescription has been dispensed or is reserved.
+     * @return The number of units filled.
+     */
+    public int getFilledQuantity() {
+        PrescriptionStore s = store;
+        return s == null ? filledQuantity : s.filledQuantity(row);
+    }
+
+    /**
+     * Gets how much of the prescription can still be dispensed.
+     * @return The quantity less the units filled, never negative.
+     */
+    public int getRemainingQuantity() {
+        return Math.max(0, getQuantity() - getFilledQuantity());
+    }
+
+    /**
+     * Adds units to the filled quantity if at least that many remain; only used on
+     * stored prescriptions, by the tracking system while dispensing.
+     *
+     * @param units The number of units to fill (positive).
+     * @return True if the units were added, false if fewer remain.
+     */
+    boolean tryFill(int units) {
+        return store.tryFill(row, units);
+    }
+
+    /**
+     * Changes the filled quantity without checking what remains, e.g. when a
+     * reservation is cancelled, a fill is replayed or a snapshot is loaded.
+     *
+     * @param delta The number of units to add (negative when returned).
+     */
+    void addFilled(int delta) {
+        PrescriptionStore s = store;
+        if (s == null) {
+            filledQuantity = (int) Math.max(0, Math.min(Integer.MAX_VALUE, (long) filledQuantity + delta));
+        } else {
+            s.addFilled(row, delta);
+        }
     }
 
     /**
@@ -102,7 +200,8 @@ public class Prescription {
      * @return The instructions for medication intake.
      */
     public String getInstructions() {
-        return instructions;
+        PrescriptionStore s = store;
+        return s == null ? instructions : s.instructions(row);
     }
 
     /**
@@ -116,7 +215,74 @@ public class Prescription {
         if (instructions == null || instructions.trim().isEmpty()) {
             throw new IllegalArgumentException("Instructions cannot be null or empty.");
         }
-        this.instructions = instructions;
+        change("instructions", () -> {
+            String oldInstructions = getInstructions();
+            PrescriptionStore s = store;
+            if (s == null) {
+                this.instructions = instructions;
+            } else if (!s.setInstructions(row, instructions)) {
+                return EntityChangeListener.UNCHANGED; // Removed from the system
+            }
+            return oldInstructions;
+        });
+    }
+
+    /**
+     * Installs the listener notified when a setter changes this {@code Prescription}.
+     * 
+     * @param listener The listener, or null to stop notifications.
+     */
+    void setChangeListener(EntityChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Changes a field, through the installed listener if there is one.
+     * 
+     * @param field The name of the field.
+     * @param write Writes the new value and returns the old one.
+     */
+    private void change(String field, Supplier<Object> write) {
+        EntityChangeListener listener = changeListener;
+        if (listener == null) {
+            write.get();
+        } else {
+            listener.applyChange(this, field, write);
+        }
+    }
+
+    /**
+     * Checks whether another object is a view of the same stored prescription.
+     * A prescription that has not been stored is only equal to itself.
+     *
+     * @param o The object to compare with.
+     * @return True if both are views of the same stored prescription.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Prescription)) {
+            return false;
+        }
+        PrescriptionStore s = store;
+        PrescriptionStore otherStore = ((Prescription) o).store;
+        // Compaction moves rows but keeps their insertion numbers
+        return s != null && otherStore != null && s.lineage() == otherStore.lineage()
+                && s.sequence(row) == otherStore.sequence(((Prescription) o).row);
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        PrescriptionStore s = store;
+        return s == null ? System.identityHashCode(this)
+                : 31 * System.identityHashCode(s.lineage()) + Long.hashCode(s.sequence(row));
     }
 
     /**
@@ -126,13 +292,24 @@ public class Prescription {
      */
     @Override
     public String toString() {
+        PrescriptionStore s = store;
+        return s == null ? render() : s.render(this, row);
+    }
+
+    /**
+     * Builds the string representation; for a stored prescription the store caches it
+     * until the prescription next changes.
+     *
+     * @return A formatted string containing prescription details.
+     */
+    String render() {
         return "Prescription{" +
                 "prescriptionId='" + prescriptionId + '\'' +
-                ", patientId='" + patientId + '\'' +
-                ", doctorId='" + doctorId + '\'' +
-                ", medicationId='" + medicationId + '\'' +
-                ", quantity=" + quantity +
-                ", instructions='" + instructions + '\'' +
+                ", patientId='" + getPatientId() + '\'' +
+                ", doctorId='" + getDoctorId() + '\'' +
+                ", medicationId='" + getMedicationId() + '\'' +
+                ", quantity=" + getQuantity() +
+                ", instructions='" + getInstructions() + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,85 @@
+package medicationtracking;
+
+/**
+ * The {@code PrescriptionReport} class renders the detailed prescription report.
+ * Patient, doctor and medication names are resolved through the system's ID
+ * registries, so each row costs a constant number of hash lookups instead of
+ * a scan of every table. Rows are written straight to the output as they are
+ * produced.
+ */
+class PrescriptionReport {
+    private static final String UNKNOWN = "Unknown";
+
+    private final Registry<Patient> patients;
+    private final Registry<Doctor> doctors;
+    private final Registry<Medication> medications;
+
+    // Number of prescriptions with at least one dangling reference in the last run
+    private int danglingCount;
+
+    /**
+     * Constructs a report over the given registries.
+     *
+     * @param patients    Registry used to resolve patient names.
+     * @param doctors     Registry used to resolve doctor names.
+     * @param medications Registry used to resolve medication names.
+     */
+    PrescriptionReport(Registry<Patient> patients, Registry<Doctor> doctors, Registry<Medication> medications) {
+        this.patients = patients;
+        this.doctors = doctors;
+        this.medications = medications;
+    }
+
+    /**
+     * Writes one report row per prescription followed by a summary line.
+     *
+     * @param prescriptions The prescriptions to report on.
+     * @param out           The sink receiving the report. It is flushed but not closed.
+     * @return The number of rows written.
+     */
+    int write(Iterable<Prescription> prescriptions, ReportSink out) {
+        int rows = 0;
+        danglingCount = 0;
+
+        for (Prescription p : prescriptions) {
+            Patient patient = patients.get(p.getPatientId());
+            Doctor doctor = doctors.get(p.getDoctorId());
+            Medication medication = medications.get(p.getMedicationId());
+            if (patient == null || doctor == null || medication == null) {
+                danglingCount++;
+            }
+
+            out.println();
+            out.print("Patient: ");
+            out.println(patient != null ? patient.getName() : UNKNOWN);
+            out.print("Doctor: ");
+            out.println(doctor != null ? doctor.getName() : UNKNOWN);
+            out.print("Medication: ");
+            out.println(medication != null ? medication.getName() : UNKNOWN);
+            out.print("Quantity: ");
+            out.println(p.getQuantity());
+            out.print("Instructions: ");
+            out.println(p.getInstructions());
+            out.println("--------------------------------");
+            rows++;
+        }
+
+        out.println();
+        out.print("Prescriptions reported: ");
+        out.println(rows);
+        out.print("Prescriptions with unknown references: ");
+        out.println(danglingCount);
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Gets the number of prescriptions that referenced a missing patient,
+     * doctor or medication during the last call to {@link #write}.
+     *
+     * @return The dangling reference count.
+     */
+    int getDanglingCount() {
+        return danglingCount;
+    }
+}
@@ -0,0 +1,35 @@
+package medicationtracking;
+
+import java.util.List;
+
+/**
+ * The {@code PrescriptionRepository} interface stores prescriptions and finds them by
+ * the patient, doctor or medication they refer to. Prescriptions are only added if
+ * their patient, doctor and medication are stored in the same set of repositories.
+ */
+public interface PrescriptionRepository extends Repository<Prescription> {
+
+    /**
+     * Finds the prescriptions of a patient.
+     *
+     * @param patientId The ID of the patient.
+     * @return The patient's prescriptions, in insertion order.
+     */
+    List<Prescription> getByPatient(String patientId);
+
+    /**
+     * Finds the prescriptions issued by a doctor.
+     *
+     * @param doctorId The ID of the doctor.
+     * @return The doctor's prescriptions, in insertion order.
+     */
+    List<Prescription> getByDoctor(String doctorId);
+
+    /**
+     * Finds the prescriptions of a medication.
+     *
+     * @param medicationId The ID of the medication.
+     * @return The medication's prescriptions, in insertion order.
+     */
+    List<Prescription> getByMedication(String medicationId);
+}
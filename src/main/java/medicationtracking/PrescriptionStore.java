@@ -0,0 +1,897 @@
+package medicationtracking;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The {@code PrescriptionStore} class holds prescriptions in columns of primitive
+ * arrays rather than as one object per prescription.
+ *
+ * <p>Patient, doctor and medication IDs and instruction texts repeat across many
+ * prescriptions, so each is stored once in a dictionary and the columns hold its
+ * int key. A prescription is a row: its ID, four dictionary keys, its quantity and
+ * how much of it has been filled, about 24 bytes plus the ID string. Prescription IDs are found through an
+ * open-addressing table of row numbers, and the rows of each patient, doctor and
+ * medication are kept in sorted int arrays, so no per-prescription map entries or
+ * sets are allocated.
+ *
+ * <p>{@link Prescription} objects handed out by the store are views of a row: they
+ * read and write the columns, so they are cheap to create and always current.
+ * Rows stay in insertion order, each tagged with an insertion number that only ever
+ * grows and that page cursors refer to. Once deleted rows outnumber live ones, the
+ * system replaces the store with a compacted copy holding only the live rows and
+ * the dictionary entries they use. The old store is left as it was and forwards its
+ * views to the rows that replaced theirs, found by insertion number, so views made
+ * before compaction stay current and views of deleted prescriptions keep their last
+ * values.
+ *
+ * <p>Structural changes and lookups are guarded by the system's prescription lock.
+ * The column arrays are published through volatile fields and the mutable columns
+ * are written and read with volatile semantics, so views may be read without it.
+ */
+class PrescriptionStore implements Iterable<Prescription> {
+    private static final int MIN_CAPACITY = 16;
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LINES = MethodHandles.arrayElementVarHandle(RenderedLine[].class);
+
+    // Notified by views when a setter changes a live row
+    private final EntityChangeListener listener;
+
+    // Shared by this store and the compacted copies that replace it
+    private final Object lineage;
+
+    // The compacted copy that replaced this store, holding its first movedRows rows
+    private volatile PrescriptionStore successor;
+    private int movedRows;
+
+    // === Dictionaries (repeated strings stored once, referred to by int key) ===
+    private final Dictionary patientIds = new Dictionary();
+    private final Dictionary doctorIds = new Dictionary();
+    private final Dictionary medicationIds = new Dictionary();
+    private final Dictionary instructionTexts = new Dictionary();
+
+    // === Columns (one entry per row; the ID is null once the row is deleted) ===
+    private volatile String[] ids = new String[MIN_CAPACITY];
+    private volatile int[] patients = new int[MIN_CAPACITY];
+    private volatile int[] doctors = new int[MIN_CAPACITY];
+    private volatile int[] medications = new int[MIN_CAPACITY];
+    private volatile int[] quantities = new int[MIN_CAPACITY];
+    // Units dispensed or reserved; changed with compare-and-set by dispensers
+    private volatile int[] filledQuantities = new int[MIN_CAPACITY];
+    private volatile int[] instructions = new int[MIN_CAPACITY];
+    // Insertion number of each row, ascending
+    private volatile long[] sequences = new long[MIN_CAPACITY];
+    private int rowCount;
+    private long lastSequence;
+
+    // === Rendering (number of changes per row, and the line each row last rendered to) ===
+    private volatile int[] versions = new int[MIN_CAPACITY];
+    private volatile RenderedLine[] lines = new RenderedLine[MIN_CAPACITY];
+    private int liveCount;
+
+    // Row + 1 of each live prescription ID, by linear probing (0 marks an empty slot)
+    private int[] idTable = new int[MIN_CAPACITY * 2];
+
+    // === Rows by referenced entity, ascending ===
+    private final Postings byPatient = new Postings();
+    private final Postings byDoctor = new Postings();
+    private final Postings byMedication = new Postings();
+
+    // Total quantity prescribed per medication key, kept up to date on every change
+    private long[] quantityByMedication = new long[MIN_CAPACITY];
+
+    /**
+     * Constructs an empty store.
+     *
+     * @param listener Listener installed on every prescription view the store hands out.
+     */
+    PrescriptionStore(EntityChangeListener listener) {
+        this(listener, new Object());
+    }
+
+    private PrescriptionStore(EntityChangeListener listener, Object lineage) {
+        this.listener = listener;
+        this.lineage = lineage;
+    }
+
+    // ============================================================
+    // === Rows ===
+    // ============================================================
+
+    /**
+     * Adds a prescription unless its ID is already stored. The prescription's values
+     * are copied into a new row, and the prescription becomes a view of that row.
+     *
+     * @param prescription The prescription to add.
+     * @return True if the prescription was added, false if its ID is already taken.
+     */
+    synchronized boolean add(Prescription prescription) {
+        String id = prescription.getPrescriptionId();
+        int slot = findSlot(id);
+        if (slot >= 0) {
+            return false;
+        }
+        int row = append(id, prescription.getPatientId(), prescription.getDoctorId(),
+                prescription.getMedicationId(), prescription.getQuantity(), prescription.getFilledQuantity(),
+                prescription.getInstructions(), ++lastSequence);
+        idTable[-slot - 1] = row + 1;
+        if (liveCount * 2 > idTable.length) {
+            rehash(idTable.length * 2);
+        }
+        prescription.attach(this, row);
+        prescription.setChangeListener(listener);
+        return true;
+    }
+
+    // Fills a new row and files it in the indexes other than the ID table
+    private int append(String id, String patientId, String doctorId, String medicationId, int quantity,
+                       int filled, String instruction, long sequence) {
+        int row = rowCount;
+        if (row == ids.length) {
+            grow();
+        }
+        int patient = patientIds.intern(patientId);
+        int doctor = doctorIds.intern(doctorId);
+        int medication = medicationIds.intern(medicationId);
+        patients[row] = patient;
+        doctors[row] = doctor;
+        medications[row] = medication;
+        quantities[row] = quantity;
+        filledQuantities[row] = filled;
+        instructions[row] = instructionTexts.intern(instruction);
+        sequences[row] = sequence;
+        ids[row] = id;
+        rowCount++;
+        liveCount++;
+
+        byPatient.add(patient, row);
+        byDoctor.add(doctor, row);
+        byMedication.add(medication, row);
+        addQuantity(medication, quantity);
+        return row;
+    }
+
+    /**
+     * Removes the prescription with an ID. Views of it keep their last values.
+     *
+     * @param id The ID of the prescription to remove.
+     * @return True if the prescription was removed, false if no prescription had that ID.
+     */
+    synchronized boolean remove(String id) {
+        int slot = id == null ? -1 : findSlot(id);
+        if (slot < 0) {
+            return false;
+        }
+        int row = idTable[slot] - 1;
+        removeSlot(slot);
+        byPatient.remove(patients[row], row);
+        byDoctor.remove(doctors[row], row);
+        byMedication.remove(medications[row], row);
+        addQuantity(medications[row], -quantities[row]);
+        ids[row] = null;
+        lines[row] = null;
+        liveCount--;
+        return true;
+    }
+
+    /**
+     * Returns the store to use from now on: this store, or once deleted rows outnumber
+     * live ones a compacted copy of it. The copy holds the live rows in the same order
+     * with the same insertion numbers, so page cursors keep their meaning, and only
+     * the dictionary entries those rows use. Views of this store are forwarded to it.
+     * Must be called while no other thread changes the store.
+     *
+     * @return The store holding the prescriptions.
+     */
+    synchronized PrescriptionStore compacted() {
+        if (rowCount - liveCount <= Math.max(MIN_CAPACITY, liveCount)) {
+            return this;
+        }
+        PrescriptionStore copy = new PrescriptionStore(listener, lineage);
+        copy.lastSequence = lastSequence;
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, liveCount)) * 2);
+        copy.resize(capacity);
+        for (int row = 0; row < rowCount; row++) {
+            if (isLive(row)) {
+                int moved = copy.append(ids[row], patientId(row), doctorId(row), medicationId(row),
+                        quantities[row], filledQuantities[row], instructionTexts.value(instructions[row]),
+                        sequences[row]);
+                copy.versions[moved] = versions[row];
+                copy.lines[moved] = lines[row];
+            }
+        }
+        copy.rehash(capacity * 2);
+        movedRows = copy.rowCount;
+        successor = copy;
+        return copy;
+    }
+
+    /**
+     * Gets a view of the prescription with an ID.
+     *
+     * @param id The ID to look up.
+     * @return A view of the prescription, or null if no prescription has that ID.
+     */
+    Prescription get(String id) {
+        int slot = id == null ? -1 : findSlot(id);
+        return slot < 0 ? null : view(idTable[slot] - 1);
+    }
+
+    /**
+     * Checks whether a prescription with an ID is stored.
+     *
+     * @param id The ID to look up.
+     * @return True if a prescription has that ID.
+     */
+    boolean contains(String id) {
+        return id != null && findSlot(id) >= 0;
+    }
+
+    /**
+     * Gets the number of stored prescriptions.
+     *
+     * @return The prescription count.
+     */
+    int size() {
+        return liveCount;
+    }
+
+    /**
+     * Checks whether the store is empty.
+     *
+     * @return True if no prescriptions are stored.
+     */
+    boolean isEmpty() {
+        return liveCount == 0;
+    }
+
+    private Prescription view(int row) {
+        Prescription view = new Prescription(ids[row], this, row);
+        view.setChangeListener(listener);
+        return view;
+    }
+
+    private void grow() {
+        resize(ids.length * 2);
+    }
+
+    private void resize(int capacity) {
+        sequences = Arrays.copyOf(sequences, capacity);
+        patients = Arrays.copyOf(patients, capacity);
+        doctors = Arrays.copyOf(doctors, capacity);
+        medications = Arrays.copyOf(medications, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        filledQuantities = Arrays.copyOf(filledQuantities, capacity);
+        instructions = Arrays.copyOf(instructions, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        // IDs last: a row is readable once its ID column covers it
+        ids = Arrays.copyOf(ids, capacity);
+    }
+
+    // ============================================================
+    // === Column Access (used by prescription views) ===
+    // ============================================================
+
+    /**
+     * Checks whether a row still holds a stored prescription.
+     *
+     * @param row The row.
+     * @return True unless the row's prescription has been removed.
+     */
+    boolean isLive(int row) {
+        return ids[row] != null;
+    }
+
+    /**
+     * Gets the insertion number of a row, which identifies its prescription in this
+     * store and the compacted copies that replace it.
+     *
+     * @param row The row.
+     * @return The insertion number.
+     */
+    long sequence(int row) {
+        return sequences[row];
+    }
+
+    /**
+     * Gets the object shared by this store and the compacted copies that replace it.
+     *
+     * @return The lineage of this store.
+     */
+    Object lineage() {
+        return lineage;
+    }
+
+    // Row of the successor holding a row of this store, or -1 if the row was deleted
+    // before compaction (its last values then stay here)
+    private int moved(PrescriptionStore next, int row) {
+        int at = Arrays.binarySearch(next.sequences, 0, movedRows, sequences[row]);
+        return at < 0 ? -1 : at;
+    }
+
+    String patientId(int row) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        return moved >= 0 ? next.patientId(moved) : patientIds.value(patients[row]);
+    }
+
+    String doctorId(int row) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        return moved >= 0 ? next.doctorId(moved) : doctorIds.value(doctors[row]);
+    }
+
+    String medicationId(int row) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        return moved >= 0 ? next.medicationId(moved) : medicationIds.value(medications[row]);
+    }
+
+    int quantity(int row) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        return moved >= 0 ? next.quantity(moved) : (int) INTS.getVolatile(quantities, row);
+    }
+
+    int filledQuantity(int row) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        return moved >= 0 ? next.filledQuantity(moved) : (int) INTS.getVolatile(filledQuantities, row);
+    }
+
+    String instructions(int row) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        return moved >= 0 ? next.instructions(moved)
+                : instructionTexts.value((int) INTS.getVolatile(instructions, row));
+    }
+
+    /**
+     * Changes the quantity of a row.
+     *
+     * @param row      The row.
+     * @param quantity The new quantity.
+     * @return True if the row is live, false if its prescription has been removed.
+     */
+    synchronized boolean setQuantity(int row, int quantity) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        if (moved >= 0) {
+            return next.setQuantity(moved, quantity);
+        }
+        int old = (int) INTS.getAndSet(quantities, row, quantity);
+        markChanged(row);
+        if (!isLive(row)) {
+            return false;
+        }
+        addQuantity(medications[row], quantity - old);
+        return true;
+    }
+
+    /**
+     * Adds units to the filled quantity of a row if at least that many remain of its
+     * quantity. The count is changed with compare-and-set, so concurrent fills of one
+     * prescription never exceed it. The caller holds the prescription read lock, which
+     * keeps the row from being removed or moved by compaction meanwhile.
+     *
+     * @param row   The row.
+     * @param units The number of units to fill (positive).
+     * @return True if the units were added, false if fewer remain.
+     */
+    boolean tryFill(int row, int units) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        if (moved >= 0) {
+            return next.tryFill(moved, units);
+        }
+        int[] column = filledQuantities;
+        while (true) {
+            int filled = (int) INTS.getVolatile(column, row);
+            if (units > (int) INTS.getVolatile(quantities, row) - filled) {
+                return false;
+            }
+            if (INTS.compareAndSet(column, row, filled, filled + units)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Changes the filled quantity of a row without checking what remains, for
+     * returned reservations and replay. The count never drops below 0. The caller
+     * holds the prescription read lock.
+     *
+     * @param row   The row.
+     * @param delta The number of units to add (negative when returned).
+     */
+    void addFilled(int row, int delta) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        if (moved >= 0) {
+            next.addFilled(moved, delta);
+            return;
+        }
+        int[] column = filledQuantities;
+        while (true) {
+            int filled = (int) INTS.getVolatile(column, row);
+            int updated = (int) Math.max(0, Math.min(Integer.MAX_VALUE, (long) filled + delta));
+            if (INTS.compareAndSet(column, row, filled, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Changes the instructions of a row.
+     *
+     * @param row         The row.
+     * @param instruction The new instructions.
+     * @return True if the row is live, false if its prescription has been removed.
+     */
+    synchronized boolean setInstructions(int row, String instruction) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        if (moved >= 0) {
+            return next.setInstructions(moved, instruction);
+        }
+        INTS.setVolatile(instructions, row, instructionTexts.intern(instruction));
+        markChanged(row);
+        return isLive(row);
+    }
+
+    /**
+     * Gets the text a view of a row renders to, rendering it only if the row has
+     * changed since it was last rendered.
+     *
+     * @param view A view of the row, used to render it.
+     * @param row  The row.
+     * @return The rendered text.
+     */
+    String render(Prescription view, int row) {
+        PrescriptionStore next = successor;
+        int moved = next == null ? -1 : moved(next, row);
+        if (moved >= 0) {
+            return next.render(view, moved);
+        }
+        int current = (int) INTS.getVolatile(versions, row);
+        RenderedLine[] column = lines;
+        String text = RenderedLine.current((RenderedLine) LINES.getVolatile(column, row), current);
+        if (text == null) {
+            text = view.render();
+            LINES.setVolatile(column, row, new RenderedLine(text, current));
+        }
+        return text;
+    }
+
+    // Called after a change, while holding this store's monitor
+    private void markChanged(int row) {
+        INTS.setVolatile(versions, row, (int) INTS.getVolatile(versions, row) + 1);
+    }
+
+    // ============================================================
+    // === Lookups by Referenced Entity ===
+    // ============================================================
+
+    /**
+     * Gets the prescriptions written for a patient, in insertion order.
+     *
+     * @param patientId The patient ID.
+     * @return A new list of views, empty if there are none.
+     */
+    List<Prescription> byPatient(String patientId) {
+        return views(byPatient, patientIds.find(patientId));
+    }
+
+    /**
+     * Gets the prescriptions issued by a doctor, in insertion order.
+     *
+     * @param doctorId The doctor ID.
+     * @return A new list of views, empty if there are none.
+     */
+    List<Prescription> byDoctor(String doctorId) {
+        return views(byDoctor, doctorIds.find(doctorId));
+    }
+
+    /**
+     * Gets the prescriptions for a medication, in insertion order.
+     *
+     * @param medicationId The medication ID.
+     * @return A new list of views, empty if there are none.
+     */
+    List<Prescription> byMedication(String medicationId) {
+        return views(byMedication, medicationIds.find(medicationId));
+    }
+
+    private List<Prescription> views(Postings postings, int key) {
+        int count = postings.count(key);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        int[] rows = postings.rows(key);
+        List<Prescription> views = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            views.add(view(rows[i]));
+        }
+        return views;
+    }
+
+    // ============================================================
+    // === Statistics ===
+    // ============================================================
+
+    /**
+     * Gets the number of prescriptions written for a patient.
+     *
+     * @param patientId The patient ID.
+     * @return The prescription count, 0 if there are none.
+     */
+    int countForPatient(String patientId) {
+        return byPatient.count(patientIds.find(patientId));
+    }
+
+    /**
+     * Gets the number of prescriptions issued by a doctor.
+     *
+     * @param doctorId The doctor ID.
+     * @return The prescription count, 0 if there are none.
+     */
+    int countForDoctor(String doctorId) {
+        return byDoctor.count(doctorIds.find(doctorId));
+    }
+
+    /**
+     * Gets the total quantity prescribed of a medication.
+     *
+     * @param medicationId The medication ID.
+     * @return The total quantity, 0 if there are no prescriptions for it.
+     */
+    synchronized long quantityForMedication(String medicationId) {
+        int key = medicationIds.find(medicationId);
+        return key < 0 || key >= quantityByMedication.length ? 0 : quantityByMedication[key];
+    }
+
+    /**
+     * Recomputes the prescription counts and quantity totals from the columns and
+     * compares them with the ones kept up to date on every change.
+     *
+     * @return One line per count or total that differs, empty if all agree.
+     */
+    synchronized List<String> verifyStatistics() {
+        int[] patientCounts = new int[patientIds.size()];
+        int[] doctorCounts = new int[doctorIds.size()];
+        int[] medicationCounts = new int[medicationIds.size()];
+        long[] medicationQuantities = new long[medicationIds.size()];
+        int live = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (isLive(row)) {
+                live++;
+                patientCounts[patients[row]]++;
+                doctorCounts[doctors[row]]++;
+                medicationCounts[medications[row]]++;
+                medicationQuantities[medications[row]] += quantities[row];
+            }
+        }
+
+        List<String> drift = new ArrayList<>();
+        if (live != liveCount) {
+            drift.add("Prescriptions: counted " + live + ", recorded " + liveCount);
+        }
+        compareCounts("patient", patientIds, patientCounts, byPatient, drift);
+        compareCounts("doctor", doctorIds, doctorCounts, byDoctor, drift);
+        compareCounts("medication", medicationIds, medicationCounts, byMedication, drift);
+        for (int key = 0; key < medicationQuantities.length; key++) {
+            long recorded = key < quantityByMedication.length ? quantityByMedication[key] : 0;
+            if (medicationQuantities[key] != recorded) {
+                drift.add("Quantity prescribed of medication " + medicationIds.value(key)
+                        + ": counted " + medicationQuantities[key] + ", recorded " + recorded);
+            }
+        }
+        return drift;
+    }
+
+    private static void compareCounts(String label, Dictionary keys, int[] counted, Postings postings,
+                                      List<String> drift) {
+        for (int key = 0; key < counted.length; key++) {
+            if (counted[key] != postings.count(key)) {
+                drift.add("Prescriptions for " + label + " " + keys.value(key)
+                        + ": counted " + counted[key] + ", recorded " + postings.count(key));
+            }
+        }
+    }
+
+    private void addQuantity(int medication, long delta) {
+        if (medication >= quantityByMedication.length) {
+            quantityByMedication = Arrays.copyOf(quantityByMedication,
+                    Math.max(quantityByMedication.length * 2, medication + 1));
+        }
+        quantityByMedication[medication] += delta;
+    }
+
+    // ============================================================
+    // === Iteration and Paging ===
+    // ============================================================
+
+    /**
+     * Returns a read-only view of the stored prescriptions in insertion order.
+     *
+     * @return The stored prescriptions.
+     */
+    Collection<Prescription> values() {
+        return new AbstractCollection<Prescription>() {
+            @Override
+            public Iterator<Prescription> iterator() {
+                return PrescriptionStore.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return liveCount;
+            }
+        };
+    }
+
+    /**
+     * Returns views of all stored prescriptions in insertion order.
+     *
+     * @return A new list of views.
+     */
+    List<Prescription> copy() {
+        List<Prescription> copy = new ArrayList<>(liveCount);
+        forEach(copy::add);
+        return copy;
+    }
+
+    @Override
+    public Iterator<Prescription> iterator() {
+        return new Iterator<Prescription>() {
+            private int next = nextLiveRow(0);
+
+            @Override
+            public boolean hasNext() {
+                return next < rowCount;
+            }
+
+            @Override
+            public Prescription next() {
+                if (next >= rowCount) {
+                    throw new NoSuchElementException();
+                }
+                Prescription view = view(next);
+                next = nextLiveRow(next + 1);
+                return view;
+            }
+        };
+    }
+
+    /**
+     * Gets one page of prescriptions in insertion order. Cursor positions are
+     * insertion numbers, so they stay valid while rows are added, removed or compacted.
+     *
+     * @param cursor   A cursor from an earlier page, or null for the first page.
+     * @param pageSize The maximum number of prescriptions on the page.
+     * @return The page, with cursors for the pages before and after it.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed.
+     */
+    Page<Prescription> page(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be a positive value.");
+        }
+        boolean forward = cursor == null || cursor.isEmpty() || cursor.charAt(0) == Page.AFTER;
+        long boundary = cursor == null || cursor.isEmpty() ? 0 : Page.position(cursor);
+        List<Prescription> page = new ArrayList<>(Math.min(pageSize, liveCount));
+
+        if (forward) {
+            // Rows after the boundary
+            int limit = boundary == Long.MAX_VALUE ? rowCount : rowsBefore(boundary + 1);
+            int row = limit;
+            long last = boundary;
+            for (; row < rowCount && page.size() < pageSize; row++) {
+                if (isLive(row)) {
+                    page.add(view(row));
+                    last = sequences[row];
+                }
+            }
+            String previous = hasLiveRow(0, limit) ? Page.before(boundary + 1) : null;
+            String next = hasLiveRow(row, rowCount) ? Page.after(last) : null;
+            return new Page<>(page, previous, next);
+        }
+
+        // Rows before the boundary, collected backwards and then reversed
+        int to = rowsBefore(boundary);
+        int row = to - 1;
+        long first = boundary;
+        for (; row >= 0 && page.size() < pageSize; row--) {
+            if (isLive(row)) {
+                page.add(view(row));
+                first = sequences[row];
+            }
+        }
+        Collections.reverse(page);
+        String previous = hasLiveRow(0, row + 1) ? Page.before(first) : null;
+        String next = hasLiveRow(to, rowCount) ? Page.after(boundary - 1) : null;
+        return new Page<>(page, previous, next);
+    }
+
+    // Number of rows whose insertion number is below a position
+    private int rowsBefore(long position) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sequences[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean hasLiveRow(int from, int to) {
+        return nextLiveRow(from) < to;
+    }
+
+    private int nextLiveRow(int row) {
+        String[] column = ids;
+        while (row < rowCount && column[row] == null) {
+            row++;
+        }
+        return row;
+    }
+
+    // ============================================================
+    // === ID Table ===
+    // ============================================================
+
+    // Slot holding the ID, or -(empty slot where it would go) - 1
+    private int findSlot(String id) {
+        int[] table = idTable;
+        String[] column = ids;
+        int mask = table.length - 1;
+        int slot = home(id, mask);
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -slot - 1;
+            }
+            if (id.equals(column[entry - 1])) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Empties a slot, shifting later entries of the same probe run back into the gap
+    private void removeSlot(int slot) {
+        int mask = idTable.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (idTable[next] != 0) {
+            int home = home(ids[idTable[next] - 1], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                idTable[hole] = idTable[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        idTable[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int row = 0; row < rowCount; row++) {
+            if (ids[row] != null) {
+                int slot = home(ids[row], mask);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = row + 1;
+            }
+        }
+        idTable = table;
+    }
+
+    private static int home(String id, int mask) {
+        int hash = id.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    // ============================================================
+    // === Helpers ===
+    // ============================================================
+
+    /**
+     * Maps strings to dense int keys and back. Keys are never reused, so a key read
+     * from a column always resolves to the string it was made for.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> keys = new HashMap<>();
+        private volatile String[] values = new String[MIN_CAPACITY];
+
+        int intern(String value) {
+            Integer key = keys.get(value);
+            if (key != null) {
+                return key;
+            }
+            int next = keys.size();
+            if (next == values.length) {
+                values = Arrays.copyOf(values, next * 2);
+            }
+            values[next] = value;
+            keys.put(value, next);
+            return next;
+        }
+
+        int find(String value) {
+            Integer key = value == null ? null : keys.get(value);
+            return key == null ? -1 : key;
+        }
+
+        String value(int key) {
+            return values[key];
+        }
+
+        int size() {
+            return keys.size();
+        }
+    }
+
+    /**
+     * Lists the rows filed under each dictionary key in ascending order. New rows
+     * are always the highest, so adding appends; removing is a binary search.
+     */
+    private static final class Postings {
+        private int[][] rows = new int[MIN_CAPACITY][];
+        private int[] counts = new int[MIN_CAPACITY];
+
+        void add(int key, int row) {
+            if (key >= rows.length) {
+                int capacity = Math.max(rows.length * 2, key + 1);
+                rows = Arrays.copyOf(rows, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            int[] list = rows[key];
+            int count = counts[key];
+            if (list == null) {
+                list = rows[key] = new int[2];
+            } else if (count == list.length) {
+                list = rows[key] = Arrays.copyOf(list, count + (count >> 1) + 1);
+            }
+            list[count] = row;
+            counts[key] = count + 1;
+        }
+
+        void remove(int key, int row) {
+            int[] list = rows[key];
+            int count = counts[key];
+            int at = Arrays.binarySearch(list, 0, count, row);
+            if (at >= 0) {
+                System.arraycopy(list, at + 1, list, at, count - at - 1);
+                counts[key] = count - 1;
+                if (count == 1) {
+                    rows[key] = null;
+                }
+            }
+        }
+
+        int count(int key) {
+            return key < 0 || key >= counts.length ? 0 : counts[key];
+        }
+
+        int[] rows(int key) {
+            return rows[key];
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package medicationtracking;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * The {@code Registry} class stores the entities of one type keyed by their unique ID.
+ * Lookups, inserts and removals by ID run in constant time, while iteration
+ * follows insertion order so listings and reports stay stable.
+ *
+ * <p>Entities are kept in an array in insertion order, each tagged with an insertion
+ * number that only ever grows. Page cursors name a position by insertion number, so
+ * a cursor stays valid while entities are added or removed, and finding the start of
+ * a page is a binary search rather than a walk from the beginning.
+ *
+ * @param <T> The type of entity held in the registry.
+ */
+class Registry<T> implements Iterable<T> {
+    private static final int MIN_CAPACITY = 16;
+
+    private final Function<T, String> idOf;
+    // Slot of each registered entity in the arrays below
+    private final Map<String, Integer> slots = new HashMap<>();
+    // Entities in insertion order, with null in the slots of removed entities
+    private Object[] items = new Object[MIN_CAPACITY];
+    // Insertion number of the entity in each slot, ascending
+    private long[] sequences = new long[MIN_CAPACITY];
+    private int end;
+    private long lastSequence;
+
+    /**
+     * Constructs an empty registry.
+     *
+     * @param idOf Function returning the unique ID of an entity.
+     */
+    Registry(Function<T, String> idOf) {
+        this.idOf = idOf;
+    }
+
+    /**
+     * Adds an entity unless another entity with the same ID is already registered.
+     *
+     * @param entity The entity to add.
+     * @return True if the entity was added, false if its ID is already taken.
+     */
+    boolean add(T entity) {
+        if (slots.putIfAbsent(idOf.apply(entity), end) != null) {
+            return false;
+        }
+        if (end == items.length) {
+            items = Arrays.copyOf(items, end * 2);
+            sequences = Arrays.copyOf(sequences, end * 2);
+        }
+        items[end] = entity;
+        sequences[end] = ++lastSequence;
+        end++;
+        return true;
+    }
+
+    /**
+     * Gets the entity registered under an ID.
+     *
+     * @param id The ID to look up.
+     * @return The entity, or null if no entity has that ID.
+     */
+    T get(String id) {
+        Integer slot = id == null ? null : slots.get(id);
+        return slot == null ? null : itemAt(slot);
+    }
+
+    /**
+     * Checks whether an entity is registered under an ID.
+     *
+     * @param id The ID to look up.
+     * @return True if an entity has that ID.
+     */
+    boolean contains(String id) {
+        return id != null && slots.containsKey(id);
+    }
+
+    /**
+     * Removes the entity registered under an ID.
+     *
+     * @param id The ID of the entity to remove.
+     * @return The removed entity, or null if no entity had that ID.
+     */
+    T remove(String id) {
+        Integer slot = id == null ? null : slots.remove(id);
+        if (slot == null) {
+            return null;
+        }
+        T entity = itemAt(slot);
+        items[slot] = null;
+        // Compact once removed slots outnumber live ones, so scans stay proportional to size
+        if (end - slots.size() > Math.max(MIN_CAPACITY, slots.size())) {
+            compact();
+        }
+        return entity;
+    }
+
+    // Closes the gaps left by removals, keeping insertion order and insertion numbers
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < end; i++) {
+            if (items[i] != null) {
+                if (live != i) {
+                    items[live] = items[i];
+                    sequences[live] = sequences[i];
+                    slots.put(idOf.apply(itemAt(live)), live);
+                }
+                live++;
+            }
+        }
+        Arrays.fill(items, live, end, null);
+        end = live;
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, live)) * 2);
+        if (capacity < items.length) {
+            items = Arrays.copyOf(items, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+        }
+    }
+
+    /**
+     * Gets the number of registered entities.
+     *
+     * @return The entity count.
+     */
+    int size() {
+        return slots.size();
+    }
+
+    /**
+     * Checks whether the registry is empty.
+     *
+     * @return True if no entities are registered.
+     */
+    boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    /**
+     * Returns a read-only view of the registered entities in insertion order.
+     *
+     * @return The registered entities.
+     */
+    Collection<T> values() {
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return Registry.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return slots.size();
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the registered entities in insertion order.
+     * Unlike {@link #values()}, the copy stays valid after the registry changes.
+     *
+     * @return A new list of the registered entities.
+     */
+    List<T> copy() {
+        List<T> copy = new ArrayList<>(slots.size());
+        forEach(copy::add);
+        return copy;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = skipRemoved(0);
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public T next() {
+                if (next >= end) {
+                    throw new NoSuchElementException();
+                }
+                T entity = itemAt(next);
+                next = skipRemoved(next + 1);
+                return entity;
+            }
+        };
+    }
+
+    // ============================================================
+    // === Paging ===
+    // ============================================================
+
+    /**
+     * Gets one page of entities in insertion order.
+     *
+     * @param cursor   A cursor from an earlier page, or null for the first page.
+     * @param pageSize The maximum number of entities on the page.
+     * @return The page, with cursors for the pages before and after it.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed.
+     */
+    Page<T> page(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be a positive value.");
+        }
+        boolean forward = cursor == null || cursor.isEmpty() || cursor.charAt(0) == Page.AFTER;
+        long boundary = cursor == null || cursor.isEmpty() ? 0 : Page.position(cursor);
+        List<T> page = new ArrayList<>(Math.min(pageSize, slots.size()));
+
+        if (forward) {
+            // Entities inserted after the boundary
+            int from = firstSlotAfter(boundary);
+            int slot = from;
+            long last = boundary;
+            for (; slot < end && page.size() < pageSize; slot++) {
+                if (items[slot] != null) {
+                    page.add(itemAt(slot));
+                    last = sequences[slot];
+                }
+            }
+            String previous = hasLiveSlot(0, from) ? Page.before(boundary + 1) : null;
+            String next = hasLiveSlot(slot, end) ? Page.after(last) : null;
+            return new Page<>(page, previous, next);
+        }
+
+        // Entities inserted before the boundary, collected backwards and then reversed
+        int to = firstSlotAfter(boundary - 1);
+        int slot = to - 1;
+        long first = boundary;
+        for (; slot >= 0 && page.size() < pageSize; slot--) {
+            if (items[slot] != null) {
+                page.add(itemAt(slot));
+                first = sequences[slot];
+            }
+        }
+        Collections.reverse(page);
+        String previous = hasLiveSlot(0, slot + 1) ? Page.before(first) : null;
+        String next = hasLiveSlot(to, end) ? Page.after(boundary - 1) : null;
+        return new Page<>(page, previous, next);
+    }
+
+    // Binary search over the ascending insertion numbers, counting removed slots too
+    private int firstSlotAfter(long sequence) {
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sequences[mid] <= sequence) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean hasLiveSlot(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (items[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int skipRemoved(int slot) {
+        while (slot < end && items[slot] == null) {
+            slot++;
+        }
+        return slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int slot) {
+        return (T) items[slot];
+    }
+}
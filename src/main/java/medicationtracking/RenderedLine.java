@@ -0,0 +1,37 @@
+package medicationtracking;
+
+/**
+ * The {@code RenderedLine} class caches the text an entity renders to, so listings and
+ * reports over unchanged entities reuse it instead of concatenating it again.
+ *
+ * <p>Each entity counts its changes. A line is tagged with the count read before the
+ * entity was rendered, and is only reused while the count is unchanged. A line rendered
+ * while a setter was running may be out of date, but it then carries an old count and
+ * is rendered again on next use, so no locking is needed.
+ */
+final class RenderedLine {
+    private final String text;
+    private final int version;
+
+    /**
+     * Constructs a cached line.
+     *
+     * @param text    The rendered text.
+     * @param version The entity's change count, read before rendering.
+     */
+    RenderedLine(String text, int version) {
+        this.text = text;
+        this.version = version;
+    }
+
+    /**
+     * Gets the cached text if it is still current.
+     *
+     * @param line    The cached line, or null if there is none.
+     * @param version The entity's change count now.
+     * @return The cached text, or null if it must be rendered again.
+     */
+    static String current(RenderedLine line, int version) {
+        return line != null && line.version == version ? line.text : null;
+    }
+}
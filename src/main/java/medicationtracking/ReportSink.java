@@ -0,0 +1,48 @@
+package medicationtracking;
+
+/**
+ * The {@code ReportSink} interface receives the text written by listings, reports and
+ * status messages of a {@link MedicationTrackingSystem}.
+ *
+ * <p>Sinks are buffered: text is only guaranteed to reach its destination after
+ * {@link #flush()} or {@link #close()}. The system flushes once at the end of each
+ * operation, so a report over millions of rows is written in one buffered pass.
+ * Write failures are reported as {@link java.io.UncheckedIOException}.
+ *
+ * @see ReportSinks
+ */
+public interface ReportSink extends AutoCloseable {
+
+    /**
+     * Writes text without ending the line.
+     *
+     * @param text The text to write; null is written as "null".
+     */
+    void print(Object text);
+
+    /**
+     * Ends the current line.
+     */
+    void println();
+
+    /**
+     * Writes text and ends the line.
+     *
+     * @param line The text to write; null is written as "null".
+     */
+    default void println(Object line) {
+        print(line);
+        println();
+    }
+
+    /**
+     * Pushes buffered text to the destination.
+     */
+    void flush();
+
+    /**
+     * Flushes the sink and releases its destination. Console sinks are only flushed.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,125 @@
+package medicationtracking;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The {@code ReportSinks} class creates the standard {@link ReportSink} implementations:
+ * the console, files, memory and a sink that discards everything.
+ */
+public final class ReportSinks {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ReportSinks() {
+    }
+
+    /**
+     * Creates a buffered sink writing to standard output. Closing it only flushes.
+     *
+     * @return The console sink.
+     */
+    public static ReportSink console() {
+        return of(System.out, Charset.defaultCharset());
+    }
+
+    /**
+     * Creates a buffered sink writing to a stream. Closing it only flushes, so the
+     * stream stays usable.
+     *
+     * @param stream  The stream to write to.
+     * @param charset The encoding of the text.
+     * @return The sink.
+     */
+    public static ReportSink of(OutputStream stream, Charset charset) {
+        return new WriterSink(new BufferedWriter(new OutputStreamWriter(stream, charset), BUFFER_SIZE), false);
+    }
+
+    /**
+     * Creates a buffered sink writing UTF-8 text to a file, replacing its contents.
+     * Closing the sink closes the file.
+     *
+     * @param file The file to write.
+     * @return The file sink.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static ReportSink file(Path file) throws IOException {
+        return new WriterSink(Files.newBufferedWriter(file, StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Creates a sink that keeps everything written to it in memory.
+     *
+     * @return The memory sink.
+     */
+    public static MemorySink memory() {
+        return new MemorySink();
+    }
+
+    /**
+     * Creates a sink that discards everything written to it.
+     *
+     * @return The discarding sink.
+     */
+    public static ReportSink discard() {
+        return new WriterSink(Writer.nullWriter(), false);
+    }
+
+    // Sink over a buffered writer
+    private static final class WriterSink implements ReportSink {
+        private final Writer writer;
+        private final boolean closeWriter;
+
+        WriterSink(Writer writer, boolean closeWriter) {
+            this.writer = writer;
+            this.closeWriter = closeWriter;
+        }
+
+        @Override
+        public synchronized void print(Object text) {
+            try {
+                writer.write(String.valueOf(text));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write report output", e);
+            }
+        }
+
+        @Override
+        public synchronized void println() {
+            try {
+                writer.write(System.lineSeparator());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write report output", e);
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write report output", e);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                if (closeWriter) {
+                    writer.close();
+                } else {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write report output", e);
+            }
+        }
+    }
+}
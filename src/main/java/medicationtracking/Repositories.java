@@ -0,0 +1,32 @@
+package medicationtracking;
+
+/**
+ * The {@code Repositories} interface groups the repositories of the four record types
+ * kept in one place, such as one tracking system or one database.
+ */
+public interface Repositories {
+
+    /**
+     * Gets the patient repository.
+     * @return The patients.
+     */
+    Repository<Patient> getPatients();
+
+    /**
+     * Gets the doctor repository.
+     * @return The doctors.
+     */
+    Repository<Doctor> getDoctors();
+
+    /**
+     * Gets the medication repository.
+     * @return The medications.
+     */
+    MedicationRepository getMedications();
+
+    /**
+     * Gets the prescription repository.
+     * @return The prescriptions.
+     */
+    PrescriptionRepository getPrescriptions();
+}
@@ -0,0 +1,82 @@
+package medicationtracking;
+
+import java.util.List;
+
+/**
+ * The {@code Repository} interface stores one kind of record by ID, so code that
+ * loads or serves records does not depend on where they are kept.
+ *
+ * <p>{@link MemoryRepositories} keeps records in a {@link MedicationTrackingSystem},
+ * with all of its indexes, and {@link SqlDatabase} keeps them in an embedded database
+ * on disk, for datasets larger than the heap. Listings are paged in insertion order
+ * with the same cursors as {@link Page} in both.
+ *
+ * @param <T> The type of record.
+ */
+public interface Repository<T> {
+
+    /**
+     * Finds a record by ID.
+     *
+     * @param id The ID of the record.
+     * @return The record, or null if there is none with that ID.
+     */
+    T get(String id);
+
+    /**
+     * Counts the records.
+     *
+     * @return The number of records stored.
+     */
+    long count();
+
+    /**
+     * Returns one page of records in insertion order. Pass null for the first page,
+     * then a cursor from the previous page.
+     *
+     * @param cursor   The cursor of the page to fetch, or null for the first page.
+     * @param pageSize The maximum number of records on the page.
+     * @return The page, with cursors for the pages before and after it.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed.
+     */
+    Page<T> getPage(String cursor, int pageSize);
+
+    /**
+     * Adds a record; records with an ID that is already stored are rejected.
+     *
+     * @param record The record to add.
+     * @return True if the record was added, false if it was rejected.
+     * @throws IllegalArgumentException If the record is null.
+     */
+    boolean add(T record);
+
+    /**
+     * Adds records in batches, which is much faster than adding them one at a time.
+     *
+     * @param records The records to add, in order.
+     * @return For each record, null if it was added or the reason it was rejected.
+     * @throws IllegalArgumentException If a record is null.
+     */
+    String[] addAll(List<? extends T> records);
+
+    /**
+     * Updates the stored record with the same ID as a record to the record's values.
+     * Only the fields the tracking system lets users edit are changed: a patient's
+     * name, age and phone number, a doctor's name and specialization, a medication's
+     * name, dosage and quantity in stock, and a prescription's quantity and
+     * instructions. The other fields of the record are ignored.
+     *
+     * @param record The record holding the new values.
+     * @return True if the record was updated, false if none is stored with its ID.
+     * @throws IllegalArgumentException If the record is null or holds an invalid value.
+     */
+    boolean update(T record);
+
+    /**
+     * Deletes a record by ID.
+     *
+     * @param id The ID of the record.
+     * @return True if the record was deleted, false if it was not found.
+     */
+    boolean delete(String id);
+}
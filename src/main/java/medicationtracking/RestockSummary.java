@@ -0,0 +1,157 @@
+package medicationtracking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code RestockSummary} class reports the outcome of restocking from a delivery manifest.
+ */
+public final class RestockSummary {
+    private static final int MAX_REPORTED_IDS = 20;
+
+    private long linesApplied;
+    private long unitsAdded;
+    private final Set<String> medicationsRestocked = new LinkedHashSet<>();
+    private long unknownLines;
+    private final Set<String> unknownIds = new LinkedHashSet<>();
+    private boolean moreUnknownIds;
+    private long expiredLots;
+    private long overflowingLots;
+    private long malformedLines;
+    private List<Long> malformedLineNumbers = Collections.emptyList();
+
+    // Records a lot added to a medication's stock
+    void applied(String medicationId, int quantity) {
+        linesApplied++;
+        unitsAdded += quantity;
+        medicationsRestocked.add(medicationId);
+    }
+
+    // Records a lot for a medication ID that is not in the system
+    void unknown(String medicationId) {
+        unknownLines++;
+        if (unknownIds.size() < MAX_REPORTED_IDS) {
+            unknownIds.add(medicationId);
+        } else if (!unknownIds.contains(medicationId)) {
+            moreUnknownIds = true;
+        }
+    }
+
+    // Records a lot that had already expired on delivery
+    void expired() {
+        expiredLots++;
+    }
+
+    // Records a lot that would take a medication's stock past the largest quantity
+    void overflowing() {
+        overflowingLots++;
+    }
+
+    // Records the lines the manifest reader could not parse
+    void malformed(long count, List<Long> lineNumbers) {
+        malformedLines = count;
+        malformedLineNumbers = new ArrayList<>(lineNumbers);
+    }
+
+    /**
+     * Gets the number of manifest lines added to stock.
+     * @return The applied line count.
+     */
+    public long getLinesApplied() {
+        return linesApplied;
+    }
+
+    /**
+     * Gets the total number of units added to stock.
+     * @return The units added.
+     */
+    public long getUnitsAdded() {
+        return unitsAdded;
+    }
+
+    /**
+     * Gets the number of distinct medications that received stock.
+     * @return The restocked medication count.
+     */
+    public int getMedicationsRestocked() {
+        return medicationsRestocked.size();
+    }
+
+    /**
+     * Gets the number of lines naming a medication ID that is not in the system.
+     * @return The unknown line count.
+     */
+    public long getUnknownLines() {
+        return unknownLines;
+    }
+
+    /**
+     * Gets the first unknown medication IDs found in the manifest.
+     * @return Up to {@value #MAX_REPORTED_IDS} distinct unknown IDs
+     */
+    public List<String> getUnknownIds() {
+        return new ArrayList<>(unknownIds);
+    }
+
+    /**
+     * Gets the number of lots rejected because they had already expired.
+     * @return The expired lot count.
+     */
+    public long getExpiredLots() {
+        return expiredLots;
+    }
+
+    /**
+     * Gets the number of lots rejected because they would overflow a medication's stock.
+     * @return The overflowing lot count.
+     */
+    public long getOverflowingLots() {
+        return overflowingLots;
+    }
+
+    /**
+     * Gets the number of lines that could not be parsed.
+     * @return The malformed line count.
+     */
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+
+    /**
+     * Gets the line numbers of the first malformed lines.
+     * @return Up to 20 line numbers
+     */
+    public List<Long> getMalformedLineNumbers() {
+        return malformedLineNumbers;
+    }
+
+    /**
+     * Returns the summary in a readable multi-line format.
+     * @return The summary text
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Restock complete: ").append(linesApplied).append(" lots, ")
+          .append(unitsAdded).append(" units added to ")
+          .append(medicationsRestocked.size()).append(" medications.");
+        if (unknownLines > 0) {
+            sb.append("\nUnknown medication IDs: ").append(unknownLines).append(" lines ")
+              .append(unknownIds).append(moreUnknownIds ? " ..." : "");
+        }
+        if (expiredLots > 0) {
+            sb.append("\nExpired lots rejected: ").append(expiredLots);
+        }
+        if (overflowingLots > 0) {
+            sb.append("\nLots exceeding the stock limit rejected: ").append(overflowingLots);
+        }
+        if (malformedLines > 0) {
+            sb.append("\nMalformed lines skipped: ").append(malformedLines).append(" at lines ")
+              .append(malformedLineNumbers).append(malformedLines > malformedLineNumbers.size() ? " ..." : "");
+        }
+        return sb.toString();
+    }
+}
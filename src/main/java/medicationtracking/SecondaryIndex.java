@@ -0,0 +1,110 @@
+package medicationtracking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code SecondaryIndex} class files entities under non-unique keys given by the
+ * caller, recording many-to-many links such as the doctors of each patient. Adding
+ * and removing a link costs constant time, and looking up a key costs time
+ * proportional to the number of matches.
+ *
+ * <p>Most keys match a single entity (a patient with one doctor), so a key maps
+ * straight to its entity until a second one arrives; only then is a set made.
+ *
+ * @param <T> The type of entity being indexed.
+ */
+class SecondaryIndex<T> {
+    // Each value is either a single entity or a Set of two or more
+    private final Map<String, Object> buckets = new HashMap<>();
+
+    /**
+     * Files an entity under a given key.
+     *
+     * @param key    The key to file the entity under.
+     * @param entity The entity to index.
+     */
+    void add(String key, T entity) {
+        if (key == null) {
+            return;
+        }
+        Object bucket = buckets.putIfAbsent(key, entity);
+        if (bucket == null || bucket == entity) {
+            return;
+        }
+        if (bucket instanceof Set) {
+            asSet(bucket).add(entity);
+        } else {
+            Set<T> set = new LinkedHashSet<>();
+            set.add(asEntity(bucket));
+            set.add(entity);
+            buckets.put(key, set);
+        }
+    }
+
+    /**
+     * Removes an entity from the bucket of a given key.
+     *
+     * @param key    The key the entity is filed under.
+     * @param entity The entity to remove.
+     */
+    void remove(String key, T entity) {
+        Object bucket = key == null ? null : buckets.get(key);
+        if (bucket == entity) {
+            buckets.remove(key);
+        } else if (bucket instanceof Set) {
+            Set<T> set = asSet(bucket);
+            if (set.remove(entity) && set.size() == 1) {
+                buckets.put(key, set.iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Gets the entities filed under a key, in the order they were added.
+     *
+     * @param key The key to look up.
+     * @return A new list of matching entities, empty if there are none.
+     */
+    List<T> get(String key) {
+        Object bucket = key == null ? null : buckets.get(key);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        if (bucket instanceof Set) {
+            return new ArrayList<>(asSet(bucket));
+        }
+        List<T> single = new ArrayList<>(1);
+        single.add(asEntity(bucket));
+        return single;
+    }
+
+    /**
+     * Gets the number of entities filed under a key.
+     *
+     * @param key The key to look up.
+     * @return The number of matching entities.
+     */
+    int count(String key) {
+        Object bucket = key == null ? null : buckets.get(key);
+        if (bucket == null) {
+            return 0;
+        }
+        return bucket instanceof Set ? asSet(bucket).size() : 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<T> asSet(Object bucket) {
+        return (Set<T>) bucket;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T asEntity(Object bucket) {
+        return (T) bucket;
+    }
+}
@@ -0,0 +1,405 @@
+package medicationtracking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The {@code SqlDatabase} class keeps patients, doctors, medications and prescriptions
+ * in an SQL database, for datasets that do not fit in the heap. Only the records a
+ * call asks for are read into memory; lookups by ID and by the patient, doctor or
+ * medication of a prescription go through indexes, and listings are paged.
+ *
+ * <p>The database is an embedded SQLite file, created with its tables if it does not
+ * exist. It runs in write-ahead logging mode, so reads go on while records are added,
+ * and SQLite keeps only a small page cache per connection. Connections come from a
+ * small pool, so the repositories can be used from many threads at once.
+ *
+ * <p>Records read from the database are new objects that are not attached to it:
+ * changing them does not change the stored record until it is passed to
+ * {@link Repository#update}. Stock is adjusted by a single update of the stored
+ * quantity. Doctors are stored without their assigned patients, which the tracking
+ * system keeps.
+ *
+ * <p>Usage: {@code java medicationtracking.SqlDatabase <directory> <prescriptions> [seed]}
+ * fills a database with a generated dataset (see {@link DatasetGenerator}).
+ */
+public class SqlDatabase implements Repositories, Closeable {
+    /** The name of the database in a data directory. */
+    public static final String FILE_NAME = "medtrack.db";
+
+    /** Number of connections kept unless configured otherwise. */
+    public static final int DEFAULT_POOL_SIZE = 8;
+
+    private static final int BUSY_TIMEOUT_MILLIS = 30_000;
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS patients ("
+                + "seq INTEGER PRIMARY KEY AUTOINCREMENT, id VARCHAR NOT NULL UNIQUE, "
+                + "name VARCHAR NOT NULL, age INT NOT NULL, phone_number VARCHAR)",
+        "CREATE TABLE IF NOT EXISTS doctors ("
+                + "seq INTEGER PRIMARY KEY AUTOINCREMENT, id VARCHAR NOT NULL UNIQUE, "
+                + "name VARCHAR NOT NULL, phone_number VARCHAR, specialization VARCHAR)",
+        "CREATE TABLE IF NOT EXISTS medications ("
+                + "seq INTEGER PRIMARY KEY AUTOINCREMENT, id VARCHAR NOT NULL UNIQUE, "
+                + "name VARCHAR NOT NULL, dosage INT NOT NULL, quantity_in_stock INT NOT NULL, "
+                + "expiry_date VARCHAR NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS prescriptions ("
+                + "seq INTEGER PRIMARY KEY AUTOINCREMENT, id VARCHAR NOT NULL UNIQUE, "
+                + "patient_id VARCHAR NOT NULL, doctor_id VARCHAR NOT NULL, medication_id VARCHAR NOT NULL, "
+                + "quantity INT NOT NULL, instructions VARCHAR)",
+        // Indexes end with the row key seq, so each listing is read from its index
+        // already in insertion order
+        "CREATE INDEX IF NOT EXISTS prescriptions_patient ON prescriptions (patient_id)",
+        "CREATE INDEX IF NOT EXISTS prescriptions_doctor ON prescriptions (doctor_id)",
+        "CREATE INDEX IF NOT EXISTS prescriptions_medication ON prescriptions (medication_id)"
+    };
+
+    private final ConnectionPool pool;
+    private final Repository<Patient> patients;
+    private final Repository<Doctor> doctors;
+    private final MedicationRepository medications;
+    private final PrescriptionRepository prescriptions;
+
+    /**
+     * Opens the database in a data directory, creating it if needed.
+     *
+     * @param directory The directory holding the database, created if it does not exist.
+     * @throws IOException           If the directory cannot be created.
+     * @throws IllegalStateException If the database cannot be opened.
+     */
+    public SqlDatabase(Path directory) throws IOException {
+        this(Files.createDirectories(directory).resolve(FILE_NAME), DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Opens a database file, creating it and its tables if needed.
+     *
+     * @param file     The database file.
+     * @param poolSize The maximum number of open connections.
+     * @throws IllegalArgumentException If the pool size is not positive.
+     * @throws IllegalStateException    If the database cannot be opened.
+     */
+    public SqlDatabase(Path file, int poolSize) {
+        // Writers wait for each other rather than fail while another batch is committed
+        pool = new ConnectionPool("jdbc:sqlite:" + file.toAbsolutePath()
+                + "?journal_mode=WAL&synchronous=NORMAL&busy_timeout=" + BUSY_TIMEOUT_MILLIS, poolSize);
+        try {
+            pool.run(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : SCHEMA) {
+                        statement.execute(sql);
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            pool.close();
+            throw e;
+        }
+        patients = new PatientTable(pool);
+        doctors = new DoctorTable(pool);
+        medications = new MedicationTable(pool);
+        prescriptions = new PrescriptionTable(pool);
+    }
+
+    /**
+     * Fills the database in a directory with a generated dataset from the command line.
+     *
+     * @param args The directory, the number of prescriptions and an optional seed.
+     * @throws IOException If the directory cannot be created.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java medicationtracking.SqlDatabase <directory> <prescriptions> [seed]");
+            return;
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        DatasetGenerator generator = new DatasetGenerator(seed, Integer.parseInt(args[1]));
+        try (SqlDatabase database = new SqlDatabase(Paths.get(args[0]))) {
+            long start = System.nanoTime();
+            generator.populate(database);
+            System.out.println("Stored " + database.getPatients().count() + " patients, "
+                    + database.getDoctors().count() + " doctors, " + database.getMedications().count()
+                    + " medications and " + database.getPrescriptions().count() + " prescriptions in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+    }
+
+    @Override
+    public Repository<Patient> getPatients() {
+        return patients;
+    }
+
+    @Override
+    public Repository<Doctor> getDoctors() {
+        return doctors;
+    }
+
+    @Override
+    public MedicationRepository getMedications() {
+        return medications;
+    }
+
+    @Override
+    public PrescriptionRepository getPrescriptions() {
+        return prescriptions;
+    }
+
+    /**
+     * Closes the database connections.
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    // ============================================================
+    // === Tables ===
+    // ============================================================
+
+    private static final class PatientTable extends SqlRepository<Patient> {
+        PatientTable(ConnectionPool pool) {
+            super(pool, "patients", "", new String[] {"name = ?", "age = ?", "phone_number = ?"},
+                    "id", "name", "age", "phone_number");
+        }
+
+        @Override
+        String idOf(Patient patient) {
+            return patient.getId();
+        }
+
+        @Override
+        void bind(PreparedStatement insert, Patient patient) throws SQLException {
+            insert.setString(1, patient.getId());
+            insert.setString(2, patient.getName());
+            insert.setInt(3, patient.getAge());
+            insert.setString(4, patient.getPhoneNumber());
+            insert.setString(5, patient.getId());
+        }
+
+        @Override
+        void bindUpdate(PreparedStatement update, Patient patient) throws SQLException {
+            update.setString(1, patient.getName());
+            update.setInt(2, patient.getAge());
+            update.setString(3, patient.getPhoneNumber());
+            update.setString(4, patient.getId());
+        }
+
+        @Override
+        Patient read(ResultSet row) throws SQLException {
+            return new Patient(row.getString(1), row.getString(2), row.getInt(3), row.getString(4));
+        }
+
+        @Override
+        String rejection(Connection connection, Patient patient) {
+            return "A patient with ID " + patient.getId() + " already exists.";
+        }
+    }
+
+    private static final class DoctorTable extends SqlRepository<Doctor> {
+        DoctorTable(ConnectionPool pool) {
+            super(pool, "doctors", "", new String[] {"name = ?", "specialization = ?"},
+                    "id", "name", "phone_number", "specialization");
+        }
+
+        @Override
+        String idOf(Doctor doctor) {
+            return doctor.getId();
+        }
+
+        @Override
+        void bind(PreparedStatement insert, Doctor doctor) throws SQLException {
+            insert.setString(1, doctor.getId());
+            insert.setString(2, doctor.getName());
+            insert.setString(3, doctor.getPhoneNumber());
+            insert.setString(4, doctor.getSpecialization());
+            insert.setString(5, doctor.getId());
+        }
+
+        @Override
+        void bindUpdate(PreparedStatement update, Doctor doctor) throws SQLException {
+            update.setString(1, doctor.getName());
+            update.setString(2, doctor.getSpecialization());
+            update.setString(3, doctor.getId());
+        }
+
+        @Override
+        Doctor read(ResultSet row) throws SQLException {
+            return new Doctor(row.getString(1), row.getString(2), row.getString(3), row.getString(4));
+        }
+
+        @Override
+        String rejection(Connection connection, Doctor doctor) {
+            return "A doctor with ID " + doctor.getId() + " already exists.";
+        }
+    }
+
+    private static final class MedicationTable extends SqlRepository<Medication> implements MedicationRepository {
+        // Only applied while the result stays within the quantities a medication can hold
+        private static final String ADJUST_SQL = "UPDATE medications SET quantity_in_stock = quantity_in_stock + ?"
+                + " WHERE id = ? AND quantity_in_stock + ? BETWEEN 0 AND " + Integer.MAX_VALUE;
+
+        MedicationTable(ConnectionPool pool) {
+            super(pool, "medications", "", new String[] {"name = ?", "dosage = ?", "quantity_in_stock = ?"},
+                    "id", "name", "dosage", "quantity_in_stock", "expiry_date");
+        }
+
+        @Override
+        String idOf(Medication medication) {
+            return medication.getId();
+        }
+
+        @Override
+        void bind(PreparedStatement insert, Medication medication) throws SQLException {
+            insert.setString(1, medication.getId());
+            insert.setString(2, medication.getName());
+            insert.setInt(3, medication.getDosage());
+            insert.setInt(4, medication.getQuantityInStock());
+            insert.setString(5, medication.getExpiryDate().toString());
+            insert.setString(6, medication.getId());
+        }
+
+        @Override
+        void bindUpdate(PreparedStatement update, Medication medication) throws SQLException {
+            update.setString(1, medication.getName());
+            update.setInt(2, medication.getDosage());
+            update.setInt(3, medication.getQuantityInStock());
+            update.setString(4, medication.getId());
+        }
+
+        @Override
+        public boolean adjustStock(String medicationId, int delta) {
+            return pool.run(connection -> {
+                try (PreparedStatement adjust = connection.prepareStatement(ADJUST_SQL)) {
+                    adjust.setInt(1, delta);
+                    adjust.setString(2, medicationId);
+                    adjust.setInt(3, delta);
+                    if (adjust.executeUpdate() > 0) {
+                        return true;
+                    }
+                }
+                // The update holds the write lock, so the stock read here is the one it rejected
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT quantity_in_stock FROM medications WHERE id = ?")) {
+                    select.setString(1, medicationId);
+                    try (ResultSet rows = select.executeQuery()) {
+                        if (!rows.next()) {
+                            return false;
+                        }
+                        Medication.addToStock(rows.getInt(1), delta); // throws the reason
+                    }
+                }
+                throw new IllegalStateException("Stock of medication " + medicationId + " changed during an update.");
+            });
+        }
+
+        @Override
+        Medication read(ResultSet row) throws SQLException {
+            return new Medication(row.getString(1), row.getString(2), row.getInt(3), row.getInt(4),
+                    LocalDate.parse(row.getString(5)));
+        }
+
+        @Override
+        String rejection(Connection connection, Medication medication) {
+            return "A medication with ID " + medication.getId() + " already exists.";
+        }
+    }
+
+    private static final class PrescriptionTable extends SqlRepository<Prescription>
+            implements PrescriptionRepository {
+        PrescriptionTable(ConnectionPool pool) {
+            super(pool, "prescriptions",
+                    " AND EXISTS (SELECT 1 FROM patients WHERE id = ?)"
+                            + " AND EXISTS (SELECT 1 FROM doctors WHERE id = ?)"
+                            + " AND EXISTS (SELECT 1 FROM medications WHERE id = ?)",
+                    // Null instructions keep the stored ones, as in the tracking system's edit
+                    new String[] {"quantity = ?", "instructions = COALESCE(?, instructions)"},
+                    "id", "patient_id", "doctor_id", "medication_id", "quantity", "instructions");
+        }
+
+        @Override
+        String idOf(Prescription prescription) {
+            return prescription.getPrescriptionId();
+        }
+
+        @Override
+        void bind(PreparedStatement insert, Prescription prescription) throws SQLException {
+            insert.setString(1, prescription.getPrescriptionId());
+            insert.setString(2, prescription.getPatientId());
+            insert.setString(3, prescription.getDoctorId());
+            insert.setString(4, prescription.getMedicationId());
+            insert.setInt(5, prescription.getQuantity());
+            insert.setString(6, prescription.getInstructions());
+            insert.setString(7, prescription.getPrescriptionId());
+            insert.setString(8, prescription.getPatientId());
+            insert.setString(9, prescription.getDoctorId());
+            insert.setString(10, prescription.getMedicationId());
+        }
+
+        @Override
+        void bindUpdate(PreparedStatement update, Prescription prescription) throws SQLException {
+            update.setInt(1, prescription.getQuantity());
+            update.setString(2, prescription.getInstructions());
+            update.setString(3, prescription.getPrescriptionId());
+        }
+
+        // Prescriptions do not check their own values, so the edit's checks are made here
+        @Override
+        public boolean update(Prescription prescription) {
+            if (prescription != null) {
+                if (prescription.getQuantity() <= 0) {
+                    throw new IllegalArgumentException("Quantity must be a positive value.");
+                }
+                String instructions = prescription.getInstructions();
+                if (instructions != null && instructions.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Instructions cannot be null or empty.");
+                }
+            }
+            return super.update(prescription);
+        }
+
+        @Override
+        Prescription read(ResultSet row) throws SQLException {
+            return new Prescription(row.getString(1), row.getString(2), row.getString(3), row.getString(4),
+                    row.getInt(5), row.getString(6));
+        }
+
+        // Same checks, in the same order, as the tracking system's batch add
+        @Override
+        String rejection(Connection connection, Prescription prescription) throws SQLException {
+            if (!contains(connection, "patients", prescription.getPatientId())) {
+                return "Unknown patient ID: " + prescription.getPatientId();
+            } else if (!contains(connection, "doctors", prescription.getDoctorId())) {
+                return "Unknown doctor ID: " + prescription.getDoctorId();
+            } else if (!contains(connection, "medications", prescription.getMedicationId())) {
+                return "Unknown medication ID: " + prescription.getMedicationId();
+            }
+            return "A prescription with ID " + prescription.getPrescriptionId() + " already exists.";
+        }
+
+        @Override
+        public List<Prescription> getByPatient(String patientId) {
+            return query(selectWhere("patient_id"), patientId);
+        }
+
+        @Override
+        public List<Prescription> getByDoctor(String doctorId) {
+            return query(selectWhere("doctor_id"), doctorId);
+        }
+
+        @Override
+        public List<Prescription> getByMedication(String medicationId) {
+            return query(selectWhere("medication_id"), medicationId);
+        }
+    }
+}
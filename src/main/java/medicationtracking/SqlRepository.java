@@ -0,0 +1,293 @@
+package medicationtracking;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code SqlRepository} class stores one kind of record in a table of a
+ * {@link SqlDatabase}. Subclasses map records to the table's columns.
+ *
+ * <p>Every table has an identity column {@code seq} numbering rows in insertion order,
+ * which page cursors refer to, so a page is found through the index on it without
+ * counting or skipping rows. Adds run as prepared-statement batches of
+ * {@value #BATCH_ROWS} rows, each committed in one transaction. The insert itself
+ * skips rows whose ID is already stored (and, for prescriptions, rows referring to
+ * missing records), so rejected rows do not abort the batch; the reason is only
+ * looked up for the rows the database skipped. Updates write only the editable
+ * columns, in one statement.
+ *
+ * @param <T> The type of record.
+ */
+abstract class SqlRepository<T> implements Repository<T> {
+    /** Rows added per batch and transaction. */
+    static final int BATCH_ROWS = 1000;
+
+    final ConnectionPool pool;
+    private final String table;
+    private final String columns;
+    private final int columnCount;
+    private final String insertSql;
+    private final String updateSql;
+
+    /**
+     * Constructs a repository over an existing table.
+     *
+     * @param pool      The connections to the database.
+     * @param table     The table name.
+     * @param condition Extra conditions a row must meet to be inserted, starting with
+     *                  {@code AND}, or an empty string.
+     * @param editable  The assignments of the columns an update writes, such as
+     *                  {@code "name = ?"}.
+     * @param columns   The columns a record is stored in, starting with the ID.
+     */
+    SqlRepository(ConnectionPool pool, String table, String condition, String[] editable, String... columns) {
+        this.pool = pool;
+        this.table = table;
+        this.columns = String.join(", ", columns);
+        this.columnCount = columns.length;
+        this.insertSql = "INSERT INTO " + table + " (" + this.columns + ") SELECT "
+                + String.join(", ", Collections.nCopies(columns.length, "?"))
+                + " WHERE NOT EXISTS (SELECT 1 FROM " + table + " WHERE id = ?)" + condition;
+        this.updateSql = "UPDATE " + table + " SET " + String.join(", ", editable) + " WHERE id = ?";
+    }
+
+    /**
+     * Gets the ID of a record.
+     *
+     * @param record The record.
+     * @return The ID stored in the {@code id} column.
+     */
+    abstract String idOf(T record);
+
+    /**
+     * Sets the insert parameters for a record: its columns from parameter 1, then
+     * its ID once more, then the parameters of the extra insert condition.
+     *
+     * @param insert The insert statement.
+     * @param record The record.
+     * @throws SQLException If a parameter cannot be set.
+     */
+    abstract void bind(PreparedStatement insert, T record) throws SQLException;
+
+    /**
+     * Sets the update parameters for a record: its editable columns from parameter 1,
+     * then its ID.
+     *
+     * @param update The update statement.
+     * @param record The record.
+     * @throws SQLException If a parameter cannot be set.
+     */
+    abstract void bindUpdate(PreparedStatement update, T record) throws SQLException;
+
+    /**
+     * Builds a record from the current row, whose columns are in constructor order.
+     *
+     * @param row The query result positioned on a row.
+     * @return The record.
+     * @throws SQLException If a column cannot be read.
+     */
+    abstract T read(ResultSet row) throws SQLException;
+
+    /**
+     * Explains why the database skipped inserting a record.
+     *
+     * @param connection The connection the insert ran on.
+     * @param record     The record.
+     * @return The reason it was rejected.
+     * @throws SQLException If the database cannot be queried.
+     */
+    String rejection(Connection connection, T record) throws SQLException {
+        return "A record with ID " + idOf(record) + " already exists.";
+    }
+
+    // ============================================================
+    // === Reading ===
+    // ============================================================
+
+    @Override
+    public T get(String id) {
+        List<T> found = query("SELECT " + columns + " FROM " + table + " WHERE id = ?", id);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public long count() {
+        return pool.run(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM " + table);
+                 ResultSet rows = statement.executeQuery()) {
+                rows.next();
+                return rows.getLong(1);
+            }
+        });
+    }
+
+    @Override
+    public Page<T> getPage(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be a positive value.");
+        }
+        boolean forward = cursor == null || cursor.isEmpty() || cursor.charAt(0) == Page.AFTER;
+        long boundary = cursor == null || cursor.isEmpty() ? 0 : Page.position(cursor);
+        return pool.run(connection -> {
+            // One row more than the page tells whether there is a page beyond it
+            String sql = "SELECT " + columns + ", seq FROM " + table
+                    + (forward ? " WHERE seq > ? ORDER BY seq" : " WHERE seq < ? ORDER BY seq DESC")
+                    + " LIMIT ?";
+            List<T> items = new ArrayList<>(Math.min(pageSize, BATCH_ROWS));
+            long last = boundary;
+            boolean more = false;
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, boundary);
+                statement.setInt(2, pageSize + 1);
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        if (items.size() == pageSize) {
+                            more = true;
+                            break;
+                        }
+                        items.add(read(rows));
+                        last = rows.getLong(columnCount + 1);
+                    }
+                }
+            }
+            if (forward) {
+                String previous = exists(connection, "seq <= ?", boundary) ? Page.before(boundary + 1) : null;
+                return new Page<>(items, previous, more ? Page.after(last) : null);
+            }
+            Collections.reverse(items);
+            String next = exists(connection, "seq >= ?", boundary) ? Page.after(boundary - 1) : null;
+            return new Page<>(items, more ? Page.before(last) : null, next);
+        });
+    }
+
+    private boolean exists(Connection connection, String condition, long seq) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM " + table + " WHERE " + condition + " LIMIT 1")) {
+            statement.setLong(1, seq);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next();
+            }
+        }
+    }
+
+    /**
+     * Reads the records matching a query on one parameter, in insertion order.
+     *
+     * @param sql   The query, selecting this repository's columns.
+     * @param value The value of its parameter.
+     * @return The records found.
+     */
+    List<T> query(String sql, String value) {
+        return pool.run(connection -> {
+            List<T> found = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, value);
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        found.add(read(rows));
+                    }
+                }
+            }
+            return found;
+        });
+    }
+
+    /**
+     * Builds the query for the records whose column holds a value, in insertion order.
+     *
+     * @param column The column.
+     * @return The query, with the value as its parameter.
+     */
+    String selectWhere(String column) {
+        return "SELECT " + columns + " FROM " + table + " WHERE " + column + " = ? ORDER BY seq";
+    }
+
+    // ============================================================
+    // === Writing ===
+    // ============================================================
+
+    @Override
+    public boolean add(T record) {
+        return addAll(Collections.singletonList(record))[0] == null;
+    }
+
+    @Override
+    public String[] addAll(List<? extends T> records) {
+        for (T record : records) {
+            if (record == null) {
+                throw new IllegalArgumentException("Record cannot be null.");
+            }
+        }
+        String[] rejected = new String[records.size()];
+        for (int from = 0; from < records.size(); from += BATCH_ROWS) {
+            List<? extends T> batch = records.subList(from, Math.min(records.size(), from + BATCH_ROWS));
+            int offset = from;
+            pool.run(connection -> insertBatch(connection, batch, rejected, offset));
+        }
+        return rejected;
+    }
+
+    private Void insertBatch(Connection connection, List<? extends T> batch, String[] rejected, int offset)
+            throws SQLException {
+        int[] counts;
+        try (PreparedStatement insert = connection.prepareStatement(insertSql)) {
+            for (T record : batch) {
+                bind(insert, record);
+                insert.addBatch();
+            }
+            counts = insert.executeBatch();
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                rejected[offset + i] = rejection(connection, batch.get(i));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean update(T record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Record cannot be null.");
+        }
+        return pool.run(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+                bindUpdate(statement, record);
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return pool.run(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + table + " WHERE id = ?")) {
+                statement.setString(1, id);
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Checks whether a table holds a row with an ID.
+     *
+     * @param connection The connection to query on.
+     * @param table      The table.
+     * @param id         The ID.
+     * @return True if the row exists.
+     * @throws SQLException If the database cannot be queried.
+     */
+    static boolean contains(Connection connection, String table, String id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM " + table + " WHERE id = ?")) {
+            statement.setString(1, id);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next();
+            }
+        }
+    }
+}
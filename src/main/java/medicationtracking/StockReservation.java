@@ -0,0 +1,110 @@
+package medicationtracking;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code StockReservation} class holds stock taken from a medication for a
+ * prescription until it is either committed (handed out) or cancelled (put back).
+ *
+ * <p>The stock is deducted and the units count towards the prescription's filled
+ * quantity when the reservation is made, so other dispensers can never take the same
+ * units or fill the prescription beyond its quantity. A reservation is finished exactly once; committing or
+ * cancelling it again, or finishing a failed reservation, is an error.
+ */
+public final class StockReservation {
+    private static final int PENDING = 0;
+    private static final int COMMITTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final MedicationTrackingSystem system;
+    private final String prescriptionId;
+    private final Medication medication;
+    private final int quantity;
+    private final DispenseResult result;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    StockReservation(MedicationTrackingSystem system, String prescriptionId, Medication medication,
+                     int quantity, DispenseResult result) {
+        this.system = system;
+        this.prescriptionId = prescriptionId;
+        this.medication = medication;
+        this.quantity = quantity;
+        this.result = result;
+    }
+
+    /**
+     * Gets the outcome of the reservation.
+     *
+     * @return {@link DispenseResult#DISPENSED} if the stock was reserved, otherwise the reason it was not.
+     */
+    public DispenseResult getResult() {
+        return result;
+    }
+
+    /**
+     * Checks whether the stock was reserved.
+     *
+     * @return True if the reservation holds stock.
+     */
+    public boolean isReserved() {
+        return result == DispenseResult.DISPENSED;
+    }
+
+    /**
+     * Gets the ID of the prescription the stock is reserved for.
+     *
+     * @return The prescription ID.
+     */
+    public String getPrescriptionId() {
+        return prescriptionId;
+    }
+
+    /**
+     * Gets the number of units reserved.
+     *
+     * @return The reserved quantity, or 0 if the reservation failed.
+     */
+    public int getQuantity() {
+        return isReserved() ? quantity : 0;
+    }
+
+    /**
+     * Hands the reserved stock out. The stock stays deducted.
+     *
+     * @throws IllegalStateException If the reservation failed or was already finished.
+     */
+    public void commit() {
+        finish(COMMITTED);
+    }
+
+    /**
+     * Puts the reserved stock back on the shelf and the units back on the prescription.
+     * If the medication has been deleted since, there is no stock to return the units
+     * to: the reservation is still cancelled, the units stay filled and false is returned.
+     *
+     * @return True if the stock was put back, false if the medication no longer exists.
+     * @throws IllegalStateException If the reservation failed or was already finished,
+     *         or the system rejects changes; the reservation then stays as it was.
+     * @throws IllegalArgumentException If the stock would overflow; the reservation
+     *         then stays as it was.
+     */
+    public boolean cancel() {
+        finish(CANCELLED);
+        try {
+            return system.adjustFill(medication.getId(), quantity, prescriptionId);
+        } catch (RuntimeException e) {
+            state.set(PENDING); // nothing was put back, so it may be cancelled again
+            throw e;
+        }
+    }
+
+    private void finish(int newState) {
+        if (!isReserved()) {
+            throw new IllegalStateException("Reservation failed: " + result.getMessage());
+        }
+        if (!state.compareAndSet(PENDING, newState)) {
+            throw new IllegalStateException("Reservation for prescription " + prescriptionId
+                    + " was already " + (state.get() == COMMITTED ? "committed." : "cancelled."));
+        }
+    }
+}
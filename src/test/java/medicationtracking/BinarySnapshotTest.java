@@ -0,0 +1,64 @@
+package medicationtracking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips of {@link BinarySnapshot}: a system written to a snapshot and loaded
+ * back must hold the same records, including values the constructors do not accept
+ * but the setters do.
+ */
+class BinarySnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void patientWithClearedAgeSurvivesSnapshot() throws IOException {
+        MedicationTrackingSystem system = quietSystem();
+        system.addPatient(new Patient("P1", "Ann Lee", 34, "555-0101"));
+        system.addPatient(new Patient("P2", "Bo Chan", 51, "555-0102"));
+        system.getPatient("P2").setAge(null);
+        system.addDoctor(new Doctor("D1", "Dr Smith", "555-0199", "Cardiology"));
+        system.addMedication(new Medication("M1", "Aspirin", 100, 500, LocalDate.of(2027, 1, 31)));
+        system.addPrescription(new Prescription("R1", "P2", "D1", "M1", 30, "Take one daily"));
+        system.assignPatientToDoctor("D1", "P2");
+
+        Path file = directory.resolve("snapshot.bin");
+        BinarySnapshot.write(file, 7, system);
+        MedicationTrackingSystem loaded = quietSystem();
+        assertEquals(7, BinarySnapshot.load(file, loaded));
+
+        assertEquals(34, loaded.getPatient("P1").getAge());
+        assertNull(loaded.getPatient("P2").getAge());
+        assertEquals("Bo Chan", loaded.getPatient("P2").getName());
+        assertEquals(1, loaded.getPrescriptionCountForPatient("P2"));
+        assertEquals(1, loaded.getDoctor("D1").getAssignedPatientCount());
+    }
+
+    @Test
+    void dataDirectoryReopensAfterSnapshotOfClearedAge() throws IOException {
+        MedicationTrackingSystem system = quietSystem();
+        try (PersistenceManager persistence = new PersistenceManager(system, directory, Durability.PER_OPERATION)) {
+            system.addPatient(new Patient("P1", "Ann Lee", 34, "555-0101"));
+            system.getPatient("P1").setAge(null);
+            persistence.snapshot();
+        }
+
+        MedicationTrackingSystem reopened = quietSystem();
+        new PersistenceManager(reopened, directory, Durability.PER_OPERATION).close();
+        assertNull(reopened.getPatient("P1").getAge());
+    }
+
+    private static MedicationTrackingSystem quietSystem() {
+        MedicationTrackingSystem system = new MedicationTrackingSystem();
+        system.setOutput(ReportSinks.discard());
+        return system;
+    }
+}
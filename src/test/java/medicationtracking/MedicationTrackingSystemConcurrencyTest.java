@@ -0,0 +1,269 @@
+package medicationtracking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Stress tests for {@link MedicationTrackingSystem} shared by many threads, as when
+ * several pharmacy terminals work on one instance. Each test runs writers and readers
+ * at once and then checks that no update was lost and no stock was oversold. Any
+ * exception in a worker, such as a {@link java.util.ConcurrentModificationException}
+ * from a report, fails the test.
+ */
+class MedicationTrackingSystemConcurrencyTest {
+    private static final int PATIENTS = 50;
+    private static final int DOCTORS = 5;
+    private static final int MEDICATIONS = 10;
+    private static final int BASE_PRESCRIPTIONS = 20;
+    private static final int INITIAL_STOCK = 1_000_000;
+    private static final int DISPENSED_QUANTITY = 3;
+    // Base prescriptions hold enough for every dispenser to fill part of them many times
+    private static final int PRESCRIBED_QUANTITY = 100_000;
+    private static final int RESTOCK_UNITS = 5;
+    private static final LocalDate EXPIRY = LocalDate.of(2099, 12, 31);
+
+    private MedicationTrackingSystem system;
+
+    @BeforeEach
+    void populate() {
+        system = new MedicationTrackingSystem();
+        system.setOutput(ReportSinks.discard());
+        for (int i = 0; i < PATIENTS; i++) {
+            system.addPatient(new Patient("P" + i, "Patient " + i, 30 + i % 50, "555-" + i));
+        }
+        for (int i = 0; i < DOCTORS; i++) {
+            system.addDoctor(new Doctor("D" + i, "Doctor " + i, "555-9" + i, "General"));
+        }
+        for (int i = 0; i < MEDICATIONS; i++) {
+            system.addMedication(new Medication("M" + i, "Drug " + i, 100, INITIAL_STOCK, EXPIRY));
+        }
+        for (int i = 0; i < BASE_PRESCRIPTIONS; i++) {
+            system.addPrescription(new Prescription("R" + i, "P" + i % PATIENTS, "D" + i % DOCTORS,
+                    "M" + i % MEDICATIONS, PRESCRIBED_QUANTITY, "Take as directed"));
+        }
+    }
+
+    @Test
+    void concurrentChangesAndReportsLoseNoUpdates() throws Exception {
+        int adders = 4;
+        int addsPerThread = 1000;
+        int dispensers = 2;
+        int dispensesPerThread = 2000;
+        int restockers = 2;
+        int restocksPerThread = 2000;
+        AtomicIntegerArray dispensed = new AtomicIntegerArray(MEDICATIONS);
+        AtomicIntegerArray restocked = new AtomicIntegerArray(MEDICATIONS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Callable<Void>> writers = new ArrayList<>();
+
+        // Each adder adds its own prescriptions and patients, then deletes every other one
+        for (int t = 0; t < adders; t++) {
+            int thread = t;
+            writers.add(() -> {
+                for (int i = 0; i < addsPerThread; i++) {
+                    String id = "T" + thread + "-" + i;
+                    assertTrue(system.addPrescription(new Prescription(id, "P" + i % PATIENTS,
+                            "D" + i % DOCTORS, "M" + i % MEDICATIONS, 10, "Take with water")));
+                    assertTrue(system.addPatient(new Patient("X" + id, "Visitor " + id, 40, "555-0000")));
+                }
+                for (int i = 0; i < addsPerThread; i += 2) {
+                    assertTrue(system.deletePrescription("T" + thread + "-" + i));
+                    assertTrue(system.deletePatient("XT" + thread + "-" + i));
+                }
+                return null;
+            });
+        }
+        for (int t = 0; t < dispensers; t++) {
+            int thread = t;
+            writers.add(() -> {
+                for (int i = 0; i < dispensesPerThread; i++) {
+                    int prescription = (i + thread) % BASE_PRESCRIPTIONS;
+                    StockReservation reservation = system.reserve("R" + prescription, DISPENSED_QUANTITY);
+                    assertEquals(DispenseResult.DISPENSED, reservation.getResult());
+                    reservation.commit();
+                    dispensed.incrementAndGet(prescription % MEDICATIONS);
+                }
+                return null;
+            });
+        }
+        for (int t = 0; t < restockers; t++) {
+            int thread = t;
+            writers.add(() -> {
+                for (int i = 0; i < restocksPerThread; i++) {
+                    int medication = (i + thread) % MEDICATIONS;
+                    assertTrue(system.adjustStock("M" + medication, RESTOCK_UNITS));
+                    restocked.incrementAndGet(medication);
+                }
+                return null;
+            });
+        }
+        // Every patient is assigned to one doctor, from several threads at once
+        for (int t = 0; t < DOCTORS; t++) {
+            int doctor = t;
+            writers.add(() -> {
+                for (int i = doctor; i < PATIENTS; i += DOCTORS) {
+                    assertTrue(system.assignPatientToDoctor("D" + doctor, "P" + i));
+                }
+                return null;
+            });
+        }
+        // Readers run whole-system reports and listings until the writers are done
+        List<Callable<Void>> readers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            readers.add(() -> {
+                do {
+                    system.writeSystemReport(ReportSinks.discard());
+                    system.generatePrescriptionReport();
+                    system.checkPrescriptionStatistics();
+                    for (String cursor = null; ; ) {
+                        Page<Prescription> page = system.getPrescriptionPage(cursor, 500);
+                        cursor = page.getNextCursor();
+                        if (cursor == null) {
+                            break;
+                        }
+                    }
+                } while (writing.get());
+                return null;
+            });
+        }
+
+        runAll(writers, readers, writing);
+
+        assertEquals(BASE_PRESCRIPTIONS + adders * addsPerThread / 2, system.getPrescriptionCount());
+        assertEquals(PATIENTS + adders * addsPerThread / 2, system.getPatientCount());
+        assertEquals(MEDICATIONS, system.getMedicationCount());
+        for (int i = 0; i < MEDICATIONS; i++) {
+            int expected = INITIAL_STOCK - dispensed.get(i) * DISPENSED_QUANTITY + restocked.get(i) * RESTOCK_UNITS;
+            assertEquals(expected, system.getMedication("M" + i).getQuantityInStock(), "Stock of M" + i);
+        }
+        int filled = 0;
+        for (int i = 0; i < BASE_PRESCRIPTIONS; i++) {
+            filled += system.getPrescription("R" + i).getFilledQuantity();
+        }
+        assertEquals(dispensers * dispensesPerThread * DISPENSED_QUANTITY, filled);
+        for (int i = 0; i < DOCTORS; i++) {
+            assertEquals(PATIENTS / DOCTORS, system.getDoctor("D" + i).getAssignedPatientCount());
+        }
+        assertEquals(List.of(), system.verifyPrescriptionStatistics());
+    }
+
+    @Test
+    void concurrentDispensesNeverOversell() throws Exception {
+        int stock = 3000;
+        system.addMedication(new Medication("SCARCE", "Scarce drug", 50, stock, EXPIRY));
+        for (int i = 0; i < 8; i++) {
+            system.addPrescription(new Prescription("S" + i, "P" + i, "D0", "SCARCE", 700, "Take as directed"));
+        }
+        AtomicIntegerArray outcomes = new AtomicIntegerArray(DispenseResult.values().length);
+        List<Callable<Void>> dispensers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            dispensers.add(() -> {
+                for (int i = 0; i < 100; i++) {
+                    StockReservation reservation = system.reserve("S" + (i + thread) % 8, 7);
+                    if (reservation.isReserved()) {
+                        reservation.commit();
+                    }
+                    outcomes.incrementAndGet(reservation.getResult().ordinal());
+                }
+                return null;
+            });
+        }
+
+        runAll(dispensers, new ArrayList<>(), new AtomicBoolean(true));
+
+        int filled = outcomes.get(DispenseResult.DISPENSED.ordinal());
+        assertEquals(stock / 7, filled);
+        assertEquals(800 - filled, outcomes.get(DispenseResult.INSUFFICIENT_STOCK.ordinal()));
+        assertEquals(stock - filled * 7, system.getMedication("SCARCE").getQuantityInStock());
+    }
+
+    @Test
+    void concurrentReservationsNeverOverfillAPrescription() throws Exception {
+        system.addPrescription(new Prescription("ONCE", "P0", "D0", "M0", 90, "Take as directed"));
+        AtomicIntegerArray outcomes = new AtomicIntegerArray(DispenseResult.values().length);
+        List<Callable<Void>> dispensers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            dispensers.add(() -> {
+                for (int i = 0; i < 20; i++) {
+                    StockReservation reservation = system.reserve("ONCE", 2);
+                    if (reservation.isReserved()) {
+                        reservation.commit();
+                    }
+                    outcomes.incrementAndGet(reservation.getResult().ordinal());
+                }
+                return null;
+            });
+        }
+
+        runAll(dispensers, new ArrayList<>(), new AtomicBoolean(true));
+
+        assertEquals(45, outcomes.get(DispenseResult.DISPENSED.ordinal()));
+        assertEquals(160 - 45, outcomes.get(DispenseResult.ALREADY_FILLED.ordinal()));
+        assertEquals(90, system.getPrescription("ONCE").getFilledQuantity());
+        assertEquals(INITIAL_STOCK - 90, system.getMedication("M0").getQuantityInStock());
+    }
+
+    // Starts all tasks together, waits for the writers, then stops the readers, and
+    // rethrows the first failure of any task
+    private static void runAll(List<Callable<Void>> writers, List<Callable<Void>> readers, AtomicBoolean writing)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writers.size() + readers.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> written = submitAll(executor, writers, start);
+            List<Future<Void>> read = submitAll(executor, readers, start);
+            start.countDown();
+            try {
+                awaitAll(written);
+            } finally {
+                writing.set(false);
+            }
+            awaitAll(read);
+        } finally {
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+    }
+
+    private static List<Future<Void>> submitAll(ExecutorService executor, List<Callable<Void>> tasks,
+                                                CountDownLatch start) {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        return futures;
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws Exception {
+        for (Future<Void> future : futures) {
+            try {
+                future.get(2, TimeUnit.MINUTES);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package medicationtracking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * How {@link MedicationTrackingSystem} treats listeners that fail: a listener that
+ * throws after a change does not keep the others from seeing it, and a listener that
+ * can no longer record changes rejects them before they are applied.
+ */
+class MutationListenerTest {
+
+    @Test
+    void failingListenerDoesNotHideChangeFromOthers() {
+        MedicationTrackingSystem system = quietSystem();
+        List<Mutation> seen = new ArrayList<>();
+        system.addMutationListener(mutation -> {
+            throw new IllegalStateException("disk full");
+        });
+        system.addMutationListener(seen::add);
+
+        system.addPatient(new Patient("P1", "Ann Lee", 34, "555-0101"));
+        system.getPatient("P1").setName("Ann Li");
+
+        assertEquals(2, seen.size());
+        assertEquals("Ann Li", system.getPatient("P1").getName());
+    }
+
+    @Test
+    void listenerThatCannotRecordRejectsChangesBeforeTheyApply() {
+        MedicationTrackingSystem system = quietSystem();
+        system.addPatient(new Patient("P1", "Ann Lee", 34, "555-0101"));
+        system.addMedication(new Medication("M1", "Aspirin", 100, 500, LocalDate.of(2099, 1, 31)));
+        system.addMutationListener(new MutationListener() {
+            @Override
+            public void checkRecording() {
+                throw new IllegalStateException("log failed");
+            }
+
+            @Override
+            public void mutationApplied(Mutation mutation) {
+            }
+        });
+
+        assertThrows(IllegalStateException.class,
+                () -> system.addPatient(new Patient("P2", "Bo Chan", 51, "555-0102")));
+        assertThrows(IllegalStateException.class, () -> system.getPatient("P1").setName("Ann Li"));
+        assertThrows(IllegalStateException.class, () -> system.editPatient("P1", "Ann Li", 35, "555-0199"));
+        assertThrows(IllegalStateException.class, () -> system.adjustStock("M1", 10));
+
+        assertNull(system.getPatient("P2"));
+        assertEquals("Ann Lee", system.getPatient("P1").getName());
+        assertEquals(34, system.getPatient("P1").getAge());
+        assertEquals(500, system.getMedication("M1").getQuantityInStock());
+    }
+
+    private static MedicationTrackingSystem quietSystem() {
+        MedicationTrackingSystem system = new MedicationTrackingSystem();
+        system.setOutput(ReportSinks.discard());
+        return system;
+    }
+}
@@ -0,0 +1,112 @@
+package medicationtracking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * How much of a prescription has been filled: dispensing and reserving never hand out
+ * more than the prescribed quantity, cancelled reservations give the units back, and
+ * the filled quantity survives a restart from the log or a snapshot.
+ */
+class PrescriptionFillTest {
+    private static final LocalDate EXPIRY = LocalDate.of(2099, 12, 31);
+
+    @TempDir
+    Path directory;
+
+    private MedicationTrackingSystem system;
+
+    @BeforeEach
+    void populate() {
+        system = quietSystem();
+        populate(system);
+    }
+
+    private static void populate(MedicationTrackingSystem system) {
+        system.addPatient(new Patient("P1", "Ann Lee", 34, "555-0101"));
+        system.addDoctor(new Doctor("D1", "Dr Smith", "555-0199", "Cardiology"));
+        system.addMedication(new Medication("M1", "Aspirin", 100, 500, EXPIRY));
+        system.addPrescription(new Prescription("R1", "P1", "D1", "M1", 30, "Take one daily"));
+    }
+
+    @Test
+    void prescriptionIsDispensedOnce() {
+        assertEquals(DispenseResult.DISPENSED, system.dispense("R1"));
+        assertEquals(DispenseResult.ALREADY_FILLED, system.dispense("R1"));
+
+        assertEquals(30, system.getPrescription("R1").getFilledQuantity());
+        assertEquals(470, system.getMedication("M1").getQuantityInStock());
+    }
+
+    @Test
+    void reservationsAreLimitedToWhatRemains() {
+        assertEquals(DispenseResult.ALREADY_FILLED, system.reserve("R1", 1000).getResult());
+        system.reserve("R1", 20).commit();
+        assertEquals(DispenseResult.ALREADY_FILLED, system.reserve("R1", 11).getResult());
+        assertEquals(DispenseResult.DISPENSED, system.dispense("R1"));
+
+        assertEquals(0, system.getPrescription("R1").getRemainingQuantity());
+        assertEquals(470, system.getMedication("M1").getQuantityInStock());
+    }
+
+    @Test
+    void cancelledReservationCanBeFilledAgain() {
+        StockReservation reservation = system.reserve("R1", 30);
+        assertTrue(reservation.cancel());
+
+        assertEquals(0, system.getPrescription("R1").getFilledQuantity());
+        assertEquals(500, system.getMedication("M1").getQuantityInStock());
+        assertEquals(DispenseResult.DISPENSED, system.dispense("R1"));
+    }
+
+    @Test
+    void cancelAfterMedicationIsDeletedReportsLostStock() {
+        StockReservation reservation = system.reserve("R1", 10);
+        system.deleteMedication("M1");
+
+        assertFalse(reservation.cancel());
+        assertEquals(10, system.getPrescription("R1").getFilledQuantity());
+    }
+
+    @Test
+    void fillsSurviveRestartFromLogAndSnapshot() throws IOException {
+        MedicationTrackingSystem logged = quietSystem();
+        PersistenceManager persistence = new PersistenceManager(logged, directory, Durability.PER_OPERATION);
+        populate(logged);
+        logged.reserve("R1", 10).commit();
+        logged.reserve("R1", 5).cancel();
+        persistence.close();
+        assertEquals(10, reopen().getPrescription("R1").getFilledQuantity());
+
+        MedicationTrackingSystem snapshotted = quietSystem();
+        try (PersistenceManager snapshots = new PersistenceManager(snapshotted, directory, Durability.PER_OPERATION)) {
+            snapshotted.reserve("R1", 15).commit();
+            snapshots.snapshot();
+        }
+        MedicationTrackingSystem reopened = reopen();
+        assertEquals(25, reopened.getPrescription("R1").getFilledQuantity());
+        assertEquals(475, reopened.getMedication("M1").getQuantityInStock());
+        assertEquals(DispenseResult.DISPENSED, reopened.dispense("R1"));
+    }
+
+    private MedicationTrackingSystem reopen() throws IOException {
+        MedicationTrackingSystem reopened = quietSystem();
+        new PersistenceManager(reopened, directory, Durability.PER_OPERATION).close();
+        return reopened;
+    }
+
+    private static MedicationTrackingSystem quietSystem() {
+        MedicationTrackingSystem system = new MedicationTrackingSystem();
+        system.setOutput(ReportSinks.discard());
+        return system;
+    }
+}